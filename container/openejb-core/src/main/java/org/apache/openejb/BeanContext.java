@@ -26,6 +26,7 @@ import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.cmp.KeyGenerator;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorInstance;
 import org.apache.openejb.core.interceptor.InterceptorStack;
@@ -228,6 +229,8 @@ public class BeanContext extends DeploymentContext {
     private final Map<Method, Method> methodMap = new HashMap<Method, Method>();
     private final Map<Method, MethodContext> methodContextMap = new HashMap<Method, MethodContext>();
     private final Map<String, ViewContext> viewContextMap = new HashMap<String, ViewContext>();
+    private volatile int methodsVersion;
+    private volatile InvocationDescriptors invocationDescriptors;
 
     private TransactionPolicyFactory transactionPolicyFactory;
 
@@ -235,6 +238,8 @@ public class BeanContext extends DeploymentContext {
     private final Set<InterceptorData> instanceScopedInterceptors = new HashSet<InterceptorData>();
     private final List<InterceptorInstance> systemInterceptors = new ArrayList<InterceptorInstance>();
     private final List<InterceptorInstance> userInterceptors = new ArrayList<InterceptorInstance>();
+    private volatile int interceptorsVersion;
+    private volatile InterceptorChain[] callbackInterceptorChains;
     private final List<Injection> injections = new ArrayList<Injection>();
     private final Map<Class, InterfaceType> interfaces = new HashMap<Class, InterfaceType>();
     private final Map<Class, ExceptionType> exceptions = new ConcurrentHashMap<Class, ExceptionType>();
@@ -676,7 +681,7 @@ public class BeanContext extends DeploymentContext {
     }
 
     public LockType getConcurrencyAttribute(final Method beanMethod) {
-        return getMethodContext(beanMethod).getLockType();
+        return getInvocationDescriptor(beanMethod).getLockType();
     }
 
     public LockType getLockType() {
@@ -688,23 +693,7 @@ public class BeanContext extends DeploymentContext {
     }
 
     public TransactionType getTransactionType(final Method method, final InterfaceType interfaceType) {
-
-        MethodContext methodContext = null;
-
-        if (interfaceType != null) {
-            methodContext = getViewMethodContext(method, interfaceType.getSpecName());
-        }
-
-        if (methodContext == null) {
-            methodContext = methodContextMap.get(method);
-        }
-
-        if (methodContext == null) {
-            final Method beanMethod = getMatchingBeanMethod(method);
-            methodContext = getMethodContext(beanMethod);
-        }
-
-        return methodContext.getTransactionType();
+        return getInvocationDescriptor(method).getTransactionType(interfaceType);
 
         //
         //        // Check the cache
@@ -911,6 +900,7 @@ public class BeanContext extends DeploymentContext {
 
     public void setBeanManagedTransaction(final boolean value) {
         isBeanManagedTransaction = value;
+        methodsChanged();
     }
 
     public void setBeanManagedConcurrency(final boolean beanManagedConcurrency) {
@@ -939,10 +929,92 @@ public class BeanContext extends DeploymentContext {
         if (methodContext == null) {
             methodContext = new MethodContext(this, method);
             methodContextMap.put(method, methodContext);
+            methodsChanged();
         }
         return methodContext;
     }
 
+    /**
+     * Resolves the bean method, transaction attributes, lock, access timeout and
+     * interceptors of an invocation of the given method.
+     * <p/>
+     * Descriptors are compiled once for all the mapped methods and replaced when
+     * the method metadata changes, so containers can call it for each invocation:
+     * it never registers a {@link MethodContext} and the lookup is a single probe.
+     */
+    public InvocationDescriptor getInvocationDescriptor(final Method method) {
+        InvocationDescriptors descriptors = invocationDescriptors;
+        if (descriptors == null || descriptors.version != methodsVersion) {
+            descriptors = compileInvocationDescriptors();
+        }
+        final InvocationDescriptor descriptor = descriptors.get(method);
+        return descriptor != null ? descriptor : addInvocationDescriptor(method);
+    }
+
+    /**
+     * Invalidates the invocation descriptors of the bean.
+     */
+    void methodsChanged() {
+        methodsVersion++;
+        invocationDescriptors = null;
+    }
+
+    private synchronized InvocationDescriptors compileInvocationDescriptors() {
+        final int version = methodsVersion;
+        InvocationDescriptors descriptors = invocationDescriptors;
+        if (descriptors != null && descriptors.version == version) {
+            return descriptors;
+        }
+
+        final Set<Method> methods = new LinkedHashSet<Method>(methodMap.keySet());
+        methods.addAll(methodContextMap.keySet());
+        descriptors = new InvocationDescriptors(version, methods.size());
+        for (final Method method : methods) {
+            descriptors.put(createInvocationDescriptor(method));
+        }
+        invocationDescriptors = descriptors;
+        return descriptors;
+    }
+
+    private synchronized InvocationDescriptor addInvocationDescriptor(final Method method) {
+        InvocationDescriptors descriptors = invocationDescriptors;
+        if (descriptors == null || descriptors.version != methodsVersion) {
+            descriptors = compileInvocationDescriptors();
+        }
+
+        InvocationDescriptor descriptor = descriptors.get(method);
+        if (descriptor == null) {
+            // not mapped at deployment (Object methods for instance), copied to keep the table immutable
+            descriptor = createInvocationDescriptor(method);
+            final InvocationDescriptors copy = descriptors.copy(1);
+            copy.put(descriptor);
+            invocationDescriptors = copy;
+        }
+        return descriptor;
+    }
+
+    private InvocationDescriptor createInvocationDescriptor(final Method method) {
+        final Method beanMethod = getMatchingBeanMethod(method);
+        MethodContext methodContext = methodContextMap.get(beanMethod);
+        if (methodContext == null) {
+            // nothing declared for this method, only the defaults of the bean apply
+            methodContext = new MethodContext(this, beanMethod);
+        }
+
+        final MethodContext declared = methodContextMap.get(method);
+        final TransactionType transactionType = (declared != null ? declared : methodContext).getTransactionType();
+        final InterfaceType[] types = InterfaceType.values();
+        final TransactionType[] viewTransactionTypes = new TransactionType[types.length];
+        for (final InterfaceType type : types) {
+            final MethodContext view = getViewMethodContext(method, type.getSpecName());
+            viewTransactionTypes[type.ordinal()] = view != null ? view.getTransactionType() : transactionType;
+        }
+
+        final Boolean retain = removeExceptionPolicy.get(method);
+        return new InvocationDescriptor(method, beanMethod, methodContext, transactionType, viewTransactionTypes,
+            methodContext.getLockType(), methodContext.getAccessTimeout(), retain != null && retain);
+    }
+
     // TODO The MethodContext object has Method as a variable, so we could change this
     // to simply return methodContextMap.values() which would be cleaner
     public Iterator<Entry<Method, MethodContext>> iteratorMethodContext() {
@@ -1002,6 +1074,7 @@ public class BeanContext extends DeploymentContext {
     public void setRetainIfExeption(final Method removeMethod, final boolean retain) {
         if (getRemoveMethods().contains(removeMethod)) {
             removeExceptionPolicy.put(removeMethod, retain);
+            methodsChanged();
         }
     }
 
@@ -1009,8 +1082,7 @@ public class BeanContext extends DeploymentContext {
      * TODO: Move to MethodContext
      */
     public boolean retainIfExeption(final Method removeMethod) {
-        final Boolean retain = removeExceptionPolicy.get(removeMethod);
-        return retain != null && retain;
+        return getInvocationDescriptor(removeMethod).isRetainIfException();
     }
 
     /**
@@ -1032,14 +1104,29 @@ public class BeanContext extends DeploymentContext {
 
     public void addSystemInterceptor(final Object interceptor) {
         systemInterceptors.add(new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public void addFirstSystemInterceptor(final Object interceptor) {
         systemInterceptors.add(0, new InterceptorInstance(interceptor));
+        interceptorsChanged();
     }
 
     public void addUserInterceptor(final Object interceptor) {
         userInterceptors.add(new InterceptorInstance(interceptor));
+        interceptorsChanged();
+    }
+
+    /**
+     * Invalidates the compiled interceptor chains of the bean and its methods.
+     */
+    void interceptorsChanged() {
+        interceptorsVersion++;
+        callbackInterceptorChains = null;
+    }
+
+    int getInterceptorsVersion() {
+        return interceptorsVersion;
     }
 
     public List<InterceptorInstance> getUserAndSystemInterceptors() {
@@ -1062,6 +1149,25 @@ public class BeanContext extends DeploymentContext {
         this.callbackInterceptors.clear();
         this.callbackInterceptors.addAll(callbackInterceptors);
         this.instanceScopedInterceptors.addAll(callbackInterceptors);
+        interceptorsChanged();
+    }
+
+    /**
+     * Compiled form of {@link #getCallbackInterceptors()} for the given callback operation.
+     */
+    public InterceptorChain getCallbackInterceptorChain(final Operation operation) {
+        InterceptorChain[] chains = callbackInterceptorChains;
+        if (chains == null) {
+            chains = new InterceptorChain[Operation.values().length];
+            callbackInterceptorChains = chains;
+        }
+
+        InterceptorChain chain = chains[operation.ordinal()];
+        if (chain == null) {
+            chain = new InterceptorChain(operation, getCallbackInterceptors(), null);
+            chains[operation.ordinal()] = chain;
+        }
+        return chain;
     }
 
     public List<InterceptorData> getCdiInterceptors() {
@@ -1072,10 +1178,19 @@ public class BeanContext extends DeploymentContext {
         this.cdiInterceptors.clear();
         this.cdiInterceptors.addAll(cdiInterceptors);
         this.instanceScopedInterceptors.addAll(cdiInterceptors);
+        interceptorsChanged();
     }
 
     public List<InterceptorData> getMethodInterceptors(final Method method) {
-        return getMethodContext(method).getInterceptors();
+        return getInvocationDescriptor(method).getMethodContext().getInterceptors();
+    }
+
+    /**
+     * Compiled form of {@link #getMethodInterceptors(Method)} for the given operation,
+     * built on first use and kept until the interceptors of the bean change.
+     */
+    public InterceptorChain getMethodInterceptorChain(final Method method, final Operation operation) {
+        return getInvocationDescriptor(method).getInterceptorChain(operation);
     }
 
     public List<InterceptorData> getInterceptorData() {
@@ -1230,6 +1345,7 @@ public class BeanContext extends DeploymentContext {
 
     public void mapMethods(final Method interfaceMethod, final Method beanMethod) {
         methodMap.put(interfaceMethod, beanMethod);
+        methodsChanged();
     }
 
     private void mapObjectInterface(final Class intrface) {
@@ -1424,7 +1540,7 @@ public class BeanContext extends DeploymentContext {
     }
 
     public Duration getAccessTimeout(final Method beanMethod) {
-        return getMethodContext(beanMethod).getAccessTimeout();
+        return getInvocationDescriptor(beanMethod).getAccessTimeout();
     }
 
     public Duration getAccessTimeout() {
@@ -1749,6 +1865,7 @@ public class BeanContext extends DeploymentContext {
 
             methodContext = new MethodContext(BeanContext.this, method);
             methodContextMap.put(method, methodContext);
+            methodsChanged();
 
             return methodContext;
         }
@@ -1865,4 +1982,58 @@ public class BeanContext extends DeploymentContext {
             return proxy; // let it generate a NPE if null, shouldn't occur (tested elsewhere) excepted for test where we don't use it
         }
     }
+
+    /**
+     * Open addressing table of the invocation descriptors, keyed by method.
+     * Proxies usually hold their own copies of the interface methods so the
+     * identity check falls back on equals.
+     */
+    private static final class InvocationDescriptors {
+        private final int version;
+        private final InvocationDescriptor[] table;
+        private final int mask;
+        private int size;
+
+        private InvocationDescriptors(final int version, final int capacity) {
+            int length = 16;
+            while (length < capacity * 2) {
+                length <<= 1;
+            }
+            this.version = version;
+            this.table = new InvocationDescriptor[length];
+            this.mask = length - 1;
+        }
+
+        private InvocationDescriptor get(final Method method) {
+            int index = method.hashCode() & mask;
+            InvocationDescriptor descriptor;
+            while ((descriptor = table[index]) != null) {
+                final Method key = descriptor.getMethod();
+                if (key == method || key.equals(method)) {
+                    return descriptor;
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private void put(final InvocationDescriptor descriptor) {
+            int index = descriptor.getMethod().hashCode() & mask;
+            while (table[index] != null) {
+                index = (index + 1) & mask;
+            }
+            table[index] = descriptor;
+            size++;
+        }
+
+        private InvocationDescriptors copy(final int extra) {
+            final InvocationDescriptors copy = new InvocationDescriptors(version, size + extra);
+            for (final InvocationDescriptor descriptor : table) {
+                if (descriptor != null) {
+                    copy.put(descriptor);
+                }
+            }
+            return copy;
+        }
+    }
 }
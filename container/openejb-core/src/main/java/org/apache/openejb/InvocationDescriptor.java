@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb;
+
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.core.interceptor.InterceptorChain;
+import org.apache.openejb.core.transaction.TransactionType;
+import org.apache.openejb.monitoring.MethodMetrics;
+import org.apache.openejb.util.Duration;
+
+import javax.ejb.LockType;
+import java.lang.reflect.Method;
+
+/**
+ * Everything a container needs to invoke a method of a bean, resolved once
+ * from the {@link BeanContext} and its {@link MethodContext}s.
+ * <p/>
+ * Descriptors are immutable: a change of the method metadata replaces them,
+ * see {@link BeanContext#getInvocationDescriptor(Method)}.
+ *
+ * @version $Rev$ $Date$
+ */
+public final class InvocationDescriptor {
+    private final Method method;
+    private final Method beanMethod;
+    private final MethodContext methodContext;
+    private final TransactionType transactionType;
+    private final TransactionType[] viewTransactionTypes;
+    private final LockType lockType;
+    private final Duration accessTimeout;
+    private final boolean retainIfException;
+
+    InvocationDescriptor(final Method method, final Method beanMethod, final MethodContext methodContext,
+                         final TransactionType transactionType, final TransactionType[] viewTransactionTypes,
+                         final LockType lockType, final Duration accessTimeout, final boolean retainIfException) {
+        this.method = method;
+        this.beanMethod = beanMethod;
+        this.methodContext = methodContext;
+        this.transactionType = transactionType;
+        this.viewTransactionTypes = viewTransactionTypes;
+        this.lockType = lockType;
+        this.accessTimeout = accessTimeout;
+        this.retainIfException = retainIfException;
+    }
+
+    /**
+     * @return the invoked method, usually declared by an interface of the bean
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the method of the bean class implementing {@link #getMethod()}
+     */
+    public Method getBeanMethod() {
+        return beanMethod;
+    }
+
+    public MethodContext getMethodContext() {
+        return methodContext;
+    }
+
+    public TransactionType getTransactionType() {
+        return transactionType;
+    }
+
+    /**
+     * @param interfaceType the view the method is invoked through, can be null
+     */
+    public TransactionType getTransactionType(final InterfaceType interfaceType) {
+        return interfaceType == null ? transactionType : viewTransactionTypes[interfaceType.ordinal()];
+    }
+
+    public LockType getLockType() {
+        return lockType;
+    }
+
+    /**
+     * @return the access timeout of the method, null to use the one of the bean
+     */
+    public Duration getAccessTimeout() {
+        return accessTimeout;
+    }
+
+    public boolean isRetainIfException() {
+        return retainIfException;
+    }
+
+    public InterceptorChain getInterceptorChain(final Operation operation) {
+        return methodContext.getInterceptorChain(operation);
+    }
+
+    public MethodMetrics getMetrics() {
+        return methodContext.getMetrics();
+    }
+
+    @Override
+    public String toString() {
+        return "InvocationDescriptor{method=" + method + ", beanMethod=" + beanMethod + ", transactionType=" + transactionType + '}';
+    }
+}
@@ -17,9 +17,13 @@
 
 package org.apache.openejb;
 
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.timer.ScheduleData;
 import org.apache.openejb.core.transaction.TransactionType;
+import org.apache.openejb.monitoring.InvocationMetrics;
+import org.apache.openejb.monitoring.MethodMetrics;
 import org.apache.openejb.util.Duration;
 
 import javax.ejb.LockType;
@@ -42,6 +46,8 @@ public class MethodContext {
     private TransactionType transactionType;
     private Duration accessTimeout;
     private boolean asynchronous;
+    private volatile InterceptorChains chains;
+    private volatile MethodMetrics metrics;
 
     public MethodContext(final BeanContext beanContext, final Method beanMethod) {
         this.beanContext = beanContext;
@@ -50,6 +56,7 @@ public class MethodContext {
 
     public void setAccessTimeout(final Duration accessTimeout) {
         this.accessTimeout = accessTimeout;
+        beanContext.methodsChanged();
     }
 
     public Duration getAccessTimeout() {
@@ -66,11 +73,44 @@ public class MethodContext {
 
     public void addCdiInterceptor(final InterceptorData data) {
         cdiInterceptors.add(data);
+        beanContext.interceptorsChanged();
     }
 
     public void setInterceptors(final List<InterceptorData> interceptors) {
         this.interceptors.clear();
         this.interceptors.addAll(interceptors);
+        beanContext.interceptorsChanged();
+    }
+
+    public InterceptorChain getInterceptorChain(final Operation operation) {
+        final int version = beanContext.getInterceptorsVersion();
+
+        InterceptorChains current = chains;
+        if (current == null || current.version != version) {
+            current = new InterceptorChains(version);
+            chains = current;
+        }
+
+        InterceptorChain chain = current.chains[operation.ordinal()];
+        if (chain == null) {
+            // a concurrent compilation of the same chain is harmless, both are equivalent
+            chain = new InterceptorChain(operation, getInterceptors(), beanMethod);
+            current.chains[operation.ordinal()] = chain;
+        }
+        return chain;
+    }
+
+    /**
+     * @return the invocation metrics of the method, looked up with its first invocation
+     */
+    public MethodMetrics getMetrics() {
+        MethodMetrics current = metrics;
+        if (current == null) {
+            // a concurrent lookup is harmless, both get the same metrics
+            current = InvocationMetrics.get(beanContext, beanMethod);
+            metrics = current;
+        }
+        return current;
     }
 
     public List<InterceptorData> getInterceptors() {
@@ -87,6 +127,7 @@ public class MethodContext {
 
     public void setLockType(final LockType lockType) {
         this.lockType = lockType;
+        beanContext.methodsChanged();
     }
 
     public TransactionType getTransactionType() {
@@ -95,6 +136,7 @@ public class MethodContext {
 
     public void setTransactionType(final TransactionType transactionType) {
         this.transactionType = transactionType;
+        beanContext.methodsChanged();
     }
 
     public List<ScheduleData> getSchedules() {
@@ -109,6 +151,15 @@ public class MethodContext {
         this.asynchronous = asynchronous;
     }
 
+    private static final class InterceptorChains {
+        private final int version;
+        private final InterceptorChain[] chains = new InterceptorChain[Operation.values().length];
+
+        private InterceptorChains(final int version) {
+            this.version = version;
+        }
+    }
+
     /**
      * Currently (and as a matter of legacy) only EJB 2.x style
      * interfaces may have different transaction attributes for an
@@ -35,6 +35,7 @@ import org.apache.openejb.Extensions;
 import org.apache.openejb.Injection;
 import org.apache.openejb.JndiConstants;
 import org.apache.openejb.MethodContext;
+import org.apache.openejb.ModuleContext;
 import org.apache.openejb.NoSuchApplicationException;
 import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.OpenEJBRuntimeException;
@@ -228,6 +229,7 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
     public static final String TIMER_STORE_CLASS = "timerStore.class";
     private static final ReentrantLock lock = new ReentrantLock(true);
     public static final String OPENEJB_TIMERS_ON = "openejb.timers.on";
+    public static final String OPENEJB_JNDI_INDEX = "openejb.jndi.index";
     public static final Class<?>[] VALIDATOR_FACTORY_INTERFACES = new Class<?>[]{ValidatorFactory.class};
     public static final Class<?>[] VALIDATOR_INTERFACES = new Class<?>[]{Validator.class};
     private final boolean skipLoaderIfPossible;
@@ -940,6 +942,9 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
 
             deployedApplications.put(appInfo.path, appInfo);
             resumePersistentSchedulers(appContext);
+            if (systemInstance.getOptions().get(OPENEJB_JNDI_INDEX, true)) {
+                buildJndiIndexes(appContext);
+            }
 
             systemInstance.fireEvent(new AssemblerAfterApplicationCreated(appInfo, appContext, allDeployments));
             logger.info("createApplication.success", appInfo.path);
@@ -1017,6 +1022,24 @@ public class Assembler extends AssemblerTool implements org.apache.openejb.spi.A
         }
     }
 
+    private void buildJndiIndexes(final AppContext appContext) {
+        IvmContext.buildIndex(appContext.getGlobalJndiContext());
+        IvmContext.buildIndex(appContext.getAppJndiContext());
+
+        final Collection<ModuleContext> modules = new HashSet<ModuleContext>();
+        for (final BeanContext ejb : appContext.getBeanContexts()) {
+            if (modules.add(ejb.getModuleContext())) {
+                IvmContext.buildIndex(ejb.getModuleContext().getModuleJndiContext());
+            }
+            IvmContext.buildIndex(ejb.getJndiContext());
+        }
+        for (final WebContext web : appContext.getWebContexts()) {
+            if (web.getJndiEnc() != null) {
+                IvmContext.buildIndex(web.getJndiEnc());
+            }
+        }
+    }
+
     private void resumePersistentSchedulers(final AppContext appContext) {
         final Scheduler globalScheduler = SystemInstance.get().getComponent(Scheduler.class);
         final Collection<Scheduler> schedulers = new ArrayList<Scheduler>();
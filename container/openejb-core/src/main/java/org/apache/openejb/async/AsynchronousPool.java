@@ -23,6 +23,8 @@ import org.apache.openejb.loader.Options;
 import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.ExecutorBuilder;
+import org.apache.openejb.util.executor.ThreadPerTaskExecutor;
+import org.apache.openejb.util.executor.VirtualThreadFactory;
 
 import javax.ejb.EJBException;
 import javax.ejb.NoSuchEJBException;
@@ -54,8 +56,25 @@ public class AsynchronousPool {
         this.awaitDuration = awaitDuration;
     }
 
+    /**
+     * Each call gets its own thread, a virtual one when the JVM has them.
+     */
+    public AsynchronousPool(final ThreadPerTaskExecutor threadPerTaskExecutor, final Duration awaitDuration) {
+        this.blockingQueue = null;
+        this.executor = threadPerTaskExecutor;
+        this.awaitDuration = awaitDuration;
+    }
+
     public static AsynchronousPool create(final AppContext appContext) {
         final Options options = appContext.getOptions();
+        if (options.get("AsynchronousPool.ThreadPerTask", false)) {
+            return new AsynchronousPool(
+                new ThreadPerTaskExecutor(
+                    VirtualThreadFactory.create("@Asynchronous", appContext.getId()),
+                    options.get("AsynchronousPool.MaxConcurrency", 1000)),
+                options.get("AsynchronousPool.ShutdownWaitDuration", new Duration(1, TimeUnit.MINUTES)));
+        }
+
         final ExecutorBuilder builder = new ExecutorBuilder()
             .prefix("AsynchronousPool")
             .size(options.get("AsynchronousPool.Size", 5))
@@ -92,6 +111,14 @@ public class AsynchronousPool {
         }
     }
 
+    private boolean remove(final Runnable task) {
+        if (blockingQueue == null) {
+            // not dispatched yet if still waiting for a permit
+            return ((ThreadPerTaskExecutor) executor).remove(task);
+        }
+        return blockingQueue.remove(task);
+    }
+
     private final class AsynchronousCall implements Callable<Object> {
 
         private final Callable<Object> callable;
@@ -156,7 +183,7 @@ public class AsynchronousPool {
             if (canceled) {
                 return true;
             }
-            if (blockingQueue.remove((Runnable) target)) {
+            if (remove((Runnable) target)) {
                 //We successfully remove the task from the queue
                 canceled = true;
                 return true;
@@ -0,0 +1,279 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.config;
+
+import org.apache.openejb.OpenEJBRuntimeException;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+import org.apache.xbean.finder.archive.Archive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Composite archive reading its archives, usually one per jar, in a fork join
+ * pool: the entries of an archive are listed and their bytecode read while the
+ * finder parses the classes of the previous archives.
+ * <p/>
+ * Archives are read a few at a time ahead of the finder to bound the memory,
+ * and iterated in their order so the finder sees what a CompositeArchive
+ * would give it.  The time spent reading and parsing each archive is logged
+ * in debug to spot the libraries worth excluding from the scanning.
+ */
+public class ParallelArchive implements Archive {
+    public static final String PARALLELISM = "openejb.finder.parallelism";
+
+    private static final Logger LOGGER = Logger.getInstance(LogCategory.OPENEJB_STARTUP_CONFIG, ParallelArchive.class);
+    private static final int SLOWEST = 10;
+
+    private static ForkJoinPool pool;
+
+    private final List<String> names;
+    private final List<Archive> archives;
+
+    /**
+     * @param names    the names of the archives, their url for instance
+     * @param archives the archives, in the order they are iterated
+     */
+    public ParallelArchive(final List<String> names, final List<Archive> archives) {
+        this.names = names;
+        this.archives = archives;
+    }
+
+    public static int parallelism() {
+        return SystemInstance.get().getOptions().get(PARALLELISM, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            // workers are daemons and stop once idle
+            pool = new ForkJoinPool(Math.max(1, parallelism()));
+        }
+        return pool;
+    }
+
+    @Override
+    public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+        for (final Archive archive : archives) {
+            try {
+                return archive.getBytecode(className);
+            } catch (final ClassNotFoundException e) {
+                // try the next one
+            }
+        }
+        throw new ClassNotFoundException(className);
+    }
+
+    @Override
+    public Class<?> loadClass(final String className) throws ClassNotFoundException {
+        for (final Archive archive : archives) {
+            try {
+                return archive.loadClass(className);
+            } catch (final ClassNotFoundException e) {
+                // try the next one
+            }
+        }
+        throw new ClassNotFoundException(className);
+    }
+
+    @Override
+    public Iterator<Entry> iterator() {
+        return new ReadAheadIterator();
+    }
+
+    private final class ReadAheadIterator implements Iterator<Entry> {
+        private final ForkJoinPool executor = pool();
+        private final int ahead = Math.max(2, executor.getParallelism() * 2);
+        private final Deque<Future<Read>> reads = new ArrayDeque<Future<Read>>();
+        private final List<Read> done = new ArrayList<Read>();
+        private int submitted;
+
+        private Read current;
+        private int index;
+        private long parseStart;
+
+        @Override
+        public boolean hasNext() {
+            while (current == null || index == current.entries.size()) {
+                if (current != null) {
+                    current.parsed = System.nanoTime() - parseStart;
+                    done.add(current);
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug(current.toString());
+                    }
+                    current = null;
+                }
+
+                submit();
+                if (reads.isEmpty()) {
+                    if (!done.isEmpty() && LOGGER.isDebugEnabled()) {
+                        logSlowest();
+                    }
+                    done.clear();
+                    return false;
+                }
+
+                current = get(reads.removeFirst());
+                index = 0;
+                parseStart = System.nanoTime();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.entries.get(index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void submit() {
+            while (submitted < archives.size() && reads.size() < ahead) {
+                final int i = submitted++;
+                reads.addLast(executor.submit(new Callable<Read>() {
+                    @Override
+                    public Read call() throws Exception {
+                        return read(names.get(i), archives.get(i));
+                    }
+                }));
+            }
+        }
+
+        private Read get(final Future<Read> read) {
+            try {
+                return read.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OpenEJBRuntimeException("Interrupted while scanning", e);
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new OpenEJBRuntimeException(cause.getMessage(), cause);
+            }
+        }
+
+        private void logSlowest() {
+            final List<Read> slowest = new ArrayList<Read>(done);
+            Collections.sort(slowest, new Comparator<Read>() {
+                @Override
+                public int compare(final Read o1, final Read o2) {
+                    return Long.compare(o2.read + o2.parsed, o1.read + o1.parsed);
+                }
+            });
+
+            final StringBuilder builder = new StringBuilder("Slowest archives to scan:");
+            for (final Read read : slowest.subList(0, Math.min(SLOWEST, slowest.size()))) {
+                builder.append("\n  ").append(read);
+            }
+            LOGGER.debug(builder.toString());
+        }
+    }
+
+    private static Read read(final String name, final Archive archive) {
+        final long start = System.nanoTime();
+        final List<Entry> entries = new ArrayList<Entry>();
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        for (final Entry entry : archive) {
+            try {
+                final InputStream is = entry.getBytecode();
+                try {
+                    buffer.reset();
+                    IO.copy(is, buffer);
+                } finally {
+                    IO.close(is);
+                }
+                entries.add(new ReadEntry(entry.getName(), buffer.toByteArray(), null));
+            } catch (final IOException e) {
+                entries.add(new ReadEntry(entry.getName(), null, e));
+            }
+        }
+        return new Read(name, entries, System.nanoTime() - start);
+    }
+
+    private static final class Read {
+        private final String name;
+        private final List<Entry> entries;
+        private final long read;
+        private long parsed;
+
+        private Read(final String name, final List<Entry> entries, final long read) {
+            this.name = name;
+            this.entries = entries;
+            this.read = read;
+        }
+
+        @Override
+        public String toString() {
+            return "Scanned " + name + ": " + entries.size() + " classes, read in " + TimeUnit.NANOSECONDS.toMillis(read)
+                + "ms, parsed in " + TimeUnit.NANOSECONDS.toMillis(parsed) + "ms";
+        }
+    }
+
+    private static final class ReadEntry implements Entry {
+        private final String name;
+        private final byte[] bytecode;
+        private final IOException error;
+
+        private ReadEntry(final String name, final byte[] bytecode, final IOException error) {
+            this.name = name;
+            this.bytecode = bytecode;
+            this.error = error;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public InputStream getBytecode() throws IOException {
+            if (error != null) {
+                throw error;
+            }
+            return new ByteArrayInputStream(bytecode);
+        }
+    }
+}
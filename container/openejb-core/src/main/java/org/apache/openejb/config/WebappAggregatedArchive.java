@@ -52,14 +52,21 @@ public class WebappAggregatedArchive implements Archive, ScanConstants {
             }
         }
 
+        final List<String> names = new ArrayList<String>();
         for (final URL url : urls) {
             final List<String> classes = new ArrayList<String>();
             final Archive archive = new FilteredArchive(new ConfigurableClasspathArchive(module.getClassLoader(), Arrays.asList(url)), new ScanXmlSaverFilter(scanXmlExists, handler, classes));
             map.put(url, classes);
             archives.add(archive);
+            names.add(url.toExternalForm());
         }
 
-        archive = new CompositeArchive(archives);
+        if (archives.size() > 1 && ParallelArchive.parallelism() > 1) {
+            // each jar is read by a single thread, filling its own list of classes
+            archive = new ParallelArchive(names, archives);
+        } else {
+            archive = new CompositeArchive(archives);
+        }
     }
 
     public WebappAggregatedArchive(final ClassLoader classLoader, final Map<String, Object> altDDs, final Collection<URL> xmls) {
@@ -62,6 +62,8 @@ public class StatelessContainerBuilder extends Container {
     private Duration sweepInterval = Duration.parse("5 minutes");
     @XmlAttribute
     private int callbackThreads = 5;
+    @XmlAttribute
+    private int stripes;
     @XmlJavaTypeAdapter(DurationAdapter.class)
     @XmlAttribute
     private Duration closeTimeout = Duration.parse("5 minutes");
@@ -268,6 +270,19 @@ public class StatelessContainerBuilder extends Container {
         return callbackThreads;
     }
 
+    public StatelessContainerBuilder withStripes(final int stripes) {
+        this.stripes = stripes;
+        return this;
+    }
+
+    public void setStripes(final int stripes) {
+        this.stripes = stripes;
+    }
+
+    public int getStripes() {
+        return stripes;
+    }
+
     public StatelessContainerBuilder withCloseTimeout(final Duration closeTimeout) {
         this.closeTimeout = closeTimeout;
         return this;
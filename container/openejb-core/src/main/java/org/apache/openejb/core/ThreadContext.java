@@ -22,10 +22,14 @@ import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ThreadContext {
 
@@ -34,6 +38,40 @@ public class ThreadContext {
     private static final List<ThreadContextListener> listeners = new CopyOnWriteArrayList<ThreadContextListener>();
     private static final ThreadLocal<AtomicBoolean> asynchronousCancelled = new ThreadLocal<AtomicBoolean>();
 
+    /**
+     * The first keys used with {@link #set(Class, Object)} get an index in
+     * an array instead of an entry in a map.  Containers and listeners use the
+     * same handful of keys on every call so they are all served by a slot,
+     * rare keys past the limit go to the map.
+     */
+    private static final int SLOTS = 16;
+    private static final AtomicInteger nextSlot = new AtomicInteger();
+    private static final ClassValue<Integer> slotIndex = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(final Class<?> type) {
+            final int index = nextSlot.getAndIncrement();
+            return index < SLOTS ? index : -1;
+        }
+    };
+
+    static {
+        // keys set on every business call
+        slotIndex.get(Method.class);
+        slotIndex.get(InvocationContext.class);
+    }
+
+    /**
+     * ThreadContexts released by {@link #exit(ThreadContext)} which can be
+     * handed out again by {@link #acquire(BeanContext, Object)}
+     */
+    private static final int RECYCLED = 8;
+    private static final ThreadLocal<ThreadContext[]> recycled = new ThreadLocal<ThreadContext[]>() {
+        @Override
+        protected ThreadContext[] initialValue() {
+            return new ThreadContext[RECYCLED];
+        }
+    };
+
     public static ThreadContext getThreadContext() {
         return threadStorage.get();
     }
@@ -64,6 +102,48 @@ public class ThreadContext {
         return oldContext;
     }
 
+    /**
+     * Returns a context which is recycled once it is exited, nested calls
+     * on the same thread each get their own context.
+     * <p/>
+     * Only callers which don't keep a reference to the context after
+     * {@link #exit(ThreadContext)} can use it, all others must create a
+     * new ThreadContext. A context copied while it is used, for a task
+     * running on another thread for instance, is not recycled since the
+     * copy can still reference it through its data.
+     */
+    public static ThreadContext acquire(final BeanContext beanContext, final Object primaryKey) {
+        return acquire(beanContext, primaryKey, null);
+    }
+
+    public static ThreadContext acquire(final BeanContext beanContext, final Object primaryKey, final Operation operation) {
+        final ThreadContext[] contexts = recycled.get();
+        for (int i = 0; i < contexts.length; i++) {
+            final ThreadContext context = contexts[i];
+            if (context != null) {
+                contexts[i] = null;
+                context.init(beanContext, primaryKey, operation);
+                return context;
+            }
+        }
+
+        final ThreadContext context = new ThreadContext(beanContext, primaryKey, operation);
+        context.recyclable = true;
+        return context;
+    }
+
+    private static void release(final ThreadContext context) {
+        context.clear();
+
+        final ThreadContext[] contexts = recycled.get();
+        for (int i = 0; i < contexts.length; i++) {
+            if (contexts[i] == null) {
+                contexts[i] = context;
+                return;
+            }
+        }
+    }
+
     public static void exit(final ThreadContext oldContext) {
         final ThreadContext exitingContext = threadStorage.get();
         if (exitingContext == null) {
@@ -85,6 +165,10 @@ public class ThreadContext {
                 log.debug("ThreadContextListener threw an exception", e);
             }
         }
+
+        if (exitingContext.recyclable) {
+            release(exitingContext);
+        }
     }
 
     public static void initAsynchronousCancelled(final AtomicBoolean initializeValue) {
@@ -107,9 +191,11 @@ public class ThreadContext {
         listeners.remove(listener);
     }
 
-    private final BeanContext beanContext;
-    private final Object primaryKey;
-    private final HashMap<Class, Object> data = new HashMap<Class, Object>();
+    private BeanContext beanContext;
+    private Object primaryKey;
+    private final Object[] slots = new Object[SLOTS];
+    private HashMap<Class, Object> data;
+    private boolean recyclable;
     private ClassLoader oldClassLoader;
     private Operation currentOperation;
     private Class invokedInterface;
@@ -135,12 +221,37 @@ public class ThreadContext {
     }
 
     public ThreadContext(final ThreadContext that) {
+        that.recyclable = false;
         this.beanContext = that.beanContext;
         this.primaryKey = that.primaryKey;
-        this.data.putAll(that.data);
+        System.arraycopy(that.slots, 0, this.slots, 0, SLOTS);
+        if (that.data != null) {
+            this.data = new HashMap<Class, Object>(that.data);
+        }
         this.oldClassLoader = that.oldClassLoader;
     }
 
+    private void init(final BeanContext beanContext, final Object primaryKey, final Operation operation) {
+        if (beanContext == null) {
+            throw new NullPointerException("deploymentInfo is null");
+        }
+        this.beanContext = beanContext;
+        this.primaryKey = primaryKey;
+        this.currentOperation = operation;
+    }
+
+    private void clear() {
+        beanContext = null;
+        primaryKey = null;
+        Arrays.fill(slots, null);
+        data = null;
+        oldClassLoader = null;
+        currentOperation = null;
+        invokedInterface = null;
+        transactionPolicy = null;
+        discardInstance = false;
+    }
+
     public BeanContext getBeanContext() {
         return beanContext;
     }
@@ -183,17 +294,46 @@ public class ThreadContext {
 
     @SuppressWarnings({"unchecked"})
     public <T> T get(final Class<T> type) {
-        return (T) data.get(type);
+        final int index = slotIndex.get(type);
+        if (index >= 0) {
+            return (T) slots[index];
+        }
+        return data == null ? null : (T) data.get(type);
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T set(final Class<T> type, final T value) {
+        final int index = slotIndex.get(type);
+        if (index >= 0) {
+            final Object old = slots[index];
+            slots[index] = value;
+            return (T) old;
+        }
+        if (data == null) {
+            data = new HashMap<Class, Object>();
+        }
         return (T) data.put(type, value);
     }
 
     @SuppressWarnings({"unchecked"})
     public <T> T remove(final Class<T> type) {
-        return (T) data.remove(type);
+        final int index = slotIndex.get(type);
+        if (index >= 0) {
+            final Object old = slots[index];
+            slots[index] = null;
+            return (T) old;
+        }
+        return data == null ? null : (T) data.remove(type);
+    }
+
+    private int size() {
+        int size = data == null ? 0 : data.size();
+        for (final Object slot : slots) {
+            if (slot != null) {
+                size++;
+            }
+        }
+        return size;
     }
 
     public boolean isDiscardInstance() {
@@ -209,7 +349,7 @@ public class ThreadContext {
         return "ThreadContext{" +
             "beanContext=" + beanContext.getId() +
             ", primaryKey=" + primaryKey +
-            ", data=" + data.size() +
+            ", data=" + size() +
             ", oldClassLoader=" + oldClassLoader +
             ", currentOperation=" + currentOperation +
             ", invokedInterface=" + invokedInterface +
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import org.apache.openejb.core.Operation;
+import org.apache.openejb.util.proxy.DynamicProxyImplFactory;
+
+import javax.interceptor.InvocationContext;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The interceptor methods of one operation resolved once.
+ * <p/>
+ * {@link InterceptorStack} used to walk the {@link InterceptorData} and build
+ * a new list of {@link Interceptor} for every invocation.  A chain does this
+ * walk a single time, keeps the methods in arrays and binds them to method
+ * handles so an invocation only has to look up the interceptor instances of
+ * the bean instance it runs on.
+ * <p/>
+ * Chains are immutable, the owner (MethodContext or BeanContext) drops them
+ * when the interceptors of the bean change.
+ *
+ * @version $Rev$ $Date$
+ */
+public class InterceptorChain {
+
+    private static final MethodType AROUND = MethodType.methodType(Object.class, Object.class, InvocationContext.class);
+
+    private final Operation operation;
+    private final List<InterceptorData> interceptorDatas;
+    private final String[] classNames;
+    private final Method[] methods;
+    private final MethodHandle[] handles;
+    private final boolean[] around;
+    private final Method target;
+    private final MethodHandle targetHandle;
+
+    public InterceptorChain(final Operation operation, final List<InterceptorData> interceptorDatas, final Method target) {
+        if (operation == null) {
+            throw new NullPointerException("operation is null");
+        }
+        if (interceptorDatas == null) {
+            throw new NullPointerException("interceptorDatas is null");
+        }
+        this.operation = operation;
+        this.interceptorDatas = Collections.unmodifiableList(new ArrayList<InterceptorData>(interceptorDatas));
+
+        final List<String> names = new ArrayList<String>();
+        final List<Method> list = new ArrayList<Method>();
+        for (final InterceptorData interceptorData : interceptorDatas) {
+            final Set<Method> operationMethods = interceptorData.getMethods(operation);
+            for (final Method method : operationMethods) {
+                names.add(interceptorData.getInterceptorClass().getName());
+                list.add(method);
+            }
+        }
+
+        final int size = list.size();
+        this.classNames = names.toArray(new String[size]);
+        this.methods = list.toArray(new Method[size]);
+        this.handles = new MethodHandle[size];
+        this.around = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            final Method method = methods[i];
+            around[i] = method.getParameterTypes().length == 1 && method.getParameterTypes()[0] == InvocationContext.class;
+            if (around[i]) {
+                handles[i] = handle(method, AROUND);
+            }
+        }
+
+        this.target = target;
+        this.targetHandle = target == null ? null : targetHandle(target);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return the interceptor data this chain was compiled from, unmodifiable
+     */
+    public List<InterceptorData> getInterceptorDatas() {
+        return interceptorDatas;
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    Method getMethod(final int index) {
+        return methods[index];
+    }
+
+    boolean isAroundInvoke(final int index) {
+        return around[index];
+    }
+
+    MethodHandle getHandle(final int index) {
+        return handles[index];
+    }
+
+    /**
+     * @return the handle bound to the given target method if this chain was compiled for it, null otherwise
+     */
+    MethodHandle getTargetHandle(final Method method) {
+        return method == target || target != null && target.equals(method) ? targetHandle : null;
+    }
+
+    /**
+     * Resolves the object on which the interceptor method at this
+     * index must be called for the given bean instance interceptors.
+     */
+    Object instance(final int index, final Map<String, Object> interceptorInstances) {
+        final Object interceptorInstance = interceptorInstances.get(classNames[index]);
+        if (interceptorInstance == null) {
+            throw new IllegalArgumentException("No interceptor of type " + classNames[index]);
+        }
+
+        final Object handler = DynamicProxyImplFactory.realHandler(interceptorInstance);
+        if (handler != null && methods[index].getDeclaringClass().equals(handler.getClass())) { // dynamic impl
+            return handler;
+        }
+        return interceptorInstance;
+    }
+
+    private static MethodHandle targetHandle(final Method method) {
+        final int parameters = method.getParameterTypes().length;
+        final MethodHandle handle = handle(method, MethodType.genericMethodType(parameters + 1));
+        if (handle == null) {
+            return null;
+        }
+        return handle.asSpreader(Object[].class, parameters);
+    }
+
+    /**
+     * @return a handle of the given type or null if the method can't be bound,
+     * in which case the invocation falls back to reflection
+     */
+    private static MethodHandle handle(final Method method, final MethodType type) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.lookup().unreflect(method).asType(type);
+        } catch (final IllegalAccessException e) {
+            return null;
+        } catch (final RuntimeException e) {
+            return null;
+        }
+    }
+
+    public String toString() {
+        return "InterceptorChain(operation=" + operation + ", size=" + methods.length + ")";
+    }
+}
@@ -34,9 +34,30 @@ import java.util.Set;
 public class InterceptorStack {
     private final Object beanInstance;
     private final List<Interceptor> interceptors;
+    private final InterceptorChain chain;
+    private final Map<String, Object> interceptorInstances;
     private final Method targetMethod;
     private final Operation operation;
 
+    /**
+     * Uses a chain compiled once for the method and operation, nothing
+     * is resolved until the invocation context reaches an interceptor.
+     */
+    public InterceptorStack(final Object beanInstance, final Method targetMethod, final InterceptorChain chain, final Map<String, Object> interceptorInstances) {
+        if (chain == null) {
+            throw new NullPointerException("chain is null");
+        }
+        if (interceptorInstances == null) {
+            throw new NullPointerException("interceptorInstances is null");
+        }
+        this.beanInstance = beanInstance;
+        this.targetMethod = targetMethod;
+        this.operation = chain.getOperation();
+        this.chain = chain;
+        this.interceptorInstances = interceptorInstances;
+        this.interceptors = null;
+    }
+
     public InterceptorStack(final Object beanInstance, final Method targetMethod, final Operation operation, final List<InterceptorData> interceptorDatas, final Map<String, Object> interceptorInstances) {
         if (interceptorDatas == null) {
             throw new NullPointerException("interceptorDatas is null");
@@ -47,6 +68,8 @@ public class InterceptorStack {
         this.beanInstance = beanInstance;
         this.targetMethod = targetMethod;
         this.operation = operation;
+        this.chain = null;
+        this.interceptorInstances = null;
 
         interceptors = new ArrayList<Interceptor>(interceptorDatas.size());
 
@@ -73,9 +96,25 @@ public class InterceptorStack {
     }
 
     public InvocationContext createInvocationContext(final Object... parameters) {
+        if (chain != null) {
+            return new ReflectionInvocationContext(chain, interceptorInstances, beanInstance, targetMethod, parameters);
+        }
         return new ReflectionInvocationContext(operation, interceptors, beanInstance, targetMethod, parameters);
     }
 
+    private List<Interceptor> interceptors() {
+        if (interceptors != null) {
+            return interceptors;
+        }
+
+        // the web service contexts still walk a plain list
+        final List<Interceptor> list = new ArrayList<Interceptor>(chain.size());
+        for (int i = 0; i < chain.size(); i++) {
+            list.add(new Interceptor(chain.instance(i, interceptorInstances), chain.getMethod(i)));
+        }
+        return list;
+    }
+
     public Object invoke(final Object... parameters) throws Exception {
         try {
             final InvocationContext invocationContext = createInvocationContext(parameters);
@@ -92,7 +131,7 @@ public class InterceptorStack {
 
     public Object invoke(final javax.xml.ws.handler.MessageContext messageContext, final Object... parameters) throws Exception {
         try {
-            final InvocationContext invocationContext = new JaxWsInvocationContext(operation, interceptors, beanInstance, targetMethod, messageContext, parameters);
+            final InvocationContext invocationContext = new JaxWsInvocationContext(operation, interceptors(), beanInstance, targetMethod, messageContext, parameters);
             ThreadContext.getThreadContext().set(InvocationContext.class, invocationContext);
             return invocationContext.proceed();
         } finally {
@@ -102,7 +141,7 @@ public class InterceptorStack {
 
     public Object invoke(final javax.xml.rpc.handler.MessageContext messageContext, final Object... parameters) throws Exception {
         try {
-            final InvocationContext invocationContext = new JaxRpcInvocationContext(operation, interceptors, beanInstance, targetMethod, messageContext, parameters);
+            final InvocationContext invocationContext = new JaxRpcInvocationContext(operation, interceptors(), beanInstance, targetMethod, messageContext, parameters);
             ThreadContext.getThreadContext().set(InvocationContext.class, invocationContext);
             return invocationContext.proceed();
         } finally {
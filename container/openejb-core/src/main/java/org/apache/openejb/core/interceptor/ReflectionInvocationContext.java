@@ -21,6 +21,7 @@ import org.apache.openejb.core.Operation;
 import org.apache.openejb.util.Classes;
 
 import javax.interceptor.InvocationContext;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -33,12 +34,18 @@ import java.util.TreeMap;
  * @version $Rev$ $Date$
  */
 public class ReflectionInvocationContext implements InvocationContext {
+    private static final Class<?>[] NO_PARAMETER_TYPES = new Class<?>[0];
+    private static final Object[] NO_PARAMETERS = new Object[0];
+
     private final Iterator<Interceptor> interceptors;
+    private final InterceptorChain chain;
+    private final Map<String, Object> interceptorInstances;
+    private int position;
     private final Object target;
     private final Method method;
     private final Object[] parameters;
-    private final Map<String, Object> contextData = new TreeMap<String, Object>();
-    private final Class<?>[] parameterTypes;
+    private Map<String, Object> contextData;
+    private Class<?>[] parameterTypes;
 
     private final Operation operation;
 
@@ -55,15 +62,42 @@ public class ReflectionInvocationContext implements InvocationContext {
 
         this.operation = operation;
         this.interceptors = interceptors.iterator();
+        this.chain = null;
+        this.interceptorInstances = null;
         this.target = target;
         this.method = method;
         this.parameters = parameters;
+    }
 
-        if (method == null) {
-            parameterTypes = new Class[0];
-        } else {
-            parameterTypes = method.getParameterTypes();
+    /**
+     * Walks a precompiled chain, the interceptor objects are resolved
+     * from the instances of the bean when they are reached.
+     */
+    public ReflectionInvocationContext(final InterceptorChain chain, final Map<String, Object> interceptorInstances, final Object target, final Method method, final Object... parameters) {
+        if (chain == null) {
+            throw new NullPointerException("chain is null");
+        }
+        if (interceptorInstances == null) {
+            throw new NullPointerException("interceptorInstances is null");
+        }
+        if (target == null) {
+            throw new NullPointerException("target is null");
+        }
+
+        this.operation = chain.getOperation();
+        this.interceptors = null;
+        this.chain = chain;
+        this.interceptorInstances = interceptorInstances;
+        this.target = target;
+        this.method = method;
+        this.parameters = parameters;
+    }
+
+    private Class<?>[] getParameterTypes() {
+        if (parameterTypes == null) {
+            parameterTypes = method == null ? NO_PARAMETER_TYPES : method.getParameterTypes();
         }
+        return parameterTypes;
     }
 
     @Override
@@ -122,6 +156,7 @@ public class ReflectionInvocationContext implements InvocationContext {
         if (parameters.length != this.parameters.length) {
             throw new IllegalArgumentException("Expected " + this.parameters.length + " parameters, but only got " + parameters.length + " parameters");
         }
+        final Class<?>[] parameterTypes = getParameterTypes();
         for (int i = 0; i < parameters.length; i++) {
             final Object parameter = parameters[i];
             final Class<?> parameterType = parameterTypes[i];
@@ -147,11 +182,14 @@ public class ReflectionInvocationContext implements InvocationContext {
 
     @Override
     public Map<String, Object> getContextData() {
+        if (contextData == null) {
+            contextData = new TreeMap<String, Object>();
+        }
         return contextData;
     }
 
     private Invocation next() {
-        if (interceptors.hasNext()) {
+        if (interceptors != null && interceptors.hasNext()) {
             final Interceptor interceptor = interceptors.next();
             final Object nextInstance = interceptor.getInstance();
             final Method nextMethod = interceptor.getMethod();
@@ -162,22 +200,27 @@ public class ReflectionInvocationContext implements InvocationContext {
                 return new LifecycleInvocation(nextInstance, nextMethod, this, parameters);
             }
         } else if (method != null) {
-            //EJB 3.1, it is allowed that timeout method does not have parameter Timer.class,
-            //However, while invoking the timeout method, the timer value is passed, as it is also required by InnvocationContext.getTimer() method
-            final Object[] methodParameters;
-            if (operation.equals(Operation.TIMEOUT) && method.getParameterTypes().length == 0) {
-                methodParameters = new Object[0];
-            } else {
-                methodParameters = parameters;
-            }
-            return new BeanInvocation(target, method, methodParameters);
+            return new BeanInvocation(target, method, methodParameters());
         } else {
             return new NoOpInvocation();
         }
     }
 
+    private Object[] methodParameters() {
+        //EJB 3.1, it is allowed that timeout method does not have parameter Timer.class,
+        //However, while invoking the timeout method, the timer value is passed, as it is also required by InnvocationContext.getTimer() method
+        if (operation.equals(Operation.TIMEOUT) && method.getParameterTypes().length == 0) {
+            return NO_PARAMETERS;
+        }
+        return parameters;
+    }
+
     @Override
     public Object proceed() throws Exception {
+        if (chain != null) {
+            return proceedChain();
+        }
+
         // The bulk of the logic of this method has intentionally been moved
         // out so stepping through a large stack in a debugger can be done quickly.
         // Simply put one break point on 'next.invoke()' or one inside that method.
@@ -189,6 +232,48 @@ public class ReflectionInvocationContext implements InvocationContext {
         }
     }
 
+    /**
+     * Same walk as {@link #next()} over a compiled chain, without creating
+     * an Invocation per step and calling method handles where available.
+     */
+    private Object proceedChain() throws Exception {
+        final int index = position++;
+        try {
+            if (index < chain.size()) {
+                final Object instance = chain.instance(index, interceptorInstances);
+                final MethodHandle handle = chain.getHandle(index);
+                if (handle != null) {
+                    return (Object) handle.invokeExact(instance, (InvocationContext) this);
+                }
+
+                final Method interceptorMethod = chain.getMethod(index);
+                if (chain.isAroundInvoke(index)) {
+                    return new InterceptorInvocation(instance, interceptorMethod, this).invoke();
+                }
+                return new LifecycleInvocation(instance, interceptorMethod, this, parameters).invoke();
+            }
+
+            if (method == null) {
+                return null;
+            }
+
+            final Object[] methodParameters = methodParameters();
+            final MethodHandle handle = chain.getTargetHandle(method);
+            if (handle != null) {
+                return (Object) handle.invokeExact(target, methodParameters);
+            }
+            return new BeanInvocation(target, method, methodParameters).invoke();
+        } catch (final InvocationTargetException e) {
+            throw unwrapInvocationTargetException(e);
+        } catch (final Exception e) {
+            throw e;
+        } catch (final Error e) {
+            throw e;
+        } catch (final Throwable t) {
+            throw new AssertionError(t);
+        }
+    }
+
     private abstract static class Invocation {
         private final Method method;
         private final Object[] args;
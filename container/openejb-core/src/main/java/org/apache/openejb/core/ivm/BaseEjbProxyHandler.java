@@ -39,10 +39,7 @@ import javax.ejb.TransactionRequiredLocalException;
 import javax.ejb.TransactionRolledbackLocalException;
 import javax.transaction.TransactionRequiredException;
 import javax.transaction.TransactionRolledbackException;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamException;
@@ -61,6 +58,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.apache.openejb.core.ivm.IntraVmCopyMonitor.State.CLASSLOADER_COPY;
@@ -70,8 +69,10 @@ import static org.apache.openejb.core.ivm.IntraVmCopyMonitor.State.NONE;
 @SuppressWarnings("unchecked")
 public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializable {
 
-    private static final String OPENEJB_LOCALCOPY = "openejb.localcopy";
+    static final String OPENEJB_LOCALCOPY = "openejb.localcopy";
+    private static final String OPENEJB_LOCALCOPY_COPIER = "openejb.localcopy.copier";
     private static final boolean REMOTE_COPY_ENABLED = parseRemoteCopySetting();
+    private static final IntraVmCopier COPIER = createCopier();
     public final Object deploymentID;
     public final Object primaryKey;
     protected final InterfaceType interfaceType;
@@ -99,6 +100,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
     private boolean doCrossClassLoaderCopy;
     private transient WeakHashMap<Class, Object> interfaces;
     private transient WeakReference<Class> mainInterface;
+    private transient ConcurrentMap<Method, Method> copiedMethods;
 
     public BaseEjbProxyHandler(final BeanContext beanContext, final Object pk, final InterfaceType interfaceType, List<Class> interfaces, Class mainInterface) {
         this.container = (RpcContainer) beanContext.getContainer();
@@ -128,6 +130,21 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
         return SystemInstance.get().getOptions().get(OPENEJB_LOCALCOPY, true);
     }
 
+    private static IntraVmCopier createCopier() {
+        final String copier = SystemInstance.get().getOptions().get(OPENEJB_LOCALCOPY_COPIER, "reflection");
+        if ("reflection".equalsIgnoreCase(copier)) {
+            return new ReflectionCopier();
+        }
+        if ("serialization".equalsIgnoreCase(copier)) {
+            return new SerializationCopier();
+        }
+        try {
+            return (IntraVmCopier) BaseEjbProxyHandler.class.getClassLoader().loadClass(copier).newInstance();
+        } catch (final Exception e) {
+            throw new IllegalArgumentException("Can't create " + OPENEJB_LOCALCOPY_COPIER + " " + copier, e);
+        }
+    }
+
     protected void setDoIntraVmCopy(final boolean doIntraVmCopy) {
         this.doIntraVmCopy = doIntraVmCopy;
         setStrategy();
@@ -446,6 +463,17 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
      */
 
     private Method copyMethod(final Method method) throws Exception {
+        ConcurrentMap<Method, Method> methods = copiedMethods;
+        if (methods == null) {
+            methods = new ConcurrentHashMap<Method, Method>();
+            copiedMethods = methods;
+        }
+
+        final Method cached = methods.get(method);
+        if (cached != null) {
+            return cached;
+        }
+
         final int parameterCount = method.getParameterTypes().length;
         Class[] types = new Class[1 + parameterCount];
         types[0] = method.getDeclaringClass();
@@ -456,7 +484,9 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
         final Class targetClass = types[0];
         final Class[] targetParameters = new Class[parameterCount];
         System.arraycopy(types, 1, targetParameters, 0, parameterCount);
-        return targetClass.getMethod(method.getName(), targetParameters);
+        final Method copy = targetClass.getMethod(method.getName(), targetParameters);
+        methods.put(method, copy);
+        return copy;
     }
 
     protected Throwable getCause(final Throwable e) {
@@ -557,22 +587,7 @@ public abstract class BaseEjbProxyHandler implements InvocationHandler, Serializ
             return object;
         }
 
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
-        try {
-            final ObjectOutputStream out = new ObjectOutputStream(baos);
-            out.writeObject(object);
-            out.close();
-        } catch (final NotSerializableException e) {
-            throw (IOException) new NotSerializableException(e.getMessage() +
-                " : The EJB specification restricts remote interfaces to only serializable data types.  This can be disabled for in-vm use with the " +
-                OPENEJB_LOCALCOPY +
-                "=false system property.").initCause(e);
-        }
-
-        final ByteArrayInputStream bais = new ByteArrayInputStream(baos.toByteArray());
-        final ObjectInputStream in = new EjbObjectInputStream(bais);
-        final Object obj = in.readObject();
-        return (T) obj;
+        return COPIER.copy(object);
     }
 
     public void invalidateReference() {
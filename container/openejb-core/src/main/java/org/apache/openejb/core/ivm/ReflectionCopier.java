@@ -0,0 +1,590 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.ivm;
+
+import java.io.Externalizable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Copies without going through bytes, the way to copy is worked out once per class.
+ * <p/>
+ * Immutable values are shared: strings, boxed primitives, enums, java.time values,
+ * final classes with final immutable fields and immutable collections or records
+ * of immutable values.  Arrays and the common JDK collections are rebuilt.  Plain
+ * serializable beans, without custom serialization and only serializable superclasses,
+ * are cloned field by field, leaving transient fields to their default value as
+ * serialization does.  References shared in the graph stay shared in the copy.
+ * <p/>
+ * Anything else, an EJB proxy or a class with a writeReplace method for instance,
+ * sends the whole graph through the fallback copier.  So does a copy across
+ * classloaders, only the JVM immutable classes are the same on both sides.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ReflectionCopier implements IntraVmCopier {
+
+    private static final Object UNSAFE;
+    private static final Method ALLOCATE_INSTANCE;
+
+    static {
+        Object unsafe = null;
+        Method allocateInstance = null;
+        try {
+            final Class<?> unsafeClass = ClassLoader.getSystemClassLoader().loadClass("sun.misc.Unsafe");
+            final Field field = unsafeClass.getDeclaredField("theUnsafe");
+            allocateInstance = unsafeClass.getMethod("allocateInstance", Class.class);
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (final Exception e) {
+            // beans are serialized
+            allocateInstance = null;
+        }
+        UNSAFE = unsafe;
+        ALLOCATE_INSTANCE = allocateInstance;
+    }
+
+    private static final Set<Class<?>> IMMUTABLES = new HashSet<Class<?>>();
+
+    static {
+        for (final Class<?> type : new Class<?>[]{
+            String.class, Boolean.class, Byte.class, Character.class, Short.class, Integer.class, Long.class,
+            Float.class, Double.class, BigInteger.class, BigDecimal.class,
+            UUID.class, URI.class, Locale.class, Currency.class, File.class}) {
+            IMMUTABLES.add(type);
+        }
+    }
+
+    private static final Set<String> IMMUTABLE_CONTAINERS = new HashSet<String>();
+
+    static {
+        for (final String name : new String[]{
+            "java.util.Collections$EmptyList", "java.util.Collections$EmptySet", "java.util.Collections$EmptyMap",
+            "java.util.Collections$SingletonList", "java.util.Collections$SingletonSet", "java.util.Collections$SingletonMap",
+            "java.util.ImmutableCollections$List12", "java.util.ImmutableCollections$ListN",
+            "java.util.ImmutableCollections$Set12", "java.util.ImmutableCollections$SetN",
+            "java.util.ImmutableCollections$Map1", "java.util.ImmutableCollections$MapN"}) {
+            IMMUTABLE_CONTAINERS.add(name);
+        }
+    }
+
+    private static final Fallback FALLBACK = new Fallback();
+
+    private final IntraVmCopier fallback;
+
+    private final ThreadLocal<Set<Class<?>>> inspecting = new ThreadLocal<Set<Class<?>>>() {
+        @Override
+        protected Set<Class<?>> initialValue() {
+            return new HashSet<Class<?>>();
+        }
+    };
+
+    private final ClassValue<Strategy> strategies = new ClassValue<Strategy>() {
+        @Override
+        protected Strategy computeValue(final Class<?> type) {
+            final Set<Class<?>> current = inspecting.get();
+            current.add(type);
+            try {
+                return strategy(type);
+            } finally {
+                current.remove(type);
+            }
+        }
+    };
+
+    public ReflectionCopier() {
+        this(new SerializationCopier());
+    }
+
+    public ReflectionCopier(final IntraVmCopier fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T copy(final T object) throws IOException, ClassNotFoundException {
+        if (object == null) {
+            return null;
+        }
+
+        final Class<?> type = object.getClass();
+        final Strategy strategy = strategies.get(type);
+        if (IntraVmCopyMonitor.isCrossClassLoaderOperation()) {
+            if (strategy == IMMUTABLE && type.getClassLoader() == null) {
+                return object;
+            }
+            return fallback.copy(object);
+        }
+
+        if (strategy == IMMUTABLE) {
+            return object;
+        }
+        if (strategy == SERIALIZE) {
+            return fallback.copy(object);
+        }
+        try {
+            return (T) strategy.copy(this, object, new IdentityHashMap<Object, Object>());
+        } catch (final Fallback e) {
+            return fallback.copy(object);
+        }
+    }
+
+    private Object copy(final Object value, final Map<Object, Object> copies) throws Fallback {
+        if (value == null) {
+            return null;
+        }
+        final Strategy strategy = strategies.get(value.getClass());
+        if (strategy == IMMUTABLE) {
+            return value;
+        }
+        final Object copy = copies.get(value);
+        if (copy != null) {
+            return copy;
+        }
+        return strategy.copy(this, value, copies);
+    }
+
+    /**
+     * @return how instances of the type are copied: immutable, serialize, record, fields or other
+     */
+    String getStrategy(final Class<?> type) {
+        final Strategy strategy = strategies.get(type);
+        if (strategy == IMMUTABLE) {
+            return "immutable";
+        }
+        if (strategy == SERIALIZE) {
+            return "serialize";
+        }
+        if (strategy instanceof RecordStrategy) {
+            return "record";
+        }
+        if (strategy instanceof FieldStrategy) {
+            return "fields";
+        }
+        return "other";
+    }
+
+    private boolean isImmutable(final Object value) {
+        return value == null || strategies.get(value.getClass()) == IMMUTABLE;
+    }
+
+    private Strategy strategy(final Class<?> type) {
+        if (IMMUTABLES.contains(type) || Enum.class.isAssignableFrom(type)) {
+            return IMMUTABLE;
+        }
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+        }
+        if (type == Class.class) {
+            return CLASS;
+        }
+        if (!Serializable.class.isAssignableFrom(type) || Proxy.isProxyClass(type)) {
+            return SERIALIZE;
+        }
+
+        final String name = type.getName();
+        if (name.startsWith("java.time.")) {
+            return IMMUTABLE;
+        }
+        if (IMMUTABLE_CONTAINERS.contains(name)) {
+            return IMMUTABLE_CONTAINER;
+        }
+        if (type == ArrayList.class) {
+            return new CollectionStrategy() {
+                @Override
+                protected Collection<Object> create(final Collection<?> original) {
+                    return new ArrayList<Object>(original.size());
+                }
+            };
+        }
+        if (type == LinkedList.class) {
+            return new CollectionStrategy() {
+                @Override
+                protected Collection<Object> create(final Collection<?> original) {
+                    return new LinkedList<Object>();
+                }
+            };
+        }
+        if (type == HashSet.class) {
+            return new CollectionStrategy() {
+                @Override
+                protected Collection<Object> create(final Collection<?> original) {
+                    return new HashSet<Object>(Math.max((int) (original.size() / .75f) + 1, 16));
+                }
+            };
+        }
+        if (type == LinkedHashSet.class) {
+            return new CollectionStrategy() {
+                @Override
+                protected Collection<Object> create(final Collection<?> original) {
+                    return new LinkedHashSet<Object>(Math.max((int) (original.size() / .75f) + 1, 16));
+                }
+            };
+        }
+        if (type == TreeSet.class) {
+            return new CollectionStrategy() {
+                @Override
+                protected Collection<Object> create(final Collection<?> original) throws Fallback {
+                    if (((TreeSet<?>) original).comparator() != null) {
+                        throw FALLBACK;
+                    }
+                    return new TreeSet<Object>();
+                }
+            };
+        }
+        if (type == HashMap.class) {
+            return new MapStrategy() {
+                @Override
+                protected Map<Object, Object> create(final Map<?, ?> original) {
+                    return new HashMap<Object, Object>(Math.max((int) (original.size() / .75f) + 1, 16));
+                }
+            };
+        }
+        if (type == TreeMap.class) {
+            return new MapStrategy() {
+                @Override
+                protected Map<Object, Object> create(final Map<?, ?> original) throws Fallback {
+                    if (((TreeMap<?, ?>) original).comparator() != null) {
+                        throw FALLBACK;
+                    }
+                    return new TreeMap<Object, Object>();
+                }
+            };
+        }
+        if (type == Date.class || type == java.sql.Date.class || type == java.sql.Time.class || type == java.sql.Timestamp.class) {
+            return DATE;
+        }
+        if (type.getClassLoader() == null) {
+            // other JVM classes, their fields are none of our business
+            return SERIALIZE;
+        }
+
+        return fields(type);
+    }
+
+    private Strategy fields(final Class<?> type) {
+        if (Externalizable.class.isAssignableFrom(type)) {
+            return SERIALIZE;
+        }
+
+        // java.lang.Record isn't serializable, the walk stops before it
+        final boolean record = "java.lang.Record".equals(type.getSuperclass().getName());
+        final List<Field> fields = new ArrayList<Field>();
+        boolean immutable = Modifier.isFinal(type.getModifiers());
+        for (Class<?> c = type; c != Object.class && (!record || c == type); c = c.getSuperclass()) {
+            if (!Serializable.class.isAssignableFrom(c) || hasCustomSerialization(c)) {
+                // serialization would call the constructor of a non serializable parent or custom code
+                return SERIALIZE;
+            }
+            for (final Field field : c.getDeclaredFields()) {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers)) {
+                    continue;
+                }
+                if (Modifier.isTransient(modifiers)) {
+                    // a copy resets it, the original doesn't
+                    immutable = false;
+                    continue;
+                }
+                immutable = immutable && Modifier.isFinal(modifiers) && isImmutableType(field.getType());
+                fields.add(field);
+            }
+        }
+
+        if (immutable) {
+            return IMMUTABLE;
+        }
+        if (record) {
+            // final fields of records can't be set, shared when the values are immutable
+            return new RecordStrategy(accessible(fields));
+        }
+        if (ALLOCATE_INSTANCE == null) {
+            return SERIALIZE;
+        }
+
+        final Field[] accessible = accessible(fields);
+        return accessible == null ? SERIALIZE : new FieldStrategy(type, accessible);
+    }
+
+    private boolean isImmutableType(final Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        if (!Modifier.isFinal(type.getModifiers()) && !type.isEnum()) {
+            // a subclass may be mutable
+            return false;
+        }
+        // a type being worked out, a recursive structure, is taken as mutable
+        return !inspecting.get().contains(type) && strategies.get(type) == IMMUTABLE;
+    }
+
+    private static boolean hasCustomSerialization(final Class<?> type) {
+        for (final Method method : type.getDeclaredMethods()) {
+            final String name = method.getName();
+            if ("writeObject".equals(name) || "readObject".equals(name) || "readObjectNoData".equals(name)
+                || "writeReplace".equals(name) || "readResolve".equals(name)) {
+                return true;
+            }
+        }
+        try {
+            type.getDeclaredField("serialPersistentFields");
+            return true;
+        } catch (final NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    private static Field[] accessible(final List<Field> fields) {
+        return AccessController.doPrivileged(new PrivilegedAction<Field[]>() {
+            @Override
+            public Field[] run() {
+                try {
+                    for (final Field field : fields) {
+                        field.setAccessible(true);
+                    }
+                    return fields.toArray(new Field[fields.size()]);
+                } catch (final RuntimeException e) {
+                    // not open to us
+                    return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * The graph can't be copied here, the whole graph goes through the fallback copier.
+     */
+    private static final class Fallback extends Exception {
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private abstract static class Strategy {
+
+        abstract Object copy(ReflectionCopier copier, Object object, Map<Object, Object> copies) throws Fallback;
+    }
+
+    private static final Strategy IMMUTABLE = new Strategy() {
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) {
+            return object;
+        }
+    };
+
+    private static final Strategy SERIALIZE = new Strategy() {
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            throw FALLBACK;
+        }
+    };
+
+    private static final Strategy CLASS = new Strategy() {
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            // resolved by name like EjbObjectInputStream does
+            final Class<?> type = (Class<?>) object;
+            if (type.isPrimitive()) {
+                return type;
+            }
+            try {
+                return Class.forName(type.getName(), false, Thread.currentThread().getContextClassLoader());
+            } catch (final ClassNotFoundException e) {
+                throw FALLBACK;
+            }
+        }
+    };
+
+    private static final Strategy DATE = new Strategy() {
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) {
+            final Object copy = ((Date) object).clone();
+            copies.put(object, copy);
+            return copy;
+        }
+    };
+
+    private static final Strategy PRIMITIVE_ARRAY = new Strategy() {
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) {
+            final int length = Array.getLength(object);
+            final Object copy = Array.newInstance(object.getClass().getComponentType(), length);
+            System.arraycopy(object, 0, copy, 0, length);
+            copies.put(object, copy);
+            return copy;
+        }
+    };
+
+    private static final Strategy OBJECT_ARRAY = new Strategy() {
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            final Object[] array = (Object[]) object;
+            final Object[] copy = (Object[]) Array.newInstance(object.getClass().getComponentType(), array.length);
+            copies.put(object, copy);
+            for (int i = 0; i < array.length; i++) {
+                copy[i] = copier.copy(array[i], copies);
+            }
+            return copy;
+        }
+    };
+
+    private static final Strategy IMMUTABLE_CONTAINER = new Strategy() {
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            final Collection<?> values;
+            if (object instanceof Map) {
+                final Map<?, ?> map = (Map<?, ?>) object;
+                for (final Object key : map.keySet()) {
+                    if (!copier.isImmutable(key)) {
+                        throw FALLBACK;
+                    }
+                }
+                values = map.values();
+            } else {
+                values = (Collection<?>) object;
+            }
+            for (final Object value : values) {
+                if (!copier.isImmutable(value)) {
+                    throw FALLBACK;
+                }
+            }
+            return object;
+        }
+    };
+
+    private abstract static class CollectionStrategy extends Strategy {
+
+        protected abstract Collection<Object> create(Collection<?> original) throws Fallback;
+
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            final Collection<?> original = (Collection<?>) object;
+            final Collection<Object> copy = create(original);
+            copies.put(object, copy);
+            for (final Object value : original) {
+                copy.add(copier.copy(value, copies));
+            }
+            return copy;
+        }
+    }
+
+    private abstract static class MapStrategy extends Strategy {
+
+        protected abstract Map<Object, Object> create(Map<?, ?> original) throws Fallback;
+
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            final Map<?, ?> original = (Map<?, ?>) object;
+            final Map<Object, Object> copy = create(original);
+            copies.put(object, copy);
+            for (final Map.Entry<?, ?> entry : original.entrySet()) {
+                copy.put(copier.copy(entry.getKey(), copies), copier.copy(entry.getValue(), copies));
+            }
+            return copy;
+        }
+    }
+
+    private static final class RecordStrategy extends Strategy {
+
+        private final Field[] fields;
+
+        private RecordStrategy(final Field[] fields) {
+            this.fields = fields;
+        }
+
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            if (fields == null) {
+                throw FALLBACK;
+            }
+            try {
+                for (final Field field : fields) {
+                    if (!field.getType().isPrimitive() && !copier.isImmutable(field.get(object))) {
+                        throw FALLBACK;
+                    }
+                }
+            } catch (final IllegalAccessException e) {
+                throw FALLBACK;
+            }
+            return object;
+        }
+    }
+
+    private static final class FieldStrategy extends Strategy {
+
+        private final Class<?> type;
+        private final Field[] fields;
+        private final boolean[] references;
+
+        private FieldStrategy(final Class<?> type, final Field[] fields) {
+            this.type = type;
+            this.fields = fields;
+            this.references = new boolean[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                references[i] = !fields[i].getType().isPrimitive();
+            }
+        }
+
+        @Override
+        Object copy(final ReflectionCopier copier, final Object object, final Map<Object, Object> copies) throws Fallback {
+            try {
+                final Object copy = ALLOCATE_INSTANCE.invoke(UNSAFE, type);
+                copies.put(object, copy);
+                for (int i = 0; i < fields.length; i++) {
+                    final Field field = fields[i];
+                    final Object value = field.get(object);
+                    field.set(copy, references[i] ? copier.copy(value, copies) : value);
+                }
+                return copy;
+            } catch (final Fallback e) {
+                throw e;
+            } catch (final Exception e) {
+                throw FALLBACK;
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.ivm.naming;
+
+import org.apache.openejb.core.ivm.IntraVmProxy;
+
+import javax.naming.Context;
+import javax.naming.LinkRef;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the names bound under an {@link IvmContext}, keyed by
+ * the relative name given to lookup.
+ * <p/>
+ * Names are placed with a hash and displace perfect hash: the displacement of
+ * the bucket of a name gives its slot, so a lookup is one hash and one string
+ * compare, hit or miss.  ObjectReferences and links to names of the same
+ * context are resolved when the index is built, the other references are
+ * resolved at each lookup as the tree does.
+ * <p/>
+ * Federated contexts, the java:module, java:app and java:global contexts bound
+ * in a java:comp context for instance, are not copied: names under them are
+ * routed to the federated context, which has its own index.
+ * <p/>
+ * The index is valid as long as the tree it was built from is not modified.
+ *
+ * @version $Rev$ $Date$
+ */
+final class JndiIndex {
+
+    private static final int MAX_DISPLACEMENT = 1 << 12;
+    private static final int MAX_LINKS = 8;
+
+    private final NameNode root;
+    private final int modifications;
+
+    private final String[] names;
+    private final Object[] values;
+    private final int[] displacements;
+    private final int mask;
+
+    private final String[] routes;
+    private final Context[][] federations;
+
+    private JndiIndex(final NameNode root, final int modifications, final Map<String, Object> bindings, final Map<String, List<Context>> federated) {
+        this.root = root;
+        this.modifications = modifications;
+
+        final List<String> prefixes = new ArrayList<String>(federated.keySet());
+        Collections.sort(prefixes, new Comparator<String>() {
+            @Override
+            public int compare(final String o1, final String o2) {
+                // deeper federations are tried first, as the tree does
+                return o2.length() - o1.length();
+            }
+        });
+        routes = prefixes.toArray(new String[prefixes.size()]);
+        federations = new Context[routes.length][];
+        for (int i = 0; i < routes.length; i++) {
+            final List<Context> contexts = federated.get(routes[i]);
+            federations[i] = contexts.toArray(new Context[contexts.size()]);
+        }
+
+        for (int size = tableSize(bindings.size()); size <= tableSize(bindings.size()) << 2; size <<= 1) {
+            final String[] n = new String[size];
+            final Object[] v = new Object[size];
+            final int[] d = new int[Math.max(1, size >> 2)];
+            if (place(bindings, n, v, d)) {
+                names = n;
+                values = v;
+                displacements = d;
+                mask = size - 1;
+                return;
+            }
+        }
+
+        // names with equal hash codes, let the tree answer
+        names = new String[1];
+        values = new Object[1];
+        displacements = new int[1];
+        mask = 0;
+    }
+
+    public static JndiIndex build(final IvmContext context) {
+        final NameNode node = context.mynode;
+        final NameNode root = node.getRoot();
+        final int modifications = root.getModifications();
+
+        final Map<String, Object> bindings = new LinkedHashMap<String, Object>();
+        final Map<String, List<Context>> federated = new LinkedHashMap<String, List<Context>>();
+        if (node.getAtomicName().length() == 0) {
+            // names of the root context are its peers
+            collect(node, "", bindings, federated);
+        } else {
+            final List<Context> contexts = node.getFederatedContexts();
+            if (contexts != null) {
+                federated.put("", new ArrayList<Context>(contexts));
+            }
+            if (node.getSubTree() != null) {
+                collect(node.getSubTree(), "", bindings, federated);
+            }
+        }
+
+        final String atomicName = node.getAtomicName();
+        final List<String> unreachable = new ArrayList<String>();
+        for (final Map.Entry<String, Object> entry : bindings.entrySet()) {
+            final Object value = entry.getValue();
+            if (value instanceof IntraVmProxy || value instanceof ContextualJndiReference) {
+                // not cached by the context either
+                unreachable.add(entry.getKey());
+                continue;
+            }
+            try {
+                if (node.resolve(new ParsedName(atomicName + '/' + entry.getKey())) != value) {
+                    unreachable.add(entry.getKey());
+                }
+            } catch (final NameNotFoundException e) {
+                unreachable.add(entry.getKey());
+            }
+        }
+        for (final String name : unreachable) {
+            bindings.remove(name);
+        }
+
+        for (final Map.Entry<String, Object> entry : bindings.entrySet()) {
+            entry.setValue(resolve(entry.getValue(), bindings));
+        }
+
+        return new JndiIndex(root, modifications, bindings, federated);
+    }
+
+    private static void collect(final NameNode level, final String prefix, final Map<String, Object> bindings, final Map<String, List<Context>> federated) {
+        final List<NameNode> peers = new ArrayList<NameNode>();
+        peers.add(level);
+        while (!peers.isEmpty()) {
+            final NameNode node = peers.remove(peers.size() - 1);
+            if (node.getLessTree() != null) {
+                peers.add(node.getLessTree());
+            }
+            if (node.getGrtrTree() != null) {
+                peers.add(node.getGrtrTree());
+            }
+            if (node.getAtomicName().length() == 0) {
+                continue;
+            }
+
+            final String name = prefix + node.getAtomicName();
+            if (!node.isUnbound()) {
+                bindings.put(name, node.getBinding());
+            }
+            final List<Context> contexts = node.getFederatedContexts();
+            if (contexts != null) {
+                federated.put(name, new ArrayList<Context>(contexts));
+            }
+            if (node.getSubTree() != null) {
+                collect(node.getSubTree(), name + '/', bindings, federated);
+            }
+        }
+    }
+
+    private static Object resolve(final Object value, final Map<String, Object> bindings) {
+        Object resolved = value;
+        for (int i = 0; i < MAX_LINKS; i++) {
+            if (resolved instanceof ObjectReference) {
+                try {
+                    return ((ObjectReference) resolved).getObject();
+                } catch (final NamingException e) {
+                    return value;
+                }
+            }
+            if (!(resolved instanceof LinkRef)) {
+                return resolved;
+            }
+
+            final String link;
+            try {
+                link = ((LinkRef) resolved).getLinkName();
+            } catch (final NamingException e) {
+                return value;
+            }
+            if (link.indexOf(':') >= 0 || !bindings.containsKey(link)) {
+                // absolute, resolved against the caller context, or routed
+                return resolved;
+            }
+            resolved = bindings.get(link);
+        }
+        return value;
+    }
+
+    private static boolean place(final Map<String, Object> bindings, final String[] names, final Object[] values, final int[] displacements) {
+        final int bucketMask = displacements.length - 1;
+        final int slotMask = names.length - 1;
+
+        final List<List<Map.Entry<String, Object>>> buckets = new ArrayList<List<Map.Entry<String, Object>>>(displacements.length);
+        for (int i = 0; i < displacements.length; i++) {
+            buckets.add(new ArrayList<Map.Entry<String, Object>>(2));
+        }
+        for (final Map.Entry<String, Object> entry : bindings.entrySet()) {
+            buckets.get(bucket(entry.getKey().hashCode(), bucketMask)).add(entry);
+        }
+
+        final Integer[] order = new Integer[buckets.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                // largest buckets first, while the table is empty
+                return buckets.get(o2).size() - buckets.get(o1).size();
+            }
+        });
+
+        final int[] slots = new int[bindings.size()];
+        for (final Integer b : order) {
+            final List<Map.Entry<String, Object>> bucket = buckets.get(b);
+            if (bucket.isEmpty()) {
+                break;
+            }
+
+            int displacement = 0;
+            for (; displacement < MAX_DISPLACEMENT; displacement++) {
+                if (fits(bucket, displacement, slotMask, names, slots)) {
+                    break;
+                }
+            }
+            if (displacement == MAX_DISPLACEMENT) {
+                return false;
+            }
+
+            displacements[b] = displacement;
+            for (int i = 0; i < bucket.size(); i++) {
+                names[slots[i]] = bucket.get(i).getKey();
+                values[slots[i]] = bucket.get(i).getValue();
+            }
+        }
+        return true;
+    }
+
+    private static boolean fits(final List<Map.Entry<String, Object>> bucket, final int displacement, final int slotMask, final String[] names, final int[] slots) {
+        for (int i = 0; i < bucket.size(); i++) {
+            final int slot = slot(bucket.get(i).getKey().hashCode(), displacement, slotMask);
+            if (names[slot] != null) {
+                return false;
+            }
+            for (int j = 0; j < i; j++) {
+                if (slots[j] == slot) {
+                    return false;
+                }
+            }
+            slots[i] = slot;
+        }
+        return true;
+    }
+
+    private static int tableSize(final int size) {
+        int tableSize = 4;
+        while (tableSize < size << 1) {
+            tableSize <<= 1;
+        }
+        return tableSize;
+    }
+
+    private static int bucket(final int hash, final int bucketMask) {
+        return mix(hash) & bucketMask;
+    }
+
+    private static int slot(final int hash, final int displacement, final int slotMask) {
+        return mix(hash + (displacement + 1) * 0x9E3779B9) & slotMask;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    public boolean isCurrent() {
+        return root.getModifications() == modifications;
+    }
+
+    public int size() {
+        int size = 0;
+        for (final String name : names) {
+            if (name != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the binding, null if the name isn't indexed
+     */
+    public Object get(final String name) {
+        final int hash = name.hashCode();
+        final int slot = slot(hash, displacements[bucket(hash, displacements.length - 1)], mask);
+        final String found = names[slot];
+        if (found == name || found != null && found.equals(name)) {
+            return values[slot];
+        }
+        return null;
+    }
+
+    /**
+     * Looks a name up in the federated contexts it falls under.
+     *
+     * @return the object, null when the tree should be walked
+     */
+    public Object route(final String name) {
+        for (int i = 0; i < routes.length; i++) {
+            final String prefix = routes[i];
+            final String remaining;
+            if (prefix.length() == 0) {
+                remaining = name;
+            } else if (name.length() > prefix.length() && name.charAt(prefix.length()) == '/' && name.startsWith(prefix)) {
+                remaining = name.substring(prefix.length() + 1);
+            } else {
+                continue;
+            }
+
+            boolean context = false;
+            for (final Context federation : federations[i]) {
+                try {
+                    final Object o = federation.lookup(remaining);
+                    if (!(o instanceof Context)) {
+                        return o;
+                    }
+                    context = true;
+                } catch (final NamingException e) {
+                    //ignore
+                }
+            }
+            if (context) {
+                // contexts are merged by the tree
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -26,8 +26,12 @@ import javax.naming.NamingException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 public class NameNode implements Serializable {
+    private static final AtomicIntegerFieldUpdater<NameNode> MODIFICATIONS = AtomicIntegerFieldUpdater.newUpdater(NameNode.class, "modifications");
+
     private final String atomicName;
     private final int atomicHash;
     private NameNode lessTree;
@@ -38,6 +42,7 @@ public class NameNode implements Serializable {
     private Object myObject;
     private transient IvmContext myContext;
     private boolean unbound;
+    private transient volatile int modifications;
 
     public NameNode(final NameNode parent, final ParsedName name, final Object obj, final NameNode parentTree) {
         atomicName = name.getComponent();
@@ -359,6 +364,36 @@ public class NameNode implements Serializable {
         }
     }
 
+    NameNode getRoot() {
+        NameNode root = this;
+        while (root.parent != null) {
+            root = root.parent;
+        }
+        return root;
+    }
+
+    /**
+     * Counted on the root node, indexes built from the tree check it
+     */
+    void modified() {
+        MODIFICATIONS.incrementAndGet(getRoot());
+    }
+
+    int getModifications() {
+        return modifications;
+    }
+
+    boolean isUnbound() {
+        return unbound;
+    }
+
+    List<Context> getFederatedContexts() {
+        if (myObject instanceof Federation) {
+            return (Federation) myObject;
+        }
+        return null;
+    }
+
     public String getAtomicName() {
         return atomicName;
     }
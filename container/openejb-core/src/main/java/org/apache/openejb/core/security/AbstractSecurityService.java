@@ -19,12 +19,16 @@ package org.apache.openejb.core.security;
 
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.InterfaceType;
+import org.apache.openejb.assembler.classic.event.AssemblerBeforeApplicationDestroyed;
 import org.apache.openejb.core.ThreadContext;
 import org.apache.openejb.core.ThreadContextListener;
 import org.apache.openejb.core.security.jaas.GroupPrincipal;
 import org.apache.openejb.core.security.jacc.BasicJaccProvider;
 import org.apache.openejb.core.security.jacc.BasicPolicyConfiguration;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.observer.Observes;
 import org.apache.openejb.spi.CallerPrincipal;
 import org.apache.openejb.spi.SecurityService;
 
@@ -66,6 +70,7 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
     private String realmName = "PropertiesLogin";
     protected Subject defaultSubject;
     protected SecurityContext defaultContext;
+    private final AuthorizationCache authorizationCache = new AuthorizationCache(SystemInstance.get().getOptions().get(AuthorizationCache.SIZE, 10000));
 
     public AbstractSecurityService() {
         this(BasicJaccProvider.class.getName());
@@ -82,6 +87,26 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
         updateSecurityContext();
 
         SystemInstance.get().setComponent(BasicPolicyConfiguration.RoleResolver.class, this);
+
+        // forget the decisions about undeployed beans
+        SystemInstance.get().addObserver(this);
+        final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management")
+            .set("j2eeType", "SecurityService")
+            .set("name", "AuthorizationCache");
+        LocalMBeanServer.registerDynamicWrapperSilently(authorizationCache, jmxName.build());
+    }
+
+    public AuthorizationCache getAuthorizationCache() {
+        return authorizationCache;
+    }
+
+    public void applicationDestroyed(@Observes final AssemblerBeforeApplicationDestroyed event) {
+        if (event.getContext() == null) {
+            return;
+        }
+        for (final BeanContext beanContext : event.getContext().getBeanContexts()) {
+            authorizationCache.remove(beanContext.getModuleID());
+        }
     }
 
     public String getRealmName() {
@@ -285,19 +310,36 @@ public abstract class AbstractSecurityService implements SecurityService<UUID>,
     public boolean isCallerAuthorized(final Method method, final InterfaceType type) {
         final ThreadContext threadContext = ThreadContext.getThreadContext();
         final BeanContext beanContext = threadContext.getBeanContext();
+        String name = type == null ? null : type.getSpecName();
+        if ("LocalBean".equals(name) || "LocalBeanHome".equals(name)) {
+            name = null;
+        }
+        final Identity currentIdentity = clientIdentity.get();
+
+        final AuthorizationCache.Decisions decisions = authorizationCache.get(beanContext.getModuleID());
+        if (decisions == null) {
+            return checkPermission(currentIdentity, threadContext, beanContext.getEjbName(), name, method);
+        }
+
+        final Subject subject = currentIdentity == null ? threadContext.get(SecurityContext.class).subject : currentIdentity.getSubject();
+        final Object key = decisions.key(beanContext, method, name, subject);
+        Boolean authorized = decisions.get(key);
+        if (authorized == null) {
+            authorized = checkPermission(currentIdentity, threadContext, beanContext.getEjbName(), name, method);
+            decisions.put(key, authorized);
+        }
+        return authorized;
+    }
+
+    private static boolean checkPermission(final Identity currentIdentity, final ThreadContext threadContext,
+                                           final String ejbName, final String name, final Method method) {
+        final SecurityContext securityContext;
+        if (currentIdentity == null) {
+            securityContext = threadContext.get(SecurityContext.class);
+        } else {
+            securityContext = new SecurityContext(currentIdentity.getSubject());
+        }
         try {
-            final String ejbName = beanContext.getEjbName();
-            String name = type == null ? null : type.getSpecName();
-            if ("LocalBean".equals(name) || "LocalBeanHome".equals(name)) {
-                name = null;
-            }
-            final Identity currentIdentity = clientIdentity.get();
-            final SecurityContext securityContext;
-            if (currentIdentity == null) {
-                securityContext = threadContext.get(SecurityContext.class);
-            } else {
-                securityContext = new SecurityContext(currentIdentity.getSubject());
-            }
             securityContext.acc.checkPermission(new EJBMethodPermission(ejbName, name, method));
         } catch (final AccessControlException e) {
             return false;
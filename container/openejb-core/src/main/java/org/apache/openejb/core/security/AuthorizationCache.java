@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.security;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.core.security.jacc.BasicJaccProvider;
+import org.apache.openejb.core.security.jacc.BasicPolicyConfiguration;
+import org.apache.openejb.loader.SystemInstance;
+
+import javax.security.auth.Subject;
+import javax.security.jacc.PolicyContextException;
+import java.lang.reflect.Method;
+import java.security.Policy;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the EJB method permission checks of each module.
+ * <p/>
+ * With the default JACC provider a decision only depends on the policy of the
+ * module, the logical roles of the caller and the invoked method, so it is
+ * cached under these and dropped as soon as the policy configuration of the
+ * module changes.  Other providers are always asked.
+ */
+@MBean
+@Internal
+@Description("Authorization decisions of the EJB method permission checks")
+public final class AuthorizationCache {
+    public static final String SIZE = "openejb.security.authorization-cache.size";
+
+    private static final Principal[] NO_PRINCIPALS = new Principal[0];
+
+    private final int size;
+    private final ConcurrentMap<String, Decisions> modules = new ConcurrentHashMap<String, Decisions>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param size the maximum number of decisions kept per module, 0 to disable the cache
+     */
+    public AuthorizationCache(final int size) {
+        this.size = size;
+    }
+
+    /**
+     * @return the decisions of the module, null if they can't be cached
+     */
+    public Decisions get(final String moduleId) {
+        if (size <= 0 || moduleId == null) {
+            return null;
+        }
+
+        final Decisions decisions = modules.get(moduleId);
+        if (decisions != null && decisions.version == decisions.configuration.getVersion()) {
+            return decisions;
+        }
+
+        final Decisions created = create(moduleId);
+        if (created == null) {
+            modules.remove(moduleId);
+        } else {
+            modules.put(moduleId, created);
+        }
+        return created;
+    }
+
+    private Decisions create(final String moduleId) {
+        final JaccProvider provider = JaccProvider.get();
+        if (provider == null || provider.getClass() != BasicJaccProvider.class || !(Policy.getPolicy() instanceof JaccProvider.Policy)) {
+            return null;
+        }
+
+        final BasicPolicyConfiguration configuration = BasicJaccProvider.class.cast(provider).getConfiguration(moduleId);
+        if (configuration == null || configuration.getClass() != BasicPolicyConfiguration.class) {
+            return null;
+        }
+
+        // read before the state: a later change invalidates these decisions
+        final int version = configuration.getVersion();
+        try {
+            if (!configuration.inService()) {
+                return null;
+            }
+        } catch (final PolicyContextException e) {
+            return null;
+        }
+        return new Decisions(configuration, version);
+    }
+
+    public void remove(final String moduleId) {
+        modules.remove(moduleId);
+    }
+
+    @ManagedOperation
+    @Description("Forget all the cached decisions")
+    public void clear() {
+        modules.clear();
+    }
+
+    @ManagedAttribute
+    @Description("Number of permission checks answered by the cache")
+    public long getHits() {
+        return hits.get();
+    }
+
+    @ManagedAttribute
+    @Description("Number of permission checks delegated to the JACC provider")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute
+    @Description("Number of cached decisions")
+    public long getSize() {
+        long total = 0;
+        for (final Decisions decisions : modules.values()) {
+            total += decisions.decisions.size();
+        }
+        return total;
+    }
+
+    @ManagedAttribute
+    @Description("Maximum number of decisions cached per module")
+    public int getMaxSize() {
+        return size;
+    }
+
+    public final class Decisions {
+        private final BasicPolicyConfiguration configuration;
+        private final int version;
+        private final ConcurrentMap<Key, Boolean> decisions = new ConcurrentHashMap<Key, Boolean>();
+
+        private Decisions(final BasicPolicyConfiguration configuration, final int version) {
+            this.configuration = configuration;
+            this.version = version;
+        }
+
+        /**
+         * @param view the spec name of the invoked view, null for the no-interface view
+         */
+        public Object key(final BeanContext beanContext, final Method method, final String view, final Subject subject) {
+            final Principal[] principals = subject == null ? NO_PRINCIPALS : subject.getPrincipals().toArray(NO_PRINCIPALS);
+            final Set<String> roles;
+            if (principals.length == 0) {
+                // no principal or no role, the policy only grants unchecked permissions
+                roles = Collections.emptySet();
+            } else {
+                final BasicPolicyConfiguration.RoleResolver resolver = SystemInstance.get().getComponent(BasicPolicyConfiguration.RoleResolver.class);
+                roles = resolver.getLogicalRoles(principals, configuration.getRoles());
+            }
+            return new Key(beanContext, method, view, roles);
+        }
+
+        /**
+         * @return the cached decision, null if the permission has to be checked
+         */
+        public Boolean get(final Object key) {
+            final Boolean authorized = decisions.get(key);
+            if (authorized == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return authorized;
+        }
+
+        public void put(final Object key, final boolean authorized) {
+            if (decisions.size() >= size) {
+                decisions.clear();
+            }
+            decisions.put((Key) key, authorized);
+        }
+    }
+
+    private static final class Key {
+        private final BeanContext beanContext;
+        private final Method method;
+        private final String view;
+        private final Set<String> roles;
+        private final int hash;
+
+        private Key(final BeanContext beanContext, final Method method, final String view, final Set<String> roles) {
+            this.beanContext = beanContext;
+            this.method = method;
+            this.view = view;
+            this.roles = roles;
+
+            int result = System.identityHashCode(beanContext);
+            result = 31 * result + method.hashCode();
+            result = 31 * result + (view != null ? view.hashCode() : 0);
+            this.hash = 31 * result + roles.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!Key.class.isInstance(o)) {
+                return false;
+            }
+
+            final Key key = Key.class.cast(o);
+            return beanContext == key.beanContext && method.equals(key.method)
+                && (view != null ? view.equals(key.view) : key.view == null) && roles.equals(key.roles);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.security.jaas;
+
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+
+import javax.management.ObjectName;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the outcome of recent logins so a user authenticating again, an
+ * ejbd client sending its credentials with each request for instance, doesn't
+ * hit the user store each time.
+ * <p/>
+ * Caches are looked up by name, the login modules and realms configured with
+ * the same one share its size, settings, statistics and management operations
+ * but not its entries: each of them uses its own namespace, since what they
+ * remember of a login differs, and a login checked by one of them is checked
+ * again by the others. Only a salted hash of the credentials is kept: a login
+ * is answered by the cache when the provided password hashes to the cached one.
+ * <p/>
+ * Failed logins are remembered apart from the successful ones: the same wrong
+ * password is rejected until the failure timeout, and so is any password but
+ * a cached one once a user failed too many times within that timeout. A failed
+ * attempt doesn't forget the cached login, {@link #evict(String)} does.
+ */
+@MBean
+@Internal
+@Description("Authenticated credentials cache")
+public final class CredentialCache {
+    public static final long DEFAULT_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+    public static final int DEFAULT_SIZE = 1000;
+    public static final long DEFAULT_FAILURE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_MAX_FAILURES = 5;
+
+    private static final ConcurrentMap<String, CredentialCache> CACHES = new ConcurrentHashMap<String, CredentialCache>();
+
+    private final String name;
+    private final long timeout;
+    private final int size;
+    private final long failureTimeout;
+    private final int maxFailures;
+    private final byte[] salt = new byte[16];
+    private final Map<Key, Entry> entries;
+    private final Map<Key, Failures> failures;
+    private ObjectName objectName;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+
+    /**
+     * @param timeout        how long a successful login is remembered in milliseconds
+     * @param size           the maximum number of remembered logins and failures
+     * @param failureTimeout how long a failed login is remembered in milliseconds, 0 to forget them
+     * @param maxFailures    the number of failures rejecting any password of a user, 0 for no limit
+     */
+    public CredentialCache(final String name, final long timeout, final int size, final long failureTimeout, final int maxFailures) {
+        this.name = name;
+        this.timeout = timeout;
+        this.size = size;
+        this.failureTimeout = failureTimeout;
+        this.maxFailures = maxFailures;
+        this.entries = new Lru<Entry>(size);
+        this.failures = new Lru<Failures>(size);
+        new SecureRandom().nextBytes(salt);
+    }
+
+    /**
+     * @return the cache of this name, created with the given settings if it doesn't exist yet
+     */
+    public static CredentialCache get(final String name, final long timeout, final int size, final long failureTimeout, final int maxFailures) {
+        CredentialCache cache = CACHES.get(name);
+        if (cache == null) {
+            cache = new CredentialCache(name, timeout, size, failureTimeout, maxFailures);
+            final CredentialCache existing = CACHES.putIfAbsent(name, cache);
+            if (existing != null) {
+                return existing;
+            }
+            cache.register();
+        }
+        return cache;
+    }
+
+    public static CredentialCache get(final String name) {
+        return get(name, DEFAULT_TIMEOUT, DEFAULT_SIZE, DEFAULT_FAILURE_TIMEOUT, DEFAULT_MAX_FAILURES);
+    }
+
+    public static void remove(final String name) {
+        final CredentialCache cache = CACHES.remove(name);
+        if (cache != null && cache.objectName != null) {
+            LocalMBeanServer.unregisterSilently(cache.objectName);
+        }
+    }
+
+    private void register() {
+        final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management")
+            .set("j2eeType", "CredentialCache")
+            .set("name", name);
+        objectName = jmxName.build();
+        LocalMBeanServer.registerDynamicWrapperSilently(this, objectName);
+    }
+
+    /**
+     * @return what was cached for the user if the password matches the cached one, null otherwise
+     */
+    public Object authenticated(final String namespace, final String user, final String password) {
+        final Key key = new Key(namespace, user);
+        final Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry != null && entry.expiry - System.currentTimeMillis() > 0 && MessageDigest.isEqual(entry.hash, hash(user, password))) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return true if the login has to fail without asking the user store
+     */
+    public boolean rejected(final String namespace, final String user, final String password) {
+        if (failureTimeout <= 0) {
+            return false;
+        }
+
+        final Failures userFailures;
+        synchronized (failures) {
+            userFailures = failures.get(new Key(namespace, user));
+        }
+        if (userFailures == null) {
+            return false;
+        }
+
+        final boolean rejected;
+        synchronized (userFailures) {
+            if (userFailures.expiry - System.currentTimeMillis() <= 0) {
+                return false;
+            }
+            rejected = maxFailures > 0 && userFailures.count >= maxFailures
+                || userFailures.hash != null && MessageDigest.isEqual(userFailures.hash, hash(user, password));
+        }
+        if (rejected) {
+            rejections.incrementAndGet();
+        }
+        return rejected;
+    }
+
+    public void succeeded(final String namespace, final String user, final String password, final Object value) {
+        final Key key = new Key(namespace, user);
+        final Entry entry = new Entry(hash(user, password), value, System.currentTimeMillis() + timeout);
+        synchronized (failures) {
+            failures.remove(key);
+        }
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    public void failed(final String namespace, final String user, final String password) {
+        if (failureTimeout <= 0) {
+            return;
+        }
+
+        final Key key = new Key(namespace, user);
+
+        final long now = System.currentTimeMillis();
+        Failures userFailures;
+        synchronized (failures) {
+            userFailures = failures.get(key);
+            if (userFailures == null) {
+                userFailures = new Failures();
+                failures.put(key, userFailures);
+            }
+        }
+        synchronized (userFailures) {
+            if (userFailures.expiry - now <= 0) {
+                userFailures.count = 0;
+            }
+            userFailures.count++;
+            userFailures.hash = hash(user, password);
+            userFailures.expiry = now + failureTimeout;
+        }
+    }
+
+    private byte[] hash(final String user, final String password) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            digest.update(user.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (password != null) {
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return digest.digest();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @ManagedOperation
+    @Description("Forget the logins and failures of a user, after a change of password or roles")
+    public void evict(final String user) {
+        synchronized (entries) {
+            removeUser(entries, user);
+        }
+        synchronized (failures) {
+            removeUser(failures, user);
+        }
+    }
+
+    private static void removeUser(final Map<Key, ?> map, final String user) {
+        final Iterator<Key> keys = map.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().user.equals(user)) {
+                keys.remove();
+            }
+        }
+    }
+
+    @ManagedOperation
+    @Description("Forget all the logins and failures")
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        synchronized (failures) {
+            failures.clear();
+        }
+    }
+
+    @ManagedAttribute
+    @Description("Logins answered by the cache")
+    public long getHits() {
+        return hits.get();
+    }
+
+    @ManagedAttribute
+    @Description("Logins checked against the user store")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute
+    @Description("Logins rejected because of previous failures")
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    @ManagedAttribute
+    @Description("Ratio of the logins answered by the cache")
+    public double getHitRatio() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @ManagedAttribute
+    @Description("Number of cached logins")
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @ManagedAttribute
+    @Description("Maximum number of cached logins")
+    public int getMaxSize() {
+        return size;
+    }
+
+    @ManagedAttribute
+    @Description("Time a login is cached in milliseconds")
+    public long getTimeout() {
+        return timeout;
+    }
+
+    @ManagedAttribute
+    @Description("Number of failures rejecting any password of a user")
+    public int getMaxFailures() {
+        return maxFailures;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private static final class Key {
+        private final String namespace;
+        private final String user;
+
+        private Key(final String namespace, final String user) {
+            this.namespace = namespace;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            final Key key = Key.class.cast(o);
+            return namespace.equals(key.namespace) && user.equals(key.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * namespace.hashCode() + user.hashCode();
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] hash;
+        private final Object value;
+        private final long expiry;
+
+        private Entry(final byte[] hash, final Object value, final long expiry) {
+            this.hash = hash;
+            this.value = value;
+            this.expiry = expiry;
+        }
+    }
+
+    private static final class Failures {
+        private int count;
+        private byte[] hash;
+        private long expiry;
+    }
+
+    private static final class Lru<V> extends LinkedHashMap<Key, V> {
+        private final int max;
+
+        private Lru(final int max) {
+            super(16, 0.75f, true);
+            this.max = max;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, V> eldest) {
+            return size() > max;
+        }
+    }
+}
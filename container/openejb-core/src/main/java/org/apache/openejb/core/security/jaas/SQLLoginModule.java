@@ -20,6 +20,7 @@ package org.apache.openejb.core.security.jaas;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.spi.ContainerSystem;
 import org.apache.openejb.util.Base64;
+import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.HexConverter;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
@@ -46,11 +47,15 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A login module that loads security information from a SQL database.  Expects
@@ -71,6 +76,14 @@ import java.util.Set;
  * In other words, the query should look like:
  * <tt>SELECT user, role FROM user_roles WHERE username=?</tt>
  * <p/>
+ * When a cacheName is given, successful logins are kept in the {@link CredentialCache}
+ * of this name for cacheTimeout (5 minutes by default, up to cacheSize users) and
+ * answered without querying the database.  Failed logins are remembered for
+ * cacheFailureTimeout (30 seconds by default) and after cacheMaxFailures failures
+ * every password of the user but the cached one is rejected until then.  The entries
+ * belong to the data source and queries of the module, other modules or realms using
+ * the same cacheName don't see them.
+ * <p/>
  * This login module checks security credentials so the lifecycle methods must return true to indicate success
  * or throw LoginException to indicate failure.
  *
@@ -80,6 +93,9 @@ public class SQLLoginModule implements LoginModule {
     private static final Logger log = Logger.getInstance(
         LogCategory.OPENEJB_SECURITY, "org.apache.openejb.util.resources");
 
+    // parameter count of each query, saves a metadata round trip per statement
+    private static final ConcurrentMap<String, Integer> PARAMETER_COUNTS = new ConcurrentHashMap<String, Integer>();
+
     private final EnumMap<Option, String> optionsMap = new EnumMap<Option, String>(Option.class);
     private String connectionURL;
     private Properties properties;
@@ -89,6 +105,8 @@ public class SQLLoginModule implements LoginModule {
     private String groupSelect;
     private String digest;
     private String encoding;
+    private CredentialCache cache;
+    private String cacheNamespace;
 
     private boolean loginSucceeded;
     private Subject subject;
@@ -167,6 +185,31 @@ public class SQLLoginModule implements LoginModule {
         } else {
             initError(null, "Neither %s nor %s was specified", Option.DATABASE_POOL_NAME.name, Option.CONNECTION_URL.name);
         }
+
+        final String cacheName = optionsMap.get(Option.CACHE_NAME);
+        if (!Strings.checkNullBlankString(cacheName)) {
+            try {
+                cache = CredentialCache.get(cacheName,
+                    millis(Option.CACHE_TIMEOUT, CredentialCache.DEFAULT_TIMEOUT),
+                    optionsMap.containsKey(Option.CACHE_SIZE) ? Integer.parseInt(optionsMap.get(Option.CACHE_SIZE)) : CredentialCache.DEFAULT_SIZE,
+                    millis(Option.CACHE_FAILURE_TIMEOUT, CredentialCache.DEFAULT_FAILURE_TIMEOUT),
+                    optionsMap.containsKey(Option.CACHE_MAX_FAILURES) ? Integer.parseInt(optionsMap.get(Option.CACHE_MAX_FAILURES)) : CredentialCache.DEFAULT_MAX_FAILURES);
+            } catch (final IllegalArgumentException e) {
+                initError(e, "Invalid configuration of the credential cache %s: %s", cacheName, e.getMessage());
+            }
+            // the same user can have other credentials in another database
+            cacheNamespace = "sql:" + (connectionURL != null ? connectionURL : optionsMap.get(Option.DATABASE_POOL_NAME)) + '|' + userSelect + '|' + groupSelect;
+        }
+    }
+
+    private long millis(final Option option, final long defaultValue) {
+        final String value = optionsMap.get(option);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        final Duration duration = new Duration(value);
+        return duration.getUnit() == null ? duration.getTime() : duration.getTime(TimeUnit.MILLISECONDS);
     }
 
     private void initError(final Exception e, final String format, final Object... args) {
@@ -206,6 +249,21 @@ public class SQLLoginModule implements LoginModule {
         final char[] provided = ((PasswordCallback) callbacks[1]).getPassword();
         cbPassword = provided == null ? null : new String(provided);
 
+        if (cache != null) {
+            final Object cached = cache.authenticated(cacheNamespace, cbUsername, cbPassword);
+            if (cached != null) {
+                groups.addAll(Arrays.asList((String[]) cached));
+                loginSucceeded = true;
+                return true;
+            }
+            if (cache.rejected(cacheNamespace, cbUsername, cbPassword)) {
+                // Clear out the private state
+                cbUsername = null;
+                cbPassword = null;
+                throw new FailedLoginException();
+            }
+        }
+
         try {
             final Connection conn;
             if (dataSource != null) {
@@ -219,10 +277,7 @@ public class SQLLoginModule implements LoginModule {
             try {
                 PreparedStatement statement = conn.prepareStatement(userSelect);
                 try {
-                    final int count = statement.getParameterMetaData().getParameterCount();
-                    for (int i = 0; i < count; i++) {
-                        statement.setObject(i + 1, cbUsername);
-                    }
+                    setUsername(userSelect, statement);
                     final ResultSet result = statement.executeQuery();
 
                     try {
@@ -252,10 +307,7 @@ public class SQLLoginModule implements LoginModule {
 
                 statement = conn.prepareStatement(groupSelect);
                 try {
-                    final int count = statement.getParameterMetaData().getParameterCount();
-                    for (int i = 0; i < count; i++) {
-                        statement.setObject(i + 1, cbUsername);
-                    }
+                    setUsername(groupSelect, statement);
                     final ResultSet result = statement.executeQuery();
 
                     try {
@@ -277,6 +329,9 @@ public class SQLLoginModule implements LoginModule {
                 conn.close();
             }
         } catch (final LoginException e) {
+            if (cache != null && e instanceof FailedLoginException) {
+                cache.failed(cacheNamespace, cbUsername, cbPassword);
+            }
             // Clear out the private state
             cbUsername = null;
             cbPassword = null;
@@ -296,10 +351,25 @@ public class SQLLoginModule implements LoginModule {
             throw (LoginException) new LoginException("Could not access datasource").initCause(e);
         }
 
+        if (cache != null) {
+            cache.succeeded(cacheNamespace, cbUsername, cbPassword, groups.toArray(new String[groups.size()]));
+        }
+
         loginSucceeded = true;
         return true;
     }
 
+    private void setUsername(final String sql, final PreparedStatement statement) throws SQLException {
+        Integer count = PARAMETER_COUNTS.get(sql);
+        if (count == null) {
+            count = statement.getParameterMetaData().getParameterCount();
+            PARAMETER_COUNTS.putIfAbsent(sql, count);
+        }
+        for (int i = 0; i < count; i++) {
+            statement.setObject(i + 1, cbUsername);
+        }
+    }
+
     /**
      * @return true if login succeeded and commit succeeded, or false if login
      * failed but commit succeeded.
@@ -398,7 +468,12 @@ public class SQLLoginModule implements LoginModule {
         DRIVER("jdbcDriver"),
         DATABASE_POOL_NAME("dataSourceName"),
         DIGEST("digest"),
-        ENCODING("encoding");
+        ENCODING("encoding"),
+        CACHE_NAME("cacheName"),
+        CACHE_TIMEOUT("cacheTimeout"),
+        CACHE_SIZE("cacheSize"),
+        CACHE_FAILURE_TIMEOUT("cacheFailureTimeout"),
+        CACHE_MAX_FAILURES("cacheMaxFailures");
 
         public final String name;
 
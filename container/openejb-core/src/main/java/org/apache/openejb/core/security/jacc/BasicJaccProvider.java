@@ -63,6 +63,13 @@ public class BasicJaccProvider extends JaccProvider {
         return configuration;
     }
 
+    /**
+     * @return the configuration of the policy context, null if it was never created
+     */
+    public BasicPolicyConfiguration getConfiguration(final String contextID) {
+        return configurations.get(contextID);
+    }
+
     protected BasicPolicyConfiguration createPolicyConfiguration(final String contextID) {
         return new BasicPolicyConfiguration(contextID);
     }
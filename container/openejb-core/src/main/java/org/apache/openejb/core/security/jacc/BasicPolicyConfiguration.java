@@ -26,6 +26,7 @@ import java.security.Permission;
 import java.security.PermissionCollection;
 import java.security.Principal;
 import java.security.ProtectionDomain;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -44,6 +45,8 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
     protected final Map<String, PermissionCollection> rolePermissionsMap = new LinkedHashMap<String, PermissionCollection>();
     protected PermissionCollection unchecked;
     protected PermissionCollection excluded;
+    private final Set<String> roles = Collections.unmodifiableSet(rolePermissionsMap.keySet());
+    private volatile int version;
 
     protected BasicPolicyConfiguration(final String contextID) {
         this.contextID = contextID;
@@ -54,6 +57,21 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         return contextID;
     }
 
+    /**
+     * @return the logical roles having permissions in this policy context
+     */
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    /**
+     * @return a number changing each time the configuration is modified, to invalidate
+     * what was computed from its previous state
+     */
+    public int getVersion() {
+        return version;
+    }
+
     public boolean implies(final ProtectionDomain domain, final Permission permission) {
 
         if (excluded != null && excluded.implies(permission)) {
@@ -105,6 +123,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
             rolePermissionsMap.put(roleName, permissions);
         }
         permissions.add(permission);
+        version++;
     }
 
     public void addToUncheckedPolicy(final PermissionCollection permissions) throws PolicyContextException {
@@ -128,6 +147,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         unchecked.add(permission);
+        version++;
     }
 
     public void addToExcludedPolicy(final PermissionCollection permissions) throws PolicyContextException {
@@ -151,6 +171,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         excluded.add(permission);
+        version++;
     }
 
     public void removeRole(final String roleName) throws PolicyContextException {
@@ -159,6 +180,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         rolePermissionsMap.remove(roleName);
+        version++;
     }
 
     public void removeUncheckedPolicy() throws PolicyContextException {
@@ -167,6 +189,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         unchecked = null;
+        version++;
     }
 
     public void removeExcludedPolicy() throws PolicyContextException {
@@ -175,6 +198,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
         }
 
         excluded = null;
+        version++;
     }
 
     public void linkConfiguration(final PolicyConfiguration link) throws PolicyContextException {
@@ -185,6 +209,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
 
     public void delete() throws PolicyContextException {
         state = DELETED;
+        version++;
     }
 
     public void commit() throws PolicyContextException {
@@ -192,6 +217,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
             throw new UnsupportedOperationException("Not in an open state");
         }
         state = IN_SERVICE;
+        version++;
     }
 
     public boolean inService() throws PolicyContextException {
@@ -210,6 +236,7 @@ public class BasicPolicyConfiguration implements PolicyConfiguration {
             excluded = null;
         }
         state = OPEN;
+        version++;
     }
 
     int getState() {
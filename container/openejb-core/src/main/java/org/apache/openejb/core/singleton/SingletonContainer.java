@@ -20,6 +20,7 @@ package org.apache.openejb.core.singleton;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.ContainerType;
 import org.apache.openejb.InterfaceType;
+import org.apache.openejb.InvocationDescriptor;
 import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.ProxyInfo;
 import org.apache.openejb.RpcContainer;
@@ -27,12 +28,15 @@ import org.apache.openejb.cdi.CurrentCreationalContext;
 import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.timer.EjbTimerService;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.core.webservices.AddressingSupport;
 import org.apache.openejb.core.webservices.NoAddressingSupport;
+import org.apache.openejb.monitoring.InvocationMetrics;
+import org.apache.openejb.monitoring.MethodMetrics;
 import org.apache.openejb.spi.SecurityService;
 import org.apache.openejb.util.Duration;
 import org.apache.xbean.finder.ClassFinder;
@@ -89,6 +93,16 @@ public class SingletonContainer implements RpcContainer {
         this.accessTimeout = duration;
     }
 
+    public void setLockStrategy(final String lockStrategy) {
+        if ("striped".equalsIgnoreCase(lockStrategy)) {
+            instanceManager.setStripedLocks(true);
+        } else if ("reentrant".equalsIgnoreCase(lockStrategy)) {
+            instanceManager.setStripedLocks(false);
+        } else {
+            throw new IllegalArgumentException("Unknown LockStrategy " + lockStrategy + ", use reentrant or striped");
+        }
+    }
+
     @Override
     public synchronized BeanContext[] getBeanContexts() {
         return deploymentRegistry.values().toArray(new BeanContext[deploymentRegistry.size()]);
@@ -146,6 +160,7 @@ public class SingletonContainer implements RpcContainer {
         }
 
         instanceManager.undeploy(beanContext);
+        InvocationMetrics.get().remove(beanContext);
 
         synchronized (this) {
             final String id = (String) beanContext.getDeploymentID();
@@ -173,11 +188,15 @@ public class SingletonContainer implements RpcContainer {
             type = beanContext.getInterfaceType(callInterface);
         }
 
-        final Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
+        final InvocationDescriptor descriptor = beanContext.getInvocationDescriptor(callMethod);
+        final Method runMethod = descriptor.getBeanMethod();
 
         final ThreadContext callContext = new ThreadContext(beanContext, primKey);
         final ThreadContext oldCallContext = ThreadContext.enter(callContext);
         final CurrentCreationalContext currentCreationalContext = beanContext.get(CurrentCreationalContext.class);
+        final MethodMetrics metrics = descriptor.getMetrics();
+        long started = metrics.start();
+        boolean failed = false;
         try {
 
             final boolean authorized = type == InterfaceType.TIMEOUT || getSecurityService().isCallerAuthorized(callMethod, type);
@@ -198,6 +217,7 @@ public class SingletonContainer implements RpcContainer {
             }
 
             final Instance instance = instanceManager.getInstance(callContext);
+            started = metrics.obtained(started);
 
             callContext.setCurrentOperation(type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
             callContext.setCurrentAllowedStates(null);
@@ -209,9 +229,13 @@ public class SingletonContainer implements RpcContainer {
                 currentCreationalContext.set(instance.creationalContext);
             }
 
-            return _invoke(callMethod, runMethod, args, instance, callContext, type);
+            return _invoke(descriptor, args, instance, callContext, type);
 
+        } catch (final OpenEJBException | RuntimeException | Error e) {
+            failed = true;
+            throw e;
         } finally {
+            metrics.end(started, failed);
             ThreadContext.exit(oldCallContext);
             if (currentCreationalContext != null) {
                 currentCreationalContext.remove();
@@ -223,23 +247,23 @@ public class SingletonContainer implements RpcContainer {
         return securityService;
     }
 
-    protected Object _invoke(final Method callMethod,
-                             final Method runMethod,
+    protected Object _invoke(final InvocationDescriptor descriptor,
                              final Object[] args,
                              final Instance instance,
                              final ThreadContext callContext,
                              final InterfaceType callType) throws OpenEJBException {
         final BeanContext beanContext = callContext.getBeanContext();
+        final Method runMethod = descriptor.getBeanMethod();
 
-        final Duration accessTimeout = getAccessTimeout(beanContext, runMethod);
-        final boolean read = javax.ejb.LockType.READ.equals(beanContext.getConcurrencyAttribute(runMethod));
+        final Duration accessTimeout = getAccessTimeout(beanContext, descriptor);
+        final boolean read = javax.ejb.LockType.READ.equals(descriptor.getLockType());
 
         final Lock lock = aquireLock(read, accessTimeout, instance, runMethod);
 
         Object returnValue;
         try {
 
-            final TransactionPolicy txPolicy = createTransactionPolicy(beanContext.getTransactionType(callMethod, callType), callContext);
+            final TransactionPolicy txPolicy = createTransactionPolicy(descriptor.getTransactionType(callType), callContext);
 
             returnValue = null;
             try {
@@ -247,11 +271,11 @@ public class SingletonContainer implements RpcContainer {
                     callContext.setCurrentOperation(Operation.BUSINESS_WS);
                     returnValue = invokeWebService(args, beanContext, runMethod, instance);
                 } else {
-                    final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
+                    final InterceptorChain chain = descriptor.getInterceptorChain(
+                        callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
                     final InterceptorStack interceptorStack = new InterceptorStack(instance.bean,
                         runMethod,
-                        callType == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS,
-                        interceptors,
+                        chain,
                         instance.interceptors);
                     returnValue = interceptorStack.invoke(args);
                 }
@@ -280,8 +304,8 @@ public class SingletonContainer implements RpcContainer {
         return returnValue;
     }
 
-    private Duration getAccessTimeout(final BeanContext beanContext, final Method callMethod) {
-        Duration accessTimeout = beanContext.getAccessTimeout(callMethod);
+    private Duration getAccessTimeout(final BeanContext beanContext, final InvocationDescriptor descriptor) {
+        Duration accessTimeout = descriptor.getAccessTimeout();
         if (accessTimeout == null) {
             accessTimeout = beanContext.getAccessTimeout();
             if (accessTimeout == null) {
@@ -72,6 +72,7 @@ public class SingletonInstanceManager {
     private final SecurityService securityService;
     private final SingletonContext sessionContext;
     private final WebServiceContext webServiceContext;
+    private boolean stripedLocks;
 
     public SingletonInstanceManager(final SecurityService securityService) {
         this.securityService = securityService;
@@ -79,6 +80,13 @@ public class SingletonInstanceManager {
         webServiceContext = new EjbWsContext(sessionContext);
     }
 
+    /**
+     * @param stripedLocks use a {@link StripedReadWriteLock} for the container managed concurrency
+     */
+    public void setStripedLocks(final boolean stripedLocks) {
+        this.stripedLocks = stripedLocks;
+    }
+
     protected void start(final BeanContext beanContext) throws OpenEJBException {
         if (beanContext.isLoadOnStartup()) {
             initialize(beanContext);
@@ -195,6 +203,9 @@ public class SingletonInstanceManager {
             if (beanContext.isBeanManagedConcurrency()) {
                 // Bean-Managed Concurrency
                 lock = new BeanManagedLock();
+            } else if (stripedLocks) {
+                // Container-Managed Concurrency, read mostly
+                lock = new StripedReadWriteLock();
             } else {
                 // Container-Managed Concurrency
                 lock = new ReentrantReadWriteLock();
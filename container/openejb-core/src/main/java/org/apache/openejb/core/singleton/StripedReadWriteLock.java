@@ -0,0 +1,385 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.singleton;
+
+import javax.ejb.IllegalLoopbackException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Read/write lock for read mostly singletons.
+ * <p/>
+ * Readers are counted on several counters, each on its own cache line, picked
+ * from the thread id.  Readers on different cores don't write to the same
+ * memory so read locking scales with the number of cores, where a
+ * {@link java.util.concurrent.locks.ReentrantReadWriteLock} makes them all
+ * update the same counter.  The price is paid by the writers, which have to
+ * look at every counter.
+ * <p/>
+ * A writer announces itself before waiting for the readers to leave, new
+ * readers wait for it so writers don't starve.  Both locks are reentrant, the
+ * writer may take the read lock, a read lock can't be upgraded: locking the
+ * write lock while holding the read lock throws an
+ * {@link IllegalLoopbackException} as the EJB specification requires for
+ * singletons, trying to lock it fails.  Locks must be released by the thread
+ * which took them.
+ *
+ * @version $Rev$ $Date$
+ */
+public class StripedReadWriteLock implements ReadWriteLock {
+
+    // longs between two counters, 64 bytes
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray readers;
+    private final int mask;
+
+    private final AtomicReference<Thread> writer = new AtomicReference<Thread>();
+    // only touched by the writer
+    private int writeHolds;
+
+    private final ThreadLocal<int[]> readHolds = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[1];
+        }
+    };
+
+    // blocked threads wait here
+    private final ReentrantLock monitor = new ReentrantLock();
+    private final Condition changed = monitor.newCondition();
+
+    private final Lock readLock = new ReadLock();
+    private final Lock writeLock = new WriteLock();
+
+    public StripedReadWriteLock() {
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public StripedReadWriteLock(final int stripes) {
+        int size = 1;
+        while (size < stripes && size < 1024) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        readers = new AtomicLongArray(size * PADDING);
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    private int stripe() {
+        final long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return ((int) (id >>> 32) & mask) * PADDING;
+    }
+
+    private long readers() {
+        long count = 0;
+        for (int i = 0; i <= mask; i++) {
+            count += readers.get(i * PADDING);
+        }
+        return count;
+    }
+
+    /**
+     * @param nanos negative to wait forever
+     */
+    private boolean acquireRead(final long nanos, final boolean interruptible) throws InterruptedException {
+        final int[] holds = readHolds.get();
+        final Thread current = Thread.currentThread();
+        final int stripe = stripe();
+
+        if (holds[0] > 0 || writer.get() == current) {
+            // reentrant, waiting for a writer would deadlock
+            readers.incrementAndGet(stripe);
+            holds[0]++;
+            return true;
+        }
+
+        final long deadline = System.nanoTime() + nanos;
+        while (true) {
+            readers.incrementAndGet(stripe);
+            if (writer.get() == null) {
+                holds[0]++;
+                return true;
+            }
+
+            // a writer is there or coming, let it go first
+            releaseRead(stripe);
+            if (!await(deadline, nanos < 0, interruptible)) {
+                return false;
+            }
+        }
+    }
+
+    private void releaseRead(final int stripe) {
+        readers.decrementAndGet(stripe);
+        if (writer.get() != null) {
+            // the writer may be waiting for this reader
+            signal();
+        }
+    }
+
+    private boolean acquireWrite(final long nanos, final boolean interruptible) throws InterruptedException {
+        final Thread current = Thread.currentThread();
+        if (writer.get() == current) {
+            writeHolds++;
+            return true;
+        }
+        if (readHolds.get()[0] > 0) {
+            // upgrading would deadlock with any other reader
+            return false;
+        }
+
+        final long deadline = System.nanoTime() + nanos;
+        while (!writer.compareAndSet(null, current)) {
+            if (!await(deadline, nanos < 0, interruptible)) {
+                return false;
+            }
+        }
+
+        // new readers wait from now on, wait for the ones in
+        monitor.lock();
+        try {
+            while (readers() != 0) {
+                final boolean awaited;
+                try {
+                    awaited = awaitLocked(deadline, nanos < 0, interruptible);
+                } catch (final InterruptedException e) {
+                    releaseWriteLocked();
+                    throw e;
+                }
+                if (!awaited) {
+                    releaseWriteLocked();
+                    return false;
+                }
+            }
+        } finally {
+            monitor.unlock();
+        }
+
+        writeHolds = 1;
+        return true;
+    }
+
+    private void releaseWrite() {
+        if (writer.get() != Thread.currentThread()) {
+            throw new IllegalMonitorStateException("write lock not held");
+        }
+        if (--writeHolds > 0) {
+            return;
+        }
+        monitor.lock();
+        try {
+            releaseWriteLocked();
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    private void releaseWriteLocked() {
+        writeHolds = 0;
+        writer.set(null);
+        changed.signalAll();
+    }
+
+    private void signal() {
+        monitor.lock();
+        try {
+            changed.signalAll();
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    /**
+     * Waits for the writer to go, or for the writer slot to be free.
+     *
+     * @return false if the deadline passed
+     */
+    private boolean await(final long deadline, final boolean forever, final boolean interruptible) throws InterruptedException {
+        monitor.lock();
+        try {
+            while (writer.get() != null) {
+                if (!awaitLocked(deadline, forever, interruptible)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            monitor.unlock();
+        }
+    }
+
+    private boolean awaitLocked(final long deadline, final boolean forever, final boolean interruptible) throws InterruptedException {
+        if (forever) {
+            if (interruptible) {
+                changed.await();
+            } else {
+                changed.awaitUninterruptibly();
+            }
+            return true;
+        }
+
+        final long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        if (interruptible) {
+            changed.awaitNanos(remaining);
+        } else {
+            try {
+                changed.awaitNanos(remaining);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        final Thread owner = writer.get();
+        return "StripedReadWriteLock{" +
+            "readers=" + readers() +
+            ", writer=" + (owner == null ? null : owner.getName()) +
+            '}';
+    }
+
+    private final class ReadLock implements Lock {
+
+        @Override
+        public void lock() {
+            try {
+                acquireRead(-1, false);
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e); // can't happen
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            acquireRead(-1, true);
+        }
+
+        @Override
+        public boolean tryLock() {
+            try {
+                return acquireRead(0, false);
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e); // can't happen
+            }
+        }
+
+        @Override
+        public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return acquireRead(Math.max(0, unit.toNanos(time)), true);
+        }
+
+        @Override
+        public void unlock() {
+            final int[] holds = readHolds.get();
+            if (holds[0] == 0) {
+                throw new IllegalMonitorStateException("read lock not held");
+            }
+            holds[0]--;
+            releaseRead(stripe());
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("newCondition()");
+        }
+    }
+
+    private final class WriteLock implements Lock {
+
+        @Override
+        public void lock() {
+            final boolean locked;
+            try {
+                locked = acquireWrite(-1, false);
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e); // can't happen
+            }
+            if (!locked) {
+                throw upgrade();
+            }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (!acquireWrite(-1, true)) {
+                throw upgrade();
+            }
+        }
+
+        // waiting forever only fails when the read lock is held
+        private IllegalLoopbackException upgrade() {
+            return new IllegalLoopbackException("Can't upgrade a read lock to a write lock");
+        }
+
+        @Override
+        public boolean tryLock() {
+            try {
+                return acquireWrite(0, false);
+            } catch (final InterruptedException e) {
+                throw new IllegalStateException(e); // can't happen
+            }
+        }
+
+        @Override
+        public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            return acquireWrite(Math.max(0, unit.toNanos(time)), true);
+        }
+
+        @Override
+        public void unlock() {
+            releaseWrite();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("newCondition()");
+        }
+    }
+}
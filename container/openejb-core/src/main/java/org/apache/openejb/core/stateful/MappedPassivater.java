@@ -0,0 +1,780 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.stateful;
+
+import org.apache.openejb.SystemException;
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.core.EnvProps;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+import org.apache.openejb.spi.Serializer;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Passivates beans into append-only, memory-mapped segment files.
+ * <p/>
+ * A bulk passivation serializes all the beans first and then writes them
+ * sequentially at the end of the current segment.  Each record is laid out as
+ * <code>[hash][key length][value length][key][value]</code> and located through
+ * an open addressing index kept off-heap, twenty-four bytes per bean.  Index slots
+ * only point to records, keys are compared in their serialized form so no key
+ * object is retained between passivation and activation.
+ * <p/>
+ * Activation frees the record.  A segment without any live record is deleted
+ * and a sealed segment falling under the compaction ratio gets its remaining
+ * records moved to the current segment before being deleted, so the disk
+ * footprint follows the number of passivated beans.
+ * <p/>
+ * A passivated bean which is never activated again is dropped once its
+ * timeout elapsed, the one of its bean or else the one of the cache, by the
+ * next passivation or the compaction of its segment.
+ * <p/>
+ * Tuning is done through system properties:
+ * <ul>
+ * <li>openejb.stateful.passivation.segment-size: size in bytes of a segment, defaults to 16MB</li>
+ * <li>openejb.stateful.passivation.compaction-ratio: percentage of live bytes under which a segment is compacted, defaults to 25</li>
+ * </ul>
+ */
+public class MappedPassivater implements PassivationStrategy, Closeable {
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    private static final AtomicInteger ids = new AtomicInteger();
+
+    private static final int HEADER = 12;
+
+    private final Stats stats = new Stats();
+    private final List<Segment> segments = new ArrayList<Segment>();
+
+    private File sessionDirectory;
+    private String prefix;
+    private int segmentSize;
+    private int compactionRatio;
+    private int nextSegment;
+    private long timeOut = -1;
+    private long nextExpiration;
+    private Index index;
+    private ObjectName objectName;
+
+    public MappedPassivater() throws SystemException {
+        init(null);
+    }
+
+    @Override
+    public synchronized void init(Properties props) throws SystemException {
+        if (props == null) {
+            props = new Properties();
+        }
+
+        close();
+
+        final String dir = props.getProperty(EnvProps.IM_PASSIVATOR_PATH_PREFIX);
+
+        try {
+            if (dir != null) {
+                sessionDirectory = SystemInstance.get().getBase().getDirectory(dir);
+            } else {
+                sessionDirectory = new File(System.getProperty("java.io.tmpdir", File.separator + "tmp"));
+            }
+
+            if (!sessionDirectory.exists() && !sessionDirectory.mkdirs()) {
+                throw new IOException("Failed to create session directory: " + sessionDirectory.getAbsolutePath());
+            }
+
+            if (sessionDirectory.exists() && !sessionDirectory.isDirectory()) {
+                throw new IOException("Session directory exists as a file: " + sessionDirectory.getAbsolutePath());
+            }
+        } catch (final IOException e) {
+            throw new SystemException(getClass().getName() + ".init(): can't use directory prefix " + dir + ":" + e, e);
+        }
+
+        segmentSize = SystemInstance.get().getOptions().get("openejb.stateful.passivation.segment-size", 16 * 1024 * 1024);
+        compactionRatio = SystemInstance.get().getOptions().get("openejb.stateful.passivation.compaction-ratio", 25);
+        prefix = "passivation-" + ids.incrementAndGet() + "-";
+        nextSegment = 1;
+        nextExpiration = Long.MAX_VALUE;
+        index = new Index(1024);
+
+        final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management");
+        jmxName.set("j2eeType", "Passivation");
+        jmxName.set("name", prefix.substring(0, prefix.length() - 1));
+        objectName = jmxName.build();
+        LocalMBeanServer.registerDynamicWrapperSilently(stats, objectName);
+
+        logger.info("Using directory " + sessionDirectory + " for stateful session passivation");
+    }
+
+    @Override
+    public synchronized void passivate(final Map stateTable) throws SystemException {
+        if (index == null) {
+            throw new SystemException("Passivater is closed");
+        }
+
+        final long start = System.nanoTime();
+        final long now = System.currentTimeMillis();
+
+        // serialize everything first so the segment is written in one sequential pass
+        final List<byte[]> keys = new ArrayList<byte[]>(stateTable.size());
+        final List<byte[]> values = new ArrayList<byte[]>(stateTable.size());
+        final List<Integer> hashes = new ArrayList<Integer>(stateTable.size());
+        final List<Long> deadlines = new ArrayList<Long>(stateTable.size());
+        try {
+            for (final Object o : stateTable.entrySet()) {
+                final Map.Entry entry = (Map.Entry) o;
+                keys.add(Serializer.serialize(entry.getKey()));
+                values.add(Serializer.serialize(entry.getValue()));
+                hashes.add(entry.getKey().hashCode());
+                deadlines.add(deadline(entry.getValue(), now));
+            }
+        } catch (final NotSerializableException nse) {
+            logger.error("Passivation failed ", nse);
+            throw (SystemException) new SystemException("The type " + nse.getMessage() + " is not serializable as mandated by the EJB specification.").initCause(nse);
+        } catch (final IOException e) {
+            logger.error("Passivation failed ", e);
+            throw new SystemException(e);
+        }
+
+        try {
+            expire(now);
+
+            for (int i = 0; i < keys.size(); i++) {
+                final int hash = hashes.get(i);
+                final byte[] key = keys.get(i);
+
+                // a bean passivated twice without activation only keeps its latest state
+                final int previous = index.find(hash, key);
+                if (previous >= 0) {
+                    free(previous);
+                }
+
+                final byte[] value = values.get(i);
+                final int length = HEADER + key.length + value.length;
+                final Segment segment = writable(length);
+                final int offset = segment.position;
+
+                final ByteBuffer buffer = segment.buffer;
+                buffer.position(offset);
+                buffer.putInt(hash);
+                buffer.putInt(key.length);
+                buffer.putInt(value.length);
+                buffer.put(key);
+                buffer.put(value);
+
+                segment.position += length;
+                segment.live += length;
+                final long deadline = deadlines.get(i);
+                index.put(hash, segment.id, offset, length, deadline);
+                nextExpiration = Math.min(nextExpiration, deadline);
+            }
+        } catch (final IOException e) {
+            logger.error("Passivation failed ", e);
+            throw new SystemException(e);
+        } finally {
+            stats.passivated(keys.size(), System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public synchronized Object activate(final Object primaryKey) throws SystemException {
+        if (index == null) {
+            return null;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            final int slot = index.find(primaryKey.hashCode(), Serializer.serialize(primaryKey));
+            if (slot < 0) {
+                return null;
+            }
+            if (index.deadline(slot) <= System.currentTimeMillis()) { // timed out while passivated
+                free(slot);
+                stats.expirations.incrementAndGet();
+                return null;
+            }
+
+            final Segment segment = segment(index.segment(slot));
+            final ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(index.offset(slot) + 4);
+            final int keyLength = buffer.getInt();
+            final byte[] value = new byte[buffer.getInt()];
+            buffer.position(buffer.position() + keyLength);
+            buffer.get(value);
+
+            free(slot);
+
+            final ObjectInputStream ois = new EjbObjectInputStream(new ByteArrayInputStream(value));
+            try {
+                return ois.readObject();
+            } finally {
+                ois.close();
+            }
+        } catch (final Exception e) {
+            logger.info("Activation failed ", e);
+            throw new SystemException(e);
+        } finally {
+            stats.activated(System.nanoTime() - start);
+        }
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * @param timeOut the time in milliseconds after which a passivated bean without
+     *                a timeout of its own is dropped, zero or less to keep it until activated
+     */
+    public synchronized void setTimeOut(final long timeOut) {
+        this.timeOut = timeOut;
+    }
+
+    public synchronized long getTimeOut() {
+        return timeOut;
+    }
+
+    private long deadline(final Object bean, final long now) {
+        long beanTimeOut = timeOut;
+        if (bean instanceof Cache.TimeOut) {
+            final Duration duration = ((Cache.TimeOut) bean).getTimeOut();
+            if (duration != null) {
+                beanTimeOut = duration.getTime(TimeUnit.MILLISECONDS);
+            }
+        }
+        return beanTimeOut > 0 ? now + beanTimeOut : Long.MAX_VALUE;
+    }
+
+    /**
+     * Drops the beans which timed out while passivated, at most once per timeout.
+     */
+    private void expire(final long now) throws IOException {
+        if (now < nextExpiration) {
+            return;
+        }
+
+        long next = Long.MAX_VALUE;
+        for (int slot = 0; slot < index.capacity; slot++) {
+            if (!index.live(slot)) {
+                continue;
+            }
+            final long deadline = index.deadline(slot);
+            if (deadline <= now) {
+                free(slot); // compactions only move the records of the other slots
+                stats.expirations.incrementAndGet();
+            } else {
+                next = Math.min(next, deadline);
+            }
+        }
+        nextExpiration = next;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (objectName != null) {
+            LocalMBeanServer.unregisterSilently(objectName);
+            objectName = null;
+        }
+        for (final Segment segment : segments) {
+            segment.delete();
+        }
+        segments.clear();
+        index = null;
+    }
+
+    /**
+     * Releases the record referenced by the slot and
+     * reclaims the disk space of its segment if possible.
+     */
+    private void free(final int slot) throws IOException {
+        final Segment segment = segment(index.segment(slot));
+        segment.live -= index.length(slot);
+        index.remove(slot);
+
+        if (segment == current()) {
+            if (segment.live == 0) {
+                // nothing live, simply restart from the beginning of the file
+                segment.position = 0;
+            }
+            return;
+        }
+
+        if (segment.live == 0) {
+            release(segment);
+        } else if (segment.live * 100L < (long) segment.position * compactionRatio) {
+            compact(segment);
+        }
+    }
+
+    /**
+     * Moves the live records of a sealed segment to the current one.
+     */
+    private void compact(final Segment segment) throws IOException {
+        final long now = System.currentTimeMillis();
+        final ByteBuffer source = segment.buffer.duplicate();
+        int offset = 0;
+        while (offset < segment.position) {
+            source.position(offset);
+            final int hash = source.getInt();
+            final int length = HEADER + source.getInt() + source.getInt();
+
+            final int slot = index.locate(hash, segment.id, offset);
+            if (slot >= 0 && index.deadline(slot) <= now) { // no need to move a timed out bean
+                index.remove(slot);
+                stats.expirations.incrementAndGet();
+            } else if (slot >= 0) {
+                final Segment target = writable(length);
+                final ByteBuffer record = segment.buffer.duplicate();
+                record.position(offset);
+                record.limit(offset + length);
+
+                target.buffer.position(target.position);
+                target.buffer.put(record);
+                index.move(slot, target.id, target.position);
+                target.position += length;
+                target.live += length;
+            }
+            offset += length;
+        }
+
+        stats.compactions.incrementAndGet();
+        release(segment);
+    }
+
+    private void release(final Segment segment) {
+        segments.remove(segment);
+        segment.delete();
+    }
+
+    private Segment current() {
+        return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    }
+
+    /**
+     * @return a segment with room for the record, a sealed segment is compacted
+     * before its successor is handed out so the moved records can't take that room
+     */
+    private Segment writable(final int length) throws IOException {
+        while (true) {
+            final Segment current = current();
+            if (current != null && current.buffer.capacity() - current.position >= length) {
+                return current;
+            }
+
+            segments.add(new Segment(nextSegment++, Math.max(segmentSize, length)));
+
+            // the previous segment is now sealed and may already be mostly dead
+            if (current != null && current.live * 100L < (long) current.position * compactionRatio) {
+                if (current.live == 0) {
+                    release(current);
+                } else {
+                    compact(current);
+                }
+            }
+        }
+    }
+
+    private Segment segment(final int id) {
+        for (final Segment segment : segments) {
+            if (segment.id == id) {
+                return segment;
+            }
+        }
+        throw new IllegalStateException("Unknown passivation segment " + id);
+    }
+
+    private long diskUsage() {
+        long total = 0;
+        for (final Segment segment : segments) {
+            total += segment.buffer.capacity();
+        }
+        return total;
+    }
+
+    private long liveBytes() {
+        long total = 0;
+        for (final Segment segment : segments) {
+            total += segment.live;
+        }
+        return total;
+    }
+
+    private final class Segment {
+        private final int id;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        private int position;
+        private int live;
+
+        private Segment(final int id, final int size) throws IOException {
+            this.id = id;
+            this.file = new File(sessionDirectory, prefix + id + ".ser");
+            this.raf = new RandomAccessFile(file, "rw");
+            this.raf.setLength(size);
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        private void delete() {
+            unmap(buffer);
+            try {
+                raf.close();
+            } catch (final IOException e) {
+                // no-op
+            }
+            if (!file.delete()) {
+                // the mapping can keep the file locked on some platforms
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Releases the mapping now rather than when the buffer gets collected, until
+     * then the address space stays reserved and some platforms keep the file locked.
+     * The buffer must not be used anymore.
+     */
+    private static void unmap(final MappedByteBuffer buffer) {
+        try {
+            try {
+                // java 9 and later
+                final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } catch (final NoSuchMethodException e) {
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (final Exception e) {
+            logger.debug("Can't unmap a passivation segment, it will be when collected: " + e);
+        }
+    }
+
+    /**
+     * Open addressing hash table stored in a direct buffer.
+     * <p/>
+     * Each slot is four ints: hash, segment id (0 when empty,
+     * -1 when deleted), offset and length of the record, followed
+     * by the time in milliseconds at which the bean times out.
+     */
+    private final class Index {
+        private static final int SLOT = 24;
+        private static final int EMPTY = 0;
+        private static final int DELETED = -1;
+
+        private ByteBuffer table;
+        private int capacity;
+        private int mask;
+        private int size;
+        private int used;
+
+        private Index(final int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(final int capacity) {
+            this.capacity = capacity;
+            this.mask = capacity - 1;
+            this.table = ByteBuffer.allocateDirect(capacity * SLOT);
+            this.size = 0;
+            this.used = 0;
+        }
+
+        private int hash(final int slot) {
+            return table.getInt(slot * SLOT);
+        }
+
+        private int segment(final int slot) {
+            return table.getInt(slot * SLOT + 4);
+        }
+
+        private int offset(final int slot) {
+            return table.getInt(slot * SLOT + 8);
+        }
+
+        private int length(final int slot) {
+            return table.getInt(slot * SLOT + 12);
+        }
+
+        private long deadline(final int slot) {
+            return table.getLong(slot * SLOT + 16);
+        }
+
+        private boolean live(final int slot) {
+            return segment(slot) > EMPTY;
+        }
+
+        private int spread(final int hash) {
+            final int h = hash * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        /**
+         * @return the slot of the record holding this serialized key or -1
+         */
+        private int find(final int hash, final byte[] key) {
+            for (int slot = spread(hash); ; slot = (slot + 1) & mask) {
+                final int segment = segment(slot);
+                if (segment == EMPTY) {
+                    return -1;
+                }
+                if (segment != DELETED && hash(slot) == hash && sameKey(slot, key)) {
+                    return slot;
+                }
+            }
+        }
+
+        /**
+         * @return the slot pointing to the given record or -1 if the record is dead
+         */
+        private int locate(final int hash, final int segmentId, final int offset) {
+            for (int slot = spread(hash); ; slot = (slot + 1) & mask) {
+                final int segment = segment(slot);
+                if (segment == EMPTY) {
+                    return -1;
+                }
+                if (segment == segmentId && offset(slot) == offset) {
+                    return slot;
+                }
+            }
+        }
+
+        private boolean sameKey(final int slot, final byte[] key) {
+            final ByteBuffer record = MappedPassivater.this.segment(segment(slot)).buffer;
+            final int offset = offset(slot);
+            if (record.getInt(offset + 4) != key.length) {
+                return false;
+            }
+            final int start = offset + HEADER;
+            for (int i = 0; i < key.length; i++) {
+                if (record.get(start + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void put(final int hash, final int segmentId, final int offset, final int length, final long deadline) {
+            if ((used + 1) * 4 > capacity * 3) {
+                rehash();
+            }
+
+            int slot = spread(hash);
+            while (segment(slot) > EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            if (segment(slot) == EMPTY) {
+                used++;
+            }
+            write(slot, hash, segmentId, offset, length, deadline);
+            size++;
+        }
+
+        private void move(final int slot, final int segmentId, final int offset) {
+            table.putInt(slot * SLOT + 4, segmentId);
+            table.putInt(slot * SLOT + 8, offset);
+        }
+
+        private void remove(final int slot) {
+            table.putInt(slot * SLOT + 4, DELETED);
+            size--;
+        }
+
+        private void write(final int slot, final int hash, final int segmentId, final int offset, final int length, final long deadline) {
+            final int base = slot * SLOT;
+            table.putInt(base, hash);
+            table.putInt(base + 4, segmentId);
+            table.putInt(base + 8, offset);
+            table.putInt(base + 12, length);
+            table.putLong(base + 16, deadline);
+        }
+
+        private void rehash() {
+            final ByteBuffer old = table;
+            final int oldCapacity = capacity;
+
+            // only grow if the table is really full of live entries, otherwise just drop the tombstones
+            allocate(size * 2 >= oldCapacity ? oldCapacity * 2 : oldCapacity);
+
+            for (int i = 0; i < oldCapacity; i++) {
+                final int base = i * SLOT;
+                final int segment = old.getInt(base + 4);
+                if (segment > EMPTY) {
+                    final int hash = old.getInt(base);
+                    int slot = spread(hash);
+                    while (segment(slot) != EMPTY) {
+                        slot = (slot + 1) & mask;
+                    }
+                    write(slot, hash, segment, old.getInt(base + 8), old.getInt(base + 12), old.getLong(base + 16));
+                    used++;
+                    size++;
+                }
+            }
+        }
+    }
+
+    @MBean
+    @Internal
+    @Description("Memory mapped passivation statistics")
+    public final class Stats {
+        private final AtomicLong passivations = new AtomicLong();
+        private final AtomicLong passivationTime = new AtomicLong();
+        private final AtomicLong maxPassivationTime = new AtomicLong();
+        private final AtomicLong activations = new AtomicLong();
+        private final AtomicLong activationTime = new AtomicLong();
+        private final AtomicLong maxActivationTime = new AtomicLong();
+        private final AtomicLong compactions = new AtomicLong();
+        private final AtomicLong expirations = new AtomicLong();
+
+        private void passivated(final int count, final long nanos) {
+            passivations.addAndGet(count);
+            passivationTime.addAndGet(nanos);
+            max(maxPassivationTime, nanos);
+        }
+
+        private void activated(final long nanos) {
+            activations.incrementAndGet();
+            activationTime.addAndGet(nanos);
+            max(maxActivationTime, nanos);
+        }
+
+        private void max(final AtomicLong max, final long value) {
+            long current;
+            while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+                // retry
+            }
+        }
+
+        private double average(final AtomicLong time, final AtomicLong count) {
+            final long n = count.get();
+            return n == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(time.get()) / n;
+        }
+
+        @ManagedAttribute
+        @Description("Number of passivated beans")
+        public long getPassivations() {
+            return passivations.get();
+        }
+
+        @ManagedAttribute
+        @Description("Average time of a bulk passivation divided by its number of beans in microseconds")
+        public double getAveragePassivationTime() {
+            return average(passivationTime, passivations);
+        }
+
+        @ManagedAttribute
+        @Description("Longest bulk passivation in microseconds")
+        public long getMaxPassivationTime() {
+            return TimeUnit.NANOSECONDS.toMicros(maxPassivationTime.get());
+        }
+
+        @ManagedAttribute
+        @Description("Number of activations")
+        public long getActivations() {
+            return activations.get();
+        }
+
+        @ManagedAttribute
+        @Description("Average activation time in microseconds")
+        public double getAverageActivationTime() {
+            return average(activationTime, activations);
+        }
+
+        @ManagedAttribute
+        @Description("Longest activation in microseconds")
+        public long getMaxActivationTime() {
+            return TimeUnit.NANOSECONDS.toMicros(maxActivationTime.get());
+        }
+
+        @ManagedAttribute
+        @Description("Number of compacted segments")
+        public long getCompactions() {
+            return compactions.get();
+        }
+
+        @ManagedAttribute
+        @Description("Number of passivated beans dropped because they timed out")
+        public long getExpirations() {
+            return expirations.get();
+        }
+
+        @ManagedAttribute
+        @Description("Number of passivated beans waiting for activation")
+        public int getPassivatedBeans() {
+            synchronized (MappedPassivater.this) {
+                return index == null ? 0 : index.size;
+            }
+        }
+
+        @ManagedAttribute
+        @Description("Number of segment files")
+        public int getSegments() {
+            synchronized (MappedPassivater.this) {
+                return segments.size();
+            }
+        }
+
+        @ManagedAttribute
+        @Description("Bytes used on disk by the segment files")
+        public long getDiskUsage() {
+            synchronized (MappedPassivater.this) {
+                return diskUsage();
+            }
+        }
+
+        @ManagedAttribute
+        @Description("Bytes of the segment files holding passivated beans")
+        public long getLiveBytes() {
+            synchronized (MappedPassivater.this) {
+                return liveBytes();
+            }
+        }
+    }
+}
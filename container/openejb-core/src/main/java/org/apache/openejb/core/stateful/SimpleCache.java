@@ -22,6 +22,8 @@ import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -122,6 +124,13 @@ public class SimpleCache<K, V> implements Cache<K, V> {
         if (future != null) {
             future.cancel(false);
         }
+        if (passivator instanceof Closeable) {
+            try {
+                ((Closeable) passivator).close();
+            } catch (final IOException e) {
+                logger.warning("Can't close passivator " + passivator, e);
+            }
+        }
     }
 
     private synchronized void initScheduledExecutorService() {
@@ -554,6 +563,10 @@ public class SimpleCache<K, V> implements Cache<K, V> {
             return;
         }
 
+        if (passivator instanceof MappedPassivater) { // lets it drop the beans timing out while passivated
+            ((MappedPassivater) passivator).setTimeOut(getTimeOut());
+        }
+
         try {
             passivator.passivate(entriesToStore);
         } catch (final Exception e) {
@@ -33,6 +33,7 @@ import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.InstanceContext;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.stateful.Cache.CacheFilter;
@@ -45,8 +46,10 @@ import org.apache.openejb.core.transaction.JtaTransactionPolicy;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.core.transaction.TransactionPolicy.TransactionSynchronization;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.InvocationMetrics;
 import org.apache.openejb.monitoring.LocalMBeanServer;
 import org.apache.openejb.monitoring.ManagedMBean;
+import org.apache.openejb.monitoring.MethodMetrics;
 import org.apache.openejb.monitoring.ObjectNameBuilder;
 import org.apache.openejb.monitoring.StatsInterceptor;
 import org.apache.openejb.persistence.EntityManagerAlreadyRegisteredException;
@@ -294,6 +297,8 @@ public class StatefulContainer implements RpcContainer {
             }
         }
 
+        InvocationMetrics.get().remove(beanContext);
+
         deploymentsById.remove(beanContext.getDeploymentID());
         beanContext.setContainer(null);
         beanContext.setContainerData(null);
@@ -640,6 +645,10 @@ public class StatefulContainer implements RpcContainer {
     protected Object businessMethod(final BeanContext beanContext, final Object primKey, final Class callInterface, final Method callMethod, final Object[] args, final InterfaceType interfaceType) throws OpenEJBException {
         final ThreadContext callContext = new ThreadContext(beanContext, primKey);
         final ThreadContext oldCallContext = ThreadContext.enter(callContext);
+        final Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
+        final MethodMetrics metrics = beanContext.getInvocationDescriptor(callMethod).getMetrics();
+        long started = metrics.start();
+        boolean failed = false;
         final CurrentCreationalContext currentCreationalContext = beanContext.get(CurrentCreationalContext.class);
         try {
             // Security check
@@ -653,6 +662,7 @@ public class StatefulContainer implements RpcContainer {
             try {
                 // Obtain instance
                 instance = obtainInstance(primKey, callContext, callMethod, true);
+                started = metrics.obtained(started);
 
                 // Resume previous Bean transaction if there was one
                 if (txPolicy instanceof BeanTransactionPolicy) {
@@ -674,7 +684,6 @@ public class StatefulContainer implements RpcContainer {
                 callContext.setCurrentOperation(Operation.BUSINESS);
                 callContext.setCurrentAllowedStates(null);
                 callContext.setInvokedInterface(callInterface);
-                final Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
                 callContext.set(Method.class, runMethod);
 
                 if (currentCreationalContext != null) {
@@ -682,8 +691,8 @@ public class StatefulContainer implements RpcContainer {
                 }
 
                 // Initialize interceptor stack
-                final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
-                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, Operation.BUSINESS, interceptors, instance.interceptors);
+                final InterceptorChain chain = beanContext.getMethodInterceptorChain(runMethod, Operation.BUSINESS);
+                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, chain, instance.interceptors);
 
                 // Invoke
                 returnValue = interceptorStack.invoke(args);
@@ -697,7 +706,11 @@ public class StatefulContainer implements RpcContainer {
                 afterInvoke(callContext, txPolicy, instance);
             }
             return returnValue;
+        } catch (final OpenEJBException | RuntimeException | Error e) {
+            failed = true;
+            throw e;
         } finally {
+            metrics.end(started, failed);
             ThreadContext.exit(oldCallContext);
             if (currentCreationalContext != null) {
                 currentCreationalContext.remove();
@@ -20,6 +20,7 @@ package org.apache.openejb.core.stateless;
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.ContainerType;
 import org.apache.openejb.InterfaceType;
+import org.apache.openejb.InvocationDescriptor;
 import org.apache.openejb.OpenEJBException;
 import org.apache.openejb.ProxyInfo;
 import org.apache.openejb.SystemException;
@@ -27,12 +28,15 @@ import org.apache.openejb.cdi.CurrentCreationalContext;
 import org.apache.openejb.core.ExceptionType;
 import org.apache.openejb.core.Operation;
 import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.core.interceptor.InterceptorChain;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.core.interceptor.InterceptorStack;
 import org.apache.openejb.core.timer.EjbTimerService;
 import org.apache.openejb.core.transaction.TransactionPolicy;
 import org.apache.openejb.core.webservices.AddressingSupport;
 import org.apache.openejb.core.webservices.NoAddressingSupport;
+import org.apache.openejb.monitoring.InvocationMetrics;
+import org.apache.openejb.monitoring.MethodMetrics;
 import org.apache.openejb.monitoring.StatsInterceptor;
 import org.apache.openejb.spi.SecurityService;
 import org.apache.openejb.util.Duration;
@@ -129,6 +133,7 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
     @Override
     public void undeploy(final BeanContext beanContext) {
         this.instanceManager.undeploy(beanContext);
+        InvocationMetrics.get().remove(beanContext);
         final String id = (String) beanContext.getDeploymentID();
         beanContext.setContainer(null);
         beanContext.setContainerData(null);
@@ -155,13 +160,17 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
             type = beanContext.getInterfaceType(callInterface);
         }
 
-        final Method runMethod = beanContext.getMatchingBeanMethod(callMethod);
-        final ThreadContext callContext = new ThreadContext(beanContext, primKey);
+        final InvocationDescriptor descriptor = beanContext.getInvocationDescriptor(callMethod);
+        final Method runMethod = descriptor.getBeanMethod();
+        final ThreadContext callContext = ThreadContext.acquire(beanContext, primKey);
         final ThreadContext oldCallContext = ThreadContext.enter(callContext);
 
         Instance bean = null;
         final CurrentCreationalContext currentCreationalContext = beanContext.get(CurrentCreationalContext.class);
 
+        final MethodMetrics metrics = descriptor.getMetrics();
+        long started = metrics.start();
+        boolean failed = false;
         try {
 
             //Check auth before overriding context
@@ -184,6 +193,7 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
             }
 
             bean = this.instanceManager.getInstance(callContext);
+            started = metrics.obtained(started);
 
             callContext.setCurrentOperation(type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS);
             callContext.set(Method.class, runMethod);
@@ -191,8 +201,13 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
             if (currentCreationalContext != null) {
                 currentCreationalContext.set(bean.creationalContext);
             }
-            return _invoke(callMethod, runMethod, args, bean, callContext, type);
+            return _invoke(descriptor, args, bean, callContext, type);
+        } catch (final OpenEJBException | RuntimeException | Error e) {
+            failed = true;
+            throw e;
         } finally {
+            metrics.end(started, failed);
+
             if (bean != null) {
                 if (callContext.isDiscardInstance()) {
                     this.instanceManager.discardInstance(callContext, bean);
@@ -210,10 +225,11 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
     }
 
     @SuppressWarnings("ThrowFromFinallyBlock")
-    private Object _invoke(final Method callMethod, final Method runMethod, final Object[] args, final Instance instance, final ThreadContext callContext, final InterfaceType type)
+    private Object _invoke(final InvocationDescriptor descriptor, final Object[] args, final Instance instance, final ThreadContext callContext, final InterfaceType type)
         throws OpenEJBException {
         final BeanContext beanContext = callContext.getBeanContext();
-        final TransactionPolicy txPolicy = createTransactionPolicy(beanContext.getTransactionType(callMethod, type), callContext);
+        final Method runMethod = descriptor.getBeanMethod();
+        final TransactionPolicy txPolicy = createTransactionPolicy(descriptor.getTransactionType(type), callContext);
 
         Object returnValue = null;
         try {
@@ -221,9 +237,9 @@ public class StatelessContainer implements org.apache.openejb.RpcContainer {
                 callContext.setCurrentOperation(Operation.BUSINESS_WS);
                 returnValue = invokeWebService(args, beanContext, runMethod, instance);
             } else {
-                final List<InterceptorData> interceptors = beanContext.getMethodInterceptors(runMethod);
                 final Operation operation = type == InterfaceType.TIMEOUT ? Operation.TIMEOUT : Operation.BUSINESS;
-                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, operation, interceptors, instance.interceptors);
+                final InterceptorChain chain = descriptor.getInterceptorChain(operation);
+                final InterceptorStack interceptorStack = new InterceptorStack(instance.bean, runMethod, chain, instance.interceptors);
                 returnValue = interceptorStack.invoke(args);
             }
         } catch (final Throwable re) {// handle reflection exception
@@ -203,6 +203,7 @@ public class StatelessInstanceManager {
         }
 
     private Instance createInstance(final ThreadContext callContext, final BeanContext beanContext) throws ApplicationException {
+        final long start = System.nanoTime();
         try {
             final InstanceContext context = beanContext.newInstance();
             if (context.getBean() instanceof SessionBean) {
@@ -221,7 +222,13 @@ public class StatelessInstanceManager {
                     callContext.setCurrentOperation(originalOperation);
                 }
             }
-            return new Instance(context.getBean(), context.getInterceptors(), context.getCreationalContext());
+            final Instance instance = new Instance(context.getBean(), context.getInterceptors(), context.getCreationalContext());
+
+            final Data data = (Data) beanContext.getContainerData();
+            if (data != null) {
+                data.getPool().created(System.nanoTime() - start);
+            }
+            return instance;
 
         } catch (Throwable e) {
             if (e instanceof InvocationTargetException) {
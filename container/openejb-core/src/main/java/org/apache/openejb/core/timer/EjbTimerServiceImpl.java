@@ -85,6 +85,11 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
     public static final String EJB_TIMER_RETRY_ATTEMPTS = "EjbTimer.RetryAttempts";
     public static final String OPENEJB_QUARTZ_USE_TCCL = "openejb.quartz.use-TCCL";
 
+    /**
+     * quartz (default) or wheel to run the timers on a {@link TimingWheelScheduler}
+     */
+    public static final String OPENEJB_TIMER_ENGINE = "openejb.timer.engine";
+
     private boolean transacted;
     private int retryAttempts;
 
@@ -174,18 +179,23 @@ public class EjbTimerServiceImpl implements EjbTimerService, Serializable {
                 defaultQuartzConfiguration(properties, deployment, newInstance, useTccl);
 
                 try {
-                    // start in container context to avoid thread leaks
-                    final ClassLoader oldCl = Thread.currentThread().getContextClassLoader();
-                    if (useTccl) {
-                        Thread.currentThread().setContextClassLoader(deployment.getClassLoader());
-                    } else {
-                        Thread.currentThread().setContextClassLoader(EjbTimerServiceImpl.class.getClassLoader());
-                    }
-                    try {
-                        thisScheduler = new StdSchedulerFactory(properties).getScheduler();
+                    if ("wheel".equalsIgnoreCase(properties.getProperty(OPENEJB_TIMER_ENGINE, "quartz"))) {
+                        thisScheduler = new TimingWheelScheduler(properties);
                         thisScheduler.start();
-                    } finally {
-                        Thread.currentThread().setContextClassLoader(oldCl);
+                    } else {
+                        // start in container context to avoid thread leaks
+                        final ClassLoader oldCl = Thread.currentThread().getContextClassLoader();
+                        if (useTccl) {
+                            Thread.currentThread().setContextClassLoader(deployment.getClassLoader());
+                        } else {
+                            Thread.currentThread().setContextClassLoader(EjbTimerServiceImpl.class.getClassLoader());
+                        }
+                        try {
+                            thisScheduler = new StdSchedulerFactory(properties).getScheduler();
+                            thisScheduler.start();
+                        } finally {
+                            Thread.currentThread().setContextClassLoader(oldCl);
+                        }
                     }
 
                     //durability is configured with true, which means that the job will be kept in the store even if no trigger is attached to it.
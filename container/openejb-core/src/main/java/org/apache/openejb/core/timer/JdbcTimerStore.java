@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.core.ivm.EjbObjectInputStream;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.transaction.TransactionManager;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent timers kept in memory like {@link MemoryTimerStore} and written behind
+ * to a database through the {@link TimerJournal}.
+ * <p/>
+ * All the changes of a transaction reach the journal at once when it commits, a
+ * timeout of an interval or calendar timer doesn't write anything since the next
+ * fire time is computed again when the timer is loaded.  Timers created from
+ * the deployment descriptor or annotations are not stored, the container creates
+ * them again at each start.
+ * <p/>
+ * Used with timerStore.class=org.apache.openejb.core.timer.JdbcTimerStore, see
+ * {@link TimerJournal} for the configuration.
+ *
+ * @version $Rev$ $Date$
+ */
+public class JdbcTimerStore extends MemoryTimerStore {
+
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    private final TimerJournal journal;
+    private final Map<String, Map<Long, byte[]>> persisted = new ConcurrentHashMap<String, Map<Long, byte[]>>();
+
+    public JdbcTimerStore(final TransactionManager transactionManager) throws TimerStoreException {
+        this(transactionManager, TimerJournal.get());
+    }
+
+    public JdbcTimerStore(final TransactionManager transactionManager, final TimerJournal journal) {
+        super(transactionManager);
+        this.journal = journal;
+    }
+
+    @Override
+    public Collection<TimerData> loadTimers(final EjbTimerServiceImpl timerService, final String deploymentId) throws TimerStoreException {
+        final Map<Long, byte[]> timers = persisted(deploymentId);
+        if (!timers.isEmpty()) {
+            final BeanContext beanContext = SystemInstance.get().getComponent(ContainerSystem.class).getBeanContext(deploymentId);
+            final Thread thread = Thread.currentThread();
+            final ClassLoader loader = thread.getContextClassLoader();
+            if (beanContext != null) {
+                thread.setContextClassLoader(beanContext.getClassLoader());
+            }
+            try {
+                for (final Map.Entry<Long, byte[]> timer : timers.entrySet()) {
+                    try {
+                        restore(deserialize(timer.getValue()));
+                    } catch (final Exception e) {
+                        log.error("Can't load timer " + timer.getKey() + " of " + deploymentId, e);
+                    }
+                }
+            } finally {
+                thread.setContextClassLoader(loader);
+            }
+            // loaded once, the memory is up to date from now on
+            timers.clear();
+        }
+        return super.loadTimers(timerService, deploymentId);
+    }
+
+    @Override
+    protected long nextId(final String deploymentId) throws TimerStoreException {
+        // ids of the stored timers are taken
+        persisted(deploymentId);
+        return super.nextId(deploymentId);
+    }
+
+    @Override
+    protected void changed(final Collection<TimerData> added, final Collection<TimerData> removed) {
+        final Collection<TimerJournal.Change> changes = new ArrayList<TimerJournal.Change>(added.size() + removed.size());
+        for (final TimerData timerData : removed) {
+            if (isStored(timerData)) {
+                changes.add(TimerJournal.delete(timerData.getDeploymentId(), timerData.getId()));
+            }
+        }
+        for (final TimerData timerData : added) {
+            if (!isStored(timerData)) {
+                continue;
+            }
+            try {
+                changes.add(TimerJournal.put(timerData.getDeploymentId(), timerData.getId(), serialize(timerData)));
+            } catch (final NotSerializableException e) {
+                log.warning("Timer " + timerData + " is not serializable, it will be lost at shutdown: " + e.getMessage());
+            } catch (final IOException e) {
+                log.error("Can't serialize timer " + timerData, e);
+            }
+        }
+
+        try {
+            journal.record(changes);
+        } catch (final TimerStoreException e) {
+            log.error("Can't store the timer changes " + changes, e);
+        }
+    }
+
+    private Map<Long, byte[]> persisted(final String deploymentId) throws TimerStoreException {
+        Map<Long, byte[]> timers = persisted.get(deploymentId);
+        if (timers == null) {
+            synchronized (persisted) {
+                timers = persisted.get(deploymentId);
+                if (timers == null) {
+                    timers = new ConcurrentHashMap<Long, byte[]>(journal.load(deploymentId));
+                    for (final Long id : timers.keySet()) {
+                        skipIds(id);
+                    }
+                    persisted.put(deploymentId, timers);
+                }
+            }
+        }
+        return timers;
+    }
+
+    private static boolean isStored(final TimerData timerData) {
+        return timerData.isPersistent()
+            && !(timerData instanceof CalendarTimerData && ((CalendarTimerData) timerData).isAutoCreated());
+    }
+
+    private static byte[] serialize(final TimerData timerData) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(bytes);
+        try {
+            out.writeObject(timerData);
+        } finally {
+            out.close();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TimerData deserialize(final byte[] data) throws IOException, ClassNotFoundException {
+        final EjbObjectInputStream in = new EjbObjectInputStream(new ByteArrayInputStream(data));
+        try {
+            return (TimerData) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+}
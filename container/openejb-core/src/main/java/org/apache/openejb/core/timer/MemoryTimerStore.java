@@ -61,7 +61,7 @@ public class MemoryTimerStore implements TimerStore {
     public TimerData getTimer(final String deploymentId, final long timerId) {
         try {
             final TimerDataView tasks = getTasks();
-            return tasks.getTasks().get(timerId);
+            return tasks.getTask(timerId);
         } catch (final TimerStoreException e) {
             return null;
         }
@@ -98,7 +98,7 @@ public class MemoryTimerStore implements TimerStore {
     @Override
     public TimerData createCalendarTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final ScheduleExpression scheduleExpression, final TimerConfig timerConfig, final boolean auto)
         throws TimerStoreException {
-        final long id = counter.incrementAndGet();
+        final long id = nextId(deploymentId);
         final TimerData timerData = new CalendarTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, scheduleExpression, auto);
         getTasks().addTimerData(timerData);
         return timerData;
@@ -107,7 +107,7 @@ public class MemoryTimerStore implements TimerStore {
     @Override
     public TimerData createIntervalTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final Date initialExpiration, final long intervalDuration, final TimerConfig timerConfig)
         throws TimerStoreException {
-        final long id = counter.incrementAndGet();
+        final long id = nextId(deploymentId);
         final TimerData timerData = new IntervalTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, initialExpiration, intervalDuration);
         getTasks().addTimerData(timerData);
         return timerData;
@@ -115,7 +115,7 @@ public class MemoryTimerStore implements TimerStore {
 
     @Override
     public TimerData createSingleActionTimer(final EjbTimerServiceImpl timerService, final String deploymentId, final Object primaryKey, final Method timeoutMethod, final Date expiration, final TimerConfig timerConfig) throws TimerStoreException {
-        final long id = counter.incrementAndGet();
+        final long id = nextId(deploymentId);
         final TimerData timerData = new SingleActionTimerData(id, timerService, deploymentId, primaryKey, timeoutMethod, timerConfig, expiration);
         getTasks().addTimerData(timerData);
         return timerData;
@@ -134,6 +134,38 @@ public class MemoryTimerStore implements TimerStore {
     public void updateIntervalTimer(final TimerData timerData) {
     }
 
+    protected long nextId(final String deploymentId) throws TimerStoreException {
+        return counter.incrementAndGet();
+    }
+
+    /**
+     * Ids up to this one are taken, by timers restored from somewhere else for instance.
+     */
+    protected void skipIds(final long id) {
+        long current = counter.get();
+        while (current < id && !counter.compareAndSet(current, id)) {
+            current = counter.get();
+        }
+    }
+
+    /**
+     * Puts back a timer which already exists somewhere else, {@link #changed} isn't called.
+     */
+    protected void restore(final TimerData timerData) {
+        skipIds(timerData.getId());
+        taskStore.put(timerData.getId(), timerData);
+    }
+
+    /**
+     * Called once the changes are visible to every thread, with all the changes of a transaction at once.
+     *
+     * @param added   the new timers
+     * @param removed the timers which are gone, cancelled or expired
+     */
+    protected void changed(final Collection<TimerData> added, final Collection<TimerData> removed) {
+        // no-op
+    }
+
     private TimerDataView getTasks() throws TimerStoreException {
         Transaction transaction = null;
         int status = Status.STATUS_NO_TRANSACTION;
@@ -161,6 +193,8 @@ public class MemoryTimerStore implements TimerStore {
     private interface TimerDataView {
         Map<Long, TimerData> getTasks();
 
+        TimerData getTask(Long timerId);
+
         void addTimerData(TimerData timerData);
 
         void removeTimerData(Long timerId);
@@ -172,14 +206,23 @@ public class MemoryTimerStore implements TimerStore {
             return new TreeMap<Long, TimerData>(taskStore);
         }
 
+        @Override
+        public TimerData getTask(final Long timerId) {
+            return taskStore.get(timerId);
+        }
+
         @Override
         public void addTimerData(final TimerData timerData) {
             taskStore.put(timerData.getId(), timerData);
+            changed(Collections.singletonList(timerData), Collections.<TimerData>emptyList());
         }
 
         @Override
         public void removeTimerData(final Long timerId) {
-            taskStore.remove(timerId);
+            final TimerData removed = taskStore.remove(timerId);
+            if (removed != null) {
+                changed(Collections.<TimerData>emptyList(), Collections.singletonList(removed));
+            }
         }
     }
 
@@ -234,6 +277,19 @@ public class MemoryTimerStore implements TimerStore {
             return Collections.unmodifiableMap(allTasks);
         }
 
+        @Override
+        public TimerData getTask(final Long timerId) {
+            checkThread();
+            if (remove.contains(timerId)) {
+                return null;
+            }
+            final TimerData timerData = add.get(timerId);
+            if (timerData != null) {
+                return timerData;
+            }
+            return taskStore.get(timerId);
+        }
+
         @Override
         public void addTimerData(final TimerData timerData) {
             checkThread();
@@ -275,9 +331,17 @@ public class MemoryTimerStore implements TimerStore {
             taskStore.putAll(add);
 
             // remove work
-            taskStore.keySet().removeAll(remove);
+            final Collection<TimerData> removed = new ArrayList<TimerData>(remove.size());
+            for (final Long timerId : remove) {
+                final TimerData timerData = taskStore.remove(timerId);
+                if (timerData != null) {
+                    removed.add(timerData);
+                }
+            }
 
             tasksByTransaction.remove(tansactionReference.get());
+
+            changed(add.values(), removed);
         }
     }
 }
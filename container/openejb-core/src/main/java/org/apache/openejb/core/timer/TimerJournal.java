@@ -0,0 +1,659 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.assembler.classic.event.AssemblerDestroyed;
+import org.apache.openejb.assembler.classic.event.ContainerSystemPreDestroy;
+import org.apache.openejb.loader.Options;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.observer.Observes;
+import org.apache.openejb.spi.ContainerSystem;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind persistence of the timers of the {@link JdbcTimerStore}.
+ * <p/>
+ * Changes are appended to a local journal, which is cheap and survives a crash,
+ * and a background thread moves them to the database in JDBC batches.  Changes
+ * to the same timer waiting for the same flush are coalesced, only the last one
+ * reaches the database.
+ * <p/>
+ * The journal is cut in segments.  A segment is deleted once all its changes are
+ * in the database, the segments a crash leaves behind are replayed when the
+ * journal opens.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TimerJournal {
+
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    public static final String OPENEJB_TIMER_STORE_JDBC = "openejb.timer.store.jdbc.";
+
+    /**
+     * Id of the DataSource resource, better not JTA managed since writes happen outside of any transaction
+     */
+    public static final String DATASOURCE = OPENEJB_TIMER_STORE_JDBC + "datasource";
+    public static final String TABLE = OPENEJB_TIMER_STORE_JDBC + "table";
+    public static final String CREATE_TABLE = OPENEJB_TIMER_STORE_JDBC + "create-table";
+    public static final String DATA_TYPE = OPENEJB_TIMER_STORE_JDBC + "data-type";
+    public static final String JOURNAL = OPENEJB_TIMER_STORE_JDBC + "journal";
+    public static final String SYNC = OPENEJB_TIMER_STORE_JDBC + "journal.sync";
+    public static final String FLUSH_INTERVAL = OPENEJB_TIMER_STORE_JDBC + "flush.interval";
+    public static final String BATCH_SIZE = OPENEJB_TIMER_STORE_JDBC + "batch.size";
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final DataSource dataSource;
+    private final String table;
+    private final File directory;
+    private final boolean sync;
+    private final long flushInterval;
+    private final int batchSize;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition full = lock.newCondition();
+    private final Lock flushing = new ReentrantLock();
+
+    // guarded by lock
+    private final Map<Key, Change> pending = new LinkedHashMap<Key, Change>();
+    private int segment;
+    private FileOutputStream file;
+    private DataOutputStream out;
+    private boolean stopped;
+    private Thread flusher;
+
+    /**
+     * @param directory     where the journal segments go
+     * @param sync          force every write to the disk
+     * @param flushInterval milliseconds between two writes to the database
+     * @param batchSize     pending changes triggering a write before the interval
+     */
+    public TimerJournal(final DataSource dataSource, final String table, final File directory, final boolean sync, final long flushInterval, final int batchSize) {
+        this.dataSource = dataSource;
+        this.table = table;
+        this.directory = directory;
+        this.sync = sync;
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the journal of this container, opened on the first call
+     */
+    public static synchronized TimerJournal get() throws TimerStoreException {
+        final SystemInstance system = SystemInstance.get();
+        TimerJournal journal = system.getComponent(TimerJournal.class);
+        if (journal != null) {
+            return journal;
+        }
+
+        final Options options = system.getOptions();
+        final String id = options.get(DATASOURCE, (String) null);
+        if (id == null) {
+            throw new TimerStoreException("No DataSource for the timers, set " + DATASOURCE);
+        }
+
+        final Object dataSource;
+        try {
+            dataSource = system.getComponent(ContainerSystem.class).getJNDIContext().lookup("openejb:Resource/" + id);
+        } catch (final NamingException e) {
+            throw new TimerStoreException("Unknown DataSource " + id, e);
+        }
+        if (!DataSource.class.isInstance(dataSource)) {
+            throw new TimerStoreException("Resource " + id + " is not a DataSource: " + dataSource);
+        }
+
+        final File directory;
+        try {
+            final String path = options.get(JOURNAL, (String) null);
+            directory = path != null ? new File(path) : new File(system.getBase().getDirectory("data", true), "timers");
+        } catch (final IOException e) {
+            throw new TimerStoreException("Can't create the timer journal directory", e);
+        }
+
+        journal = new TimerJournal(DataSource.class.cast(dataSource),
+            options.get(TABLE, "OPENEJB_TIMERS"),
+            directory,
+            options.get(SYNC, true),
+            options.get(FLUSH_INTERVAL, 100L),
+            options.get(BATCH_SIZE, 500));
+        if (options.get(CREATE_TABLE, true)) {
+            journal.createTable(options.get(DATA_TYPE, "BLOB"));
+        }
+        journal.open();
+
+        system.setComponent(TimerJournal.class, journal);
+        system.addObserver(journal);
+        return journal;
+    }
+
+    public void createTable(final String dataType) {
+        try {
+            final Connection connection = dataSource.getConnection();
+            try {
+                final Statement statement = connection.createStatement();
+                try {
+                    statement.execute("CREATE TABLE " + table + " (DEPLOYMENT_ID VARCHAR(255) NOT NULL, TIMER_ID BIGINT NOT NULL, DATA " + dataType + ", PRIMARY KEY (DEPLOYMENT_ID, TIMER_ID))");
+                } finally {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+        } catch (final SQLException e) {
+            log.debug("Not creating table " + table + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replays what a previous run left in the journal and starts writing to the database.
+     */
+    public void open() throws TimerStoreException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new TimerStoreException("Can't create the timer journal directory " + directory);
+        }
+
+        lock.lock();
+        try {
+            for (final File previous : segments(Integer.MAX_VALUE)) {
+                replay(previous);
+                segment = Math.max(segment, number(previous));
+            }
+            if (!pending.isEmpty()) {
+                log.info("Recovered " + pending.size() + " timer changes from " + directory);
+            }
+            rotate();
+
+            flusher = new DaemonThreadFactory("OpenEJB.timer.journal").newThread(new Runnable() {
+                @Override
+                public void run() {
+                    flushLoop();
+                }
+            });
+            flusher.start();
+        } catch (final IOException e) {
+            throw new TimerStoreException("Can't open the timer journal in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flush();
+        } catch (final TimerStoreException e) {
+            log.warning("Recovered timer changes not written to the database yet", e);
+        }
+    }
+
+    public static Change put(final String deploymentId, final long id, final byte[] data) {
+        return new Change(new Key(deploymentId, id), data);
+    }
+
+    public static Change delete(final String deploymentId, final long id) {
+        return new Change(new Key(deploymentId, id), null);
+    }
+
+    /**
+     * Journals the changes, the database gets them later.
+     */
+    public void record(final Collection<Change> changes) throws TimerStoreException {
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (out == null) {
+                throw new TimerStoreException("The timer journal is closed");
+            }
+
+            for (final Change change : changes) {
+                write(out, change);
+            }
+            out.flush();
+            if (sync) {
+                file.getFD().sync();
+            }
+
+            for (final Change change : changes) {
+                pending.put(change.key, change);
+            }
+            if (pending.size() >= batchSize) {
+                full.signal();
+            }
+        } catch (final IOException e) {
+            throw new TimerStoreException("Can't write the timer journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the serialized timers of the deployment, including the changes not in the database yet
+     */
+    public Map<Long, byte[]> load(final String deploymentId) throws TimerStoreException {
+        final Map<Long, byte[]> timers = new HashMap<Long, byte[]>();
+        try {
+            final Connection connection = dataSource.getConnection();
+            try {
+                final PreparedStatement select = connection.prepareStatement("SELECT TIMER_ID, DATA FROM " + table + " WHERE DEPLOYMENT_ID = ?");
+                try {
+                    select.setString(1, deploymentId);
+                    final ResultSet rs = select.executeQuery();
+                    try {
+                        while (rs.next()) {
+                            timers.put(rs.getLong(1), rs.getBytes(2));
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    select.close();
+                }
+            } finally {
+                connection.close();
+            }
+        } catch (final SQLException e) {
+            throw new TimerStoreException("Can't load the timers of " + deploymentId, e);
+        }
+
+        lock.lock();
+        try {
+            for (final Change change : pending.values()) {
+                if (change.key.deploymentId.equals(deploymentId)) {
+                    if (change.data == null) {
+                        timers.remove(change.key.id);
+                    } else {
+                        timers.put(change.key.id, change.data);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return timers;
+    }
+
+    /**
+     * Writes the pending changes to the database in one transaction.
+     */
+    public void flush() throws TimerStoreException {
+        flushing.lock();
+        try {
+            final Collection<Change> changes;
+            final int written;
+            lock.lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                // new changes go to a new segment so the current one can go once in the database
+                written = segment;
+                if (out != null) {
+                    rotate();
+                }
+
+                changes = new ArrayList<Change>(pending.values());
+                pending.clear();
+            } catch (final IOException e) {
+                throw new TimerStoreException("Can't rotate the timer journal", e);
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                write(changes);
+            } catch (final SQLException e) {
+                lock.lock();
+                try {
+                    restore(changes);
+                } finally {
+                    lock.unlock();
+                }
+                throw new TimerStoreException("Can't write the timers to the database", e);
+            }
+
+            for (final File done : segments(written)) {
+                if (!done.delete()) {
+                    log.warning("Can't delete timer journal segment " + done);
+                }
+            }
+        } finally {
+            flushing.unlock();
+        }
+    }
+
+    public int getPending() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the background writes and writes what is pending, later changes
+     * stay in the journal until the next start.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            if (stopped) {
+                return;
+            }
+            stopped = true;
+            full.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flush();
+        } catch (final TimerStoreException e) {
+            log.warning("Timer changes left in the journal " + directory, e);
+        }
+    }
+
+    public void close() {
+        stop();
+
+        lock.lock();
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+        } catch (final IOException e) {
+            log.warning("Can't close the timer journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("UnusedParameters")
+    public void preDestroy(@Observes final ContainerSystemPreDestroy event) {
+        // the DataSource is still there
+        stop();
+    }
+
+    @SuppressWarnings("UnusedParameters")
+    public void destroyed(@Observes final AssemblerDestroyed event) {
+        close();
+    }
+
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                if (!stopped && pending.size() < batchSize) {
+                    full.await(flushInterval, TimeUnit.MILLISECONDS);
+                }
+                if (stopped) {
+                    return;
+                }
+            } catch (final InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                flush();
+            } catch (final TimerStoreException e) {
+                log.warning(e.getMessage(), e);
+                try {
+                    // the database may be down, the journal keeps everything meanwhile
+                    Thread.sleep(Math.max(1000, flushInterval));
+                } catch (final InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void write(final Collection<Change> changes) throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        try {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                final PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table + " WHERE DEPLOYMENT_ID = ? AND TIMER_ID = ?");
+                try {
+                    int batched = 0;
+                    for (final Change change : changes) {
+                        delete.setString(1, change.key.deploymentId);
+                        delete.setLong(2, change.key.id);
+                        delete.addBatch();
+                        if (++batched % batchSize == 0) {
+                            delete.executeBatch();
+                        }
+                    }
+                    delete.executeBatch();
+                } finally {
+                    delete.close();
+                }
+
+                final PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " (DEPLOYMENT_ID, TIMER_ID, DATA) VALUES (?, ?, ?)");
+                try {
+                    int batched = 0;
+                    for (final Change change : changes) {
+                        if (change.data == null) {
+                            continue;
+                        }
+                        insert.setString(1, change.key.deploymentId);
+                        insert.setLong(2, change.key.id);
+                        insert.setBytes(3, change.data);
+                        insert.addBatch();
+                        if (++batched % batchSize == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                    if (batched % batchSize != 0) {
+                        insert.executeBatch();
+                    }
+                } finally {
+                    insert.close();
+                }
+
+                connection.commit();
+            } catch (final SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Puts back changes which didn't make it to the database, unless they have been superseded since.
+     */
+    private void restore(final Collection<Change> changes) {
+        for (final Change change : changes) {
+            if (!pending.containsKey(change.key)) {
+                pending.put(change.key, change);
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        segment++;
+        file = new FileOutputStream(new File(directory, SEGMENT_PREFIX + segment + SEGMENT_SUFFIX));
+        out = new DataOutputStream(new BufferedOutputStream(file));
+    }
+
+    /**
+     * @return the segments up to the given one, oldest first
+     */
+    private Collection<File> segments(final int last) {
+        final Map<Integer, File> segments = new TreeMap<Integer, File>();
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                final int number = number(file);
+                if (number > 0 && number <= last) {
+                    segments.put(number, file);
+                }
+            }
+        }
+        return segments.values();
+    }
+
+    private static int number(final File file) {
+        final String name = file.getName();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void replay(final File segment) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+        try {
+            while (true) {
+                final Change change;
+                try {
+                    change = read(in);
+                } catch (final EOFException e) {
+                    // end of the segment, or a record cut by the crash
+                    break;
+                }
+                pending.put(change.key, change);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(final DataOutputStream out, final Change change) throws IOException {
+        out.writeByte(change.data == null ? DELETE : PUT);
+        out.writeUTF(change.key.deploymentId);
+        out.writeLong(change.key.id);
+        if (change.data != null) {
+            out.writeInt(change.data.length);
+            out.write(change.data);
+        }
+    }
+
+    private static Change read(final DataInputStream in) throws IOException {
+        final byte type = in.readByte();
+        final String deploymentId = in.readUTF();
+        final long id = in.readLong();
+        if (type == DELETE) {
+            return delete(deploymentId, id);
+        } else if (type != PUT) {
+            throw new EOFException("Unknown record type " + type);
+        }
+        final byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return put(deploymentId, id, data);
+    }
+
+    public static final class Change {
+
+        private final Key key;
+        private final byte[] data;
+
+        private Change(final Key key, final byte[] data) {
+            this.key = key;
+            this.data = data;
+        }
+
+        @Override
+        public String toString() {
+            return (data == null ? "delete " : "put ") + key;
+        }
+    }
+
+    private static final class Key {
+
+        private final String deploymentId;
+        private final long id;
+
+        private Key(final String deploymentId, final long id) {
+            this.deploymentId = deploymentId;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return id == key.id && deploymentId.equals(key.deploymentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * deploymentId.hashCode() + (int) (id ^ (id >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return deploymentId + "/" + id;
+        }
+    }
+}
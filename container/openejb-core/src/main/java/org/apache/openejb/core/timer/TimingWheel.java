@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel, scheduling and cancelling a task costs the
+ * same whatever the number of pending tasks.
+ * <p/>
+ * Time is cut in ticks.  Each level of the wheel is a ring of buckets, a bucket
+ * of the first level holds the tasks due in one tick, a bucket of the next level
+ * the tasks due in a whole rotation of the level below, and so on.  A task goes
+ * in the finest level able to hold its deadline and moves down a level each
+ * time its bucket comes up, until it expires from the first one.
+ * <p/>
+ * A single daemon thread advances the wheel, expired tasks are run by the
+ * given executor.  Deadlines are wall clock milliseconds and a task never
+ * runs before its deadline, it may run up to a tick later.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TimingWheel {
+
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    private static final int LEVELS = 6;
+
+    private final String name;
+    private final long tick;
+    private final int size;
+    private final Executor executor;
+    private final Bucket[][] levels;
+    private final long[] spans;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // guarded by lock
+    private long current;
+    private int pending;
+    private boolean stopped;
+    private Thread ticker;
+
+    /**
+     * @param tick     milliseconds per tick
+     * @param size     buckets per level
+     * @param executor runs the expired tasks
+     */
+    public TimingWheel(final String name, final long tick, final int size, final Executor executor) {
+        if (tick < 1) {
+            throw new IllegalArgumentException("tick must be positive: " + tick);
+        }
+        if (size < 2) {
+            throw new IllegalArgumentException("size must be at least 2: " + size);
+        }
+        this.name = name;
+        this.tick = tick;
+        this.size = size;
+        this.executor = executor;
+
+        levels = new Bucket[LEVELS][size];
+        spans = new long[LEVELS];
+        long span = 1;
+        for (int level = 0; level < LEVELS; level++) {
+            spans[level] = span;
+            for (int i = 0; i < size; i++) {
+                levels[level][i] = new Bucket();
+            }
+            span = span > Long.MAX_VALUE / size ? Long.MAX_VALUE : span * size;
+        }
+
+        current = System.currentTimeMillis() / tick;
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            if (ticker != null || stopped) {
+                return;
+            }
+            ticker = new DaemonThreadFactory(name).newThread(new Runnable() {
+                @Override
+                public void run() {
+                    TimingWheel.this.run();
+                }
+            });
+            ticker.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops all the pending tasks and stops the wheel thread.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            for (final Bucket[] level : levels) {
+                for (final Bucket bucket : level) {
+                    bucket.drain();
+                }
+            }
+            pending = 0;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of tasks waiting for their deadline
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param deadline wall clock time in milliseconds, a past deadline runs the task right away
+     */
+    public Timeout schedule(final Runnable task, final long deadline) {
+        final Timeout timeout = new Timeout(task, deadline, ticks(deadline));
+
+        final boolean expired;
+        lock.lock();
+        try {
+            if (stopped) {
+                throw new IllegalStateException(name + " is stopped");
+            }
+            expired = !place(timeout);
+            if (!expired && ++pending == 1) {
+                // the wheel thread doesn't tick while the wheel is empty
+                changed.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (expired) {
+            execute(timeout);
+        }
+        return timeout;
+    }
+
+    private long ticks(final long deadline) {
+        // rounded up so the task doesn't run before its deadline
+        return deadline <= 0 ? 0 : (deadline - 1) / tick + 1;
+    }
+
+    /**
+     * @return false if the timeout is already due
+     */
+    private boolean place(final Timeout timeout) {
+        final long due = timeout.tick;
+        if (due <= current) {
+            return false;
+        }
+
+        for (int level = 0; level < LEVELS; level++) {
+            final long span = spans[level];
+            if (due / span - current / span < size) {
+                levels[level][(int) (due / span % size)].add(timeout);
+                return true;
+            }
+        }
+
+        // beyond the last level, parked in its farthest bucket and placed again when it comes up
+        final long span = spans[LEVELS - 1];
+        levels[LEVELS - 1][(int) ((current / span + size - 1) % size)].add(timeout);
+        return true;
+    }
+
+    private boolean cancel(final Timeout timeout) {
+        lock.lock();
+        try {
+            if (timeout.bucket == null) {
+                return false;
+            }
+            timeout.bucket.remove(timeout);
+            pending--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        final List<Timeout> expired = new ArrayList<Timeout>();
+        while (true) {
+            lock.lock();
+            try {
+                long now;
+                while (true) {
+                    if (stopped) {
+                        return;
+                    }
+                    now = System.currentTimeMillis() / tick;
+                    if (pending == 0) {
+                        // nothing can be missed, skip the empty ticks
+                        current = Math.max(current, now);
+                        changed.await();
+                    } else if (now > current) {
+                        break;
+                    } else {
+                        changed.await((current + 1) * tick - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                    }
+                }
+                advance(now, expired);
+            } catch (final InterruptedException e) {
+                Thread.interrupted();
+            } finally {
+                lock.unlock();
+            }
+
+            for (final Timeout timeout : expired) {
+                execute(timeout);
+            }
+            expired.clear();
+        }
+    }
+
+    private void advance(final long now, final List<Timeout> expired) {
+        if (now - current > (long) size * size) {
+            // the thread was held up for a long time, cheaper to sort everything again than to catch up tick by tick
+            final List<Timeout> all = new ArrayList<Timeout>(pending);
+            for (final Bucket[] level : levels) {
+                for (final Bucket bucket : level) {
+                    bucket.drainTo(all);
+                }
+            }
+            current = now;
+            replace(all, expired);
+            return;
+        }
+
+        final List<Timeout> cascaded = new ArrayList<Timeout>();
+        while (current < now) {
+            current++;
+
+            // upper buckets coming up move down, from the top so nothing is skipped
+            for (int level = LEVELS - 1; level > 0; level--) {
+                final long span = spans[level];
+                if (current % span == 0) {
+                    levels[level][(int) (current / span % size)].drainTo(cascaded);
+                }
+            }
+            replace(cascaded, expired);
+            cascaded.clear();
+
+            final int before = expired.size();
+            levels[0][(int) (current % size)].drainTo(expired);
+            pending -= expired.size() - before;
+        }
+    }
+
+    private void replace(final List<Timeout> timeouts, final List<Timeout> expired) {
+        for (final Timeout timeout : timeouts) {
+            if (!place(timeout)) {
+                expired.add(timeout);
+                pending--;
+            }
+        }
+    }
+
+    private void execute(final Timeout timeout) {
+        try {
+            executor.execute(timeout.task);
+        } catch (final RejectedExecutionException e) {
+            log.error("Failed to execute timer task", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheel{" +
+            "name='" + name + '\'' +
+            ", tick=" + tick +
+            ", size=" + size +
+            ", pending=" + size() +
+            '}';
+    }
+
+    public final class Timeout {
+
+        private final Runnable task;
+        private final long deadline;
+        private final long tick;
+
+        // guarded by the wheel lock
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(final Runnable task, final long deadline, final long tick) {
+            this.task = task;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        /**
+         * @return false if the task already ran, or is about to
+         */
+        public boolean cancel() {
+            return TimingWheel.this.cancel(this);
+        }
+    }
+
+    /**
+     * Doubly linked so a cancelled timeout leaves its bucket in constant time.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        private void add(final Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) {
+                head.previous = timeout;
+            }
+            head = timeout;
+        }
+
+        private void remove(final Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+
+        private void drainTo(final List<Timeout> timeouts) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                final Timeout next = timeout.next;
+                timeout.bucket = null;
+                timeout.previous = null;
+                timeout.next = null;
+                timeouts.add(timeout);
+                timeout = next;
+            }
+            head = null;
+        }
+
+        private void drain() {
+            drainTo(new ArrayList<Timeout>());
+        }
+    }
+}
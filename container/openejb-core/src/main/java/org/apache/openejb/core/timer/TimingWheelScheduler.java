@@ -0,0 +1,1444 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.quartz.Calendar;
+import org.apache.openejb.quartz.InterruptableJob;
+import org.apache.openejb.quartz.Job;
+import org.apache.openejb.quartz.JobDataMap;
+import org.apache.openejb.quartz.JobDetail;
+import org.apache.openejb.quartz.JobExecutionContext;
+import org.apache.openejb.quartz.JobExecutionException;
+import org.apache.openejb.quartz.JobKey;
+import org.apache.openejb.quartz.JobListener;
+import org.apache.openejb.quartz.JobPersistenceException;
+import org.apache.openejb.quartz.ListenerManager;
+import org.apache.openejb.quartz.Matcher;
+import org.apache.openejb.quartz.ObjectAlreadyExistsException;
+import org.apache.openejb.quartz.Scheduler;
+import org.apache.openejb.quartz.SchedulerContext;
+import org.apache.openejb.quartz.SchedulerException;
+import org.apache.openejb.quartz.SchedulerListener;
+import org.apache.openejb.quartz.SchedulerMetaData;
+import org.apache.openejb.quartz.Trigger;
+import org.apache.openejb.quartz.TriggerBuilder;
+import org.apache.openejb.quartz.TriggerKey;
+import org.apache.openejb.quartz.TriggerListener;
+import org.apache.openejb.quartz.UnableToInterruptJobException;
+import org.apache.openejb.quartz.core.ListenerManagerImpl;
+import org.apache.openejb.quartz.impl.JobExecutionContextImpl;
+import org.apache.openejb.quartz.impl.StdSchedulerFactory;
+import org.apache.openejb.quartz.impl.matchers.GroupMatcher;
+import org.apache.openejb.quartz.impl.matchers.StringMatcher;
+import org.apache.openejb.quartz.simpl.SimpleJobFactory;
+import org.apache.openejb.quartz.spi.JobFactory;
+import org.apache.openejb.quartz.spi.OperableTrigger;
+import org.apache.openejb.quartz.spi.TriggerFiredBundle;
+import org.apache.openejb.quartz.utils.Key;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Quartz {@link Scheduler} running its triggers on a {@link TimingWheel} instead
+ * of the QuartzScheduler thread polling a job store, selected with
+ * {@link EjbTimerServiceImpl#OPENEJB_TIMER_ENGINE}=wheel.
+ * <p/>
+ * Jobs, triggers and calendars live in memory with the semantic of the RAMJobStore:
+ * the triggers keep computing their fire times, {@link EJBCronTrigger} included,
+ * misfires follow the trigger instruction, the jobs are created by the {@link JobFactory}
+ * and the listeners of the {@link ListenerManager} are notified.  Only the wait for
+ * the next fire time differs: each trigger waits in the wheel so scheduling and
+ * cancelling a timer don't depend on the number of timers.
+ *
+ * @version $Rev$ $Date$
+ */
+public class TimingWheelScheduler implements Scheduler {
+
+    private static final Logger log = Logger.getInstance(LogCategory.TIMER, "org.apache.openejb.util.resources");
+
+    public static final String OPENEJB_TIMER_WHEEL_TICK = "openejb.timer.wheel.tick";
+    public static final String OPENEJB_TIMER_WHEEL_SIZE = "openejb.timer.wheel.size";
+
+    // same as the RAMJobStore
+    private static final long MISFIRE_THRESHOLD = 5000;
+
+    private final String name;
+    private final String instanceId;
+    private final DefaultTimerThreadPoolAdapter threadPool;
+    private final TimingWheel wheel;
+    private final SchedulerContext context = new SchedulerContext();
+    private final ListenerManager listenerManager = new ListenerManagerImpl();
+    private final Map<String, JobExecutionContext> executing = new ConcurrentHashMap<String, JobExecutionContext>();
+    private final AtomicLong fireCount = new AtomicLong();
+    private final AtomicLong manualTriggers = new AtomicLong();
+    private final AtomicInteger executed = new AtomicInteger();
+    private volatile JobFactory jobFactory = new SimpleJobFactory();
+
+    // the job store, guarded by the lock
+    private final Object lock = new Object();
+    private final Map<JobKey, JobDetail> jobs = new HashMap<JobKey, JobDetail>();
+    private final Map<TriggerKey, Scheduled> triggers = new HashMap<TriggerKey, Scheduled>();
+    private final Map<String, Calendar> calendars = new HashMap<String, Calendar>();
+    private final Set<String> pausedTriggerGroups = new HashSet<String>();
+    private final Set<String> pausedJobGroups = new HashSet<String>();
+    private final Set<JobKey> blockedJobs = new HashSet<JobKey>();
+
+    private volatile boolean standby = true;
+    private volatile boolean shutdown;
+    private volatile Date startTime;
+
+    public TimingWheelScheduler(final Properties properties) throws SchedulerException {
+        instanceId = properties.getProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_ID, "OpenEJB");
+        name = properties.getProperty(StdSchedulerFactory.PROP_SCHED_INSTANCE_NAME, "OpenEJB-TimerService-Scheduler") + "_" + instanceId;
+
+        threadPool = new DefaultTimerThreadPoolAdapter();
+        if (properties.containsKey(DefaultTimerThreadPoolAdapter.OPENEJB_TIMER_POOL_SIZE)) {
+            threadPool.setThreadCount(Integer.parseInt(properties.getProperty(DefaultTimerThreadPoolAdapter.OPENEJB_TIMER_POOL_SIZE)));
+        }
+        threadPool.setInstanceName(name);
+        threadPool.setInstanceId(instanceId);
+        threadPool.initialize();
+
+        wheel = new TimingWheel(name, Long.parseLong(properties.getProperty(OPENEJB_TIMER_WHEEL_TICK, "10")),
+            Integer.parseInt(properties.getProperty(OPENEJB_TIMER_WHEEL_SIZE, "256")),
+            new Executor() {
+                @Override
+                public void execute(final Runnable command) {
+                    threadPool.runInThread(command);
+                }
+            });
+    }
+
+    @Override
+    public String getSchedulerName() throws SchedulerException {
+        return name;
+    }
+
+    @Override
+    public String getSchedulerInstanceId() throws SchedulerException {
+        return instanceId;
+    }
+
+    @Override
+    public SchedulerContext getContext() throws SchedulerException {
+        return context;
+    }
+
+    @Override
+    public void start() throws SchedulerException {
+        checkShutdown();
+        notifySchedulerListeners(Event.STARTING, null);
+
+        synchronized (lock) {
+            if (startTime == null) {
+                startTime = new Date();
+            }
+            standby = false;
+            wheel.start();
+            for (final Scheduled scheduled : new ArrayList<Scheduled>(triggers.values())) {
+                scheduled.arm();
+            }
+        }
+
+        notifySchedulerListeners(Event.STARTED, null);
+    }
+
+    @Override
+    public void startDelayed(final int seconds) throws SchedulerException {
+        checkShutdown();
+
+        wheel.start();
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    start();
+                } catch (final SchedulerException e) {
+                    log.error("Can't start the scheduler " + name + " after " + seconds + " seconds", e);
+                }
+            }
+        }, System.currentTimeMillis() + seconds * 1000L);
+    }
+
+    @Override
+    public boolean isStarted() throws SchedulerException {
+        return !shutdown && !standby && startTime != null;
+    }
+
+    @Override
+    public void standby() throws SchedulerException {
+        synchronized (lock) {
+            standby = true;
+            for (final Scheduled scheduled : triggers.values()) {
+                scheduled.disarm();
+            }
+        }
+        notifySchedulerListeners(Event.STANDBY, null);
+    }
+
+    @Override
+    public boolean isInStandbyMode() throws SchedulerException {
+        return standby;
+    }
+
+    @Override
+    public void shutdown() throws SchedulerException {
+        shutdown(false);
+    }
+
+    @Override
+    public void shutdown(final boolean waitForJobsToComplete) throws SchedulerException {
+        synchronized (lock) {
+            if (shutdown) {
+                return;
+            }
+            shutdown = true;
+            standby = true;
+            for (final Scheduled scheduled : triggers.values()) {
+                scheduled.disarm();
+            }
+        }
+        notifySchedulerListeners(Event.SHUTTING_DOWN, null);
+
+        wheel.stop();
+        threadPool.shutdown(waitForJobsToComplete);
+
+        notifySchedulerListeners(Event.SHUTDOWN, null);
+    }
+
+    @Override
+    public boolean isShutdown() throws SchedulerException {
+        return shutdown;
+    }
+
+    @Override
+    public SchedulerMetaData getMetaData() throws SchedulerException {
+        return new SchedulerMetaData(name, instanceId, getClass(), false, isStarted(), standby, shutdown, startTime, executed.get(),
+            TimingWheel.class, false, false, threadPool.getClass(), threadPool.getPoolSize(), String.valueOf(Scheduler.class.getPackage().getImplementationVersion()));
+    }
+
+    @Override
+    public List<JobExecutionContext> getCurrentlyExecutingJobs() throws SchedulerException {
+        return new ArrayList<JobExecutionContext>(executing.values());
+    }
+
+    @Override
+    public void setJobFactory(final JobFactory factory) throws SchedulerException {
+        if (factory == null) {
+            throw new IllegalArgumentException("JobFactory cannot be set to null!");
+        }
+        jobFactory = factory;
+    }
+
+    @Override
+    public ListenerManager getListenerManager() throws SchedulerException {
+        return listenerManager;
+    }
+
+    @Override
+    public Date scheduleJob(final JobDetail jobDetail, final Trigger trigger) throws SchedulerException {
+        checkShutdown();
+        validate(jobDetail);
+        final OperableTrigger operable = validate(trigger, jobDetail.getKey());
+
+        final Date first;
+        synchronized (lock) {
+            if (jobs.containsKey(jobDetail.getKey())) {
+                throw new ObjectAlreadyExistsException(jobDetail);
+            }
+            first = store(operable, jobDetail, false);
+            jobs.put(jobDetail.getKey(), (JobDetail) jobDetail.clone());
+        }
+
+        notifySchedulerListeners(Event.JOB_ADDED, jobDetail);
+        notifySchedulerListeners(Event.JOB_SCHEDULED, trigger);
+        return first;
+    }
+
+    @Override
+    public Date scheduleJob(final Trigger trigger) throws SchedulerException {
+        checkShutdown();
+        final OperableTrigger operable = validate(trigger, null);
+        if (operable.getJobKey() == null) {
+            throw new SchedulerException("Trigger's related Job's name cannot be null");
+        }
+
+        final Date first;
+        synchronized (lock) {
+            first = store(operable, null, false);
+        }
+
+        notifySchedulerListeners(Event.JOB_SCHEDULED, trigger);
+        return first;
+    }
+
+    @Override
+    public void scheduleJobs(final Map<JobDetail, Set<? extends Trigger>> triggersAndJobs, final boolean replace) throws SchedulerException {
+        for (final Map.Entry<JobDetail, Set<? extends Trigger>> entry : triggersAndJobs.entrySet()) {
+            scheduleJob(entry.getKey(), entry.getValue(), replace);
+        }
+    }
+
+    @Override
+    public void scheduleJob(final JobDetail jobDetail, final Set<? extends Trigger> triggersForJob, final boolean replace) throws SchedulerException {
+        checkShutdown();
+        validate(jobDetail);
+        if (triggersForJob.isEmpty() && !jobDetail.isDurable()) {
+            throw new SchedulerException("Jobs added with no trigger must be durable.");
+        }
+
+        final List<OperableTrigger> operables = new ArrayList<OperableTrigger>(triggersForJob.size());
+        for (final Trigger trigger : triggersForJob) {
+            operables.add(validate(trigger, jobDetail.getKey()));
+        }
+
+        synchronized (lock) {
+            if (!replace) {
+                if (jobs.containsKey(jobDetail.getKey())) {
+                    throw new ObjectAlreadyExistsException(jobDetail);
+                }
+                for (final OperableTrigger trigger : operables) {
+                    if (triggers.containsKey(trigger.getKey())) {
+                        throw new ObjectAlreadyExistsException(trigger);
+                    }
+                }
+            }
+
+            jobs.put(jobDetail.getKey(), (JobDetail) jobDetail.clone());
+            for (final OperableTrigger trigger : operables) {
+                store(trigger, null, replace);
+            }
+        }
+
+        notifySchedulerListeners(Event.JOB_ADDED, jobDetail);
+        for (final OperableTrigger trigger : operables) {
+            notifySchedulerListeners(Event.JOB_SCHEDULED, trigger);
+        }
+    }
+
+    @Override
+    public boolean unscheduleJob(final TriggerKey triggerKey) throws SchedulerException {
+        final List<JobKey> orphans = new ArrayList<JobKey>(1);
+        synchronized (lock) {
+            if (!removeTrigger(triggerKey, orphans)) {
+                return false;
+            }
+        }
+
+        notifySchedulerListeners(Event.JOB_UNSCHEDULED, triggerKey);
+        for (final JobKey orphan : orphans) {
+            notifySchedulerListeners(Event.JOB_DELETED, orphan);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean unscheduleJobs(final List<TriggerKey> triggerKeys) throws SchedulerException {
+        boolean all = true;
+        for (final TriggerKey key : triggerKeys) {
+            all = unscheduleJob(key) && all;
+        }
+        return all;
+    }
+
+    @Override
+    public Date rescheduleJob(final TriggerKey triggerKey, final Trigger newTrigger) throws SchedulerException {
+        checkShutdown();
+        if (newTrigger == null) {
+            throw new SchedulerException("Trigger cannot be null");
+        }
+
+        final OperableTrigger operable = (OperableTrigger) newTrigger;
+        final Date first;
+        synchronized (lock) {
+            final Scheduled old = triggers.get(triggerKey);
+            if (old == null) {
+                return null;
+            }
+
+            operable.setJobKey(old.trigger.getJobKey());
+            operable.validate();
+
+            triggers.remove(triggerKey);
+            old.disarm();
+            try {
+                first = store(operable, null, false);
+            } catch (final SchedulerException e) {
+                // put the previous trigger back
+                triggers.put(triggerKey, old);
+                old.arm();
+                throw e;
+            }
+        }
+
+        notifySchedulerListeners(Event.JOB_UNSCHEDULED, triggerKey);
+        notifySchedulerListeners(Event.JOB_SCHEDULED, newTrigger);
+        return first;
+    }
+
+    @Override
+    public void addJob(final JobDetail jobDetail, final boolean replace) throws SchedulerException {
+        addJob(jobDetail, replace, false);
+    }
+
+    @Override
+    public void addJob(final JobDetail jobDetail, final boolean replace, final boolean storeNonDurableWhileAwaitingScheduling) throws SchedulerException {
+        checkShutdown();
+        validate(jobDetail);
+        if (!storeNonDurableWhileAwaitingScheduling && !jobDetail.isDurable()) {
+            throw new SchedulerException("Jobs added with no trigger must be durable.");
+        }
+
+        synchronized (lock) {
+            if (!replace && jobs.containsKey(jobDetail.getKey())) {
+                throw new ObjectAlreadyExistsException(jobDetail);
+            }
+            jobs.put(jobDetail.getKey(), (JobDetail) jobDetail.clone());
+        }
+
+        notifySchedulerListeners(Event.JOB_ADDED, jobDetail);
+    }
+
+    @Override
+    public boolean deleteJob(final JobKey jobKey) throws SchedulerException {
+        final List<TriggerKey> unscheduled = new ArrayList<TriggerKey>();
+        final boolean found;
+        synchronized (lock) {
+            for (final Scheduled scheduled : triggersOf(jobKey)) {
+                triggers.remove(scheduled.key);
+                scheduled.disarm();
+                unscheduled.add(scheduled.key);
+            }
+            found = jobs.remove(jobKey) != null || !unscheduled.isEmpty();
+        }
+
+        for (final TriggerKey key : unscheduled) {
+            notifySchedulerListeners(Event.JOB_UNSCHEDULED, key);
+        }
+        if (found) {
+            notifySchedulerListeners(Event.JOB_DELETED, jobKey);
+        }
+        return found;
+    }
+
+    @Override
+    public boolean deleteJobs(final List<JobKey> jobKeys) throws SchedulerException {
+        boolean all = true;
+        for (final JobKey key : jobKeys) {
+            all = deleteJob(key) && all;
+        }
+        return all;
+    }
+
+    @Override
+    public void triggerJob(final JobKey jobKey) throws SchedulerException {
+        triggerJob(jobKey, null);
+    }
+
+    @Override
+    public void triggerJob(final JobKey jobKey, final JobDataMap data) throws SchedulerException {
+        checkShutdown();
+
+        final OperableTrigger trigger = (OperableTrigger) TriggerBuilder.newTrigger()
+            .withIdentity("MT_" + name + "_" + manualTriggers.incrementAndGet(), DEFAULT_GROUP)
+            .forJob(jobKey)
+            .build();
+        if (data != null) {
+            trigger.setJobDataMap(data);
+        }
+
+        synchronized (lock) {
+            store(trigger, null, false);
+        }
+
+        notifySchedulerListeners(Event.JOB_SCHEDULED, trigger);
+    }
+
+    @Override
+    public void pauseJob(final JobKey jobKey) throws SchedulerException {
+        synchronized (lock) {
+            for (final Scheduled scheduled : triggersOf(jobKey)) {
+                scheduled.pause();
+            }
+        }
+        notifySchedulerListeners(Event.JOB_PAUSED, jobKey);
+    }
+
+    @Override
+    public void pauseJobs(final GroupMatcher<JobKey> matcher) throws SchedulerException {
+        final Set<String> groups = new HashSet<String>();
+        synchronized (lock) {
+            if (StringMatcher.StringOperatorName.EQUALS.equals(matcher.getCompareWithOperator())) {
+                pausedJobGroups.add(matcher.getCompareToValue());
+                groups.add(matcher.getCompareToValue());
+            }
+            for (final JobKey key : jobs.keySet()) {
+                if (matcher.isMatch(key)) {
+                    pausedJobGroups.add(key.getGroup());
+                    groups.add(key.getGroup());
+                }
+            }
+            for (final Scheduled scheduled : triggers.values()) {
+                if (matcher.isMatch(scheduled.trigger.getJobKey())) {
+                    scheduled.pause();
+                }
+            }
+        }
+
+        for (final String group : groups) {
+            notifySchedulerListeners(Event.JOBS_PAUSED, group);
+        }
+    }
+
+    @Override
+    public void pauseTrigger(final TriggerKey triggerKey) throws SchedulerException {
+        synchronized (lock) {
+            final Scheduled scheduled = triggers.get(triggerKey);
+            if (scheduled != null) {
+                scheduled.pause();
+            }
+        }
+        notifySchedulerListeners(Event.TRIGGER_PAUSED, triggerKey);
+    }
+
+    @Override
+    public void pauseTriggers(final GroupMatcher<TriggerKey> matcher) throws SchedulerException {
+        final Set<String> groups = new HashSet<String>();
+        synchronized (lock) {
+            if (StringMatcher.StringOperatorName.EQUALS.equals(matcher.getCompareWithOperator())) {
+                groups.add(matcher.getCompareToValue());
+            }
+            for (final Scheduled scheduled : triggers.values()) {
+                if (matcher.isMatch(scheduled.key)) {
+                    scheduled.pause();
+                    groups.add(scheduled.key.getGroup());
+                }
+            }
+            pausedTriggerGroups.addAll(groups);
+        }
+
+        for (final String group : groups) {
+            notifySchedulerListeners(Event.TRIGGERS_PAUSED, group);
+        }
+    }
+
+    @Override
+    public void resumeJob(final JobKey jobKey) throws SchedulerException {
+        synchronized (lock) {
+            for (final Scheduled scheduled : triggersOf(jobKey)) {
+                scheduled.resume();
+            }
+        }
+        notifySchedulerListeners(Event.JOB_RESUMED, jobKey);
+    }
+
+    @Override
+    public void resumeJobs(final GroupMatcher<JobKey> matcher) throws SchedulerException {
+        final Set<String> groups = new HashSet<String>();
+        synchronized (lock) {
+            if (StringMatcher.StringOperatorName.EQUALS.equals(matcher.getCompareWithOperator())) {
+                groups.add(matcher.getCompareToValue());
+            }
+            for (final JobKey key : jobs.keySet()) {
+                if (matcher.isMatch(key)) {
+                    groups.add(key.getGroup());
+                }
+            }
+            pausedJobGroups.removeAll(groups);
+            for (final Scheduled scheduled : new ArrayList<Scheduled>(triggers.values())) {
+                if (matcher.isMatch(scheduled.trigger.getJobKey())) {
+                    scheduled.resume();
+                }
+            }
+        }
+
+        for (final String group : groups) {
+            notifySchedulerListeners(Event.JOBS_RESUMED, group);
+        }
+    }
+
+    @Override
+    public void resumeTrigger(final TriggerKey triggerKey) throws SchedulerException {
+        synchronized (lock) {
+            final Scheduled scheduled = triggers.get(triggerKey);
+            if (scheduled != null) {
+                scheduled.resume();
+            }
+        }
+        notifySchedulerListeners(Event.TRIGGER_RESUMED, triggerKey);
+    }
+
+    @Override
+    public void resumeTriggers(final GroupMatcher<TriggerKey> matcher) throws SchedulerException {
+        final Set<String> groups = new HashSet<String>();
+        synchronized (lock) {
+            if (StringMatcher.StringOperatorName.EQUALS.equals(matcher.getCompareWithOperator())) {
+                groups.add(matcher.getCompareToValue());
+            }
+            for (final Scheduled scheduled : new ArrayList<Scheduled>(triggers.values())) {
+                if (matcher.isMatch(scheduled.key)) {
+                    scheduled.resume();
+                    groups.add(scheduled.key.getGroup());
+                }
+            }
+            pausedTriggerGroups.removeAll(groups);
+        }
+
+        for (final String group : groups) {
+            notifySchedulerListeners(Event.TRIGGERS_RESUMED, group);
+        }
+    }
+
+    @Override
+    public void pauseAll() throws SchedulerException {
+        synchronized (lock) {
+            for (final Scheduled scheduled : triggers.values()) {
+                scheduled.pause();
+                pausedTriggerGroups.add(scheduled.key.getGroup());
+            }
+        }
+        notifySchedulerListeners(Event.TRIGGERS_PAUSED, null);
+    }
+
+    @Override
+    public void resumeAll() throws SchedulerException {
+        synchronized (lock) {
+            pausedJobGroups.clear();
+            pausedTriggerGroups.clear();
+            for (final Scheduled scheduled : new ArrayList<Scheduled>(triggers.values())) {
+                scheduled.resume();
+            }
+        }
+        notifySchedulerListeners(Event.TRIGGERS_RESUMED, null);
+    }
+
+    @Override
+    public List<String> getJobGroupNames() throws SchedulerException {
+        final Set<String> groups = new HashSet<String>();
+        synchronized (lock) {
+            for (final JobKey key : jobs.keySet()) {
+                groups.add(key.getGroup());
+            }
+        }
+        return new ArrayList<String>(groups);
+    }
+
+    @Override
+    public Set<JobKey> getJobKeys(final GroupMatcher<JobKey> matcher) throws SchedulerException {
+        final Set<JobKey> keys = new HashSet<JobKey>();
+        synchronized (lock) {
+            for (final JobKey key : jobs.keySet()) {
+                if (matcher.isMatch(key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public List<? extends Trigger> getTriggersOfJob(final JobKey jobKey) throws SchedulerException {
+        final List<Trigger> copies = new ArrayList<Trigger>();
+        synchronized (lock) {
+            for (final Scheduled scheduled : triggersOf(jobKey)) {
+                copies.add((Trigger) scheduled.trigger.clone());
+            }
+        }
+        return copies;
+    }
+
+    @Override
+    public List<String> getTriggerGroupNames() throws SchedulerException {
+        final Set<String> groups = new HashSet<String>();
+        synchronized (lock) {
+            for (final TriggerKey key : triggers.keySet()) {
+                groups.add(key.getGroup());
+            }
+        }
+        return new ArrayList<String>(groups);
+    }
+
+    @Override
+    public Set<TriggerKey> getTriggerKeys(final GroupMatcher<TriggerKey> matcher) throws SchedulerException {
+        final Set<TriggerKey> keys = new HashSet<TriggerKey>();
+        synchronized (lock) {
+            for (final TriggerKey key : triggers.keySet()) {
+                if (matcher.isMatch(key)) {
+                    keys.add(key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    @Override
+    public Set<String> getPausedTriggerGroups() throws SchedulerException {
+        synchronized (lock) {
+            return new HashSet<String>(pausedTriggerGroups);
+        }
+    }
+
+    @Override
+    public JobDetail getJobDetail(final JobKey jobKey) throws SchedulerException {
+        synchronized (lock) {
+            final JobDetail jobDetail = jobs.get(jobKey);
+            return jobDetail == null ? null : (JobDetail) jobDetail.clone();
+        }
+    }
+
+    @Override
+    public Trigger getTrigger(final TriggerKey triggerKey) throws SchedulerException {
+        synchronized (lock) {
+            final Scheduled scheduled = triggers.get(triggerKey);
+            return scheduled == null ? null : (Trigger) scheduled.trigger.clone();
+        }
+    }
+
+    @Override
+    public Trigger.TriggerState getTriggerState(final TriggerKey triggerKey) throws SchedulerException {
+        synchronized (lock) {
+            final Scheduled scheduled = triggers.get(triggerKey);
+            if (scheduled == null) {
+                return Trigger.TriggerState.NONE;
+            } else if (scheduled.error) {
+                return Trigger.TriggerState.ERROR;
+            } else if (scheduled.complete || scheduled.trigger.getNextFireTime() == null) {
+                return Trigger.TriggerState.COMPLETE;
+            } else if (scheduled.paused) {
+                return Trigger.TriggerState.PAUSED;
+            } else if (scheduled.blocked) {
+                return Trigger.TriggerState.BLOCKED;
+            }
+            return Trigger.TriggerState.NORMAL;
+        }
+    }
+
+    @Override
+    public void addCalendar(final String calName, final Calendar calendar, final boolean replace, final boolean updateTriggers) throws SchedulerException {
+        checkShutdown();
+
+        synchronized (lock) {
+            if (!replace && calendars.containsKey(calName)) {
+                throw new ObjectAlreadyExistsException("Calendar with name '" + calName + "' already exists.");
+            }
+            calendars.put(calName, (Calendar) calendar.clone());
+
+            if (updateTriggers) {
+                for (final Scheduled scheduled : new ArrayList<Scheduled>(triggers.values())) {
+                    if (calName.equals(scheduled.trigger.getCalendarName())) {
+                        scheduled.disarm();
+                        scheduled.trigger.updateWithNewCalendar(calendar, MISFIRE_THRESHOLD);
+                        scheduled.arm();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteCalendar(final String calName) throws SchedulerException {
+        synchronized (lock) {
+            for (final Scheduled scheduled : triggers.values()) {
+                if (calName.equals(scheduled.trigger.getCalendarName())) {
+                    throw new JobPersistenceException("Calender cannot be removed if it referenced by a trigger!");
+                }
+            }
+            return calendars.remove(calName) != null;
+        }
+    }
+
+    @Override
+    public Calendar getCalendar(final String calName) throws SchedulerException {
+        synchronized (lock) {
+            final Calendar calendar = calendars.get(calName);
+            return calendar == null ? null : (Calendar) calendar.clone();
+        }
+    }
+
+    @Override
+    public List<String> getCalendarNames() throws SchedulerException {
+        synchronized (lock) {
+            return new ArrayList<String>(calendars.keySet());
+        }
+    }
+
+    @Override
+    public boolean interrupt(final JobKey jobKey) throws UnableToInterruptJobException {
+        boolean interrupted = false;
+        for (final JobExecutionContext execution : executing.values()) {
+            if (jobKey.equals(execution.getJobDetail().getKey())) {
+                interrupted = interrupt(execution) || interrupted;
+            }
+        }
+        return interrupted;
+    }
+
+    @Override
+    public boolean interrupt(final String fireInstanceId) throws UnableToInterruptJobException {
+        final JobExecutionContext execution = executing.get(fireInstanceId);
+        return execution != null && interrupt(execution);
+    }
+
+    private static boolean interrupt(final JobExecutionContext execution) throws UnableToInterruptJobException {
+        final Job job = execution.getJobInstance();
+        if (!InterruptableJob.class.isInstance(job)) {
+            throw new UnableToInterruptJobException("Job " + execution.getJobDetail().getKey() + " can not be interrupted, since it does not implement "
+                + InterruptableJob.class.getName());
+        }
+        InterruptableJob.class.cast(job).interrupt();
+        return true;
+    }
+
+    @Override
+    public boolean checkExists(final JobKey jobKey) throws SchedulerException {
+        synchronized (lock) {
+            return jobs.containsKey(jobKey);
+        }
+    }
+
+    @Override
+    public boolean checkExists(final TriggerKey triggerKey) throws SchedulerException {
+        synchronized (lock) {
+            return triggers.containsKey(triggerKey);
+        }
+    }
+
+    @Override
+    public void clear() throws SchedulerException {
+        synchronized (lock) {
+            for (final Scheduled scheduled : triggers.values()) {
+                scheduled.disarm();
+            }
+            triggers.clear();
+            jobs.clear();
+            calendars.clear();
+            pausedTriggerGroups.clear();
+            pausedJobGroups.clear();
+        }
+        notifySchedulerListeners(Event.CLEARED, null);
+    }
+
+    private void checkShutdown() throws SchedulerException {
+        if (shutdown) {
+            throw new SchedulerException("The Scheduler has been shutdown.");
+        }
+    }
+
+    private static void validate(final JobDetail jobDetail) throws SchedulerException {
+        if (jobDetail == null) {
+            throw new SchedulerException("JobDetail cannot be null");
+        } else if (jobDetail.getKey() == null) {
+            throw new SchedulerException("Job's key cannot be null");
+        } else if (jobDetail.getJobClass() == null) {
+            throw new SchedulerException("Job's class cannot be null");
+        }
+    }
+
+    private static OperableTrigger validate(final Trigger trigger, final JobKey jobKey) throws SchedulerException {
+        if (trigger == null) {
+            throw new SchedulerException("Trigger cannot be null");
+        }
+
+        final OperableTrigger operable = (OperableTrigger) trigger;
+        if (jobKey != null) {
+            if (operable.getJobKey() == null) {
+                operable.setJobKey(jobKey);
+            } else if (!operable.getJobKey().equals(jobKey)) {
+                throw new SchedulerException("Trigger does not reference given job!");
+            }
+        }
+        operable.validate();
+        return operable;
+    }
+
+    /**
+     * Like the QuartzScheduler the caller's trigger gets its first fire time and the
+     * store keeps a copy of it.
+     *
+     * @param jobDetail the job being stored with the trigger, null if it has to exist
+     */
+    private Date store(final OperableTrigger trigger, final JobDetail jobDetail, final boolean replace) throws SchedulerException {
+        final TriggerKey key = trigger.getKey();
+        if (!replace && triggers.containsKey(key)) {
+            throw new ObjectAlreadyExistsException(trigger);
+        }
+        if (jobDetail == null && !jobs.containsKey(trigger.getJobKey())) {
+            throw new JobPersistenceException("The job (" + trigger.getJobKey() + ") referenced by the trigger does not exist.");
+        }
+
+        Calendar calendar = null;
+        if (trigger.getCalendarName() != null) {
+            calendar = calendars.get(trigger.getCalendarName());
+            if (calendar == null) {
+                throw new JobPersistenceException("The calendar '" + trigger.getCalendarName() + "' referenced by the trigger does not exist.");
+            }
+        }
+
+        final Date first = trigger.computeFirstFireTime(calendar);
+        if (first == null) {
+            throw new SchedulerException("Based on configured schedule, the given trigger '" + key + "' will never fire.");
+        }
+
+        final Scheduled scheduled = new Scheduled((OperableTrigger) trigger.clone());
+        scheduled.paused = pausedTriggerGroups.contains(key.getGroup()) || pausedJobGroups.contains(trigger.getJobKey().getGroup());
+        scheduled.blocked = blockedJobs.contains(trigger.getJobKey());
+
+        final Scheduled previous = triggers.put(key, scheduled);
+        if (previous != null) {
+            previous.disarm();
+        }
+        scheduled.arm();
+        return first;
+    }
+
+    /**
+     * @param orphans gets the non durable job deleted with its last trigger
+     */
+    private boolean removeTrigger(final TriggerKey key, final Collection<JobKey> orphans) {
+        final Scheduled scheduled = triggers.remove(key);
+        if (scheduled == null) {
+            return false;
+        }
+        scheduled.disarm();
+
+        final JobKey jobKey = scheduled.trigger.getJobKey();
+        final JobDetail jobDetail = jobs.get(jobKey);
+        if (jobDetail != null && !jobDetail.isDurable() && triggersOf(jobKey).isEmpty()) {
+            jobs.remove(jobKey);
+            orphans.add(jobKey);
+        }
+        return true;
+    }
+
+    private List<Scheduled> triggersOf(final JobKey jobKey) {
+        final List<Scheduled> found = new ArrayList<Scheduled>();
+        for (final Scheduled scheduled : triggers.values()) {
+            if (jobKey.equals(scheduled.trigger.getJobKey())) {
+                found.add(scheduled);
+            }
+        }
+        return found;
+    }
+
+    private void fire(final Scheduled scheduled, final Runnable task) {
+        final TriggerFiredBundle bundle;
+        synchronized (lock) {
+            // paused, rescheduled or unscheduled since
+            if (scheduled.armed != task || triggers.get(scheduled.key) != scheduled) {
+                return;
+            }
+            scheduled.armed = null;
+            scheduled.timeout = null;
+            bundle = scheduled.triggered();
+        }
+
+        if (bundle != null) {
+            execute(bundle);
+        }
+    }
+
+    /**
+     * What the JobRunShell does, the wheel already runs the task in the timer pool.
+     */
+    private void execute(final TriggerFiredBundle bundle) {
+        final JobDetail jobDetail = bundle.getJobDetail();
+        final OperableTrigger trigger = bundle.getTrigger();
+
+        final Job job;
+        try {
+            job = jobFactory.newJob(bundle, this);
+        } catch (final SchedulerException e) {
+            log.error("Can't instantiate the job " + jobDetail.getKey(), e);
+            notifyError("An error occured instantiating job to be executed. job= '" + jobDetail.getKey() + "'", e);
+            completed(bundle, Trigger.CompletedExecutionInstruction.SET_ALL_JOB_TRIGGERS_ERROR);
+            return;
+        }
+
+        final JobExecutionContextImpl execution = new JobExecutionContextImpl(this, bundle, job);
+        final List<TriggerListener> triggerListeners = triggerListeners(trigger.getKey());
+        final List<JobListener> jobListeners = jobListeners(jobDetail.getKey());
+
+        Trigger.CompletedExecutionInstruction instruction;
+        do {
+            if (vetoed(triggerListeners, execution)) {
+                instruction = trigger.executionComplete(execution, null);
+                for (final JobListener listener : jobListeners) {
+                    try {
+                        listener.jobExecutionVetoed(execution);
+                    } catch (final RuntimeException e) {
+                        log.error("Job listener " + listener.getName() + " failed", e);
+                    }
+                }
+                break;
+            }
+
+            for (final JobListener listener : jobListeners) {
+                try {
+                    listener.jobToBeExecuted(execution);
+                } catch (final RuntimeException e) {
+                    log.error("Job listener " + listener.getName() + " failed", e);
+                }
+            }
+
+            JobExecutionException failure = null;
+            final long start = System.currentTimeMillis();
+            executing.put(trigger.getFireInstanceId(), execution);
+            try {
+                job.execute(execution);
+            } catch (final JobExecutionException e) {
+                failure = e;
+                log.info("Job " + jobDetail.getKey() + " threw a JobExecutionException: " + e.getMessage());
+            } catch (final Throwable e) {
+                failure = new JobExecutionException(e, false);
+                log.error("Job " + jobDetail.getKey() + " threw an unhandled Exception", e);
+                notifyError("Job (" + jobDetail.getKey() + " threw an exception.", new SchedulerException("Job threw an unhandled exception.", e));
+            } finally {
+                execution.setJobRunTime(System.currentTimeMillis() - start);
+                executing.remove(trigger.getFireInstanceId());
+                executed.incrementAndGet();
+            }
+
+            for (final JobListener listener : jobListeners) {
+                try {
+                    listener.jobWasExecuted(execution, failure);
+                } catch (final RuntimeException e) {
+                    log.error("Job listener " + listener.getName() + " failed", e);
+                }
+            }
+
+            instruction = trigger.executionComplete(execution, failure);
+            for (final TriggerListener listener : triggerListeners) {
+                try {
+                    listener.triggerComplete(trigger, execution, instruction);
+                } catch (final RuntimeException e) {
+                    log.error("Trigger listener " + listener.getName() + " failed", e);
+                }
+            }
+
+            if (instruction == Trigger.CompletedExecutionInstruction.RE_EXECUTE_JOB) {
+                execution.incrementRefireCount();
+            }
+        } while (instruction == Trigger.CompletedExecutionInstruction.RE_EXECUTE_JOB);
+
+        completed(bundle, instruction);
+    }
+
+    private static boolean vetoed(final List<TriggerListener> listeners, final JobExecutionContext execution) {
+        boolean vetoed = false;
+        for (final TriggerListener listener : listeners) {
+            try {
+                listener.triggerFired(execution.getTrigger(), execution);
+                vetoed = listener.vetoJobExecution(execution.getTrigger(), execution) || vetoed;
+            } catch (final RuntimeException e) {
+                log.error("Trigger listener " + listener.getName() + " failed", e);
+            }
+        }
+        return vetoed;
+    }
+
+    /**
+     * What the RAMJobStore does once a job completed.
+     */
+    private void completed(final TriggerFiredBundle bundle, final Trigger.CompletedExecutionInstruction instruction) {
+        final JobDetail jobDetail = bundle.getJobDetail();
+        final JobKey jobKey = jobDetail.getKey();
+        final OperableTrigger trigger = bundle.getTrigger();
+
+        final List<Trigger> finalized = new ArrayList<Trigger>(1);
+        final List<JobKey> orphans = new ArrayList<JobKey>(1);
+        synchronized (lock) {
+            if (jobDetail.isPersistJobDataAfterExecution() && jobs.containsKey(jobKey)) {
+                final JobDataMap data = (JobDataMap) jobDetail.getJobDataMap().clone();
+                data.clearDirtyFlag();
+                jobs.put(jobKey, jobDetail.getJobBuilder().setJobData(data).build());
+            }
+
+            if (jobDetail.isConcurrentExectionDisallowed() && blockedJobs.remove(jobKey)) {
+                for (final Scheduled scheduled : triggersOf(jobKey)) {
+                    if (scheduled.blocked) {
+                        scheduled.blocked = false;
+                        scheduled.arm();
+                    }
+                }
+            }
+
+            final Scheduled scheduled = triggers.get(trigger.getKey());
+            switch (instruction) {
+                case DELETE_TRIGGER:
+                    // unless the job rescheduled its trigger
+                    if (scheduled != null && (trigger.getNextFireTime() != null || scheduled.trigger.getNextFireTime() == null)) {
+                        removeTrigger(scheduled.key, orphans);
+                        finalized.add(scheduled.trigger);
+                    }
+                    break;
+                case SET_TRIGGER_COMPLETE:
+                    if (scheduled != null) {
+                        scheduled.complete();
+                    }
+                    break;
+                case SET_TRIGGER_ERROR:
+                    if (scheduled != null) {
+                        scheduled.error();
+                    }
+                    break;
+                case SET_ALL_JOB_TRIGGERS_COMPLETE:
+                    for (final Scheduled other : triggersOf(jobKey)) {
+                        other.complete();
+                    }
+                    break;
+                case SET_ALL_JOB_TRIGGERS_ERROR:
+                    for (final Scheduled other : triggersOf(jobKey)) {
+                        other.error();
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        for (final Trigger done : finalized) {
+            notifySchedulerListeners(Event.TRIGGER_FINALIZED, done);
+        }
+        for (final JobKey orphan : orphans) {
+            notifySchedulerListeners(Event.JOB_DELETED, orphan);
+        }
+    }
+
+    private List<JobListener> jobListeners(final JobKey key) {
+        final List<JobListener> found = new ArrayList<JobListener>();
+        for (final JobListener listener : listenerManager.getJobListeners()) {
+            if (matches(listenerManager.getJobListenerMatchers(listener.getName()), key)) {
+                found.add(listener);
+            }
+        }
+        return found;
+    }
+
+    private List<TriggerListener> triggerListeners(final TriggerKey key) {
+        final List<TriggerListener> found = new ArrayList<TriggerListener>();
+        for (final TriggerListener listener : listenerManager.getTriggerListeners()) {
+            if (matches(listenerManager.getTriggerListenerMatchers(listener.getName()), key)) {
+                found.add(listener);
+            }
+        }
+        return found;
+    }
+
+    private static <T extends Key<?>> boolean matches(final List<Matcher<T>> matchers, final T key) {
+        if (matchers == null) {
+            return true;
+        }
+        for (final Matcher<T> matcher : matchers) {
+            if (matcher.isMatch(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void notifySchedulerListeners(final Event event, final Object argument) {
+        for (final SchedulerListener listener : listenerManager.getSchedulerListeners()) {
+            try {
+                event.fire(listener, argument);
+            } catch (final RuntimeException e) {
+                log.error("Scheduler listener " + listener + " failed on " + event, e);
+            }
+        }
+    }
+
+    private void notifyError(final String message, final SchedulerException error) {
+        for (final SchedulerListener listener : listenerManager.getSchedulerListeners()) {
+            try {
+                listener.schedulerError(message, error);
+            } catch (final RuntimeException e) {
+                log.error("Scheduler listener " + listener + " failed on error " + message, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheelScheduler{" +
+            "name='" + name + '\'' +
+            ", standby=" + standby +
+            ", shutdown=" + shutdown +
+            '}';
+    }
+
+    /**
+     * A stored trigger, guarded by the lock of the scheduler.
+     */
+    private final class Scheduled {
+
+        private final TriggerKey key;
+        private final OperableTrigger trigger;
+
+        private Runnable armed;
+        private TimingWheel.Timeout timeout;
+        private boolean paused;
+        private boolean blocked;
+        private boolean complete;
+        private boolean error;
+
+        private Scheduled(final OperableTrigger trigger) {
+            this.key = trigger.getKey();
+            this.trigger = trigger;
+        }
+
+        private void arm() {
+            if (standby || paused || blocked || complete || error || armed != null) {
+                return;
+            }
+
+            Date next = trigger.getNextFireTime();
+            if (next == null) {
+                // fired for the last time, deleted once its job completes
+                return;
+            }
+
+            if (next.getTime() < System.currentTimeMillis() - MISFIRE_THRESHOLD) {
+                for (final TriggerListener listener : triggerListeners(key)) {
+                    try {
+                        listener.triggerMisfired((Trigger) trigger.clone());
+                    } catch (final RuntimeException e) {
+                        log.error("Trigger listener " + listener.getName() + " failed", e);
+                    }
+                }
+
+                trigger.updateAfterMisfire(calendars.get(trigger.getCalendarName()));
+                next = trigger.getNextFireTime();
+                if (next == null) {
+                    // like the RAMJobStore the listeners are notified under the lock there
+                    final List<JobKey> orphans = new ArrayList<JobKey>(1);
+                    removeTrigger(key, orphans);
+                    notifySchedulerListeners(Event.TRIGGER_FINALIZED, trigger);
+                    for (final JobKey orphan : orphans) {
+                        notifySchedulerListeners(Event.JOB_DELETED, orphan);
+                    }
+                    return;
+                }
+            }
+
+            final Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    fire(Scheduled.this, this);
+                }
+            };
+            armed = task;
+            final TimingWheel.Timeout scheduled = wheel.schedule(task, next.getTime());
+            if (armed == task) { // didn't run yet in this very thread
+                timeout = scheduled;
+            }
+        }
+
+        private void disarm() {
+            armed = null;
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+
+        private void pause() {
+            paused = true;
+            disarm();
+        }
+
+        private void resume() {
+            if (paused) {
+                paused = false;
+                arm();
+            }
+        }
+
+        private void complete() {
+            complete = true;
+            disarm();
+        }
+
+        private void error() {
+            error = true;
+            disarm();
+        }
+
+        /**
+         * What the RAMJobStore does when a trigger fires.
+         *
+         * @return null if the trigger can't fire its job now
+         */
+        private TriggerFiredBundle triggered() {
+            final JobDetail jobDetail = jobs.get(trigger.getJobKey());
+            if (jobDetail == null) {
+                log.error("The job " + trigger.getJobKey() + " of the trigger " + key + " doesn't exist");
+                error = true;
+                return null;
+            }
+            if (jobDetail.isConcurrentExectionDisallowed() && !blockedJobs.add(jobDetail.getKey())) {
+                // fires once the running job completes
+                blocked = true;
+                return null;
+            }
+
+            final Calendar calendar = calendars.get(trigger.getCalendarName());
+            final Date previousFireTime = trigger.getPreviousFireTime();
+            final Date scheduledFireTime = trigger.getNextFireTime();
+            trigger.triggered(calendar);
+
+            final OperableTrigger fired = (OperableTrigger) trigger.clone();
+            fired.setFireInstanceId(instanceId + fireCount.incrementAndGet());
+            arm();
+
+            return new TriggerFiredBundle((JobDetail) jobDetail.clone(), fired, calendar, false, new Date(),
+                scheduledFireTime, previousFireTime, trigger.getNextFireTime());
+        }
+    }
+
+    private enum Event {
+        JOB_ADDED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobAdded((JobDetail) argument);
+            }
+        },
+        JOB_DELETED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobDeleted((JobKey) argument);
+            }
+        },
+        JOB_SCHEDULED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobScheduled((Trigger) argument);
+            }
+        },
+        JOB_UNSCHEDULED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobUnscheduled((TriggerKey) argument);
+            }
+        },
+        JOB_PAUSED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobPaused((JobKey) argument);
+            }
+        },
+        JOBS_PAUSED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobsPaused((String) argument);
+            }
+        },
+        JOB_RESUMED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobResumed((JobKey) argument);
+            }
+        },
+        JOBS_RESUMED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.jobsResumed((String) argument);
+            }
+        },
+        TRIGGER_FINALIZED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.triggerFinalized((Trigger) argument);
+            }
+        },
+        TRIGGER_PAUSED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.triggerPaused((TriggerKey) argument);
+            }
+        },
+        TRIGGERS_PAUSED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.triggersPaused((String) argument);
+            }
+        },
+        TRIGGER_RESUMED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.triggerResumed((TriggerKey) argument);
+            }
+        },
+        TRIGGERS_RESUMED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.triggersResumed((String) argument);
+            }
+        },
+        STARTING {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.schedulerStarting();
+            }
+        },
+        STARTED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.schedulerStarted();
+            }
+        },
+        STANDBY {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.schedulerInStandbyMode();
+            }
+        },
+        SHUTTING_DOWN {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.schedulerShuttingdown();
+            }
+        },
+        SHUTDOWN {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.schedulerShutdown();
+            }
+        },
+        CLEARED {
+            @Override
+            void fire(final SchedulerListener listener, final Object argument) {
+                listener.schedulingDataCleared();
+            }
+        };
+
+        abstract void fire(SchedulerListener listener, Object argument);
+    }
+}
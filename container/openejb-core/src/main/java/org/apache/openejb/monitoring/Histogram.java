@@ -0,0 +1,450 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock free log-linear histogram of long values.
+ * <p/>
+ * Values below 2^{@link #SUB_BITS} get a bucket each, every following power
+ * of two is split in 2^({@link #SUB_BITS} - 1) buckets of equal width so the
+ * relative error of a recorded value stays under 2^-({@link #SUB_BITS} - 1).
+ * Values above 2^{@link #MAX_BITS} share the last bucket, the maximum is
+ * still tracked exactly.
+ * <p/>
+ * Recording threads are spread over stripes, each stripe has its own
+ * counters so recording is a couple of uncontended atomic increments. A
+ * stripe and its ring are only allocated when a thread first records in it
+ * so a rarely used histogram stays small.
+ * Readers merge the stripes into a {@link Snapshot}, either since the
+ * creation of the histogram or since the previous interval snapshot.
+ * <p/>
+ * The histogram also keeps the most recent values of each stripe in a ring
+ * of the configured window size, without any ordering across stripes, so
+ * statistics can be computed over the recent values only.
+ *
+ * @version $Rev$ $Date$
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int MAX_BITS = 40;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_BITS - SUB_BITS) * HALF_SUB_BUCKETS + 1;
+    private static final int MAX_STRIPES = 8;
+
+    private final AtomicReferenceArray<Stripe> stripes;
+    private final int mask;
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    private volatile AtomicReferenceArray<Ring> rings;
+    private volatile int windowSize;
+
+    private long[] intervalCounts = new long[BUCKETS];
+    private long intervalSum;
+
+    public Histogram() {
+        this(0);
+    }
+
+    public Histogram(final int windowSize) {
+        this(windowSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes the number of recording stripes, rounded up to a power of two
+     *                and capped to 8, each one costs about 10KB once used
+     */
+    public Histogram(final int windowSize, final int stripes) {
+        int size = 1;
+        while (size < Math.min(stripes, MAX_STRIPES)) {
+            size <<= 1;
+        }
+        this.stripes = new AtomicReferenceArray<Stripe>(size);
+        this.mask = size - 1;
+        setWindowSize(windowSize);
+    }
+
+    public void record(final long value) {
+        final long v = value < 0 ? 0 : value;
+        final int index = (int) Thread.currentThread().getId() & mask;
+
+        Stripe stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new Stripe());
+            stripe = stripes.get(index);
+        }
+        stripe.counts.incrementAndGet(bucket(v));
+        stripe.sum.addAndGet(v);
+
+        final AtomicReferenceArray<Ring> current = rings;
+        if (current != null) {
+            Ring ring = current.get(index);
+            if (ring == null) {
+                current.compareAndSet(index, null, new Ring(Math.max(1, windowSize)));
+                ring = current.get(index);
+            }
+            ring.add(v);
+        }
+
+        long m;
+        while (v < (m = min.get())) {
+            if (min.compareAndSet(m, v)) {
+                break;
+            }
+        }
+        while (v > (m = max.get())) {
+            if (max.compareAndSet(m, v)) {
+                break;
+            }
+        }
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * Changes the number of recent values kept by each stripe, the values already kept are dropped.
+     */
+    public void setWindowSize(final int windowSize) {
+        if (windowSize < 0) {
+            throw new IllegalArgumentException("windowSize must not be negative");
+        }
+        // set before the rings, the recording threads size the rings they create with it
+        this.windowSize = windowSize;
+        if (windowSize == 0) {
+            this.rings = null;
+        } else {
+            // a thread always records in the same stripe, a ring per stripe keeps its last values
+            this.rings = new AtomicReferenceArray<Ring>(stripes.length());
+        }
+    }
+
+    /**
+     * @return the most recent values, at most the window size of them per stripe
+     */
+    public long[] values() {
+        final AtomicReferenceArray<Ring> current = rings;
+        if (current == null) {
+            return new long[0];
+        }
+
+        long[] values = new long[0];
+        for (int i = 0; i < current.length(); i++) {
+            final Ring ring = current.get(i);
+            if (ring == null) {
+                continue;
+            }
+            final long[] ringValues = ring.values();
+            final int offset = values.length;
+            values = Arrays.copyOf(values, offset + ringValues.length);
+            System.arraycopy(ringValues, 0, values, offset, ringValues.length);
+        }
+        return values;
+    }
+
+    /**
+     * @return all the values recorded since this histogram was created
+     */
+    public Snapshot snapshot() {
+        final long[] counts = new long[BUCKETS];
+        final long sum = merge(counts);
+        return new Snapshot(counts, sum, min.get(), max.get());
+    }
+
+    /**
+     * @return the most recent values, see {@link #values()}, or all the values if there is no window
+     */
+    public Snapshot windowSnapshot() {
+        if (rings == null) {
+            return snapshot();
+        }
+
+        final long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (final long value : values()) {
+            counts[bucket(value)]++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        return new Snapshot(counts, sum, min, max);
+    }
+
+    /**
+     * @return the values recorded since the previous call to this method
+     */
+    public synchronized Snapshot intervalSnapshot() {
+        final long[] counts = new long[BUCKETS];
+        final long sum = merge(counts);
+
+        final long[] interval = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            interval[i] = counts[i] - intervalCounts[i];
+        }
+        final Snapshot snapshot = new Snapshot(interval, sum - intervalSum, Long.MAX_VALUE, Long.MIN_VALUE);
+
+        intervalCounts = counts;
+        intervalSum = sum;
+        return snapshot;
+    }
+
+    private long merge(final long[] counts) {
+        long sum = 0;
+        for (int s = 0; s < stripes.length(); s++) {
+            final Stripe stripe = stripes.get(s);
+            if (stripe == null) {
+                continue;
+            }
+            sum += stripe.sum.get();
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.counts.get(i);
+            }
+        }
+        return sum;
+    }
+
+    static int bucket(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int bits = 64 - Long.numberOfLeadingZeros(value);
+        if (bits > MAX_BITS) {
+            return BUCKETS - 1;
+        }
+
+        final int shift = bits - SUB_BITS;
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    static long lowest(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        final int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        final long mantissa = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return mantissa << shift;
+    }
+
+    static long highest(final int bucket) {
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowest(bucket + 1) - 1;
+    }
+
+    private static final class Stripe {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong sum = new AtomicLong();
+    }
+
+    private static final class Ring {
+        private final AtomicLongArray values;
+        private final AtomicLong cursor = new AtomicLong();
+
+        private Ring(final int size) {
+            values = new AtomicLongArray(size);
+        }
+
+        private void add(final long value) {
+            values.set((int) (cursor.getAndIncrement() % values.length()), value);
+        }
+
+        private long[] values() {
+            final int size = (int) Math.min(cursor.get(), values.length());
+            final long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = values.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Immutable view of the histogram at some point in time.
+     * <p/>
+     * Percentiles and moments are computed from the middle of the buckets,
+     * the mean and the sum are exact.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(final long[] counts, final long sum, final long min, final long max) {
+            this.counts = counts;
+            this.sum = sum;
+
+            long total = 0;
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    total += counts[i];
+                    if (first < 0) {
+                        first = i;
+                    }
+                    last = i;
+                }
+            }
+            this.count = total;
+
+            // an interval only knows the buckets of its extremes
+            this.min = min != Long.MAX_VALUE || first < 0 ? min : lowest(first);
+            this.max = max != Long.MIN_VALUE || last < 0 ? max : Math.min(highest(last), sum);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getSum() {
+            return count == 0 ? Double.NaN : sum;
+        }
+
+        public double getMin() {
+            return count == 0 ? Double.NaN : min;
+        }
+
+        public double getMax() {
+            return count == 0 ? Double.NaN : max;
+        }
+
+        public double getMean() {
+            return count == 0 ? Double.NaN : (double) sum / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         */
+        public double getPercentile(final double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+            }
+            if (count == 0) {
+                return Double.NaN;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return value(i);
+                }
+            }
+            return max;
+        }
+
+        public double getSumsq() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            double sumsq = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    final double value = value(i);
+                    sumsq += counts[i] * value * value;
+                }
+            }
+            return sumsq;
+        }
+
+        public double getVariance() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (count == 1) {
+                return 0;
+            }
+            return moment(2) / (count - 1);
+        }
+
+        public double getStandardDeviation() {
+            return Math.sqrt(getVariance());
+        }
+
+        public double getSkewness() {
+            if (count < 3) {
+                return Double.NaN;
+            }
+            final double variance = getVariance();
+            final double n = count;
+            return n / ((n - 1) * (n - 2)) * moment(3) / (variance * Math.sqrt(variance));
+        }
+
+        public double getKurtosis() {
+            if (count < 4) {
+                return Double.NaN;
+            }
+            final double variance = getVariance();
+            final double n = count;
+            final double coefficientOne = n * (n + 1) / ((n - 1) * (n - 2) * (n - 3));
+            final double termTwo = 3 * (n - 1) * (n - 1) / ((n - 2) * (n - 3));
+            return coefficientOne * moment(4) / (variance * variance) - termTwo;
+        }
+
+        public double getGeometricMean() {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            double logs = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    logs += counts[i] * Math.log(value(i));
+                }
+            }
+            return Math.exp(logs / count);
+        }
+
+        /**
+         * @return the sum of the differences to the mean at the given power
+         */
+        private double moment(final int power) {
+            final double mean = getMean();
+            double accum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    accum += counts[i] * Math.pow(value(i) - mean, power);
+                }
+            }
+            return accum;
+        }
+
+        /**
+         * @return the middle of the bucket kept within the known extremes
+         */
+        private double value(final int bucket) {
+            final long lowest = lowest(bucket);
+            final double middle = lowest + (Math.min(highest(bucket), max) - lowest) / 2.0;
+            return Math.max(min, Math.min(max, middle));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Container wide registry of the {@link MethodMetrics} of every business
+ * method invoked, unlike {@link StatsInterceptor} it needs no @Monitor.
+ * <p/>
+ * Each bean gets a "Metrics" MBean the first time one of its methods is
+ * invoked, it is unregistered when the bean is undeployed.
+ * <p/>
+ * Disabled by default, each method metered keeps an execution time
+ * histogram: set openejb.invocation.metrics to true to enable it.
+ *
+ * @version $Rev$ $Date$
+ */
+public class InvocationMetrics {
+
+    public static final String ACTIVATED = "openejb.invocation.metrics";
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    private final ConcurrentMap<BeanContext, BeanMetrics> beans = new ConcurrentHashMap<BeanContext, BeanMetrics>();
+    private final boolean enabled;
+
+    public InvocationMetrics(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public static InvocationMetrics get() {
+        final SystemInstance systemInstance = SystemInstance.get();
+        InvocationMetrics metrics = systemInstance.getComponent(InvocationMetrics.class);
+        if (metrics == null) {
+            synchronized (InvocationMetrics.class) {
+                metrics = systemInstance.getComponent(InvocationMetrics.class);
+                if (metrics == null) {
+                    metrics = new InvocationMetrics(systemInstance.getOptions().get(ACTIVATED, false));
+                    systemInstance.setComponent(InvocationMetrics.class, metrics);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * @return the metrics of this method, {@link MethodMetrics#NONE} if they are disabled
+     */
+    public static MethodMetrics get(final BeanContext beanContext, final Method method) {
+        return get().metrics(beanContext, method);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public MethodMetrics metrics(final BeanContext beanContext, final Method method) {
+        if (!enabled || method == null) {
+            return MethodMetrics.NONE;
+        }
+
+        BeanMetrics bean = beans.get(beanContext);
+        if (bean == null) {
+            bean = new BeanMetrics(beanContext);
+            final BeanMetrics existing = beans.putIfAbsent(beanContext, bean);
+            if (existing != null) {
+                bean = existing;
+            } else {
+                bean.register();
+            }
+        }
+        return bean.metrics(method);
+    }
+
+    public Collection<BeanMetrics> getBeans() {
+        return Collections.unmodifiableCollection(beans.values());
+    }
+
+    /**
+     * Called by the containers when the bean is undeployed.
+     */
+    public void remove(final BeanContext beanContext) {
+        final BeanMetrics bean = beans.remove(beanContext);
+        if (bean != null) {
+            bean.unregister();
+        }
+    }
+
+    public static class BeanMetrics {
+        private final BeanContext beanContext;
+        private final ConcurrentMap<Method, MethodMetrics> methods = new ConcurrentHashMap<Method, MethodMetrics>();
+        private volatile ObjectName objectName;
+
+        public BeanMetrics(final BeanContext beanContext) {
+            this.beanContext = beanContext;
+        }
+
+        public BeanContext getBeanContext() {
+            return beanContext;
+        }
+
+        public String getModuleId() {
+            return beanContext.getModuleID();
+        }
+
+        public String getEjbName() {
+            return beanContext.getEjbName();
+        }
+
+        @ManagedCollection(type = MethodMetrics.class, key = "method")
+        public Collection<MethodMetrics> methods() {
+            return methods.values();
+        }
+
+        private MethodMetrics metrics(final Method method) {
+            MethodMetrics metrics = methods.get(method);
+            if (metrics == null) {
+                metrics = new MethodMetrics(method);
+                final MethodMetrics existing = methods.putIfAbsent(method, metrics);
+                if (existing != null) {
+                    metrics = existing;
+                }
+            }
+            return metrics;
+        }
+
+        private void register() {
+            if (!LocalMBeanServer.isJMXActive()) {
+                return;
+            }
+
+            final ObjectNameBuilder jmxName = new ObjectNameBuilder("openejb.management");
+            jmxName.set("J2EEServer", "openejb");
+            jmxName.set("J2EEApplication", null);
+            jmxName.set("EJBModule", beanContext.getModuleID());
+            jmxName.set("EJB", beanContext.getEjbName());
+            jmxName.set("name", beanContext.getEjbName());
+            jmxName.set("j2eeType", "Metrics");
+
+            final MBeanServer server = LocalMBeanServer.get();
+            try {
+                final ObjectName name = jmxName.build();
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(new ManagedMBean(this), name);
+                objectName = name;
+            } catch (final Exception e) {
+                logger.error("Unable to register MBean ", e);
+            }
+        }
+
+        private void unregister() {
+            if (objectName == null) {
+                return;
+            }
+            try {
+                LocalMBeanServer.get().unregisterMBean(objectName);
+            } catch (final Exception e) {
+                logger.error("Unable to unregister MBean " + objectName);
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters of one business method, recorded by the containers when the
+ * {@link InvocationMetrics} are enabled.
+ * <p/>
+ * A container calls {@link #start()} when the invocation arrives,
+ * {@link #obtained(long)} once it holds a bean instance and
+ * {@link #end(long, boolean)} when the invocation is over.  The time
+ * between the first two is the pool wait, the time between the last two
+ * is the execution time.
+ * <p/>
+ * The counters recorded with each invocation are striped by thread like
+ * the {@link Histogram} ones, only the errors and a new maximum pool wait
+ * update a shared counter.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MethodMetrics {
+
+    /**
+     * Used when metrics are disabled, records nothing.
+     */
+    public static final MethodMetrics NONE = new MethodMetrics();
+
+    private static final int STRIPES = stripes();
+
+    // recent execution times kept per stripe for the percentiles
+    private static final int WINDOW = 256;
+
+    // offsets of the counters in a stripe, a stripe spans a cache line
+    private static final int INVOCATIONS = 0;
+    private static final int IN_FLIGHT = 1;
+    private static final int POOL_WAIT = 2;
+    private static final int STRIPE_SIZE = 8;
+
+    private final boolean enabled;
+
+    // Used as the prefix for the MBeanAttributeInfo
+    private final String method;
+
+    private final AtomicLongArray counters;
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong poolWaitMax = new AtomicLong();
+    private final Histogram execution;
+
+    private MethodMetrics() {
+        this.enabled = false;
+        this.method = "none";
+        this.counters = new AtomicLongArray(STRIPE_SIZE);
+        this.execution = null;
+    }
+
+    public MethodMetrics(final Method method) {
+        this.enabled = true;
+        this.method = name(method);
+        this.counters = new AtomicLongArray(STRIPES * STRIPE_SIZE);
+        this.execution = new Histogram(WINDOW);
+    }
+
+    /**
+     * @return the start of the invocation
+     */
+    public long start() {
+        if (!enabled) {
+            return 0;
+        }
+        counters.incrementAndGet(stripe() + IN_FLIGHT);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time spent waiting for a bean instance.
+     *
+     * @param start as returned by {@link #start()}
+     * @return the start of the execution
+     */
+    public long obtained(final long start) {
+        if (!enabled) {
+            return 0;
+        }
+        final long now = System.nanoTime();
+        final long wait = now - start;
+        counters.addAndGet(stripe() + POOL_WAIT, wait);
+
+        long max;
+        while (wait > (max = poolWaitMax.get())) {
+            if (poolWaitMax.compareAndSet(max, wait)) {
+                break;
+            }
+        }
+        return now;
+    }
+
+    /**
+     * @param start  as returned by {@link #obtained(long)}, or by {@link #start()}
+     *               if no instance was obtained
+     * @param failed true if the invocation threw an exception
+     */
+    public void end(final long start, final boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        execution.record(System.nanoTime() - start);
+        final int stripe = stripe();
+        counters.incrementAndGet(stripe + INVOCATIONS);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+        counters.decrementAndGet(stripe + IN_FLIGHT);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    @Managed
+    public long getInvocations() {
+        return sum(INVOCATIONS);
+    }
+
+    @Managed
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Managed
+    public int getInFlight() {
+        return (int) sum(IN_FLIGHT);
+    }
+
+    /**
+     * @return the total time spent waiting for an instance, in nanoseconds
+     */
+    public long getPoolWaitNanos() {
+        return sum(POOL_WAIT);
+    }
+
+    @Managed
+    public double getPoolWaitTime() {
+        return toMillis(getPoolWaitNanos());
+    }
+
+    @Managed
+    public double getPoolWaitMax() {
+        return toMillis(poolWaitMax.get());
+    }
+
+    @Managed
+    public double getExecutionMean() {
+        return toMillis(execution.snapshot().getMean());
+    }
+
+    @Managed
+    public double getExecutionMax() {
+        return toMillis(execution.snapshot().getMax());
+    }
+
+    @Managed
+    public double getExecutionPercentile50() {
+        return toMillis(execution.windowSnapshot().getPercentile(50));
+    }
+
+    @Managed
+    public double getExecutionPercentile90() {
+        return toMillis(execution.windowSnapshot().getPercentile(90));
+    }
+
+    @Managed
+    public double getExecutionPercentile99() {
+        return toMillis(execution.windowSnapshot().getPercentile(99));
+    }
+
+    @Managed
+    public double getExecutionPercentile999() {
+        return toMillis(execution.windowSnapshot().getPercentile(99.9));
+    }
+
+    /**
+     * @return the execution times in nanoseconds
+     */
+    public Histogram getExecution() {
+        return execution;
+    }
+
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < Math.min(Runtime.getRuntime().availableProcessors(), 8)) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    private int stripe() {
+        return ((int) Thread.currentThread().getId() & (STRIPES - 1)) * STRIPE_SIZE;
+    }
+
+    private long sum(final int counter) {
+        long sum = 0;
+        for (int i = counter; i < counters.length(); i += STRIPE_SIZE) {
+            sum += counters.get(i);
+        }
+        return sum;
+    }
+
+    private static double toMillis(final double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    static String name(final Method method) {
+        final StringBuilder sb = new StringBuilder(method.getName());
+        sb.append("(");
+        final Class<?>[] params = method.getParameterTypes();
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) {
+                sb.append(",");
+            }
+            sb.append(typeName(params[i]));
+        }
+        sb.append(")");
+        return sb.toString();
+    }
+
+    private static String typeName(final Class<?> type) {
+        return type.isArray() ? typeName(type.getComponentType()) + "[]" : type.getName();
+    }
+}
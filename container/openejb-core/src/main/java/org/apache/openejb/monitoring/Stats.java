@@ -17,7 +17,7 @@
 
 package org.apache.openejb.monitoring;
 
-import org.apache.openejb.math.stat.descriptive.SynchronizedDescriptiveStatistics;
+import java.util.Arrays;
 
 /**
  * @version $Rev$ $Date$
@@ -26,14 +26,14 @@ import org.apache.openejb.math.stat.descriptive.SynchronizedDescriptiveStatistic
 public class Stats {
 
     private final Event event = new Event();
-    private final SynchronizedDescriptiveStatistics samples;
+    private final Histogram samples;
 
     public Stats() {
         this(1000);
     }
 
     public Stats(final int window) {
-        this.samples = new SynchronizedDescriptiveStatistics(window);
+        this.samples = new Histogram(window);
     }
 
     @Managed
@@ -46,104 +46,141 @@ public class Stats {
         return samples.getWindowSize();
     }
 
+    @Managed
+    public double getPercentile999() {
+        return samples.windowSnapshot().getPercentile(99.9);
+    }
+
     @Managed
     public double getPercentile99() {
-        return samples.getPercentile(99.0);
+        return samples.windowSnapshot().getPercentile(99.0);
     }
 
     @Managed
     public double getPercentile90() {
-        return samples.getPercentile(90.0);
+        return samples.windowSnapshot().getPercentile(90.0);
     }
 
     @Managed
     public double getPercentile75() {
-        return samples.getPercentile(75.0);
+        return samples.windowSnapshot().getPercentile(75.0);
     }
 
     @Managed
     public double getPercentile50() {
-        return samples.getPercentile(50.0);
+        return samples.windowSnapshot().getPercentile(50.0);
     }
 
     @Managed
     public double getPercentile25() {
-        return samples.getPercentile(25.0);
+        return samples.windowSnapshot().getPercentile(25.0);
     }
 
     @Managed
     public double getPercentile10() {
-        return samples.getPercentile(10.0);
+        return samples.windowSnapshot().getPercentile(10.0);
     }
 
     @Managed
     public double getPercentile01() {
-        return samples.getPercentile(1.0);
+        return samples.windowSnapshot().getPercentile(1.0);
     }
 
     @Managed
     public double getStandardDeviation() {
-        return samples.getStandardDeviation();
+        return samples.windowSnapshot().getStandardDeviation();
     }
 
     @Managed
     public double getMean() {
-        return samples.getMean();
+        return samples.windowSnapshot().getMean();
     }
 
     @Managed
     public double getVariance() {
-        return samples.getVariance();
+        return samples.windowSnapshot().getVariance();
     }
 
     @Managed
     public double getGeometricMean() {
-        return samples.getGeometricMean();
+        return samples.windowSnapshot().getGeometricMean();
     }
 
     @Managed
     public double getSkewness() {
-        return samples.getSkewness();
+        return samples.windowSnapshot().getSkewness();
     }
 
     @Managed
     public double getKurtosis() {
-        return samples.getKurtosis();
+        return samples.windowSnapshot().getKurtosis();
     }
 
     @Managed
     public double getMax() {
-        return samples.getMax();
+        return samples.windowSnapshot().getMax();
     }
 
     @Managed
     public double getMin() {
-        return samples.getMin();
+        return samples.windowSnapshot().getMin();
     }
 
     @Managed
     public double getSum() {
-        return samples.getSum();
+        return samples.windowSnapshot().getSum();
     }
 
     @Managed
     public double getSumsq() {
-        return samples.getSumsq();
+        return samples.windowSnapshot().getSumsq();
     }
 
     @Managed
     public double[] sortedValues() {
-        return samples.getSortedValues();
+        final double[] values = values();
+        Arrays.sort(values);
+        return values;
     }
 
     @Managed
     public double[] values() {
-        return samples.getValues();
+        final long[] values = samples.values();
+        final double[] result = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = values[i];
+        }
+        return result;
+    }
+
+    /**
+     * Meant to be polled, each call starts a new interval.
+     *
+     * @return the count, mean, median, 90th and 99th percentiles and max of the values recorded since the previous call
+     */
+    @Managed
+    public double[] intervalStatistics() {
+        final Histogram.Snapshot interval = samples.intervalSnapshot();
+        return new double[]{
+            interval.getCount(),
+            interval.getMean(),
+            interval.getPercentile(50.0),
+            interval.getPercentile(90.0),
+            interval.getPercentile(99.0),
+            interval.getMax()
+        };
+    }
+
+    /**
+     * @return the histogram of the recorded values, the statistics above only cover its window
+     */
+    public Histogram getHistogram() {
+        return samples;
     }
 
     public void record(final long time) {
         event.record();
-        samples.addValue(time);
+        samples.record(time);
     }
 
     @Managed
@@ -20,7 +20,6 @@ package org.apache.openejb.monitoring;
 import org.apache.openejb.api.Monitor;
 import org.apache.openejb.core.interceptor.InterceptorData;
 import org.apache.openejb.loader.SystemInstance;
-import org.apache.openejb.math.stat.descriptive.SynchronizedDescriptiveStatistics;
 import org.apache.xbean.finder.ClassFinder;
 
 import javax.annotation.PostConstruct;
@@ -34,6 +33,7 @@ import javax.interceptor.AroundInvoke;
 import javax.interceptor.AroundTimeout;
 import javax.interceptor.InvocationContext;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -180,12 +180,11 @@ public class StatsInterceptor {
         try {
             return invocationContext.proceed();
         } finally {
-            long time = System.nanoTime() - start;
-            time = millis(time); // do it in 2 steps since otherwise the measure is false (more false)
+            final long time = System.nanoTime() - start;
             if (stats != null) {
                 stats.record(time);
             }
-            invocationTime.addAndGet(time);
+            invocationTime.addAndGet(millis(time));
         }
     }
 
@@ -211,7 +210,9 @@ public class StatsInterceptor {
 
     public class Stats {
         private final AtomicLong count = new AtomicLong();
-        private final SynchronizedDescriptiveStatistics samples;
+
+        // in nanoseconds, exposed in milliseconds
+        private final Histogram samples;
 
         // Used as the prefix for the MBeanAttributeInfo
         private final String method;
@@ -221,7 +222,7 @@ public class StatsInterceptor {
 
             final int window = methodAnnotation != null ? methodAnnotation.sample() : classAnnotation != null ? classAnnotation.sample() : 2000;
 
-            this.samples = new SynchronizedDescriptiveStatistics(window);
+            this.samples = new Histogram(window);
             final String s = ",";
 
             final StringBuilder sb = new StringBuilder(method.getName());
@@ -254,104 +255,127 @@ public class StatsInterceptor {
             return count.get();
         }
 
+        @Managed
+        public double getPercentile999() {
+            return toMillis(samples.windowSnapshot().getPercentile(99.9));
+        }
+
         @Managed
         public double getPercentile99() {
-            return samples.getPercentile(99.0);
+            return toMillis(samples.windowSnapshot().getPercentile(99.0));
         }
 
         @Managed
         public double getPercentile90() {
-            return samples.getPercentile(90.0);
+            return toMillis(samples.windowSnapshot().getPercentile(90.0));
         }
 
         @Managed
         public double getPercentile75() {
-            return samples.getPercentile(75.0);
+            return toMillis(samples.windowSnapshot().getPercentile(75.0));
         }
 
         @Managed
         public double getPercentile50() {
-            return samples.getPercentile(50.0);
+            return toMillis(samples.windowSnapshot().getPercentile(50.0));
         }
 
         @Managed
         public double getPercentile25() {
-            return samples.getPercentile(25.0);
+            return toMillis(samples.windowSnapshot().getPercentile(25.0));
         }
 
         @Managed
         public double getPercentile10() {
-            return samples.getPercentile(10.0);
+            return toMillis(samples.windowSnapshot().getPercentile(10.0));
         }
 
         @Managed
         public double getPercentile01() {
-            return samples.getPercentile(1.0);
+            return toMillis(samples.windowSnapshot().getPercentile(1.0));
         }
 
         @Managed
         public double getStandardDeviation() {
-            return samples.getStandardDeviation();
+            return toMillis(samples.windowSnapshot().getStandardDeviation());
         }
 
         @Managed
         public double getMean() {
-            return samples.getMean();
+            return toMillis(samples.windowSnapshot().getMean());
         }
 
         @Managed
         public double getVariance() {
-            return samples.getVariance();
+            return toMillis(toMillis(samples.windowSnapshot().getVariance()));
         }
 
         @Managed
         public double getGeometricMean() {
-            return samples.getGeometricMean();
+            return toMillis(samples.windowSnapshot().getGeometricMean());
         }
 
         @Managed
         public double getSkewness() {
-            return samples.getSkewness();
+            return samples.windowSnapshot().getSkewness();
         }
 
         @Managed
         public double getKurtosis() {
-            return samples.getKurtosis();
+            return samples.windowSnapshot().getKurtosis();
         }
 
         @Managed
         public double getMax() {
-            return samples.getMax();
+            return toMillis(samples.windowSnapshot().getMax());
         }
 
         @Managed
         public double getMin() {
-            return samples.getMin();
+            return toMillis(samples.windowSnapshot().getMin());
         }
 
         @Managed
         public double getSum() {
-            return samples.getSum();
+            return toMillis(samples.windowSnapshot().getSum());
         }
 
         @Managed
         public double getSumsq() {
-            return samples.getSumsq();
+            return toMillis(toMillis(samples.windowSnapshot().getSumsq()));
         }
 
         @Managed
         public double[] sortedValues() {
-            return samples.getSortedValues();
+            final double[] values = values();
+            Arrays.sort(values);
+            return values;
         }
 
         @Managed
         public double[] values() {
-            return samples.getValues();
+            final long[] values = samples.values();
+            final double[] result = new double[values.length];
+            for (int i = 0; i < values.length; i++) {
+                result[i] = toMillis(values[i]);
+            }
+            return result;
         }
 
+        public Histogram getHistogram() {
+            return samples;
+        }
+
+        /**
+         * @param time in nanoseconds
+         */
         public void record(final long time) {
             count.incrementAndGet();
-            samples.addValue(time);
+            samples.record(time);
+        }
+
+        private double toMillis(final double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
         }
 
     }
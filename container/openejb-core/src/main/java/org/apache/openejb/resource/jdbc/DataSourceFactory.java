@@ -22,9 +22,12 @@ import org.apache.openejb.cipher.PasswordCipherFactory;
 import org.apache.openejb.loader.IO;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.resource.XAResourceWrapper;
+import org.apache.openejb.resource.jdbc.dbcp.BasicManagedDataSource;
 import org.apache.openejb.resource.jdbc.dbcp.DbcpDataSourceCreator;
 import org.apache.openejb.resource.jdbc.driver.AlternativeDriver;
 import org.apache.openejb.resource.jdbc.logging.LoggingSqlDataSource;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedDataSource;
+import org.apache.openejb.resource.jdbc.managed.local.StatementCache;
 import org.apache.openejb.resource.jdbc.plugin.AbstractDataSourcePlugin;
 import org.apache.openejb.resource.jdbc.plugin.DataSourcePlugin;
 import org.apache.openejb.resource.jdbc.pool.DataSourceCreator;
@@ -63,8 +66,10 @@ public class DataSourceFactory {
 
     public static final String LOG_SQL_PROPERTY = "LogSql";
     public static final String FLUSHABLE_PROPERTY = "Flushable";
+    public static final String STATEMENT_CACHE_SIZE_PROPERTY = "StatementCacheSize";
     public static final String GLOBAL_LOG_SQL_PROPERTY = "openejb.jdbc.log";
     public static final String GLOBAL_FLUSH_PROPERTY = "openejb.jdbc.flushable";
+    public static final String GLOBAL_STATEMENT_CACHE_SIZE_PROPERTY = "openejb.jdbc.statement-cache.size";
     public static final String POOL_PROPERTY = "openejb.datasource.pool";
     public static final String DATA_SOURCE_CREATOR_PROP = "DataSourceCreator";
 
@@ -136,6 +141,10 @@ public class DataSourceFactory {
             "true".equalsIgnoreCase((String) properties.remove(LOG_SQL_PROPERTY)));
         final DataSourceCreator creator = creator(properties.remove(DATA_SOURCE_CREATOR_PROP), logSql);
 
+        final Object statementCacheSizeValue = properties.remove(STATEMENT_CACHE_SIZE_PROPERTY);
+        final int statementCacheSize = SystemInstance.get().getOptions().get(GLOBAL_STATEMENT_CACHE_SIZE_PROPERTY,
+            statementCacheSizeValue == null ? 0 : Integer.parseInt(statementCacheSizeValue.toString().trim()));
+
         boolean useContainerLoader = "true".equalsIgnoreCase(SystemInstance.get().getProperty("openejb.resources.use-container-loader", "true")) && (impl == null || impl.getClassLoader() == DataSourceFactory.class.getClassLoader());
         final ClassLoader oldLoader = Thread.currentThread().getContextClassLoader();
         if (useContainerLoader) {
@@ -198,6 +207,21 @@ public class DataSourceFactory {
 
             // ds and creator are associated here, not after the proxying of the next if if active
             setCreatedWith(creator, ds);
+
+            if (statementCacheSize > 0) {
+                if (ds instanceof ManagedDataSource) {
+                    final StatementCache statementCache = new StatementCache(statementCacheSize);
+                    statementCache.register(name);
+                    ManagedDataSource.class.cast(ds).setStatementCache(statementCache);
+                } else if (ds instanceof BasicManagedDataSource) {
+                    // the default creator relies on commons-dbcp managed data sources, their handles share the cache of the transaction
+                    final StatementCache statementCache = new StatementCache(statementCacheSize);
+                    statementCache.register(name);
+                    BasicManagedDataSource.class.cast(ds).setStatementCache(statementCache);
+                } else {
+                    LOGGER.warning("Ignoring " + STATEMENT_CACHE_SIZE_PROPERTY + " of " + name + ", only JTA managed data sources cache statements");
+                }
+            }
             if (driver != null) {
                 driverByDataSource.put(ds, driver);
             }
@@ -386,6 +410,18 @@ public class DataSourceFactory {
         final DataSourceCreator remove = creatorByDataSource.remove(instance);
         remove.destroy(instance);
 
+        final StatementCache statementCache;
+        if (instance instanceof ManagedDataSource) {
+            statementCache = ManagedDataSource.class.cast(instance).getStatementCache();
+        } else if (instance instanceof BasicManagedDataSource) {
+            statementCache = BasicManagedDataSource.class.cast(instance).getStatementCache();
+        } else {
+            statementCache = null;
+        }
+        if (statementCache != null) {
+            statementCache.unregister();
+        }
+
         final AlternativeDriver driver = driverByDataSource.remove(instance);
         if (driver != null) {
             driver.deregister();
@@ -24,11 +24,13 @@ import org.apache.openejb.cipher.PasswordCipherFactory;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.resource.jdbc.BasicDataSourceUtil;
 import org.apache.openejb.resource.jdbc.IsolationLevels;
+import org.apache.openejb.resource.jdbc.managed.local.StatementCache;
 import org.apache.openejb.resource.jdbc.plugin.DataSourcePlugin;
 import org.apache.openejb.resource.jdbc.pool.XADataSourceResource;
 
 import javax.sql.DataSource;
 import java.io.File;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.Properties;
@@ -51,6 +53,7 @@ public class BasicManagedDataSource extends org.apache.commons.dbcp.managed.Basi
      */
     private String passwordCipher;
     private JMXBasicDataSource jmxDs;
+    private volatile StatementCache statementCache;
 
     public BasicManagedDataSource(final String name) {
         registerAsMbean(name);
@@ -82,6 +85,36 @@ public class BasicManagedDataSource extends org.apache.commons.dbcp.managed.Basi
         }
     }
 
+    @Override
+    public Connection getConnection() throws SQLException {
+        return cacheStatements(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(final String user, final String pass) throws SQLException {
+        return cacheStatements(super.getConnection(user, pass));
+    }
+
+    private Connection cacheStatements(final Connection connection) {
+        final StatementCache cache = statementCache;
+        if (cache == null) {
+            return connection;
+        }
+        return new StatementCachingConnection(connection,
+            getTransactionManager() != null ? getTransactionManager() : OpenEJB.getTransactionManager(), cache);
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * @param statementCache where the connections handed out from now on cache the statements prepared in a transaction
+     */
+    public void setStatementCache(final StatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
     private void registerAsMbean(final String name) {
         try {
             jmxDs = new JMXBasicDataSource(name, this);
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc.dbcp;
+
+import org.apache.commons.dbcp.DelegatingConnection;
+import org.apache.openejb.resource.jdbc.managed.local.StatementCache;
+
+import javax.transaction.TransactionManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+
+/**
+ * A connection handle of a commons-dbcp managed data source preparing its
+ * statements through the {@link StatementCache} of the data source, each
+ * lookup gets a new handle but they share the cached statements of the transaction.
+ */
+public class StatementCachingConnection extends DelegatingConnection {
+    private final TransactionManager transactionManager;
+    private final StatementCache statementCache;
+
+    public StatementCachingConnection(final Connection connection, final TransactionManager transactionManager,
+                                      final StatementCache statementCache) {
+        super(connection);
+        this.transactionManager = transactionManager;
+        this.statementCache = statementCache;
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(final String sql) throws SQLException {
+        checkOpen();
+        return statementCache.prepareStatement(transactionManager, getDelegate(), sql);
+    }
+
+    // JDBC 4.1, not known by commons-dbcp 1.4
+
+    public void setSchema(final String schema) throws SQLException {
+        checkOpen();
+        getDelegate().setSchema(schema);
+    }
+
+    public String getSchema() throws SQLException {
+        checkOpen();
+        return getDelegate().getSchema();
+    }
+
+    public void abort(final Executor executor) throws SQLException {
+        getDelegate().abort(executor);
+    }
+
+    public void setNetworkTimeout(final Executor executor, final int milliseconds) throws SQLException {
+        checkOpen();
+        getDelegate().setNetworkTimeout(executor, milliseconds);
+    }
+
+    public int getNetworkTimeout() throws SQLException {
+        checkOpen();
+        return getDelegate().getNetworkTimeout();
+    }
+}
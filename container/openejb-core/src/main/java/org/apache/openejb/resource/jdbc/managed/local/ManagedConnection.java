@@ -42,10 +42,14 @@ public class ManagedConnection implements InvocationHandler {
 
     private static final Map<Integer, Map<Transaction, Connection>> CONNECTION_BY_TX_BY_DS = new ConcurrentHashMap<Integer, Map<Transaction, Connection>>();
 
+    // statements cached on the connections enlisted in a transaction
+    private static final Map<Connection, StatementCache.Statements> STATEMENTS = new ConcurrentHashMap<Connection, StatementCache.Statements>();
+
     private final TransactionManager transactionManager;
     private final LocalXAResource xaResource;
     protected Connection delegate;
     private Transaction currentTransaction;
+    private volatile boolean completed;
     private boolean closed;
 
     private final Map<Transaction, Connection> connectionByTx;
@@ -77,20 +81,39 @@ public class ManagedConnection implements InvocationHandler {
         }
 
         // here the real logic starts
+        try {
+            if (enlist()) {
+                return invokeUnderTransaction(delegate, method, args);
+            }
+            return invoke(method, delegate, args);
+        } catch (final InvocationTargetException ite) {
+            throw ite.getTargetException();
+        }
+    }
+
+    /**
+     * Binds {@link #delegate} to the current transaction if any.
+     *
+     * @return true if the connection is used under a transaction
+     */
+    boolean enlist() throws SQLException {
         try {
             final Transaction transaction = transactionManager.getTransaction();
 
             if (transaction == null) { // shouldn't be possible
-                return invoke(method, delegate, args);
+                return false;
             }
 
             // if we have a tx check it is the same this connection is linked to
             if (currentTransaction != null) {
+                if (currentTransaction == transaction && !completed) { // still enlisted, no need to ask the transaction
+                    return true;
+                }
                 if (isUnderTransaction(currentTransaction.getStatus())) {
                     if (!currentTransaction.equals(transaction)) {
                         throw new SQLException("Connection can not be used while enlisted in another transaction");
                     }
-                    return invokeUnderTransaction(delegate, method, args);
+                    return true;
                 } else {
                     close(delegate);
                 }
@@ -108,6 +131,7 @@ public class ManagedConnection implements InvocationHandler {
                     } else {
                         connectionByTx.put(transaction, delegate);
                         currentTransaction = transaction;
+                        completed = false;
                         try {
                             transaction.enlistResource(getXAResource());
                         } catch (final RollbackException ignored) {
@@ -116,7 +140,11 @@ public class ManagedConnection implements InvocationHandler {
                             throw new SQLException("Unable to enlist connection the transaction", e);
                         }
 
-                        transaction.registerSynchronization(new ClosingSynchronization(delegate, connectionByTx));
+                        try {
+                            transaction.registerSynchronization(new ClosingSynchronization(this, delegate, connectionByTx));
+                        } catch (final RollbackException e) {
+                            throw new SQLException("Unable to register the connection in the transaction", e);
+                        }
 
                         try {
                             setAutoCommit(false);
@@ -130,14 +158,24 @@ public class ManagedConnection implements InvocationHandler {
                         }
                     }
                 }
-
-                return invokeUnderTransaction(delegate, method, args);
+                return true;
             }
+            return false;
+        } catch (final SystemException e) {
+            throw new SQLException("Unable to get the state of the transaction", e);
+        }
+    }
 
-            return invoke(method, delegate, args);
-        } catch (final InvocationTargetException ite) {
-            throw ite.getTargetException();
+    /**
+     * @return the cached statements of the enlisted connection, call {@link #enlist()} first
+     */
+    StatementCache.Statements statements(final StatementCache cache) {
+        StatementCache.Statements statements = STATEMENTS.get(delegate);
+        if (statements == null) {
+            statements = cache.statements(delegate);
+            STATEMENTS.put(delegate, statements);
         }
+        return statements;
     }
 
     protected void setAutoCommit(final boolean value) throws SQLException {
@@ -172,16 +210,20 @@ public class ManagedConnection implements InvocationHandler {
 
     // will be done later
     // we need to delay it in case of rollback
-    private Object close() {
+    Object close() {
         closed = true;
         return null;
     }
 
+    boolean isClosed() {
+        return closed;
+    }
+
     private static boolean isUnderTransaction(final int status) {
         return status == Status.STATUS_ACTIVE || status == Status.STATUS_MARKED_ROLLBACK;
     }
 
-    private static SQLException forbiddenCall(final String mtdName) {
+    static SQLException forbiddenCall(final String mtdName) {
         return new SQLException("can't call " + mtdName + " when the connection is JtaManaged");
     }
 
@@ -207,10 +249,12 @@ public class ManagedConnection implements InvocationHandler {
     }
 
     private static class ClosingSynchronization implements Synchronization {
+        private final ManagedConnection managedConnection;
         private final Connection connection;
         private final Map<Transaction, Connection> mapToCleanup;
 
-        public ClosingSynchronization(final Connection delegate, final Map<Transaction, Connection> connByTx) {
+        public ClosingSynchronization(final ManagedConnection managed, final Connection delegate, final Map<Transaction, Connection> connByTx) {
+            managedConnection = managed;
             connection = delegate;
             mapToCleanup = connByTx;
         }
@@ -222,6 +266,11 @@ public class ManagedConnection implements InvocationHandler {
 
         @Override
         public void afterCompletion(final int status) {
+            managedConnection.completed = true;
+            final StatementCache.Statements statements = STATEMENTS.remove(connection);
+            if (statements != null) {
+                statements.close();
+            }
             close(connection);
             try {
                 final Transaction tx = OpenEJB.getTransactionManager().getTransaction();
@@ -23,18 +23,16 @@ import javax.sql.CommonDataSource;
 import javax.sql.DataSource;
 import javax.transaction.TransactionManager;
 import java.io.PrintWriter;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.logging.Logger;
 
 public class ManagedDataSource implements DataSource {
-    private static final Class<?>[] CONNECTION_CLASS = new Class<?>[]{Connection.class};
-
     protected final DataSource delegate;
     protected final TransactionManager transactionManager;
     protected final int hashCode;
+    private volatile StatementCache statementCache;
 
     protected ManagedDataSource(final DataSource ds, final TransactionManager txMgr, final int hc) {
         delegate = ds;
@@ -93,13 +91,24 @@ public class ManagedDataSource implements DataSource {
     }
 
     private Connection managed(final Connection connection) {
-        return (Connection) Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), CONNECTION_CLASS, new ManagedConnection(this, connection, transactionManager));
+        return new ManagedJdbcConnection(new ManagedConnection(this, connection, transactionManager), statementCache);
     }
 
     public DataSource getDelegate() {
         return delegate;
     }
 
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * @param statementCache where the connections handed out from now on cache the statements prepared in a transaction
+     */
+    public void setStatementCache(final StatementCache statementCache) {
+        this.statementCache = statementCache;
+    }
+
     public void clean() {
         ManagedConnection.cleanDataSource(this);
     }
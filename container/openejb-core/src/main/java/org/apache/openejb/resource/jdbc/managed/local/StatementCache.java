@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.resource.jdbc.managed.local;
+
+import org.apache.openejb.api.internal.Internal;
+import org.apache.openejb.api.jmx.Description;
+import org.apache.openejb.api.jmx.MBean;
+import org.apache.openejb.api.jmx.ManagedAttribute;
+import org.apache.openejb.api.jmx.ManagedOperation;
+import org.apache.openejb.monitoring.LocalMBeanServer;
+import org.apache.openejb.monitoring.ObjectNameBuilder;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the prepared statements of the connections enlisted in a transaction
+ * so the same SQL prepared again in this transaction reuses them.
+ * <p/>
+ * Closing a cached statement gives it back to the cache, the statements are
+ * really closed with the connection at the end of the transaction or when
+ * they are the least recently used ones of a full cache.
+ */
+@MBean
+@Internal
+@Description("Prepared statements reused within the transactions")
+public class StatementCache {
+    // don't let dynamic SQL grow the statistics forever
+    private static final int MAX_TRACKED_SQL = 1000;
+
+    private final int maxSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> prepares = new ConcurrentHashMap<String, AtomicLong>();
+    private final Map<Transaction, Statements> byTransaction = new ConcurrentHashMap<Transaction, Statements>();
+    private ObjectName objectName;
+
+    /**
+     * @param maxSize the maximum number of idle statements kept per connection
+     */
+    public StatementCache(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void register(final String dataSourceName) {
+        objectName = new ObjectNameBuilder("openejb.management")
+            .set("ObjectType", "datasources")
+            .set("DataSource", dataSourceName)
+            .set("j2eeType", "StatementCache")
+            .build();
+        LocalMBeanServer.registerDynamicWrapperSilently(this, objectName);
+    }
+
+    public void unregister() {
+        if (objectName != null) {
+            LocalMBeanServer.unregisterSilently(objectName);
+            objectName = null;
+        }
+    }
+
+    Statements statements(final Connection connection) {
+        return new Statements(connection);
+    }
+
+    /**
+     * Prepares the statement through the statements cached for the current transaction,
+     * for the pools handing out a new connection handle per lookup which all share the
+     * same physical connection in a transaction (commons-dbcp managed data sources).
+     * Outside of a transaction the statement is simply prepared on the connection.
+     *
+     * @param transactionManager the transaction manager the pool enlists its connections in
+     * @param connection         the connection handle the statement is prepared on if not cached
+     * @param sql                the statement to prepare
+     */
+    public PreparedStatement prepareStatement(final TransactionManager transactionManager, final Connection connection,
+                                              final String sql) throws SQLException {
+        final Transaction transaction;
+        try {
+            transaction = transactionManager.getTransaction();
+            if (transaction == null || transaction.getStatus() != Status.STATUS_ACTIVE) {
+                return connection.prepareStatement(sql);
+            }
+        } catch (final SystemException e) {
+            throw new SQLException("Unable to get the state of the transaction", e);
+        }
+
+        Statements statements = byTransaction.get(transaction);
+        if (statements == null) { // a transaction is used by a single thread
+            statements = new Statements(connection);
+            try {
+                transaction.registerSynchronization(new ClosingSynchronization(transaction));
+            } catch (final RollbackException e) {
+                return connection.prepareStatement(sql);
+            } catch (final SystemException e) {
+                throw new SQLException("Unable to register the statements in the transaction", e);
+            }
+            byTransaction.put(transaction, statements);
+        }
+        return statements.prepareStatement(connection, sql);
+    }
+
+    private void prepared(final String sql) {
+        AtomicLong count = prepares.get(sql);
+        if (count == null) {
+            if (prepares.size() >= MAX_TRACKED_SQL) {
+                return;
+            }
+            count = new AtomicLong();
+            final AtomicLong existing = prepares.putIfAbsent(sql, count);
+            if (existing != null) {
+                count = existing;
+            }
+        }
+        count.incrementAndGet();
+    }
+
+    @ManagedAttribute
+    @Description("Statements reused from the cache")
+    public long getHits() {
+        return hits.get();
+    }
+
+    @ManagedAttribute
+    @Description("Statements prepared on the connection")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute
+    @Description("Ratio of the statements reused from the cache")
+    public double getHitRatio() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @ManagedAttribute
+    @Description("Statements closed to make room in a full cache")
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @ManagedAttribute
+    @Description("Maximum number of statements cached per connection")
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @ManagedAttribute
+    @Description("Number of times each SQL was prepared on a connection")
+    public TabularData getPrepareCounts() {
+        final Map<String, AtomicLong> snapshot = new HashMap<String, AtomicLong>(prepares);
+        final String[] names = new String[snapshot.size()];
+        final Object[] values = new Object[names.length];
+        int i = 0;
+        for (final Map.Entry<String, AtomicLong> entry : snapshot.entrySet()) {
+            names[i] = entry.getKey();
+            values[i++] = Long.toString(entry.getValue().get());
+        }
+        return LocalMBeanServer.tabularData("prepares", "prepare counts", names, values);
+    }
+
+    public long getPrepareCount(final String sql) {
+        final AtomicLong count = prepares.get(sql);
+        return count == null ? 0 : count.get();
+    }
+
+    @ManagedOperation
+    @Description("Reset the statistics")
+    public void reset() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        prepares.clear();
+    }
+
+    /**
+     * The idle statements of a connection, lives as long as the connection is enlisted.
+     */
+    final class Statements {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> idle;
+        private boolean closed;
+
+        private Statements(final Connection connection) {
+            this.connection = connection;
+            this.idle = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > maxSize) {
+                        evictions.incrementAndGet();
+                        close(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        PreparedStatement prepareStatement(final String sql) throws SQLException {
+            return prepareStatement(connection, sql);
+        }
+
+        // the connection can be another handle of the physical connection of these statements
+        private PreparedStatement prepareStatement(final Connection handle, final String sql) throws SQLException {
+            PreparedStatement statement;
+            synchronized (idle) {
+                statement = idle.remove(sql);
+            }
+
+            if (statement == null) {
+                misses.incrementAndGet();
+                prepared(sql);
+                statement = handle.prepareStatement(sql);
+            } else {
+                hits.incrementAndGet();
+            }
+            return new CachedStatement(this, sql, statement);
+        }
+
+        /**
+         * @param reusable false if the statement couldn't be reset for the next user, it is then closed
+         */
+        void release(final String sql, final PreparedStatement statement, final boolean reusable) {
+            if (!reusable) {
+                close(statement);
+                return;
+            }
+
+            final PreparedStatement replaced;
+            synchronized (idle) {
+                if (closed) {
+                    replaced = statement;
+                } else {
+                    replaced = idle.put(sql, statement);
+                }
+            }
+            if (replaced != null) { // the same SQL was prepared twice
+                close(replaced);
+            }
+        }
+
+        void close() {
+            final Collection<PreparedStatement> statements;
+            synchronized (idle) {
+                closed = true;
+                statements = new ArrayList<PreparedStatement>(idle.values());
+                idle.clear();
+            }
+            for (final PreparedStatement statement : statements) {
+                close(statement);
+            }
+        }
+
+        private void close(final PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (final SQLException e) {
+                // no-op
+            }
+        }
+    }
+
+    private final class ClosingSynchronization implements Synchronization {
+        private final Transaction transaction;
+
+        private ClosingSynchronization(final Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // no-op
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            final Statements statements = byTransaction.remove(transaction);
+            if (statements != null) {
+                statements.close();
+            }
+        }
+    }
+}
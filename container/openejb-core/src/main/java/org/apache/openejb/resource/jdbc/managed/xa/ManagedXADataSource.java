@@ -18,18 +18,16 @@
 package org.apache.openejb.resource.jdbc.managed.xa;
 
 import org.apache.openejb.resource.jdbc.managed.local.ManagedDataSource;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedJdbcConnection;
 
 import javax.sql.CommonDataSource;
 import javax.sql.XAConnection;
 import javax.sql.XADataSource;
 import javax.transaction.TransactionManager;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
 
 public class ManagedXADataSource extends ManagedDataSource {
-    private static final Class<?>[] CONNECTION_CLASS = new Class<?>[]{Connection.class};
-
     private final XADataSource xaDataSource;
 
     public ManagedXADataSource(final CommonDataSource ds, final TransactionManager txMgr) {
@@ -50,6 +48,6 @@ public class ManagedXADataSource extends ManagedDataSource {
     }
 
     private Connection managedXA(final XAConnection xaConnection, final Connection connection) throws SQLException {
-        return Connection.class.cast(Proxy.newProxyInstance(Thread.currentThread().getContextClassLoader(), CONNECTION_CLASS, new ManagedXAConnection(delegate, xaConnection, connection, transactionManager)));
+        return new ManagedJdbcConnection(new ManagedXAConnection(delegate, xaConnection, connection, transactionManager), getStatementCache());
     }
 }
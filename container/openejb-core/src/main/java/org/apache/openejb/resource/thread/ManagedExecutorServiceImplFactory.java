@@ -22,6 +22,8 @@ import org.apache.openejb.threads.reject.CURejectHandler;
 import org.apache.openejb.util.Duration;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
+import org.apache.openejb.util.executor.ThreadPerTaskExecutor;
+import org.apache.openejb.util.executor.VirtualThreadFactory;
 
 import javax.enterprise.concurrent.ManagedThreadFactory;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -36,12 +38,18 @@ public class ManagedExecutorServiceImplFactory {
     private Duration keepAlive = new Duration("5 second");
     private int queue = 15;
     private String threadFactory;
+    private boolean threadPerTask;
 
     public ManagedExecutorServiceImpl create() {
         return new ManagedExecutorServiceImpl(createExecutorService());
     }
 
     private ExecutorService createExecutorService() {
+        if (threadPerTask && VirtualThreadFactory.isSupported()) {
+            // Max bounds the running tasks, there are no idle threads to keep
+            return new ThreadPerTaskExecutor(VirtualThreadFactory.create("managed-thread"), max);
+        }
+
         final BlockingQueue<Runnable> blockingQueue;
         if (queue <= 0) {
             blockingQueue = new LinkedBlockingQueue<Runnable>();
@@ -57,6 +65,9 @@ public class ManagedExecutorServiceImplFactory {
             managedThreadFactory = new ManagedThreadFactoryImpl();
         }
 
+        if (threadPerTask) {
+            return new ThreadPerTaskExecutor(managedThreadFactory, max);
+        }
         return new ThreadPoolExecutor(core, max, keepAlive.getTime(), keepAlive.getUnit(), blockingQueue, managedThreadFactory, CURejectHandler.INSTANCE);
     }
 
@@ -79,4 +90,8 @@ public class ManagedExecutorServiceImplFactory {
     public void setThreadFactory(final String threadFactory) {
         this.threadFactory = threadFactory;
     }
+
+    public void setThreadPerTask(final boolean threadPerTask) {
+        this.threadPerTask = threadPerTask;
+    }
 }
@@ -42,7 +42,9 @@ public abstract class CUTask<T> extends ManagedTaskListenerTask {
         } else {
             associate = false;
         }
-        final ThreadContext threadContext = ThreadContext.getThreadContext();
+        // the current context is done (and can be reused) when the task runs so keep a copy of it
+        final ThreadContext current = ThreadContext.getThreadContext();
+        final ThreadContext threadContext = current == null ? null : new ThreadContext(current);
         initialContext = new Context(
             associate, stateTmp, threadContext == null ? null : threadContext.get(AbstractSecurityService.SecurityContext.class),
             threadContext, Thread.currentThread().getContextClassLoader());
@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring of pre-allocated log events, written by any thread and
+ * consumed by a single daemon thread.
+ * <p/>
+ * A producer claims a slot with a CAS on the tail, fills the event of the slot
+ * in place and publishes it through the sequence of the slot: logging takes
+ * no lock and allocates nothing.  The consumer hands all the published events
+ * to the handler then ends the batch, so the handler flushes once for many
+ * events.  The handler has to clear the references held by an event, the slot
+ * is reused once it returns.
+ * <p/>
+ * When the ring is full the producer waits for a free slot or the event is
+ * dropped, depending on the {@link Overflow} policy.  Events logged by the
+ * consumer thread itself, or once the ring is closed, are handed back to the
+ * caller to write them synchronously.  So are the events logged after the
+ * consumer died, a handler failure is not allowed to leave blocked producers
+ * waiting for a slot forever.
+ */
+public final class LogRingBuffer<E> {
+    public static final long DROPPED = -1;
+    public static final long SYNCHRONOUS = -2;
+
+    private static final int SPINS = 64;
+    private static final long PARK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    public enum Overflow {
+        BLOCK, DROP_DEBUG, DROP;
+
+        public static Overflow from(final String value) {
+            for (final Overflow overflow : values()) {
+                if (overflow.name().replace('_', '-').equalsIgnoreCase(value.trim())) {
+                    return overflow;
+                }
+            }
+            throw new IllegalArgumentException("Unknown overflow policy " + value + ", use block, drop-debug or drop");
+        }
+    }
+
+    public interface EventFactory<E> {
+        E create();
+    }
+
+    public interface Handler<E> {
+        void onEvent(E event);
+
+        void endOfBatch();
+    }
+
+    private final Object[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final Overflow overflow;
+    private final Handler<E> handler;
+    private final Thread consumer;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long head;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    public LogRingBuffer(final String name, final int capacity, final Overflow overflow, final EventFactory<E> factory, final Handler<E> handler) {
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        this.events = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            events[i] = factory.create();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.overflow = overflow;
+        this.handler = handler;
+
+        consumer = new Thread(new Consumer(), name);
+        consumer.setDaemon(true);
+    }
+
+    public void start() {
+        consumer.start();
+    }
+
+    /**
+     * @param debug true if the event can be dropped with {@link Overflow#DROP_DEBUG}
+     * @return the sequence of the claimed slot, {@link #DROPPED} or {@link #SYNCHRONOUS}
+     */
+    public long claim(final boolean debug) {
+        if (closed || Thread.currentThread() == consumer) {
+            return SYNCHRONOUS;
+        }
+
+        while (true) {
+            final long position = tail.get();
+            final long available = sequences.get(index(position)) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (available < 0) {
+                // full
+                if (overflow == Overflow.DROP || overflow == Overflow.DROP_DEBUG && debug) {
+                    dropped.incrementAndGet();
+                    return DROPPED;
+                }
+                if (closed) {
+                    return SYNCHRONOUS;
+                }
+                LockSupport.parkNanos(1000);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(final long sequence) {
+        return (E) events[index(sequence)];
+    }
+
+    public void publish(final long sequence) {
+        sequences.set(index(sequence), sequence + 1);
+        if (sleeping) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Lets the consumer write the published events then stops it.
+     */
+    public void close(final long timeout) throws InterruptedException {
+        closed = true;
+        LockSupport.unpark(consumer);
+        if (consumer.isAlive() && Thread.currentThread() != consumer) {
+            consumer.join(timeout);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public int getCapacity() {
+        return events.length;
+    }
+
+    /**
+     * @return the events accepted since the ring was created
+     */
+    public long getQueued() {
+        return tail.get();
+    }
+
+    /**
+     * @return the events waiting for the consumer
+     */
+    public long getPending() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private int index(final long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private boolean isPublished(final long sequence) {
+        return sequences.get(index(sequence)) == sequence + 1;
+    }
+
+    private final class Consumer implements Runnable {
+        @Override
+        public void run() {
+            try {
+                consume();
+            } finally {
+                // stopped or died, producers log synchronously from now on
+                closed = true;
+            }
+        }
+
+        private void consume() {
+            long next = head;
+            int idle = 0;
+            while (true) {
+                final long first = next;
+                while (isPublished(next)) {
+                    final int index = index(next);
+                    try {
+                        handler.onEvent(get(next));
+                    } catch (final Throwable e) {
+                        // the logger failed, nobody to tell
+                    }
+                    sequences.lazySet(index, next + events.length);
+                    next++;
+                }
+
+                if (next != first) {
+                    head = next;
+                    try {
+                        handler.endOfBatch();
+                    } catch (final Throwable e) {
+                        // no-op
+                    }
+                    idle = 0;
+                    continue;
+                }
+
+                if (closed) {
+                    return;
+                }
+                if (++idle < SPINS) {
+                    Thread.yield();
+                    continue;
+                }
+
+                sleeping = true;
+                if (!isPublished(next) && !closed) {
+                    LockSupport.parkNanos(this, PARK);
+                }
+                sleeping = false;
+            }
+        }
+    }
+}
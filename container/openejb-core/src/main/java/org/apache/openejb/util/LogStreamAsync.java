@@ -16,16 +16,27 @@
  */
 package org.apache.openejb.util;
 
+import org.apache.openejb.loader.SystemInstance;
+
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LogStreamAsync implements LogStream, Closeable {
-
-    private static final LinkedBlockingQueue<Message> log = new LinkedBlockingQueue<Message>();
-    private static final Thread t = new Thread(new Consumer(LogStreamAsync.log), "LogStreamAsync.Thread");
+    public static final String CAPACITY = "openejb.log.async.capacity";
+    public static final String OVERFLOW = "openejb.log.async.overflow";
+
+    private static final LogRingBuffer<Message> log = new LogRingBuffer<Message>("LogStreamAsync.Thread",
+        SystemInstance.get().getOptions().get(CAPACITY, 8192),
+        LogRingBuffer.Overflow.from(SystemInstance.get().getOptions().get(OVERFLOW, "block")),
+        new LogRingBuffer.EventFactory<Message>() {
+            @Override
+            public Message create() {
+                return new Message();
+            }
+        },
+        new Consumer());
     private static final AtomicBoolean started = new AtomicBoolean(false);
     private final LogStream ls;
 
@@ -35,28 +46,40 @@ public class LogStreamAsync implements LogStream, Closeable {
         warn,
         info,
         debug,
-        quit,
     }
 
     public LogStreamAsync(final LogStream ls) {
         this.ls = ls;
 
         if (!started.getAndSet(true)) {
-            t.setDaemon(true);
-            t.start();
+            log.start();
         }
     }
 
     @Override
     public void close() throws IOException {
-        LogStreamAsync.log.clear();
         try {
-            LogStreamAsync.log.put(new Message(this.ls, level.quit, ""));
+            LogStreamAsync.log.close(TimeUnit.SECONDS.toMillis(5));
         } catch (final InterruptedException e) {
-            //Ignore
+            Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * @return the messages logged through the queue since it was created
+     */
+    public static long getQueuedMessages() {
+        return log.getQueued();
+    }
+
+    public static long getPendingMessages() {
+        return log.getPending();
+    }
+
+    public static long getDroppedMessages() {
+        return log.getDropped();
+    }
+
     @Override
     public boolean isFatalEnabled() {
         return ls.isFatalEnabled();
@@ -137,88 +160,87 @@ public class LogStreamAsync implements LogStream, Closeable {
     }
 
     public void log(final level l, final String s, final Throwable t) {
-        try {
-            LogStreamAsync.log.put(new Message(this.ls, l, s, t));
-        } catch (final InterruptedException e) {
-            //Ignore
+        final long sequence = LogStreamAsync.log.claim(level.debug == l);
+        if (sequence == LogRingBuffer.DROPPED) {
+            return;
         }
-    }
-
-    private static final class Message {
-
-        private final LogStream ls;
-        private final level l;
-        private final String s;
-        private final Throwable t;
-
-        private Message(final LogStream ls, final level l, final String s) {
-            this(ls, l, s, null);
+        if (sequence == LogRingBuffer.SYNCHRONOUS) {
+            write(this.ls, l, s, t);
+            return;
         }
 
-        private Message(final LogStream ls, final level l, final String s, final Throwable t) {
-            this.ls = ls;
-            this.l = l;
-            this.s = s;
-            this.t = t;
+        final Message msg = LogStreamAsync.log.get(sequence);
+        msg.ls = this.ls;
+        msg.l = l;
+        msg.s = s;
+        msg.t = t;
+        LogStreamAsync.log.publish(sequence);
+    }
+
+    private static void write(final LogStream ls, final level l, final String s, final Throwable t) {
+        if (null != t) {
+            switch (l) {
+                case fatal:
+                    ls.fatal(s, t);
+                    break;
+                case error:
+                    ls.error(s, t);
+                    break;
+                case warn:
+                    ls.warn(s, t);
+                    break;
+                case info:
+                    ls.info(s, t);
+                    break;
+                case debug:
+                    ls.debug(s, t);
+                    break;
+            }
+        } else {
+            switch (l) {
+                case fatal:
+                    ls.fatal(s);
+                    break;
+                case error:
+                    ls.error(s);
+                    break;
+                case warn:
+                    ls.warn(s);
+                    break;
+                case info:
+                    ls.info(s);
+                    break;
+                case debug:
+                    ls.debug(s);
+                    break;
+            }
         }
     }
 
-    private static final class Consumer implements Runnable {
-
-        private final BlockingQueue<Message> queue;
-
-        private Consumer(final BlockingQueue<Message> queue) {
-            this.queue = queue;
+    private static final class Message {
+        private LogStream ls;
+        private level l;
+        private String s;
+        private Throwable t;
+    }
+
+    private static final class Consumer implements LogRingBuffer.Handler<Message> {
+        @Override
+        public void onEvent(final Message msg) {
+            final LogStream ls = msg.ls;
+            final level l = msg.l;
+            final String s = msg.s;
+            final Throwable t = msg.t;
+            msg.ls = null;
+            msg.s = null;
+            msg.t = null;
+
+            write(ls, l, s, t);
         }
 
-        public void run() {
-
-            try {
-                Message msg;
-                while (!level.quit.equals((msg = queue.take()).l)) {
-                    final Throwable t = msg.t;
-
-                    if (null != t) {
-                        switch (msg.l) {
-                            case fatal:
-                                msg.ls.fatal(msg.s, t);
-                                break;
-                            case error:
-                                msg.ls.error(msg.s, t);
-                                break;
-                            case warn:
-                                msg.ls.warn(msg.s, t);
-                                break;
-                            case info:
-                                msg.ls.info(msg.s, t);
-                                break;
-                            case debug:
-                                msg.ls.debug(msg.s, t);
-                                break;
-                        }
-                    } else {
-                        switch (msg.l) {
-                            case fatal:
-                                msg.ls.fatal(msg.s);
-                                break;
-                            case error:
-                                msg.ls.error(msg.s);
-                                break;
-                            case warn:
-                                msg.ls.warn(msg.s);
-                                break;
-                            case info:
-                                msg.ls.info(msg.s);
-                                break;
-                            case debug:
-                                msg.ls.debug(msg.s);
-                                break;
-                        }
-                    }
-                }
-            } catch (final InterruptedException e) {
-                //Exit
-            }
+        @Override
+        public void endOfBatch() {
+            // the streams flush themselves
         }
     }
 }
\ No newline at end of file
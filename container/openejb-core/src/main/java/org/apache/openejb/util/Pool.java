@@ -17,6 +17,7 @@
 package org.apache.openejb.util;
 
 import org.apache.openejb.core.ParentClassLoaderFinder;
+import org.apache.openejb.monitoring.Histogram;
 import org.apache.openejb.monitoring.Managed;
 
 import java.lang.ref.SoftReference;
@@ -25,6 +26,7 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -54,13 +56,19 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
  * <p/>
  * To simply fill the pool without a corresponding pop(), the add() method
  * must be used.  This method will attempt to aquire a permit to add to the pool.
+ * <p/>
+ * Idle entries are either kept in a single synchronized list (the default) or,
+ * when more than one stripe is configured, spread over several lock-free deques.
+ * A thread pops from and pushes to its own stripe and only steals from the other
+ * stripes when its own is empty, so concurrent callers rarely touch the same
+ * memory.  Permits, sweeping, aging and flushing behave the same in both modes.
  *
  * @version $Rev$ $Date$
  */
 @SuppressWarnings("StatementWithEmptyBody")
 public class Pool<T> {
 
-    private final LinkedList<Entry> pool = new LinkedList<Entry>();
+    private final Entries<Entry> pool;
     private final Semaphore instances;
     private final Semaphore available;
     private final Semaphore minimum;
@@ -100,8 +108,17 @@ public class Pool<T> {
         this(max, min, strict, 0, 0, 0, null, null, false, -1, false, false);
     }
 
+    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, final long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed) {
+        this(max, min, strict, maxAge, idleTimeout, sweepInterval, executor, supplier, replaceAged, maxAgeOffset, garbageCollection, replaceFlushed, 0);
+    }
+
+    /**
+     * @param stripes number of lock-free stripes holding idle entries, 0 or 1 keeps
+     *                the single synchronized list, a negative value uses one stripe
+     *                per available processor
+     */
     @SuppressWarnings("unchecked")
-    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed) {
+    public Pool(final int max, final int min, final boolean strict, final long maxAge, final long idleTimeout, long sweepInterval, final Executor executor, final Supplier<T> supplier, final boolean replaceAged, final double maxAgeOffset, final boolean garbageCollection, final boolean replaceFlushed, final int stripes) {
         if (min > max) {
             greater("max", max, "min", min);
         }
@@ -124,6 +141,21 @@ public class Pool<T> {
         this.sweeper = new Sweeper(idleTimeout, max);
         this.stats = new Stats(min, max, idleTimeout);
         this.garbageCollection = garbageCollection;
+        this.pool = createEntries(stripes);
+    }
+
+    private Entries<Entry> createEntries(final int stripes) {
+        final int count = stripes < 0 ? Runtime.getRuntime().availableProcessors() : stripes;
+        if (count <= 1) {
+            return new LinkedEntries();
+        }
+
+        // power of two so the stripe of a thread is a simple mask
+        int size = 1;
+        while (size < count) {
+            size <<= 1;
+        }
+        return new StripedEntries(size);
     }
 
     public Pool start() {
@@ -184,6 +216,15 @@ public class Pool<T> {
         throw new IllegalArgumentException(minName + " cannot be greater than " + maxName + ": " + minName + "=" + min + ", " + maxName + "=" + max);
     }
 
+    /**
+     * Records the time it took to create an instance, whoever created it.
+     *
+     * @param nanos creation time in nanoseconds
+     */
+    public void created(final long nanos) {
+        stats.creationTimes.record(nanos);
+    }
+
     public void flush() {
         stats.flushes.record();
         poolVersion.incrementAndGet();
@@ -221,21 +262,27 @@ public class Pool<T> {
     private Entry pop(final long timeout, final TimeUnit unit, final boolean record) throws InterruptedException, TimeoutException {
         if (timeout == -1) {
             available.tryAcquire();
-        } else if (!available.tryAcquire(timeout, unit)) {
+        } else if (!available.tryAcquire()) {
+            // only the callers which had to block get a wait time
+            final long start = record ? System.nanoTime() : 0;
+            if (!available.tryAcquire(timeout, unit)) {
+                if (record) {
+                    stats.waitTimes.record(System.nanoTime() - start);
+                    stats.accessTimeouts.record();
+                }
+                throw new TimeoutException("Waited " + timeout + " " + unit);
+            }
             if (record) {
-                stats.accessTimeouts.record();
+                stats.waitTimes.record(System.nanoTime() - start);
             }
-            throw new TimeoutException("Waited " + timeout + " " + unit);
         }
+        stats.utilization.acquired();
 
         Entry entry;
         do {
-            synchronized (pool) {
-                try {
-                    entry = pool.removeFirst();
-                } catch (final NoSuchElementException e) {
-                    return null;
-                }
+            entry = pool.poll();
+            if (entry == null) {
+                return null;
             }
 
             final Pool<T>.Entry.Instance instance = entry.soft.get();
@@ -274,14 +321,17 @@ public class Pool<T> {
     public boolean add(final T obj, final long offset) {
         try {
             if (available.tryAcquire(100, MILLISECONDS)) {
+                stats.utilization.acquired();
 
                 try {
                     if (push(obj, offset)) {
                         return true;
                     }
                     available.release();
+                    stats.utilization.released();
                 } catch (final RuntimeException e) {
                     available.release();
+                    stats.utilization.released();
                     throw e;
                 }
             }
@@ -328,6 +378,7 @@ public class Pool<T> {
 
         if (available instanceof Overdraft) {
             available.release();
+            stats.utilization.released();
         }
 
         return false;
@@ -378,15 +429,14 @@ public class Pool<T> {
                     entry.hard.set(obj);
                 }
 
-                synchronized (pool) {
-                    pool.addFirst(entry);
-                }
+                pool.offer(entry);
                 added = true;
             }
         } finally {
             if (release) {
 
                 available.release();
+                stats.utilization.released();
 
                 if (entry != null && !added) {
                     instances.release();
@@ -439,6 +489,7 @@ public class Pool<T> {
         }
 
         available.release();
+        stats.utilization.released();
     }
 
     public boolean close(final long timeout, final TimeUnit unit) throws InterruptedException {
@@ -634,6 +685,7 @@ public class Pool<T> {
         public void run() {
 
             stats.sweeps.record();
+            stats.utilization.roll();
 
             final int currentVersion = poolVersion.get();
 
@@ -778,6 +830,92 @@ public class Pool<T> {
         FULL, IDLE, AGED, FLUSHED, GC
     }
 
+    /**
+     * Holds the idle entries of the pool.  Bounds are enforced by the
+     * semaphores, implementations only have to store and hand back entries.
+     */
+    private interface Entries<E> {
+
+        /**
+         * @return the most recently offered entry available to the caller or null if there is none
+         */
+        E poll();
+
+        void offer(E entry);
+    }
+
+    private final class LinkedEntries implements Entries<Entry> {
+
+        private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+        @Override
+        public Entry poll() {
+            synchronized (entries) {
+                try {
+                    return entries.removeFirst();
+                } catch (final NoSuchElementException e) {
+                    return null;
+                }
+            }
+        }
+
+        @Override
+        public void offer(final Entry entry) {
+            synchronized (entries) {
+                entries.addFirst(entry);
+            }
+        }
+    }
+
+    /**
+     * Each thread is bound to a stripe by its id and works LIFO on it so it keeps
+     * getting the instance it just returned.  When the own stripe is empty the
+     * other stripes are scanned and the oldest entry of the first non empty one
+     * is stolen, leaving the hot end to the thread owning that stripe.
+     */
+    private final class StripedEntries implements Entries<Entry> {
+
+        private final ConcurrentLinkedDeque<Entry>[] stripes;
+        private final int mask;
+
+        @SuppressWarnings("unchecked")
+        private StripedEntries(final int size) {
+            this.stripes = new ConcurrentLinkedDeque[size];
+            for (int i = 0; i < size; i++) {
+                stripes[i] = new ConcurrentLinkedDeque<Entry>();
+            }
+            this.mask = size - 1;
+        }
+
+        private int home() {
+            final long id = Thread.currentThread().getId();
+            return (int) (id ^ (id >>> 32)) & mask;
+        }
+
+        @Override
+        public Entry poll() {
+            final int home = home();
+
+            final Entry entry = stripes[home].pollFirst();
+            if (entry != null) {
+                return entry;
+            }
+
+            for (int i = 1; i < stripes.length; i++) {
+                final Entry stolen = stripes[(home + i) & mask].pollLast();
+                if (stolen != null) {
+                    return stolen;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void offer(final Entry entry) {
+            stripes[home()].offerFirst(entry);
+        }
+    }
+
     private final class Expired {
         private final Entry entry;
         private final AtomicBoolean discarded = new AtomicBoolean();
@@ -1030,6 +1168,14 @@ public class Pool<T> {
         @Managed
         private final org.apache.openejb.monitoring.Event replaced = new org.apache.openejb.monitoring.Event();
 
+        // the callers which blocked for a permit, they wake up together, 4 stripes of about 10KB
+        private final Histogram waitTimes = new Histogram(0, 4);
+
+        // one stripe, creations are rare
+        private final Histogram creationTimes = new Histogram(0, 1);
+
+        private final Utilization utilization;
+
         @Managed
         private final int minSize;
 
@@ -1043,6 +1189,7 @@ public class Pool<T> {
             this.minSize = minSize;
             this.maxSize = maxSize;
             this.idleTimeout = idleTimeout;
+            this.utilization = new Utilization(maxSize);
         }
 
         @Managed
@@ -1079,6 +1226,186 @@ public class Pool<T> {
         private int getMinimumInstances() {
             return minSize - minimum.availablePermits();
         }
+
+        @Managed
+        private long getWaits() {
+            return waitTimes.snapshot().getCount();
+        }
+
+        @Managed
+        private double getWaitTimeMean() {
+            return toMillis(waitTimes.snapshot().getMean());
+        }
+
+        @Managed
+        private double getWaitTimeMax() {
+            return toMillis(waitTimes.snapshot().getMax());
+        }
+
+        @Managed
+        private double getWaitTimePercentile50() {
+            return toMillis(waitTimes.snapshot().getPercentile(50));
+        }
+
+        @Managed
+        private double getWaitTimePercentile90() {
+            return toMillis(waitTimes.snapshot().getPercentile(90));
+        }
+
+        @Managed
+        private double getWaitTimePercentile99() {
+            return toMillis(waitTimes.snapshot().getPercentile(99));
+        }
+
+        @Managed
+        private double getWaitTimePercentile999() {
+            return toMillis(waitTimes.snapshot().getPercentile(99.9));
+        }
+
+        @Managed
+        private long getInstancesCreated() {
+            return creationTimes.snapshot().getCount();
+        }
+
+        @Managed
+        private double getCreationTimeMean() {
+            return toMillis(creationTimes.snapshot().getMean());
+        }
+
+        @Managed
+        private double getCreationTimeMax() {
+            return toMillis(creationTimes.snapshot().getMax());
+        }
+
+        /**
+         * @return the average share of MaxSize in use over the last
+         * sweep interval, above 1 when overdrafts happened
+         */
+        @Managed
+        private double getUtilization() {
+            return utilization.get();
+        }
+
+        private double toMillis(final double nanos) {
+            return nanos / MILLISECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * Time weighted average of the active instances.  The threads taking or
+     * giving back a permit are spread over stripes, each one keeping the
+     * change of the active count made by its threads and the integral of it:
+     * the stripes add up to the count and integral of the pool.  The sweeps
+     * only remember the integral at their time and the averages are computed
+     * from two {@link Mark}s when read.
+     */
+    private static final class Utilization {
+        private final int maxSize;
+        private final long origin = System.nanoTime();
+        private final UtilizationStripe[] stripes;
+
+        // set by the sweeper only
+        private volatile Mark swept = new Mark(0, 0, null);
+
+        private Utilization(final int maxSize) {
+            this.maxSize = maxSize;
+            int size = 1;
+            while (size < Math.min(Runtime.getRuntime().availableProcessors(), 8)) {
+                size <<= 1;
+            }
+            stripes = new UtilizationStripe[size];
+            for (int i = 0; i < size; i++) {
+                stripes[i] = new UtilizationStripe();
+            }
+        }
+
+        private void acquired() {
+            update(1);
+        }
+
+        private void released() {
+            update(-1);
+        }
+
+        private void update(final int delta) {
+            stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)].update(System.nanoTime() - origin, delta);
+        }
+
+        private Mark mark(final Mark previous) {
+            final long now = System.nanoTime() - origin;
+            double integral = 0;
+            for (final UtilizationStripe stripe : stripes) {
+                integral += stripe.integral(now);
+            }
+            return new Mark(now, integral, previous);
+        }
+
+        private void roll() {
+            final Mark last = swept;
+            swept = mark(new Mark(last.time, last.integral, null));
+        }
+
+        private double get() {
+            final Mark last = swept;
+            if (last.previous != null) {
+                return average(last.previous, last);
+            }
+            // no complete interval yet
+            return average(last, mark(null));
+        }
+
+        private double average(final Mark from, final Mark to) {
+            final long elapsed = to.time - from.time;
+            if (elapsed <= 0 || maxSize <= 0) {
+                return 0;
+            }
+            return (to.integral - from.integral) / ((double) maxSize * elapsed);
+        }
+    }
+
+    /**
+     * The active count changed by the threads of a stripe, negative when
+     * they give back permits taken by other threads, and its integral.
+     */
+    private static final class UtilizationStripe {
+        // nanoseconds since the origin of the utilization
+        private long time;
+        private long active;
+        private double integral;
+
+        // keeps the stripes off a shared cache line
+        @SuppressWarnings("unused")
+        private long p1, p2, p3, p4, p5, p6;
+
+        private synchronized void update(final long now, final int delta) {
+            advance(now);
+            active += delta;
+        }
+
+        private synchronized double integral(final long now) {
+            advance(now);
+            return integral;
+        }
+
+        private void advance(final long now) {
+            // the clock of another thread may be a bit behind
+            final long t = Math.max(now, time);
+            integral += (double) active * (t - time);
+            time = t;
+        }
+    }
+
+    private static final class Mark {
+        // nanoseconds since the origin of the utilization
+        private final long time;
+        private final double integral;
+        private final Mark previous;
+
+        private Mark(final long time, final double integral, final Mark previous) {
+            this.time = time;
+            this.integral = integral;
+            this.previous = previous;
+        }
     }
 
     @SuppressWarnings("UnusedDeclaration")
@@ -1096,6 +1423,7 @@ public class Pool<T> {
         private boolean replaceAged;
         private boolean replaceFlushed;
         private boolean garbageCollection = true;
+        private int stripes;
 
         public Builder(final Builder<T> that) {
             this.max = that.max;
@@ -1110,6 +1438,7 @@ public class Pool<T> {
             this.replaceAged = that.replaceAged;
             this.replaceFlushed = that.replaceFlushed;
             this.garbageCollection = that.garbageCollection;
+            this.stripes = that.stripes;
         }
 
         public Builder() {
@@ -1127,6 +1456,17 @@ public class Pool<T> {
             this.garbageCollection = garbageCollection;
         }
 
+        public int getStripes() {
+            return stripes;
+        }
+
+        /**
+         * @param stripes 0 or 1 for a single idle list, a negative value for one stripe per processor
+         */
+        public void setStripes(final int stripes) {
+            this.stripes = stripes;
+        }
+
         public void setReplaceAged(final boolean replaceAged) {
             this.replaceAged = replaceAged;
         }
@@ -1206,7 +1546,7 @@ public class Pool<T> {
 
         public Pool<T> build() {
             //noinspection unchecked
-            return new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed);
+            return new Pool(max, min, strict, maxAge.getTime(MILLISECONDS), idleTimeout.getTime(MILLISECONDS), interval.getTime(MILLISECONDS), executor, supplier, replaceAged, maxAgeOffset, this.garbageCollection, replaceFlushed, stripes);
         }
     }
 
@@ -0,0 +1,277 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.util.executor;
+
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Runs each task on a thread of its own, meant for {@link VirtualThreadFactory}
+ * threads and tasks spending most of their time blocked.
+ * <p/>
+ * A semaphore bounds the number of tasks running at once and a thread is only created
+ * once its task got a permit, so the threads stay bounded even when the factory creates
+ * platform threads (besides the running ones, only those handing over their permit
+ * are still alive).  The other tasks wait in a queue, they are not started yet and
+ * can be {@link #remove removed} like the queued tasks of a
+ * {@link java.util.concurrent.ThreadPoolExecutor}.
+ *
+ * @version $Rev$ $Date$
+ */
+public class ThreadPerTaskExecutor extends AbstractExecutorService {
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    private final ThreadFactory threadFactory;
+    private final Semaphore permits;
+
+    private final Deque<Runnable> waiting = new ConcurrentLinkedDeque<Runnable>();
+    private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition terminated = lock.newCondition();
+    // guarded by lock
+    private boolean shutdown;
+    private int alive; // tasks waiting or running
+
+    /**
+     * @param maxConcurrency tasks running at once, 0 or less for no limit
+     */
+    public ThreadPerTaskExecutor(final ThreadFactory threadFactory, final int maxConcurrency) {
+        this.threadFactory = threadFactory;
+        this.permits = maxConcurrency > 0 ? new Semaphore(maxConcurrency) : null;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) {
+            throw new NullPointerException();
+        }
+
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Executor is shut down");
+            }
+            alive++;
+        } finally {
+            lock.unlock();
+        }
+
+        if (permits == null) {
+            try {
+                start(command);
+            } catch (final RejectedExecutionException e) {
+                exited(null);
+                throw e;
+            }
+            return;
+        }
+
+        waiting.add(command);
+        final RejectedExecutionException failure = dispatch();
+        if (failure != null && remove(command)) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Starts the waiting tasks while there are permits, a task that can't get a
+     * thread goes back to the head of the queue.
+     *
+     * @return why a thread couldn't be created, null if there was no failure
+     */
+    private RejectedExecutionException dispatch() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            final Runnable command = waiting.poll();
+            if (command == null) {
+                // removed or started by another thread meanwhile
+                permits.release();
+                continue;
+            }
+            try {
+                start(command);
+            } catch (final RejectedExecutionException e) {
+                waiting.addFirst(command);
+                permits.release();
+                return e;
+            }
+        }
+        return null;
+    }
+
+    private void start(final Runnable command) {
+        Thread thread = null;
+        try {
+            thread = threadFactory.newThread(new Task(command));
+            if (thread == null) {
+                throw new RejectedExecutionException("No thread for " + command);
+            }
+            threads.add(thread);
+            thread.start();
+        } catch (final RuntimeException | Error e) {
+            if (thread != null) {
+                threads.remove(thread);
+            }
+            throw e instanceof RejectedExecutionException ? (RejectedExecutionException) e : new RejectedExecutionException(e);
+        }
+    }
+
+    /**
+     * @return true if the task was waiting for a permit, it won't run
+     */
+    public boolean remove(final Runnable task) {
+        if (waiting.remove(task)) {
+            exited(null);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of tasks waiting for a permit
+     */
+    public int getWaitingCount() {
+        return waiting.size();
+    }
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            if (alive == 0) {
+                terminated.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+
+        final List<Runnable> notStarted = new ArrayList<Runnable>();
+        Runnable task;
+        while ((task = waiting.poll()) != null) {
+            notStarted.add(task);
+            exited(null);
+        }
+        for (final Thread thread : threads) {
+            thread.interrupt();
+        }
+        return notStarted;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return shutdown && alive == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!shutdown || alive > 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = terminated.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void exited(final Thread thread) {
+        if (thread != null) {
+            threads.remove(thread);
+        }
+        lock.lock();
+        try {
+            if (--alive == 0 && shutdown) {
+                terminated.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class Task implements Runnable {
+
+        private final Runnable command;
+
+        private Task(final Runnable command) {
+            this.command = command;
+        }
+
+        @Override
+        public void run() {
+            try {
+                command.run();
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+                exited(Thread.currentThread());
+
+                // hand the permit over to the next task
+                if (permits != null) {
+                    final RejectedExecutionException failure = dispatch();
+                    if (failure != null) {
+                        logger.warning("Can't start a thread, " + waiting.size() + " tasks keep waiting: " + failure.getMessage());
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.openejb.util.executor;
+
+import org.apache.openejb.core.ParentClassLoaderFinder;
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+import static org.apache.openejb.util.Join.join;
+
+/**
+ * Creates virtual threads when the JVM has them (Java 21 and later), looked up
+ * by reflection so the container still runs on older JVMs.
+ *
+ * @version $Rev$ $Date$
+ */
+public class VirtualThreadFactory implements ThreadFactory {
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB, "org.apache.openejb.util.resources");
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (final Exception e) {
+            // no virtual threads
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private final ThreadFactory delegate;
+
+    private VirtualThreadFactory(final ThreadFactory delegate) {
+        this.delegate = delegate;
+    }
+
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return a factory of virtual threads if the JVM has them, else of daemon threads
+     */
+    public static ThreadFactory create(final Object... name) {
+        if (isSupported()) {
+            try {
+                final Object builder = OF_VIRTUAL.invoke(null);
+                NAME.invoke(builder, join(" ", name).trim() + " - ", 1L);
+                return new VirtualThreadFactory((ThreadFactory) FACTORY.invoke(builder));
+            } catch (final Exception e) {
+                logger.warning("Can't create virtual threads, using platform threads: " + e.getMessage());
+            }
+        }
+        return new DaemonThreadFactory(name);
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+        final Thread thread = delegate.newThread(runnable);
+        if (thread != null) {
+            // same as DaemonThreadFactory, don't leak the caller loader
+            thread.setContextClassLoader(ParentClassLoaderFinder.Helper.get());
+        }
+        return thread;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb;
+
+import org.apache.openejb.core.transaction.TransactionType;
+import org.apache.openejb.loader.SystemInstance;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class InvocationDescriptorTest {
+    @Test
+    public void descriptors() throws Exception {
+        SystemInstance.init(new Properties());
+        final BeanContext beanContext = new BeanContext("foo", null, new ModuleContext("foo", null, "bar", new AppContext("foo", SystemInstance.get(), null, null, null, false), null, null), Bean.class, Listener.class, new HashMap<String, String>());
+
+        final Method interfaceMethod = Listener.class.getMethod("onMessage", String.class);
+        final Method beanMethod = Bean.class.getMethod("onMessage", String.class);
+        beanContext.mapMethods(interfaceMethod, beanMethod);
+
+        final InvocationDescriptor descriptor = beanContext.getInvocationDescriptor(interfaceMethod);
+        assertEquals(beanMethod, descriptor.getBeanMethod());
+        assertEquals(TransactionType.Required, descriptor.getTransactionType());
+
+        // proxies hold their own copies of the methods
+        final Method copy = Listener.class.getMethod("onMessage", String.class);
+        assertNotSame(interfaceMethod, copy);
+        assertSame(descriptor, beanContext.getInvocationDescriptor(copy));
+
+        beanContext.setMethodTransactionAttribute(beanMethod, TransactionType.RequiresNew);
+        final InvocationDescriptor changed = beanContext.getInvocationDescriptor(interfaceMethod);
+        assertNotSame(descriptor, changed);
+        assertEquals(TransactionType.RequiresNew, changed.getTransactionType());
+        assertEquals(TransactionType.RequiresNew, beanContext.getTransactionType(interfaceMethod));
+
+        beanContext.setMethodTransactionAttribute(interfaceMethod, TransactionType.Never, "Remote");
+        assertEquals(TransactionType.Never, beanContext.getTransactionType(interfaceMethod, InterfaceType.BUSINESS_REMOTE));
+        assertEquals(TransactionType.RequiresNew, beanContext.getTransactionType(interfaceMethod, InterfaceType.BUSINESS_LOCAL));
+
+        // resolved without registering a method context
+        final Method toString = Object.class.getMethod("toString");
+        final InvocationDescriptor unmapped = beanContext.getInvocationDescriptor(toString);
+        assertEquals(toString, unmapped.getBeanMethod());
+        assertSame(unmapped, beanContext.getInvocationDescriptor(toString));
+        final Iterator<Map.Entry<Method, MethodContext>> contexts = beanContext.iteratorMethodContext();
+        while (contexts.hasNext()) {
+            assertFalse(toString.equals(contexts.next().getKey()));
+        }
+    }
+
+    public interface Listener {
+        void onMessage(String message);
+    }
+
+    public static class Bean implements Listener {
+        @Override
+        public void onMessage(final String message) {
+            // no-op
+        }
+    }
+}
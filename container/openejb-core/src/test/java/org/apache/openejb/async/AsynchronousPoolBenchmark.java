@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.async;
+
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.executor.ThreadPerTaskExecutor;
+import org.apache.openejb.util.executor.VirtualThreadFactory;
+
+import javax.ejb.AsyncResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10k calls blocked 20ms each, a pool of 100 threads against a thread per call.
+ * Not part of the test suite, run it by hand.
+ */
+public class AsynchronousPoolBenchmark {
+
+    private static final int CALLS = 10000;
+    private static final int POOL_SIZE = 100;
+
+    public static void main(final String[] args) throws Throwable {
+        final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        final long pooled = blockingCalls(new AsynchronousPool(threadPool, new Duration(1, TimeUnit.MINUTES)));
+
+        // as many platform threads as the pool when there are no virtual threads
+        final int maxConcurrency = VirtualThreadFactory.isSupported() ? CALLS : POOL_SIZE;
+        final long perTask = blockingCalls(new AsynchronousPool(
+            new ThreadPerTaskExecutor(VirtualThreadFactory.create("benchmark"), maxConcurrency), new Duration(1, TimeUnit.MINUTES)));
+
+        System.out.println(String.format("%d blocking calls: pool of %d threads %dms, thread per call (virtual: %s) %dms",
+            CALLS, POOL_SIZE, pooled, VirtualThreadFactory.isSupported(), perTask));
+    }
+
+    private static long blockingCalls(final AsynchronousPool pool) throws Throwable {
+        final Callable<Object> blocking = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Thread.sleep(20);
+                return new AsyncResult<Object>(null);
+            }
+        };
+
+        final long start = System.nanoTime();
+        final List<Future<?>> futures = new ArrayList<Future<?>>(CALLS);
+        for (int i = 0; i < CALLS; i++) {
+            futures.add((Future<?>) pool.invoke(blocking, false));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        pool.stop();
+        return duration;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.async;
+
+import org.apache.openejb.core.ThreadContext;
+import org.apache.openejb.util.Duration;
+import org.apache.openejb.util.executor.ThreadPerTaskExecutor;
+import org.apache.openejb.util.executor.VirtualThreadFactory;
+import org.junit.Test;
+
+import javax.ejb.AsyncResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AsynchronousPoolTest {
+
+    @Test
+    public void maxConcurrency() throws Throwable {
+        final AsynchronousPool pool = new AsynchronousPool(
+            new ThreadPerTaskExecutor(VirtualThreadFactory.create("test"), 2), new Duration(10, TimeUnit.SECONDS));
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+        final List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(call(pool, new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    final int now = running.incrementAndGet();
+                    if (now > max.get()) {
+                        max.set(now);
+                    }
+                    Thread.sleep(10);
+                    running.decrementAndGet();
+                    return new AsyncResult<Object>(now);
+                }
+            }));
+        }
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        assertTrue("max " + max.get(), max.get() <= 2);
+        pool.stop();
+    }
+
+    @Test
+    public void cancel() throws Throwable {
+        final AsynchronousPool pool = new AsynchronousPool(
+            new ThreadPerTaskExecutor(VirtualThreadFactory.create("test"), 1), new Duration(10, TimeUnit.SECONDS));
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Future<?> running = call(pool, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                started.countDown();
+                release.await();
+                cancelled.set(ThreadContext.isAsynchronousCancelled());
+                return null;
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final AtomicBoolean ran = new AtomicBoolean();
+        final Future<?> waiting = call(pool, new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                ran.set(true);
+                return null;
+            }
+        });
+
+        // waiting for a permit, not dispatched
+        assertTrue(waiting.cancel(true));
+        assertTrue(waiting.isCancelled());
+
+        // dispatched, only flagged
+        assertFalse(running.cancel(true));
+        release.countDown();
+        running.get();
+        assertTrue(cancelled.get());
+
+        pool.stop();
+        assertFalse(ran.get());
+    }
+
+    private static Future<?> call(final AsynchronousPool pool, final Callable<Object> callable) throws Throwable {
+        return (Future<?>) pool.invoke(callable, false);
+    }
+}
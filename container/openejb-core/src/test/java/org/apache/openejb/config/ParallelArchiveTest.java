@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.config;
+
+import org.apache.openejb.loader.IO;
+import org.apache.xbean.finder.archive.Archive;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class ParallelArchiveTest {
+    @Test
+    public void sameEntriesInOrder() throws Exception {
+        final List<String> names = new ArrayList<String>();
+        final List<Archive> archives = new ArrayList<Archive>();
+        for (int jar = 0; jar < 20; jar++) {
+            final Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+            for (int c = 0; c < jar % 5; c++) {
+                classes.put("org.foo.jar" + jar + ".Class" + c, ("bytecode " + jar + "/" + c).getBytes());
+            }
+            names.add("jar" + jar);
+            archives.add(new MapArchive(classes));
+        }
+
+        final ParallelArchive archive = new ParallelArchive(names, archives);
+        final Iterator<Archive.Entry> entries = archive.iterator();
+        for (final Archive expected : archives) {
+            for (final Archive.Entry entry : expected) {
+                final Archive.Entry read = entries.next();
+                assertEquals(entry.getName(), read.getName());
+                assertArrayEquals(bytes(entry.getBytecode()), bytes(read.getBytecode()));
+            }
+        }
+        assertFalse(entries.hasNext());
+
+        assertArrayEquals("bytecode 7/1".getBytes(), bytes(archive.getBytecode("org.foo.jar7.Class1")));
+        try {
+            archive.getBytecode("org.foo.Missing");
+            fail();
+        } catch (final ClassNotFoundException cnfe) {
+            // ok
+        }
+    }
+
+    private static byte[] bytes(final InputStream is) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IO.copy(is, out);
+        return out.toByteArray();
+    }
+
+    private static class MapArchive implements Archive {
+        private final Map<String, byte[]> classes;
+
+        private MapArchive(final Map<String, byte[]> classes) {
+            this.classes = classes;
+        }
+
+        @Override
+        public InputStream getBytecode(final String className) throws IOException, ClassNotFoundException {
+            final byte[] bytes = classes.get(className);
+            if (bytes == null) {
+                throw new ClassNotFoundException(className);
+            }
+            return new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public Class<?> loadClass(final String className) throws ClassNotFoundException {
+            throw new ClassNotFoundException(className);
+        }
+
+        @Override
+        public Iterator<Entry> iterator() {
+            final Iterator<String> names = classes.keySet().iterator();
+            return new Iterator<Entry>() {
+                @Override
+                public boolean hasNext() {
+                    return names.hasNext();
+                }
+
+                @Override
+                public Entry next() {
+                    final String name = names.next();
+                    return new Entry() {
+                        @Override
+                        public String getName() {
+                            return name;
+                        }
+
+                        @Override
+                        public InputStream getBytecode() throws IOException {
+                            return new ByteArrayInputStream(classes.get(name));
+                        }
+                    };
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
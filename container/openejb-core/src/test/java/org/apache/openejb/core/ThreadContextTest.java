@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core;
+
+import org.apache.openejb.BeanContext;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.testing.Module;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class ThreadContextTest {
+    private static final Class<?>[] KEYS = {
+        String.class, Integer.class, Long.class, Short.class, Byte.class, Character.class, Boolean.class,
+        Float.class, Double.class, Number.class, Object.class, StringBuilder.class, StringBuffer.class,
+        Thread.class, Runnable.class, ClassLoader.class, Exception.class, Error.class, Throwable.class, Void.class
+    };
+    private static final int CALLS = 100000;
+
+    @EJB
+    private ContextBean bean;
+
+    @Module
+    public Class<?>[] beans() {
+        return new Class<?>[]{ContextBean.class};
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void setGetRemove() {
+        final ThreadContext context = new ThreadContext(ThreadContext.getThreadContext());
+
+        // more keys than slots, the last ones go to the map
+        for (final Class key : KEYS) {
+            assertNull(context.get(key));
+            assertNull(context.set(key, key.getName()));
+            assertEquals(key.getName(), context.get(key));
+        }
+        for (final Class key : KEYS) {
+            assertEquals(key.getName(), context.set(key, "updated"));
+        }
+
+        final ThreadContext copy = new ThreadContext(context);
+        for (final Class key : KEYS) {
+            assertEquals("updated", context.remove(key));
+            assertNull(context.get(key));
+            assertEquals("updated", copy.get(key));
+        }
+    }
+
+    @Test
+    public void recycled() {
+        final int first = bean.context();
+        assertEquals(first, bean.context());
+        assertFalse(bean.leftover());
+    }
+
+    /**
+     * Compares the bytes allocated by enter/set/get/exit with a recycled
+     * context and with a new one, as a stateless business call does.
+     */
+    @Test
+    public void allocation() throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final Method allocatedBytes;
+        try { // HotSpot extension, HeapDump looks its MXBean up the same way
+            allocatedBytes = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+        } catch (final ClassNotFoundException e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        Assume.assumeTrue(allocatedBytes.getDeclaringClass().isInstance(threads));
+
+        final BeanContext beanContext = bean.beanContext();
+        final Method method = ContextBean.class.getMethod("context");
+
+        // warm up so the measured loops run compiled
+        for (int i = 0; i < 5; i++) {
+            calls(beanContext, method, true);
+            calls(beanContext, method, false);
+        }
+
+        final long id = Thread.currentThread().getId();
+        long start = (Long) allocatedBytes.invoke(threads, id);
+        calls(beanContext, method, true);
+        final double recycled = ((Long) allocatedBytes.invoke(threads, id) - start) / (double) CALLS;
+
+        start = (Long) allocatedBytes.invoke(threads, id);
+        calls(beanContext, method, false);
+        final double created = ((Long) allocatedBytes.invoke(threads, id) - start) / (double) CALLS;
+
+        System.out.println(String.format("ThreadContextTest.allocation: %.1f bytes per call with a recycled context, %.1f with a new one", recycled, created));
+        // a new context costs at least its object and its slots, the listeners may allocate in both cases
+        assertTrue("recycled " + recycled + " bytes, created " + created, recycled <= created - 64);
+    }
+
+    private static void calls(final BeanContext beanContext, final Method method, final boolean recycle) {
+        for (int i = 0; i < CALLS; i++) {
+            final ThreadContext context = recycle ? ThreadContext.acquire(beanContext, null) : new ThreadContext(beanContext, null);
+            final ThreadContext old = ThreadContext.enter(context);
+            try {
+                context.set(Method.class, method);
+                assertSame(method, context.get(Method.class));
+            } finally {
+                ThreadContext.exit(old);
+            }
+        }
+    }
+
+    @Stateless
+    public static class ContextBean {
+        private static final class Marker {
+        }
+
+        public int context() {
+            final ThreadContext context = ThreadContext.getThreadContext();
+            final Method method = context.get(Method.class);
+            assertNotNull(method);
+            assertEquals("context", method.getName());
+            context.set(Marker.class, new Marker());
+            return System.identityHashCode(context);
+        }
+
+        public BeanContext beanContext() {
+            return ThreadContext.getThreadContext().getBeanContext();
+        }
+
+        public boolean leftover() {
+            final ThreadContext context = ThreadContext.getThreadContext();
+            assertSame(context.getBeanContext().getBeanClass(), ContextBean.class);
+            assertTrue(context.getCurrentOperation() == Operation.BUSINESS);
+            return context.get(Marker.class) != null;
+        }
+    }
+}
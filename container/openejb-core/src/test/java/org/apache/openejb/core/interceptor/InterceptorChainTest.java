@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.interceptor;
+
+import junit.framework.TestCase;
+import org.apache.openejb.core.Operation;
+
+import javax.interceptor.InvocationContext;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class InterceptorChainTest extends TestCase {
+
+    private static final List<String> CALLS = new ArrayList<String>();
+
+    @Override
+    protected void setUp() throws Exception {
+        CALLS.clear();
+    }
+
+    public void testOrder() throws Exception {
+        final Method echo = Bean.class.getMethod("echo", String.class);
+        final InterceptorChain chain = new InterceptorChain(Operation.BUSINESS, datas(), echo);
+        assertEquals(2, chain.size());
+
+        final InterceptorStack stack = new InterceptorStack(new Bean(), echo, chain, instances());
+        assertEquals("[public[hidden[hello]]]", stack.invoke("hello"));
+        assertEquals(Arrays.asList("public", "hidden", "echo"), CALLS);
+    }
+
+    public void testSameChainForSeveralInvocations() throws Exception {
+        final Method echo = Bean.class.getMethod("echo", String.class);
+        final InterceptorChain chain = new InterceptorChain(Operation.BUSINESS, datas(), echo);
+
+        final Map<String, Object> instances = instances();
+        for (int i = 0; i < 10; i++) {
+            assertEquals("[public[hidden[" + i + "]]]", new InterceptorStack(new Bean(), echo, chain, instances).invoke(String.valueOf(i)));
+        }
+        assertEquals(30, CALLS.size());
+    }
+
+    public void testExceptionIsNotWrapped() throws Exception {
+        final Method fail = Bean.class.getMethod("fail");
+        final InterceptorChain chain = new InterceptorChain(Operation.BUSINESS, datas(), fail);
+
+        try {
+            new InterceptorStack(new Bean(), fail, chain, instances()).invoke();
+            fail("expected an IllegalStateException");
+        } catch (final IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    public void testNoInterceptor() throws Exception {
+        final Method echo = Bean.class.getMethod("echo", String.class);
+        final InterceptorChain chain = new InterceptorChain(Operation.BUSINESS, new ArrayList<InterceptorData>(), echo);
+        assertEquals(0, chain.size());
+        assertEquals("[direct]", new InterceptorStack(new Bean(), echo, chain, new HashMap<String, Object>()).invoke("direct"));
+    }
+
+    private static List<InterceptorData> datas() {
+        final InterceptorData publicData = new InterceptorData(PublicInterceptor.class);
+        publicData.getAroundInvoke().add(method(PublicInterceptor.class, "invoke"));
+        final InterceptorData hiddenData = new InterceptorData(HiddenInterceptor.class);
+        hiddenData.getAroundInvoke().add(method(HiddenInterceptor.class, "invoke"));
+        return Arrays.asList(publicData, hiddenData);
+    }
+
+    private static Map<String, Object> instances() {
+        final Map<String, Object> instances = new HashMap<String, Object>();
+        instances.put(PublicInterceptor.class.getName(), new PublicInterceptor());
+        instances.put(HiddenInterceptor.class.getName(), new HiddenInterceptor());
+        return instances;
+    }
+
+    private static Method method(final Class<?> clazz, final String name) {
+        try {
+            final Method method = clazz.getDeclaredMethod(name, InvocationContext.class);
+            method.setAccessible(true);
+            return method;
+        } catch (final NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static class Bean {
+        public String echo(final String value) {
+            CALLS.add("echo");
+            return "[" + value + "]";
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+    }
+
+    public static class PublicInterceptor {
+        public Object invoke(final InvocationContext context) throws Exception {
+            CALLS.add("public");
+            final Object result = context.proceed();
+            return result instanceof String ? "[public" + result + "]" : result;
+        }
+    }
+
+    // private around invoke, the deployment makes it accessible
+    public static class HiddenInterceptor {
+        private Object invoke(final InvocationContext context) throws Exception {
+            CALLS.add("hidden");
+            final Object result = context.proceed();
+            return result instanceof String ? "[hidden" + result + "]" : result;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm;
+
+import org.junit.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+import static org.junit.Assume.assumeTrue;
+
+public class ReflectionCopierTest {
+
+    private final CountingCopier fallback = new CountingCopier();
+    private final ReflectionCopier copier = new ReflectionCopier(fallback);
+
+    @Test
+    public void bean() throws Exception {
+        final Person person = person();
+
+        final Person copy = copier.copy(person);
+        assertNotSame(person, copy);
+        assertEquals("Joe", copy.name);
+        assertEquals(42, copy.age);
+        assertNull(copy.cache);
+        assertNotSame(person.tags, copy.tags);
+        assertEquals(person.tags, copy.tags);
+        assertNotSame(person.scores, copy.scores);
+        assertArrayEquals(person.scores, copy.scores);
+        assertNotSame(person.born, copy.born);
+        assertEquals(person.born, copy.born);
+        assertEquals(0, fallback.count.get());
+    }
+
+    @Test
+    public void graph() throws Exception {
+        final Person joe = person();
+        final Person jane = person();
+        joe.friend = jane;
+        jane.friend = joe;
+        final Person[] people = {joe, jane, joe};
+
+        final Person[] copy = copier.copy(people);
+        assertNotSame(people, copy);
+        assertNotSame(joe, copy[0]);
+        assertSame(copy[0], copy[2]);
+        assertSame(copy[1], copy[0].friend);
+        assertSame(copy[0], copy[1].friend);
+        assertEquals(0, fallback.count.get());
+    }
+
+    @Test
+    public void immutables() throws Exception {
+        final Money money = new Money(10, "EUR");
+        assertSame(money, copier.copy(money));
+        assertSame(TimeUnit.SECONDS, copier.copy(TimeUnit.SECONDS));
+        assertSame("value", copier.copy("value"));
+
+        final List<String> singleton = Collections.singletonList("value");
+        assertSame(singleton, copier.copy(singleton));
+
+        final Map<String, Money> map = new HashMap<String, Money>();
+        map.put("price", money);
+        final Map<String, Money> copy = copier.copy(map);
+        assertNotSame(map, copy);
+        assertSame(money, copy.get("price"));
+        assertEquals(0, fallback.count.get());
+    }
+
+    @Test
+    public void fallback() throws Exception {
+        final List<Object> list = new ArrayList<Object>();
+        list.add(person());
+        list.add(new Replaced());
+
+        final List<Object> copy = copier.copy(list);
+        assertEquals(1, fallback.count.get());
+        assertTrue(copy.get(1) instanceof Replaced);
+
+        // a mutable element in an immutable collection
+        copier.copy(Collections.singletonList(person()));
+        assertEquals(2, fallback.count.get());
+    }
+
+    @Test
+    public void record() throws Exception {
+        final Class<?> type = compileRecord();
+
+        assertEquals("record", copier.getStrategy(type));
+        final Object shared = type.getConstructor(String.class, Object.class).newInstance("price", 10L);
+        assertSame(shared, copier.copy(shared));
+        assertEquals(0, fallback.count.get());
+
+        // a mutable component, copied by the fallback
+        final Object mutable = type.getConstructor(String.class, Object.class).newInstance("tags", new ArrayList<String>());
+        final Thread thread = Thread.currentThread();
+        final ClassLoader loader = thread.getContextClassLoader();
+        thread.setContextClassLoader(type.getClassLoader());
+        try {
+            assertNotSame(mutable, copier.copy(mutable));
+        } finally {
+            thread.setContextClassLoader(loader);
+        }
+        assertEquals(1, fallback.count.get());
+
+        assertEquals("fields", copier.getStrategy(Person.class));
+        assertEquals("immutable", copier.getStrategy(Money.class));
+        assertEquals("serialize", copier.getStrategy(Replaced.class));
+    }
+
+    /**
+     * The sources are Java 7, the record is compiled when the JVM knows them.
+     */
+    private static Class<?> compileRecord() throws Exception {
+        boolean records;
+        try {
+            Class.forName("java.lang.Record");
+            records = true;
+        } catch (final ClassNotFoundException e) {
+            records = false;
+        }
+        assumeTrue(records);
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+
+        final File dir = Files.createTempDirectory("record").toFile();
+        final File source = new File(dir, "Entry.java");
+        final OutputStream out = new FileOutputStream(source);
+        try {
+            out.write("public record Entry(String name, Object value) implements java.io.Serializable {}".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        assertEquals(0, compiler.run(null, null, null, "-d", dir.getAbsolutePath(), source.getAbsolutePath()));
+
+        return new URLClassLoader(new URL[]{dir.toURI().toURL()}, ReflectionCopierTest.class.getClassLoader()).loadClass("Entry");
+    }
+
+    /**
+     * Copies of a small bean graph, serialization against reflection.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        final Person person = person();
+        person.friend = person();
+        final IntraVmCopier serialization = new SerializationCopier();
+        final ReflectionCopier reflection = new ReflectionCopier();
+
+        for (int i = 0; i < 10000; i++) {
+            serialization.copy(person);
+            reflection.copy(person);
+        }
+
+        final int copies = 100000;
+        long start = System.nanoTime();
+        for (int i = 0; i < copies; i++) {
+            serialization.copy(person);
+        }
+        final long serialized = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (int i = 0; i < copies; i++) {
+            reflection.copy(person);
+        }
+        final long reflected = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.println(String.format("%d copies: serialization %dms, reflection %dms", copies, serialized, reflected));
+    }
+
+    private static Person person() {
+        final Person person = new Person();
+        person.name = "Joe";
+        person.age = 42;
+        person.cache = "cached";
+        person.tags = new ArrayList<String>();
+        person.tags.add("a");
+        person.tags.add("b");
+        person.scores = new int[]{1, 2, 3};
+        person.born = new Date();
+        return person;
+    }
+
+    public static class Base implements Serializable {
+        protected Date born;
+    }
+
+    public static class Person extends Base {
+        private String name;
+        private int age;
+        private transient String cache;
+        private List<String> tags;
+        private int[] scores;
+        private Person friend;
+    }
+
+    public static final class Money implements Serializable {
+        private final long amount;
+        private final String currency;
+
+        public Money(final long amount, final String currency) {
+            this.amount = amount;
+            this.currency = currency;
+        }
+    }
+
+    public static class Replaced implements Serializable {
+        private Object writeReplace() throws ObjectStreamException {
+            return this;
+        }
+    }
+
+    private static class CountingCopier extends SerializationCopier {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public <T> T copy(final T object) throws IOException, ClassNotFoundException {
+            count.incrementAndGet();
+            return super.copy(object);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.ivm.naming;
+
+import junit.framework.TestCase;
+
+import javax.naming.Context;
+import javax.naming.LinkRef;
+import javax.naming.NameNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class JndiIndexTest extends TestCase {
+
+    public void testLookups() throws Exception {
+        final IvmContext context = context();
+        context.buildIndex();
+
+        final JndiIndex index = JndiIndex.build(context);
+        assertEquals(3, index.get("comp/env/three"));
+        assertNull(index.get("comp/env/missing"));
+
+        assertEquals(1, context.lookup("comp/env/one"));
+        assertEquals("value", context.lookup("comp/env/object"));
+        assertEquals(2, context.lookup("comp/env/link"));
+        assertEquals(3, context.lookup("comp/env/three"));
+        assertTrue(context.lookup("comp/env") instanceof Context);
+        assertEquals(3, ((Context) context.lookup("comp/env")).lookup("three"));
+
+        try {
+            context.lookup("comp/env/missing");
+            fail();
+        } catch (final NameNotFoundException e) {
+            // ok
+        }
+    }
+
+    public void testRebuiltOnChange() throws Exception {
+        final IvmContext context = context();
+        context.buildIndex();
+        assertEquals(1, context.lookup("comp/env/one"));
+
+        context.unbind("comp/env/one");
+        try {
+            context.lookup("comp/env/one");
+            fail();
+        } catch (final NameNotFoundException e) {
+            // ok
+        }
+
+        context.bind("comp/env/one", 11);
+        assertEquals(11, context.lookup("comp/env/one"));
+    }
+
+    public void testFederation() throws Exception {
+        final IvmContext module = new IvmContext();
+        module.bind("module/ModuleName", "module");
+        module.bind("module/env/shared", 1);
+        module.buildIndex();
+
+        final IvmContext comp = context();
+        comp.bind("module", module.lookup("module"));
+        comp.bind("comp/env/module", new LinkRef("module/env/shared"));
+        comp.buildIndex();
+
+        assertEquals("module", comp.lookup("module/ModuleName"));
+        assertEquals(1, comp.lookup("comp/env/module"));
+
+        module.bind("module/env/late", 2);
+        assertEquals(2, comp.lookup("module/env/late"));
+    }
+
+    /**
+     * Lookups of the names of a bean environment, the index against the tree.
+     */
+    public void testBenchmark() throws Exception {
+        final List<String> names = new ArrayList<String>();
+        final IvmContext tree = new IvmContext();
+        final IvmContext indexed = new IvmContext();
+        for (int i = 0; i < 200; i++) {
+            final String name = "comp/env/" + (i % 4 == 0 ? "jdbc/" : "ejb/") + "Reference" + i;
+            names.add(name);
+            tree.bind(name, i);
+            indexed.bind(name, i);
+        }
+        indexed.buildIndex();
+
+        final int lookups = 2000000;
+        lookups(tree, names, lookups / 10);
+        lookups(indexed, names, lookups / 10);
+
+        final long treeTime = lookups(tree, names, lookups);
+        final long indexTime = lookups(indexed, names, lookups);
+        tree.fastCache.clear();
+        final long walkTime = walk(tree, names, lookups);
+
+        System.out.println(String.format("%d lookups: tree %dms (cached), tree %dms (walked), index %dms", lookups, treeTime, walkTime, indexTime));
+    }
+
+    private static long lookups(final Context context, final List<String> names, final int lookups) throws Exception {
+        final long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            context.lookup(names.get(i % names.size()));
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static long walk(final IvmContext context, final List<String> names, final int lookups) throws Exception {
+        final long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            context.mynode.resolve(new ParsedName(context.mynode.getAtomicName() + '/' + names.get(i % names.size())));
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    private static IvmContext context() throws Exception {
+        final IvmContext context = new IvmContext();
+        context.bind("comp/env/one", 1);
+        context.bind("comp/env/two", 2);
+        context.bind("comp/env/three", 3);
+        context.bind("comp/env/object", new ObjectReference("value"));
+        context.bind("comp/env/link", new LinkRef("comp/env/two"));
+        return context;
+    }
+}
@@ -16,7 +16,9 @@
  */
 package org.apache.openejb.core.security;
 
+import org.apache.openejb.core.security.jaas.CredentialCache;
 import org.apache.openejb.core.security.jaas.GroupPrincipal;
+import org.apache.openejb.core.security.jaas.SQLLoginModule;
 import org.apache.openejb.core.security.jaas.UserPrincipal;
 import org.apache.openejb.core.security.jaas.UsernamePasswordCallbackHandler;
 import org.apache.openejb.util.URLs;
@@ -33,9 +35,12 @@ import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class SQLLoginModuleTest {
 
@@ -138,4 +143,67 @@ public class SQLLoginModuleTest {
         context.login();
     }
 
+    @Test
+    public void testCachedLogin() throws LoginException {
+        final Map<String, String> options = new HashMap<String, String>();
+        options.put("jdbcURL", "jdbc:hsqldb:mem:sqltest");
+        options.put("userSelect", "SELECT username, password FROM users WHERE username=?");
+        options.put("groupSelect", "SELECT username, grp FROM groups WHERE username=?");
+        options.put("cacheName", "sqltest");
+        options.put("cacheMaxFailures", "2");
+
+        try {
+            for (int i = 0; i < 2; i++) {
+                final Subject subject = login(options, "jonathan", "secret");
+                assertEquals(1, subject.getPrincipals(UserPrincipal.class).size());
+                assertEquals(2, subject.getPrincipals(GroupPrincipal.class).size());
+            }
+
+            // created by the login module with its options
+            final CredentialCache cache = CredentialCache.get("sqltest");
+            assertEquals(2, cache.getMaxFailures());
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getSize());
+
+            // the wrong password is remembered without asking the database again
+            failedLogin(options, "daniel", "badpass");
+            failedLogin(options, "daniel", "badpass");
+            assertEquals(1, cache.getRejections());
+
+            // a second failure checked by the database blocks the user, even with the right password
+            failedLogin(options, "daniel", "otherpass");
+            assertEquals(1, cache.getRejections());
+            failedLogin(options, "daniel", "password");
+            assertEquals(2, cache.getRejections());
+
+            cache.evict("daniel");
+            assertEquals(1, login(options, "daniel", "password").getPrincipals(UserPrincipal.class).size());
+
+            // a failed attempt keeps the cached login
+            failedLogin(options, "jonathan", "wrong");
+            final long hits = cache.getHits();
+            assertEquals(1, login(options, "jonathan", "secret").getPrincipals(UserPrincipal.class).size());
+            assertEquals(hits + 1, cache.getHits());
+        } finally {
+            CredentialCache.remove("sqltest");
+        }
+    }
+
+    private static Subject login(final Map<String, String> options, final String user, final String password) throws LoginException {
+        final Subject subject = new Subject();
+        final SQLLoginModule module = new SQLLoginModule();
+        module.initialize(subject, new UsernamePasswordCallbackHandler(user, password), new HashMap<String, Object>(), options);
+        module.login();
+        module.commit();
+        return subject;
+    }
+
+    private static void failedLogin(final Map<String, String> options, final String user, final String password) throws LoginException {
+        try {
+            login(options, user, password);
+            fail();
+        } catch (final FailedLoginException e) {
+            // expected
+        }
+    }
 }
@@ -28,6 +28,8 @@ import org.apache.openejb.config.ConfigurationFactory;
 import org.apache.openejb.core.LocalInitialContextFactory;
 import org.apache.openejb.jee.EjbJar;
 import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.spi.SecurityService;
 import org.junit.AfterClass;
 
 import javax.annotation.Resource;
@@ -141,6 +143,36 @@ public class SecurityTest extends TestCase {
         //        assertTrue("not in role contributor", bar.isCallerInRole("contributor"));
     }
 
+    public void testCachedDecisions() throws Exception {
+        final Assembler assembler = configureAssembler(null);
+        final AuthorizationCache cache = AbstractSecurityService.class.cast(SystemInstance.get().getComponent(SecurityService.class)).getAuthorizationCache();
+
+        final Properties props = new Properties();
+        props.setProperty(Context.SECURITY_PRINCIPAL, "jonathan");
+        props.setProperty(Context.SECURITY_CREDENTIALS, "secret");
+
+        final InitialContext ctx = new InitialContext(props);
+
+        final Project foo = (Project) ctx.lookup("FooBeanLocal");
+
+        for (int i = 0; i < 3; i++) {
+            foo.svnCommit("");
+            try {
+                foo.deleteProject("");
+                fail("Should not be allowed");
+            } catch (final Exception e) {
+                // good, even when cached
+            }
+        }
+        assertEquals(4, cache.getHits());
+        assertEquals(2, cache.getSize());
+
+        ctx.close();
+        assembler.destroy();
+
+        assertEquals(0, cache.getSize());
+    }
+
     // When no credentials are provided, the default user/role should be "guest"
     public void testUnauthenticatedUser() throws Exception {
         final Assembler assembler = configureAssembler(null);
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.singleton;
+
+import org.junit.Test;
+
+import javax.ejb.IllegalLoopbackException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StripedReadWriteLockTest {
+
+    @Test
+    public void readersShare() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock();
+        final CountDownLatch in = new CountDownLatch(4);
+        final CountDownLatch out = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            start(new Runnable() {
+                @Override
+                public void run() {
+                    lock.readLock().lock();
+                    try {
+                        in.countDown();
+                        out.await();
+                    } catch (final InterruptedException e) {
+                        // no-op
+                    } finally {
+                        lock.readLock().unlock();
+                    }
+                }
+            });
+        }
+        assertTrue(in.await(5, TimeUnit.SECONDS));
+
+        // the access timeout applies to the writer
+        assertFalse(lock.writeLock().tryLock(100, TimeUnit.MILLISECONDS));
+        out.countDown();
+        assertTrue(lock.writeLock().tryLock(5, TimeUnit.SECONDS));
+        lock.writeLock().unlock();
+    }
+
+    @Test
+    public void writerExcludes() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock();
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        start(new Runnable() {
+            @Override
+            public void run() {
+                lock.writeLock().lock();
+                try {
+                    // reentrant, and the writer may read
+                    lock.writeLock().lock();
+                    lock.writeLock().unlock();
+                    lock.readLock().lock();
+                    lock.readLock().unlock();
+
+                    locked.countDown();
+                    release.await();
+                } catch (final InterruptedException e) {
+                    // no-op
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        });
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+        assertFalse(lock.readLock().tryLock());
+        assertFalse(lock.readLock().tryLock(100, TimeUnit.MILLISECONDS));
+        assertFalse(lock.writeLock().tryLock(100, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(lock.readLock().tryLock(5, TimeUnit.SECONDS));
+        // no upgrade
+        assertFalse(lock.writeLock().tryLock());
+        lock.readLock().unlock();
+    }
+
+    @Test
+    public void readToWriteLoopback() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock();
+        lock.readLock().lock();
+        try {
+            lock.writeLock().lock();
+            fail("read lock upgraded");
+        } catch (final IllegalLoopbackException e) {
+            // expected
+        }
+        try {
+            lock.writeLock().lockInterruptibly();
+            fail("read lock upgraded");
+        } catch (final IllegalLoopbackException e) {
+            // expected
+        }
+        lock.readLock().unlock();
+
+        // nothing left behind
+        assertTrue(lock.writeLock().tryLock());
+        lock.writeLock().unlock();
+    }
+
+    @Test
+    public void waitingWriterBlocksNewReaders() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock();
+        lock.readLock().lock();
+
+        final AtomicBoolean written = new AtomicBoolean();
+        final Thread writer = start(new Runnable() {
+            @Override
+            public void run() {
+                lock.writeLock().lock();
+                written.set(true);
+                lock.writeLock().unlock();
+            }
+        });
+        while (writer.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        final AtomicBoolean read = new AtomicBoolean(true);
+        final Thread reader = start(new Runnable() {
+            @Override
+            public void run() {
+                read.set(lock.readLock().tryLock());
+            }
+        });
+        reader.join();
+        assertFalse("a new reader jumped the waiting writer", read.get());
+
+        // reentrant read doesn't wait for the writer
+        assertTrue(lock.readLock().tryLock());
+        lock.readLock().unlock();
+
+        lock.readLock().unlock();
+        writer.join(5000);
+        assertTrue(written.get());
+    }
+
+    @Test
+    public void consistency() throws Exception {
+        final StripedReadWriteLock lock = new StripedReadWriteLock();
+        final int[] pair = new int[2];
+        final AtomicInteger torn = new AtomicInteger();
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final boolean writing = t % 4 == 0;
+            threads[t] = start(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        final Lock l = writing ? lock.writeLock() : lock.readLock();
+                        l.lock();
+                        try {
+                            if (writing) {
+                                pair[0]++;
+                                pair[1]++;
+                            } else if (pair[0] != pair[1]) {
+                                torn.incrementAndGet();
+                            }
+                        } finally {
+                            l.unlock();
+                        }
+                    }
+                }
+            });
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, torn.get());
+        assertEquals(2 * 20000, pair[0]);
+    }
+
+    /**
+     * Read lock throughput with 64 threads, compared to a ReentrantReadWriteLock.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        final int threads = 64;
+        final long duration = 500;
+        final long reentrant = readThroughput(new ReentrantReadWriteLock(), threads, duration);
+        final long striped = readThroughput(new StripedReadWriteLock(), threads, duration);
+        System.out.println(String.format("%d readers for %dms: ReentrantReadWriteLock %d reads, StripedReadWriteLock %d reads",
+            threads, duration, reentrant, striped));
+    }
+
+    private static long readThroughput(final ReadWriteLock lock, final int threads, final long duration) throws InterruptedException {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong reads = new AtomicLong();
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final CountDownLatch go = new CountDownLatch(1);
+        final Thread[] readers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            readers[t] = start(new Runnable() {
+                @Override
+                public void run() {
+                    ready.countDown();
+                    try {
+                        go.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    long count = 0;
+                    final Lock read = lock.readLock();
+                    while (running.get()) {
+                        read.lock();
+                        read.unlock();
+                        count++;
+                    }
+                    reads.addAndGet(count);
+                }
+            });
+        }
+        ready.await();
+        go.countDown();
+        Thread.sleep(duration);
+        running.set(false);
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        return reads.get();
+    }
+
+    private static Thread start(final Runnable runnable) {
+        final Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.stateful;
+
+import junit.framework.TestCase;
+import org.apache.openejb.util.Duration;
+
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class MappedPassivaterTest extends TestCase {
+
+    private MappedPassivater passivater;
+
+    @Override
+    protected void setUp() throws Exception {
+        System.setProperty("openejb.stateful.passivation.segment-size", "4096");
+        passivater = new MappedPassivater();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        passivater.close();
+        System.clearProperty("openejb.stateful.passivation.segment-size");
+    }
+
+    public void testPassivateActivate() throws Exception {
+        final Map<String, String> beans = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 500; i++) {
+            beans.put("key" + i, "state of bean " + i);
+        }
+        passivater.passivate(beans);
+
+        final MappedPassivater.Stats stats = stats();
+        assertEquals(500, stats.getPassivatedBeans());
+        assertTrue(stats.getSegments() > 1);
+
+        for (int i = 0; i < 500; i++) {
+            assertEquals("state of bean " + i, passivater.activate("key" + i));
+        }
+
+        // activated beans are gone from the store
+        assertNull(passivater.activate("key0"));
+        assertNull(passivater.activate("unknown"));
+        assertEquals(0, stats.getPassivatedBeans());
+        assertEquals(0, stats.getLiveBytes());
+        assertEquals(1, stats.getSegments());
+    }
+
+    public void testLatestStateWins() throws Exception {
+        final Map<String, String> beans = new LinkedHashMap<String, String>();
+        beans.put("bean", "first");
+        passivater.passivate(beans);
+        beans.put("bean", "second");
+        passivater.passivate(beans);
+
+        assertEquals(1, stats().getPassivatedBeans());
+        assertEquals("second", passivater.activate("bean"));
+    }
+
+    public void testCompaction() throws Exception {
+        final Map<String, String> beans = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 2000; i++) {
+            beans.put("key" + i, "state of bean " + i);
+        }
+        passivater.passivate(beans);
+
+        final long before = stats().getDiskUsage();
+
+        // keep one bean out of ten alive
+        for (int i = 0; i < 2000; i++) {
+            if (i % 10 != 0) {
+                assertNotNull(passivater.activate("key" + i));
+            }
+        }
+
+        assertTrue(stats().getCompactions() > 0);
+        assertTrue(stats().getDiskUsage() < before);
+
+        for (int i = 0; i < 2000; i += 10) {
+            assertEquals("state of bean " + i, passivater.activate("key" + i));
+        }
+    }
+
+    public void testRecordLargerThanSegment() throws Exception {
+        final Map<String, String> beans = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 100; i++) {
+            beans.put("key" + i, "state of bean " + i);
+        }
+        passivater.passivate(beans);
+
+        // leave the current segment nearly dead so the next roll compacts it
+        for (int i = 1; i < 100; i++) {
+            assertNotNull(passivater.activate("key" + i));
+        }
+
+        final StringBuilder large = new StringBuilder();
+        while (large.length() < 10000) {
+            large.append("large state ");
+        }
+        beans.clear();
+        for (int i = 0; i < 3; i++) {
+            beans.put("large" + i, large.toString() + i);
+        }
+        passivater.passivate(beans);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(large.toString() + i, passivater.activate("large" + i));
+        }
+        assertEquals("state of bean 0", passivater.activate("key0"));
+    }
+
+    public void testTimedOutBeansDropped() throws Exception {
+        passivater.setTimeOut(50);
+
+        final Map<String, Serializable> beans = new LinkedHashMap<String, Serializable>();
+        for (int i = 0; i < 100; i++) {
+            beans.put("key" + i, "state of bean " + i);
+        }
+        // its own timeout wins over the one of the cache
+        beans.put("long", new LongLived());
+        passivater.passivate(beans);
+        assertEquals(101, stats().getPassivatedBeans());
+
+        Thread.sleep(100);
+
+        // the next passivation drops the abandoned beans
+        beans.clear();
+        beans.put("fresh", "fresh state");
+        passivater.passivate(beans);
+
+        assertEquals(100, stats().getExpirations());
+        assertEquals(2, stats().getPassivatedBeans());
+        assertNull(passivater.activate("key0"));
+        assertTrue(passivater.activate("long") instanceof LongLived);
+        assertEquals("fresh state", passivater.activate("fresh"));
+        assertEquals(0, stats().getLiveBytes());
+    }
+
+    public void testTimedOutBeanNotActivated() throws Exception {
+        passivater.setTimeOut(50);
+
+        final Map<String, String> beans = new LinkedHashMap<String, String>();
+        beans.put("bean", "state");
+        passivater.passivate(beans);
+
+        Thread.sleep(100);
+
+        assertNull(passivater.activate("bean"));
+        assertEquals(1, stats().getExpirations());
+        assertEquals(0, stats().getPassivatedBeans());
+    }
+
+    public void testNoTimeOut() throws Exception {
+        final Map<String, String> beans = new LinkedHashMap<String, String>();
+        beans.put("bean", "state");
+        passivater.passivate(beans);
+
+        Thread.sleep(50);
+        passivater.passivate(new LinkedHashMap<String, String>());
+
+        assertEquals(0, stats().getExpirations());
+        assertEquals("state", passivater.activate("bean"));
+    }
+
+    public static class LongLived implements Serializable, Cache.TimeOut {
+        @Override
+        public Duration getTimeOut() {
+            return new Duration(1, TimeUnit.HOURS);
+        }
+    }
+
+    private MappedPassivater.Stats stats() {
+        return passivater.getStats();
+    }
+}
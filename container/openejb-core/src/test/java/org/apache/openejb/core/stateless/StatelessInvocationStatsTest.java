@@ -75,6 +75,7 @@ import java.util.logging.Logger;
  * javax.management.MBeanAttributeInfo[description=, name=someMethod().Percentile75, type=double, read-only, descriptor={}]
  * javax.management.MBeanAttributeInfo[description=, name=someMethod().Percentile90, type=double, read-only, descriptor={}]
  * javax.management.MBeanAttributeInfo[description=, name=someMethod().Percentile99, type=double, read-only, descriptor={}]
+ * javax.management.MBeanAttributeInfo[description=, name=someMethod().Percentile999, type=double, read-only, descriptor={}]
  * javax.management.MBeanAttributeInfo[description=, name=someMethod().SampleSize, type=int, read-only, descriptor={}]
  * javax.management.MBeanAttributeInfo[description=, name=someMethod().Skewness, type=double, read-only, descriptor={}]
  * javax.management.MBeanAttributeInfo[description=, name=someMethod().StandardDeviation, type=double, read-only, descriptor={}]
@@ -198,6 +199,7 @@ public class StatelessInvocationStatsTest extends TestCase {
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile75", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile90", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile99", "double", "", true, false, false));
+            expectedAttributes.add(new MBeanAttributeInfo(s + ".Percentile999", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".SampleSize", "int", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".Skewness", "double", "", true, false, false));
             expectedAttributes.add(new MBeanAttributeInfo(s + ".StandardDeviation", "double", "", true, false, false));
@@ -221,6 +223,7 @@ public class StatelessInvocationStatsTest extends TestCase {
             expectedValues.put(s + ".Percentile75", 0.0);
             expectedValues.put(s + ".Percentile90", 0.0);
             expectedValues.put(s + ".Percentile99", 0.0);
+            expectedValues.put(s + ".Percentile999", 0.0);
             expectedValues.put(s + ".SampleSize", 2000);
             expectedValues.put(s + ".Skewness", Double.NaN);
             expectedValues.put(s + ".StandardDeviation", 0.0);
@@ -336,6 +339,7 @@ public class StatelessInvocationStatsTest extends TestCase {
                 || info.getName().equals("waitSecs().Percentile75")
                 || info.getName().equals("waitSecs().Percentile90")
                 || info.getName().equals("waitSecs().Percentile99")
+                || info.getName().equals("waitSecs().Percentile999")
                 || info.getName().equals("waitSecs().Sum")) {
                 final Double actual = (Double) (server.getAttribute(invocationsName, info.getName()));
                 assertTrue("Expected: " + actual + " >= 999", actual >= 999);
@@ -107,6 +107,8 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributes.add(new MBeanAttributeInfo("Aged.Latest", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Aged.LatestTime", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("AvailablePermits", "int", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("CreationTimeMax", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("CreationTimeMean", "double", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Flushed", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Flushed.Latest", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Flushed.LatestTime", "long", "", true, false, false));
@@ -122,6 +124,7 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributes.add(new MBeanAttributeInfo("IdleTimeouts.Latest", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("IdleTimeouts.LatestTime", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("InstancesActive", "int", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("InstancesCreated", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("InstancesIdle", "int", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("InstancesInitializing", "int", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("InstancesPooled", "int", "", true, false, false));
@@ -144,6 +147,14 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributes.add(new MBeanAttributeInfo("Sweeps", "long", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Sweeps.Latest", "java.lang.String", "", true, false, false));
         expectedAttributes.add(new MBeanAttributeInfo("Sweeps.LatestTime", "long", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("Utilization", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("WaitTimeMax", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("WaitTimeMean", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("WaitTimePercentile50", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("WaitTimePercentile90", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("WaitTimePercentile99", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("WaitTimePercentile999", "double", "", true, false, false));
+        expectedAttributes.add(new MBeanAttributeInfo("Waits", "long", "", true, false, false));
 
 
         // The hardest part, check the values of each, PoolVersion is AtomicaInteger, *.Latest are time-sensitive, so not verified.
@@ -157,6 +168,7 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributesValue.put("GarbageCollection", false);
         expectedAttributesValue.put("IdleTimeout", (long) 0);
         expectedAttributesValue.put("IdleTimeouts", (long) 0);
+        expectedAttributesValue.put("InstancesCreated", (long) 3);
         expectedAttributesValue.put("InstancesPooled", 3);
         expectedAttributesValue.put("InstancesActive", 0);
         expectedAttributesValue.put("InstancesIdle", 3);
@@ -174,13 +186,21 @@ public class StatelessPoolStatsTest extends TestCase {
         expectedAttributesValue.put("SweepInterval", (long) 10);
         // expectedAttributesValue.put("Sweeps", (long) 1);
         expectedAttributesValue.put("StrictPooling", true);
+        expectedAttributesValue.put("WaitTimeMax", Double.NaN);
+        expectedAttributesValue.put("WaitTimeMean", Double.NaN);
+        expectedAttributesValue.put("WaitTimePercentile50", Double.NaN);
+        expectedAttributesValue.put("WaitTimePercentile90", Double.NaN);
+        expectedAttributesValue.put("WaitTimePercentile99", Double.NaN);
+        expectedAttributesValue.put("WaitTimePercentile999", Double.NaN);
+        expectedAttributesValue.put("Waits", (long) 0);
 
         final List<MBeanAttributeInfo> actualAttributes = new ArrayList<MBeanAttributeInfo>();
         final Map<String, Object> actualAttributesValue = new TreeMap<String, Object>();
         for (final MBeanAttributeInfo info : poolMBeanInfo.getAttributes()) {
             actualAttributes.add(info);
             if (!info.getName().endsWith(".Latest") && !info.getName().endsWith(".LatestTime")
-                && !info.getName().equals("Sweeps")) {
+                && !info.getName().equals("Sweeps") && !info.getName().startsWith("CreationTime")
+                && !info.getName().equals("Utilization")) {
                 actualAttributesValue.put(info.getName(), server.getAttribute(objectName, info.getName()));
             }
         }
@@ -478,6 +498,43 @@ public class StatelessPoolStatsTest extends TestCase {
         assertAttribute("AccessTimeouts", 7l);
     }
 
+    /**
+     * Only the pop() calls which had to block are waits, the ones which timed out are recorded too
+     * javax.management.MBeanAttributeInfo[description=, name=Waits, type=long, read-only, descriptor={}]
+     * javax.management.MBeanAttributeInfo[description=, name=WaitTimeMax, type=double, read-only, descriptor={}]
+     * javax.management.MBeanAttributeInfo[description=, name=Utilization, type=double, read-only, descriptor={}]
+     *
+     * @throws Exception On error
+     */
+    public void testWaitTimes() throws Exception {
+        final Properties properties = new Properties();
+        properties.put("MaxSize", "2");
+        properties.put("AccessTimeout", "50 ms");
+        properties.put("StrictPooling", "true");
+
+        final CounterBean bean = deploy("testWaitTimes", properties);
+
+        assertAttribute("Waits", 0l);
+
+        final Checkout checkout = checkout(bean, 2);
+        try {
+            bean.doSomething();
+            fail("ConcurrentAccessException should have been thrown");
+        } catch (final ConcurrentAccessException expected) {
+        }
+        checkout.release();
+
+        // the checkouts found a free instance
+        assertAttribute("Waits", 1l);
+        assertAttribute("AccessTimeouts", 1l);
+        assertAttribute("InstancesCreated", 2l);
+        assertTrue((Double) server.getAttribute(objectName, "WaitTimeMax") >= 45);
+        assertTrue((Double) server.getAttribute(objectName, "CreationTimeMax") >= 0);
+
+        final double utilization = (Double) server.getAttribute(objectName, "Utilization");
+        assertTrue(utilization > 0 && utilization <= 1);
+    }
+
     /**
      * Should be greater than 1 and 'Latest' should be no less than System.currentTimeMillis() - SweepInterval
      * javax.management.MBeanAttributeInfo[description=, name=Sweeps, type=long, read-only, descriptor={}]
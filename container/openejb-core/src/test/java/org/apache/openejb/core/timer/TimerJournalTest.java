@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.apache.openejb.loader.Files;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerJournalTest {
+
+    private static final long NEVER = 3600000;
+
+    private DataSource dataSource;
+    private File directory;
+    private final Collection<TimerJournal> journals = new ArrayList<TimerJournal>();
+
+    @Before
+    public void init() throws Exception {
+        final JDBCDataSource ds = new JDBCDataSource();
+        ds.setDatabase("jdbc:hsqldb:mem:timers" + System.nanoTime());
+        ds.setUser("sa");
+        ds.setPassword("");
+        dataSource = ds;
+
+        directory = Files.mkdirs(new File(Files.tmpdir(), "TimerJournalTest-" + System.nanoTime()));
+    }
+
+    @After
+    public void close() {
+        for (final TimerJournal journal : journals) {
+            journal.close();
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        final TimerJournal journal = open(NEVER, 100);
+
+        journal.record(Arrays.asList(
+            TimerJournal.put("bean", 1, new byte[]{1}),
+            TimerJournal.put("bean", 2, new byte[]{2})));
+        journal.record(Arrays.asList(
+            TimerJournal.put("bean", 1, new byte[]{3}),
+            TimerJournal.delete("bean", 2),
+            TimerJournal.put("other", 1, new byte[]{4})));
+        assertEquals(3, journal.getPending());
+
+        // not in the database yet but visible
+        Map<Long, byte[]> timers = journal.load("bean");
+        assertEquals(1, timers.size());
+        assertArrayEquals(new byte[]{3}, timers.get(1L));
+
+        journal.flush();
+        assertEquals(0, journal.getPending());
+        timers = journal.load("bean");
+        assertEquals(1, timers.size());
+        assertArrayEquals(new byte[]{3}, timers.get(1L));
+        assertEquals(1, journal.load("other").size());
+
+        journal.record(Collections.singletonList(TimerJournal.delete("bean", 1)));
+        journal.flush();
+        assertTrue(journal.load("bean").isEmpty());
+    }
+
+    @Test
+    public void batch() throws Exception {
+        final TimerJournal journal = open(NEVER, 10);
+
+        final Collection<TimerJournal.Change> changes = new ArrayList<TimerJournal.Change>();
+        for (int i = 0; i < 25; i++) {
+            changes.add(TimerJournal.put("bean", i, new byte[]{(byte) i}));
+        }
+        journal.record(changes);
+
+        // a full batch doesn't wait for the interval
+        final long end = System.currentTimeMillis() + 10000;
+        while (journal.getPending() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, journal.getPending());
+        assertEquals(25, journal.load("bean").size());
+        assertEquals(1, segments());
+    }
+
+    @Test
+    public void replay() throws Exception {
+        final TimerJournal crashed = open(NEVER, 100);
+        crashed.record(Arrays.asList(
+            TimerJournal.put("bean", 1, new byte[]{1}),
+            TimerJournal.put("bean", 2, new byte[]{2})));
+        crashed.record(Collections.singletonList(TimerJournal.delete("bean", 1)));
+
+        // the crash cut the last record
+        final FileOutputStream out = new FileOutputStream(new File(directory, "journal-1.log"), true);
+        try {
+            out.write(new byte[]{1, 0});
+        } finally {
+            out.close();
+        }
+
+        final TimerJournal restarted = open(NEVER, 100);
+        assertEquals(0, restarted.getPending());
+        final Map<Long, byte[]> timers = restarted.load("bean");
+        assertEquals(1, timers.size());
+        assertArrayEquals(new byte[]{2}, timers.get(2L));
+        assertEquals(1, segments());
+    }
+
+    private TimerJournal open(final long flushInterval, final int batchSize) throws Exception {
+        final TimerJournal journal = new TimerJournal(dataSource, "OPENEJB_TIMERS", directory, false, flushInterval, batchSize);
+        journals.add(journal);
+        journal.createTable("VARBINARY(1024)");
+        journal.open();
+        return journal;
+    }
+
+    private int segments() {
+        final String[] names = directory.list();
+        return names == null ? 0 : names.length;
+    }
+}
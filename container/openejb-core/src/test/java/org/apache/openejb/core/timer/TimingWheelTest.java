@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.core.timer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimingWheelTest {
+
+    private static final int TIMERS = 100000;
+
+    private ExecutorService executor;
+    private TimingWheel wheel;
+
+    @Before
+    public void start() {
+        executor = Executors.newFixedThreadPool(4);
+        wheel = new TimingWheel("TimingWheelTest", 10, 256, executor);
+        wheel.start();
+    }
+
+    @After
+    public void stop() throws InterruptedException {
+        wheel.stop();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void neverEarly() throws Exception {
+        final AtomicLong early = new AtomicLong();
+        final CountDownLatch fired = new CountDownLatch(3);
+        final long now = System.currentTimeMillis();
+        for (final long delay : new long[]{0, 15, 300}) {
+            final long deadline = now + delay;
+            wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    max(early, deadline - System.currentTimeMillis());
+                    fired.countDown();
+                }
+            }, deadline);
+        }
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue("fired " + early.get() + "ms early", early.get() <= 0);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        final AtomicInteger fired = new AtomicInteger();
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                fired.incrementAndGet();
+            }
+        };
+
+        final TimingWheel.Timeout cancelled = wheel.schedule(task, System.currentTimeMillis() + 100);
+        // beyond the first level
+        final TimingWheel.Timeout far = wheel.schedule(task, System.currentTimeMillis() + TimeUnit.DAYS.toMillis(400));
+        assertEquals(2, wheel.size());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(far.cancel());
+        assertEquals(0, wheel.size());
+
+        Thread.sleep(300);
+        assertEquals(0, fired.get());
+    }
+
+    /**
+     * 100k timers over two seconds, half of them cancelled.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        final Random random = new Random(42);
+        final AtomicInteger fired = new AtomicInteger();
+        final AtomicLong late = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(TIMERS / 2);
+
+        final TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[TIMERS];
+        final long now = System.currentTimeMillis();
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < TIMERS; i++) {
+            final long deadline = now + 500 + random.nextInt(2000);
+            timeouts[i] = wheel.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    max(late, System.currentTimeMillis() - deadline);
+                    fired.incrementAndGet();
+                    done.countDown();
+                }
+            }, deadline);
+        }
+        final long schedule = System.nanoTime() - begin;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < TIMERS; i += 2) {
+            assertTrue(timeouts[i].cancel());
+        }
+        final long cancel = System.nanoTime() - begin;
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertEquals(TIMERS / 2, fired.get());
+        assertEquals(0, wheel.size());
+
+        System.out.println(String.format("%d timers: scheduled in %dms, half cancelled in %dms, at most %dms late",
+            TIMERS, TimeUnit.NANOSECONDS.toMillis(schedule), TimeUnit.NANOSECONDS.toMillis(cancel), late.get()));
+    }
+
+    private static void max(final AtomicLong max, final long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void buckets() {
+        long previous = -1;
+        for (int bucket = 0; bucket < Histogram.bucket(Long.MAX_VALUE); bucket++) {
+            final long lowest = Histogram.lowest(bucket);
+            assertEquals(previous + 1, lowest);
+            assertEquals(bucket, Histogram.bucket(lowest));
+            assertEquals(bucket, Histogram.bucket(Histogram.highest(bucket)));
+            previous = Histogram.highest(bucket);
+        }
+        assertEquals(Histogram.bucket(Long.MAX_VALUE), Histogram.bucket(1L << 50));
+    }
+
+    @Test
+    public void percentiles() {
+        final Histogram histogram = new Histogram();
+        for (long i = 1; i <= 100000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(1000, snapshot.getMin(), 0);
+        assertEquals(100000000, snapshot.getMax(), 0);
+        assertEquals(50000500, snapshot.getMean(), 0);
+        assertNear(50000000, snapshot.getPercentile(50));
+        assertNear(90000000, snapshot.getPercentile(90));
+        assertNear(99000000, snapshot.getPercentile(99));
+        assertNear(99900000, snapshot.getPercentile(99.9));
+        assertNear(Math.sqrt(8.3334166675E14), snapshot.getStandardDeviation());
+    }
+
+    @Test
+    public void empty() {
+        final Histogram.Snapshot snapshot = new Histogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertTrue(Double.isNaN(snapshot.getPercentile(99)));
+        assertTrue(Double.isNaN(snapshot.getMax()));
+    }
+
+    @Test
+    public void windowSnapshot() {
+        final Histogram histogram = new Histogram(100);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(i < 900 ? 10 : 1000);
+        }
+
+        // only the recent values
+        final Histogram.Snapshot recent = histogram.windowSnapshot();
+        assertEquals(100, recent.getCount());
+        assertEquals(1000, recent.getMin(), 0);
+        assertNear(1000, recent.getPercentile(50));
+        assertNear(10, histogram.snapshot().getPercentile(50));
+
+        histogram.setWindowSize(0);
+        assertEquals(1000, histogram.windowSnapshot().getCount());
+    }
+
+    @Test
+    public void interval() {
+        final Histogram histogram = new Histogram();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(10);
+        }
+        assertEquals(10, histogram.intervalSnapshot().getCount());
+
+        histogram.record(1000);
+        final Histogram.Snapshot interval = histogram.intervalSnapshot();
+        assertEquals(1, interval.getCount());
+        assertNear(1000, interval.getPercentile(50));
+        assertNear(1000, interval.getMin());
+        assertEquals(1000, interval.getMax(), 0);
+        assertEquals(0, histogram.intervalSnapshot().getCount());
+        assertEquals(11, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void statsInterval() {
+        final Stats stats = new Stats(10);
+        for (int i = 0; i < 100; i++) {
+            stats.record(i < 50 ? 10 : 1000);
+        }
+        double[] interval = stats.intervalStatistics();
+        assertEquals(100, interval[0], 0);
+        assertEquals(505, interval[1], 0);
+        assertNear(1000, interval[4]);
+
+        stats.record(10);
+        interval = stats.intervalStatistics();
+        assertEquals(1, interval[0], 0);
+        assertEquals(10, interval[5], 0);
+        assertEquals(101, stats.getCount());
+    }
+
+    @Test
+    public void window() {
+        final Histogram histogram = new Histogram(100);
+        for (int i = 0; i < 1000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(100, histogram.values().length);
+
+        histogram.setWindowSize(0);
+        assertEquals(0, histogram.values().length);
+        assertEquals(1000, histogram.snapshot().getCount());
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final Histogram histogram = new Histogram();
+        final int threads = 8;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        histogram.record(i);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        done.await();
+
+        final Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threads * 100000, snapshot.getCount());
+        assertEquals(threads * (100000L * 99999 / 2), snapshot.getSum(), 0);
+        assertEquals(99999, snapshot.getMax(), 0);
+    }
+
+    private static void assertNear(final double expected, final double actual) {
+        assertTrue("expected " + expected + " but was " + actual, Math.abs(expected - actual) <= expected / 32);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.monitoring;
+
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.Singleton;
+import javax.ejb.Stateless;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(ApplicationComposer.class)
+public class InvocationMetricsTest {
+
+    @EJB
+    private MeteredBean stateless;
+
+    @EJB
+    private MeteredSingleton singleton;
+
+    @Configuration
+    public Properties config() {
+        final Properties p = new Properties();
+        p.setProperty(InvocationMetrics.ACTIVATED, "true");
+        return p;
+    }
+
+    @Module
+    public Class<?>[] beans() {
+        return new Class<?>[]{MeteredBean.class, MeteredSingleton.class};
+    }
+
+    @Test
+    public void stateless() throws Exception {
+        stateless.red("a");
+        stateless.red("b");
+        try {
+            stateless.blue();
+            fail("blue() always fails");
+        } catch (final EJBException expected) {
+            // no-op
+        }
+
+        final Map<String, MethodMetrics> methods = methods("MeteredBean");
+        assertEquals(2, methods.get("red(java.lang.String)").getInvocations());
+        assertEquals(0, methods.get("red(java.lang.String)").getErrors());
+        assertEquals(1, methods.get("blue()").getInvocations());
+        assertEquals(1, methods.get("blue()").getErrors());
+        for (final MethodMetrics metrics : methods.values()) {
+            assertEquals(0, metrics.getInFlight());
+            assertEquals(metrics.getInvocations(), metrics.getExecution().snapshot().getCount());
+        }
+
+        final MBeanServer server = LocalMBeanServer.get();
+        final Set<ObjectName> names = server.queryNames(new ObjectName("openejb.management:j2eeType=Metrics,EJB=MeteredBean,*"), null);
+        assertEquals(1, names.size());
+        final ObjectName name = names.iterator().next();
+        assertEquals(2L, server.getAttribute(name, "red(java.lang.String).Invocations"));
+        assertEquals(1L, server.getAttribute(name, "blue().Errors"));
+    }
+
+    @Test
+    public void singleton() throws Exception {
+        assertEquals(3, singleton.add(1, 2));
+
+        final MethodMetrics metrics = methods("MeteredSingleton").get("add(int,int)");
+        assertNotNull(metrics);
+        assertEquals(1, metrics.getInvocations());
+        assertEquals(0, metrics.getErrors());
+    }
+
+    @Test
+    public void disabled() throws Exception {
+        final InvocationMetrics disabled = new InvocationMetrics(false);
+        final MethodMetrics none = disabled.metrics(null, MeteredBean.class.getMethod("blue"));
+        assertSame(MethodMetrics.NONE, none);
+
+        none.end(none.obtained(none.start()), true);
+        assertEquals(0, none.getInvocations());
+        assertTrue(disabled.getBeans().isEmpty());
+    }
+
+    private static Map<String, MethodMetrics> methods(final String ejbName) {
+        for (final InvocationMetrics.BeanMetrics bean : InvocationMetrics.get().getBeans()) {
+            if (ejbName.equals(bean.getEjbName())) {
+                final Map<String, MethodMetrics> methods = new HashMap<String, MethodMetrics>();
+                for (final MethodMetrics metrics : bean.methods()) {
+                    methods.put(metrics.getMethod(), metrics);
+                }
+                return methods;
+            }
+        }
+        throw new AssertionError("No metrics for " + ejbName);
+    }
+
+    @Stateless
+    public static class MeteredBean {
+        public String red(final String s) {
+            return s;
+        }
+
+        public void blue() {
+            throw new IllegalStateException();
+        }
+    }
+
+    @Singleton
+    public static class MeteredSingleton {
+        public int add(final int a, final int b) {
+            return a + b;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.resource.jdbc.dbcp.BasicManagedDataSource;
+import org.apache.openejb.resource.jdbc.managed.local.StatementCache;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import javax.transaction.TransactionManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class DbcpStatementCacheTest {
+    private static final String SQL = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+
+    @Resource(name = "managed")
+    private DataSource ds;
+
+    @Configuration
+    public Properties config() {
+        final Properties p = new Properties();
+        p.put("managed", "new://Resource?type=DataSource");
+        p.put("managed.JdbcDriver", "org.hsqldb.jdbcDriver");
+        p.put("managed.JdbcUrl", "jdbc:hsqldb:mem:dbcpstatementcache");
+        p.put("managed.JtaManaged", "true");
+        p.put("managed.StatementCacheSize", "5");
+        return p;
+    }
+
+    @Module
+    public EjbJar app() throws Exception {
+        return new EjbJar();
+    }
+
+    @Test
+    public void sharesTheStatementsOfTheTransaction() throws Exception {
+        final StatementCache cache = BasicManagedDataSource.class.cast(ds).getStatementCache();
+        assertNotNull(cache);
+        assertEquals(5, cache.getMaxSize());
+        assertFalse(BasicManagedDataSource.class.cast(ds).isPoolPreparedStatements());
+
+        final TransactionManager transactionManager = OpenEJB.getTransactionManager();
+        transactionManager.begin();
+        try {
+            for (int i = 0; i < 3; i++) { // a new handle each time
+                query();
+            }
+        } finally {
+            transactionManager.commit();
+        }
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getPrepareCount(SQL));
+
+        query(); // no transaction, nothing to share
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        transactionManager.begin();
+        try {
+            query(); // the statements of the previous transaction were closed
+        } finally {
+            transactionManager.commit();
+        }
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getHits());
+    }
+
+    private void query() throws Exception {
+        final Connection connection = ds.getConnection();
+        try {
+            final PreparedStatement statement = connection.prepareStatement(SQL);
+            try {
+                final ResultSet rs = statement.executeQuery();
+                assertTrue(rs.next());
+                rs.close();
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+}
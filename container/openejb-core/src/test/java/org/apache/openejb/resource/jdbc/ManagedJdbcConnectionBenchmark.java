@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedConnection;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedDataSource;
+import org.hsqldb.jdbc.JDBCDataSource;
+
+import javax.transaction.TransactionManager;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls on a managed connection inside a transaction, the ManagedJdbcConnection
+ * handed out by the managed data sources against the reflective proxy over
+ * ManagedConnection they used to return.
+ * Not part of the test suite, run it by hand.
+ */
+public class ManagedJdbcConnectionBenchmark {
+
+    private static final int CALLS = 5000000;
+
+    public static void main(final String[] args) throws Throwable {
+        final GeronimoTransactionManager transactionManager = new GeronimoTransactionManager();
+        SystemInstance.get().setComponent(TransactionManager.class, transactionManager);
+
+        final JDBCDataSource hsqldb = new JDBCDataSource();
+        hsqldb.setUrl("jdbc:hsqldb:mem:managedjdbcconnectionbenchmark");
+        hsqldb.setUser("sa");
+        hsqldb.setPassword("");
+        final ManagedDataSource ds = new ManagedDataSource(hsqldb, transactionManager);
+
+        // warm up both
+        calls(transactionManager, ds.getConnection());
+        calls(transactionManager, proxy(ds, hsqldb, transactionManager));
+
+        final long direct = calls(transactionManager, ds.getConnection());
+        final long proxied = calls(transactionManager, proxy(ds, hsqldb, transactionManager));
+
+        System.out.println(String.format("%d calls in a transaction: ManagedJdbcConnection %dms, proxy %dms", CALLS, direct, proxied));
+    }
+
+    private static Connection proxy(final ManagedDataSource ds, final JDBCDataSource hsqldb, final TransactionManager transactionManager) throws Exception {
+        return (Connection) Proxy.newProxyInstance(ManagedJdbcConnectionBenchmark.class.getClassLoader(), new Class<?>[]{Connection.class},
+            new ManagedConnection(ds, hsqldb.getConnection(), transactionManager));
+    }
+
+    private static long calls(final TransactionManager transactionManager, final Connection connection) throws Exception {
+        transactionManager.begin();
+        try {
+            final long start = System.nanoTime();
+            int readOnly = 0;
+            for (int i = 0; i < CALLS; i++) {
+                if (connection.isReadOnly()) {
+                    readOnly++;
+                }
+            }
+            final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (readOnly != 0) {
+                throw new IllegalStateException("read only connection");
+            }
+            connection.close();
+            return duration;
+        } finally {
+            transactionManager.commit();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.geronimo.transaction.manager.GeronimoTransactionManager;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedDataSource;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedJdbcConnection;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.transaction.TransactionManager;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The connections of the managed data sources without the container: the
+ * handles of a transaction share its connection and leave the commit to it.
+ */
+public class ManagedJdbcConnectionTest {
+    private static final String TABLE = "PUBLIC.MANAGED_JDBC_CONNECTION_TEST";
+
+    private GeronimoTransactionManager transactionManager;
+    private ManagedDataSource ds;
+
+    @Before
+    public void init() throws Exception {
+        transactionManager = new GeronimoTransactionManager();
+        // the closing synchronization looks it up there
+        SystemInstance.get().setComponent(TransactionManager.class, transactionManager);
+
+        final JDBCDataSource hsqldb = new JDBCDataSource();
+        hsqldb.setUrl("jdbc:hsqldb:mem:managedjdbcconnection");
+        hsqldb.setUser("sa");
+        hsqldb.setPassword("");
+        ds = new ManagedDataSource(hsqldb, transactionManager);
+
+        final Connection connection = ds.getConnection();
+        try {
+            execute(connection, "CREATE TABLE " + TABLE + "(ID INTEGER)");
+        } finally {
+            connection.close();
+        }
+    }
+
+    @After
+    public void destroy() throws Exception {
+        final Connection connection = ds.getConnection();
+        try {
+            execute(connection, "DROP TABLE " + TABLE);
+        } finally {
+            connection.close();
+        }
+        SystemInstance.get().removeComponent(TransactionManager.class);
+    }
+
+    @Test
+    public void noProxy() throws SQLException {
+        final Connection connection = ds.getConnection();
+        try {
+            assertTrue(connection instanceof ManagedJdbcConnection);
+            assertFalse(Proxy.isProxyClass(connection.getClass()));
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void withoutTransaction() throws SQLException {
+        final Connection connection = ds.getConnection();
+        try {
+            assertTrue(connection.getAutoCommit());
+            connection.setAutoCommit(false);
+            execute(connection, "INSERT INTO " + TABLE + " VALUES(1)");
+            connection.commit(); // the application drives a connection outside of a transaction
+            connection.setAutoCommit(true);
+        } finally {
+            connection.close();
+        }
+        assertTrue(connection.isClosed());
+        assertEquals(1, count());
+    }
+
+    @Test
+    public void sharedInTransaction() throws Exception {
+        transactionManager.begin();
+        try {
+            final Connection first = ds.getConnection();
+            final Connection second = ds.getConnection();
+            assertNotSame(first, second);
+            assertFalse(first.getAutoCommit());
+
+            execute(first, "INSERT INTO " + TABLE + " VALUES(1)");
+            first.close();
+            assertTrue(first.isClosed());
+
+            // the same physical connection, it sees the uncommitted row
+            execute(second, "INSERT INTO " + TABLE + " VALUES(2)");
+            assertSame(first.getMetaData().getConnection(), second.getMetaData().getConnection());
+            assertEquals(2, count(second));
+
+            try {
+                second.commit();
+                fail("the transaction manager commits");
+            } catch (final SQLException expected) {
+                // no-op
+            }
+            try {
+                second.setAutoCommit(true);
+                fail("the transaction manager drives the auto commit");
+            } catch (final SQLException expected) {
+                // no-op
+            }
+            second.close();
+        } finally {
+            transactionManager.commit();
+        }
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void rolledBack() throws Exception {
+        transactionManager.begin();
+        try {
+            final Connection connection = ds.getConnection();
+            execute(connection, "INSERT INTO " + TABLE + " VALUES(1)");
+            connection.close();
+        } finally {
+            transactionManager.rollback();
+        }
+        assertEquals(0, count());
+    }
+
+    private int count() throws SQLException {
+        final Connection connection = ds.getConnection();
+        try {
+            return count(connection);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static int count(final Connection connection) throws SQLException {
+        final Statement statement = connection.createStatement();
+        try {
+            final ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + TABLE);
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private static void execute(final Connection connection, final String sql) throws SQLException {
+        final Statement statement = connection.createStatement();
+        try {
+            statement.execute(sql);
+        } finally {
+            statement.close();
+        }
+    }
+}
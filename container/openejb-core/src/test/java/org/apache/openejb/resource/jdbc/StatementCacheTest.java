@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.resource.jdbc;
+
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.resource.jdbc.managed.local.ManagedDataSource;
+import org.apache.openejb.resource.jdbc.managed.local.StatementCache;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(ApplicationComposer.class)
+public class StatementCacheTest {
+    private static final String URL = "jdbc:hsqldb:mem:statementcache";
+    private static final String USER = "sa";
+    private static final String PASSWORD = "";
+    private static final String TABLE = "PUBLIC.STATEMENT_CACHE_TEST";
+    private static final String INSERT = "INSERT INTO " + TABLE + " VALUES(?)";
+
+    @EJB
+    private Persister persister;
+
+    @Resource(name = "managed")
+    private DataSource ds;
+
+    @BeforeClass
+    public static void createTable() throws SQLException, ClassNotFoundException {
+        Class.forName("org.hsqldb.jdbcDriver");
+
+        final Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+        final Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE " + TABLE + "(ID INTEGER)");
+        statement.close();
+        connection.commit();
+        connection.close();
+    }
+
+    @Configuration
+    public Properties config() {
+        final Properties p = new Properties();
+        p.put("openejb.jdbc.datasource-creator", "dbcp-alternative");
+
+        p.put("managed", "new://Resource?type=DataSource");
+        p.put("managed.JdbcDriver", "org.hsqldb.jdbcDriver");
+        p.put("managed.JdbcUrl", URL);
+        p.put("managed.UserName", USER);
+        p.put("managed.Password", PASSWORD);
+        p.put("managed.JtaManaged", "true");
+        p.put("managed.StatementCacheSize", "2");
+        return p;
+    }
+
+    @Module
+    public EjbJar app() throws Exception {
+        return new EjbJar().enterpriseBean(new SingletonBean(Persister.class).localBean());
+    }
+
+    @Test
+    public void reusedInTransaction() throws SQLException {
+        final StatementCache cache = ManagedDataSource.class.cast(ds).getStatementCache();
+
+        persister.insert(1, 3);
+        assertEquals(1, cache.getPrepareCount(INSERT));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, count(1));
+
+        // statements don't outlive the transaction
+        persister.insert(2, 1);
+        assertEquals(2, cache.getPrepareCount(INSERT));
+        assertEquals(1, count(2));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws SQLException {
+        persister.prepare("SELECT ID FROM " + TABLE, "SELECT COUNT(*) FROM " + TABLE, "SELECT MAX(ID) FROM " + TABLE);
+        assertEquals(1, ManagedDataSource.class.cast(ds).getStatementCache().getEvictions());
+    }
+
+    @Test
+    public void settingsRestoredBeforeReuse() throws SQLException {
+        persister.changeSettings();
+        assertEquals(1, ManagedDataSource.class.cast(ds).getStatementCache().getHits());
+    }
+
+    @Test
+    public void closedStatementCantBeUsed() throws SQLException {
+        persister.useClosed();
+    }
+
+    private static int count(final int id) throws SQLException {
+        final Connection connection = DriverManager.getConnection(URL, USER, PASSWORD);
+        final Statement statement = connection.createStatement();
+        final ResultSet result = statement.executeQuery("SELECT count(*) AS NB FROM " + TABLE + " WHERE ID = " + id);
+        try {
+            assertTrue(result.next());
+            return result.getInt(1);
+        } finally {
+            statement.close();
+            connection.close();
+        }
+    }
+
+    @LocalBean
+    @Singleton
+    public static class Persister {
+        @Resource(name = "managed")
+        private DataSource ds;
+
+        public void insert(final int id, final int times) throws SQLException {
+            for (int i = 0; i < times; i++) {
+                final Connection connection = ds.getConnection();
+                final PreparedStatement statement = connection.prepareStatement(INSERT);
+                statement.setInt(1, id);
+                statement.executeUpdate();
+                statement.close();
+                connection.close();
+            }
+        }
+
+        public void prepare(final String... queries) throws SQLException {
+            final Connection connection = ds.getConnection();
+            for (final String sql : queries) {
+                connection.prepareStatement(sql).close();
+            }
+            connection.close();
+        }
+
+        public void changeSettings() throws SQLException {
+            final Connection connection = ds.getConnection();
+            PreparedStatement statement = connection.prepareStatement(INSERT);
+            final int maxRows = statement.getMaxRows();
+            final int fetchSize = statement.getFetchSize();
+            final int queryTimeout = statement.getQueryTimeout();
+            statement.setMaxRows(maxRows + 1);
+            statement.setFetchSize(fetchSize + 10);
+            statement.setQueryTimeout(queryTimeout + 5);
+            statement.close();
+
+            // the next user gets the statement as it was prepared
+            statement = connection.prepareStatement(INSERT);
+            assertEquals(maxRows, statement.getMaxRows());
+            assertEquals(fetchSize, statement.getFetchSize());
+            assertEquals(queryTimeout, statement.getQueryTimeout());
+            statement.close();
+            connection.close();
+        }
+
+        public void useClosed() throws SQLException {
+            final Connection connection = ds.getConnection();
+            final PreparedStatement statement = connection.prepareStatement(INSERT);
+            statement.close();
+            assertTrue(statement.isClosed());
+            try {
+                statement.setInt(1, 0);
+                fail();
+            } catch (final SQLException e) {
+                // expected
+            }
+            connection.close();
+        }
+    }
+}
@@ -27,6 +27,7 @@ import org.junit.runner.RunWith;
 import javax.annotation.Resource;
 import javax.ejb.EJB;
 import javax.ejb.Singleton;
+import javax.ejb.Stateless;
 import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.RequestScoped;
 import javax.enterprise.inject.Typed;
@@ -46,10 +47,12 @@ public class ManagedExecutorServiceTest {
     private ExecutorFacade facade;
     @Inject
     private CdiExecutorFacade cdiFacade;
+    @EJB
+    private StatelessExecutorFacade statelessFacade;
 
     @Module
     public Class<?>[] bean() {
-        return new Class<?>[]{ExecutorFacade.class, CdiExecutorFacade.class, RequestBean.class, MyCallable.class};
+        return new Class<?>[]{ExecutorFacade.class, CdiExecutorFacade.class, StatelessExecutorFacade.class, RequestBean.class, MyCallable.class};
     }
 
     private ThreadContext ctx;
@@ -78,6 +81,17 @@ public class ManagedExecutorServiceTest {
         // assertEquals(1, RequestBean.ID); // CDI is opposed to it in the spirit
     }
 
+    @Test
+    public void checkStatelessContext() throws Exception {
+        final Future<Class<?>> beanClass = statelessFacade.submit();
+
+        // the context of the submitting call is done and the thread runs another call before the task starts
+        statelessFacade.ping();
+        StatelessExecutorFacade.START.countDown();
+
+        assertEquals(StatelessExecutorFacade.class, beanClass.get());
+    }
+
     @Test
     public void runnable() throws Exception {
         assertTrue(cdiFacade.submitRunnable());
@@ -139,6 +153,29 @@ public class ManagedExecutorServiceTest {
         }
     }
 
+    @Stateless
+    public static class StatelessExecutorFacade {
+        private static final CountDownLatch START = new CountDownLatch(1);
+
+        @Resource
+        private ManagedExecutorService es;
+
+        public Future<Class<?>> submit() {
+            return es.submit(new Callable<Class<?>>() {
+                @Override
+                public Class<?> call() throws Exception {
+                    START.await();
+                    final ThreadContext context = ThreadContext.getThreadContext();
+                    return context == null || context.getBeanContext() == null ? null : context.getBeanContext().getBeanClass();
+                }
+            });
+        }
+
+        public void ping() {
+            // no-op
+        }
+    }
+
     @Typed(MyCallable.class)
     public static class MyCallable implements Callable<Boolean> {
         /*@Inject
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.timer;
+
+import org.apache.openejb.core.timer.EjbTimerServiceImpl;
+import org.apache.openejb.core.timer.TimingWheelScheduler;
+import org.apache.openejb.jee.EnterpriseBean;
+import org.apache.openejb.jee.SingletonBean;
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.quartz.Scheduler;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.Module;
+import org.apache.openejb.testng.PropertiesBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(ApplicationComposer.class)
+public class TimingWheelTimerTest {
+
+    private static final int SINGLE_ACTIONS = 1000;
+
+    @Configuration
+    public Properties config() {
+        return new PropertiesBuilder().p(EjbTimerServiceImpl.OPENEJB_TIMER_ENGINE, "wheel").build();
+    }
+
+    @Module
+    public EnterpriseBean bean() {
+        return new SingletonBean(Timers.class).localBean();
+    }
+
+    @EJB
+    private Timers bean;
+
+    @Test
+    public void test() throws InterruptedException {
+        final Scheduler scheduler = SystemInstance.get().getComponent(Scheduler.class);
+        assertTrue(TimingWheelScheduler.class.isInstance(scheduler));
+
+        Thread.sleep(2500);
+
+        assertEquals(SINGLE_ACTIONS / 2, bean.getSingleActions());
+        assertTrue("interval fired " + bean.getIntervals() + " times", bean.getIntervals() >= 3);
+        assertTrue("schedule fired " + bean.getSchedules() + " times", bean.getSchedules() >= 2);
+    }
+
+    @Singleton
+    @Startup
+    @Lock(LockType.READ)
+    public static class Timers {
+
+        private final AtomicInteger singleActions = new AtomicInteger();
+        private final AtomicInteger intervals = new AtomicInteger();
+        private final AtomicInteger schedules = new AtomicInteger();
+
+        @Resource
+        private TimerService timerService;
+
+        @PostConstruct
+        public void start() {
+            for (int i = 0; i < SINGLE_ACTIONS; i++) {
+                final Timer timer = timerService.createSingleActionTimer(500 + i, new TimerConfig("single", false));
+                if (i % 2 == 0) {
+                    timer.cancel();
+                }
+            }
+            timerService.createIntervalTimer(100, 500, new TimerConfig("interval", false));
+        }
+
+        @Timeout
+        public void timeout(final Timer timer) {
+            if ("single".equals(timer.getInfo())) {
+                singleActions.incrementAndGet();
+            } else {
+                intervals.incrementAndGet();
+            }
+        }
+
+        @Schedule(second = "*", minute = "*", hour = "*", persistent = false)
+        public void schedule() {
+            schedules.incrementAndGet();
+        }
+
+        public int getSingleActions() {
+            return singleActions.get();
+        }
+
+        public int getIntervals() {
+            return intervals.get();
+        }
+
+        public int getSchedules() {
+            return schedules.get();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @version $Rev$ $Date$
+ */
+public class LogRingBufferTest extends TestCase {
+
+    public void testProducers() throws Exception {
+        final int producers = 4;
+        final int events = 50000;
+        final Recorder recorder = new Recorder(producers);
+        final LogRingBuffer<Event> ring = ring(64, LogRingBuffer.Overflow.BLOCK, recorder);
+        ring.start();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < events; i++) {
+                        final long sequence = ring.claim(false);
+                        final Event event = ring.get(sequence);
+                        event.producer = producer;
+                        event.value = i;
+                        ring.publish(sequence);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        ring.close(TimeUnit.SECONDS.toMillis(10));
+
+        assertEquals(0, recorder.errors.get());
+        for (int p = 0; p < producers; p++) {
+            // in order for each producer
+            assertEquals(events, recorder.next[p]);
+        }
+        assertEquals(producers * events, ring.getQueued());
+        assertEquals(0, ring.getPending());
+        assertEquals(0, ring.getDropped());
+        assertTrue(recorder.batches.get() <= producers * events);
+    }
+
+    public void testOverflow() throws Exception {
+        final Recorder recorder = new Recorder(1);
+        final LogRingBuffer<Event> ring = ring(4, LogRingBuffer.Overflow.DROP_DEBUG, recorder);
+
+        // not started, the ring fills up
+        for (int i = 0; i < 4; i++) {
+            final long sequence = ring.claim(true);
+            assertTrue(sequence >= 0);
+            ring.get(sequence).value = i;
+            ring.publish(sequence);
+        }
+        assertEquals(LogRingBuffer.DROPPED, ring.claim(true));
+        assertEquals(1, ring.getDropped());
+        assertEquals(4, ring.getPending());
+
+        final LinkedBlockingQueue<Long> claimed = new LinkedBlockingQueue<Long>();
+        final Thread blocked = new Thread() {
+            @Override
+            public void run() {
+                claimed.add(ring.claim(false));
+            }
+        };
+        blocked.start();
+        assertNull(claimed.poll(200, TimeUnit.MILLISECONDS));
+
+        ring.start();
+        final long sequence = claimed.poll(10, TimeUnit.SECONDS);
+        ring.get(sequence).value = 4;
+        ring.publish(sequence);
+        ring.close(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(5, recorder.next[0]);
+        assertEquals(LogRingBuffer.SYNCHRONOUS, ring.claim(false));
+    }
+
+    public void testHandlerError() throws Exception {
+        final Recorder recorder = new Recorder(1) {
+            @Override
+            public void onEvent(final Event event) {
+                super.onEvent(event);
+                throw new StackOverflowError();
+            }
+        };
+        final LogRingBuffer<Event> ring = ring(4, LogRingBuffer.Overflow.BLOCK, recorder);
+        ring.start();
+
+        // the consumer outlives the errors, a blocked producer gets its slots back
+        for (int i = 0; i < 100; i++) {
+            final long sequence = ring.claim(false);
+            assertTrue(sequence >= 0);
+            ring.get(sequence).value = i;
+            ring.publish(sequence);
+        }
+        ring.close(TimeUnit.SECONDS.toMillis(10));
+        assertEquals(100, recorder.next[0]);
+        assertEquals(0, recorder.errors.get());
+    }
+
+    private static LogRingBuffer<Event> ring(final int capacity, final LogRingBuffer.Overflow overflow, final Recorder recorder) {
+        return new LogRingBuffer<Event>("LogRingBufferTest", capacity, overflow, new LogRingBuffer.EventFactory<Event>() {
+            @Override
+            public Event create() {
+                return new Event();
+            }
+        }, recorder);
+    }
+
+    private static class Event {
+        private int producer;
+        private int value;
+    }
+
+    private static class Recorder implements LogRingBuffer.Handler<Event> {
+        private final int[] next;
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicInteger batches = new AtomicInteger();
+
+        private Recorder(final int producers) {
+            next = new int[producers];
+        }
+
+        @Override
+        public void onEvent(final Event event) {
+            if (next[event.producer]++ != event.value) {
+                errors.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void endOfBatch() {
+            batches.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pop/push round trips of 2 threads per processor on a pool of one instance
+ * per thread, a single idle list against one stripe per processor.
+ * Not part of the test suite, run it by hand.
+ */
+public class PoolBenchmark {
+
+    private static final int ROUND_TRIPS = 1000000;
+
+    public static void main(final String[] args) throws Throwable {
+        final int threads = 2 * Runtime.getRuntime().availableProcessors();
+
+        // warm up both
+        roundTrips(threads, 0);
+        roundTrips(threads, -1);
+
+        final long single = roundTrips(threads, 0);
+        final long striped = roundTrips(threads, -1);
+
+        System.out.println(String.format("%d threads, %d round trips each: single idle list %dms, striped %dms",
+            threads, ROUND_TRIPS, single, striped));
+    }
+
+    private static long roundTrips(final int threads, final int stripes) throws Throwable {
+        final Pool.Builder<Object> builder = new Pool.Builder<Object>();
+        builder.setPoolSize(threads);
+        builder.setStrictPooling(true);
+        builder.setStripes(stripes);
+        final Pool<Object> pool = builder.build();
+        for (int i = 0; i < threads; i++) {
+            pool.add(new Object());
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < ROUND_TRIPS; j++) {
+                            pool.push(pool.pop(1, TimeUnit.MINUTES));
+                        }
+                    } catch (final Throwable e) {
+                        error.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        final long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+
+        pool.stop();
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return duration;
+    }
+}
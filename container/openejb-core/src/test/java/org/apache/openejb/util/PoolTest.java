@@ -38,6 +38,9 @@ public class PoolTest extends TestCase {
 
     private Pool pool;
 
+    // the idle stripes of the pools built by the tests, 0 for a single idle list
+    private int stripes;
+
     @Override
     protected void setUp() throws Exception {
         Bean.instances.set(0);
@@ -56,6 +59,14 @@ public class PoolTest extends TestCase {
         exerciseStrictPool(5, 5);
     }
 
+    public void testStripedStrictBasics() throws Exception {
+        System.out.println("PoolTest.testStripedStrictBasics");
+        exerciseStrictPool(1, 0, 4);
+        exerciseStrictPool(3, 0, 4);
+        exerciseStrictPool(4, 2, 4);
+        exerciseStrictPool(5, 5, -1);
+    }
+
     public void testEmptyPool() throws Exception {
         System.out.println("PoolTest.testEmptyPool");
         final int max = 4;
@@ -106,6 +117,7 @@ public class PoolTest extends TestCase {
         System.out.println("PoolTest.testNonStrictDiscard");
 
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(0);
         builder.setMaxSize(1);
         builder.setStrictPooling(false);
@@ -165,9 +177,13 @@ public class PoolTest extends TestCase {
     }
 
     private void exerciseStrictPool(final int max, final int min) throws InterruptedException {
+        exerciseStrictPool(max, min, 0);
+    }
+
+    private void exerciseStrictPool(final int max, final int min, final int stripes) throws InterruptedException {
         Bean.instances.set(0);
 
-        final Pool<String> pool = new Pool<String>(max, min, true);
+        final Pool<String> pool = new Pool<String>(max, min, true, 0, 0, 0, null, null, false, -1, false, false, stripes);
 
         // Fill the pool
         for (int i = 0; i < max; i++) {
@@ -213,9 +229,145 @@ public class PoolTest extends TestCase {
 
     public void testStrictMultiThreaded() throws Exception {
         System.out.println("PoolTest.testStrictMultiThreaded");
+        exerciseStrictMultiThreaded(new Pool(10, 5, true));
+    }
+
+    public void testStripedStrictMultiThreaded() throws Exception {
+        System.out.println("PoolTest.testStripedStrictMultiThreaded");
+        final Pool.Builder builder = new Pool.Builder();
+        builder.setMaxSize(10);
+        builder.setMinSize(5);
+        builder.setStripes(8);
+        exerciseStrictMultiThreaded(builder.build());
+    }
+
+    public void testStripedIdleTimeout() throws Exception {
+        stripes = 4;
+        testIdleTimeout();
+    }
+
+    public void testStripedFlush() throws Exception {
+        stripes = 4;
+        testFlush();
+    }
+
+    public void testStripedMaxAge() throws Exception {
+        stripes = 4;
+        testMaxAge();
+    }
+
+    public void testStripedFlushOnReturn() throws Exception {
+        stripes = 4;
+        testFlushOnReturn();
+    }
+
+    public void testStripedMaxAgeOnReturn() throws Exception {
+        stripes = 4;
+        testMaxAgeOnReturn();
+    }
+
+    public void testReplaceFlushed() throws Exception {
+        System.out.println("PoolTest.testReplaceFlushed");
+        exerciseReplace(true);
+    }
+
+    public void testStripedReplaceFlushed() throws Exception {
+        System.out.println("PoolTest.testStripedReplaceFlushed");
+        stripes = 4;
+        exerciseReplace(true);
+    }
+
+    public void testReplaceAged() throws Exception {
+        System.out.println("PoolTest.testReplaceAged");
+        exerciseReplace(false);
+    }
+
+    public void testStripedReplaceAged() throws Exception {
+        System.out.println("PoolTest.testStripedReplaceAged");
+        stripes = 4;
+        exerciseReplace(false);
+    }
+
+    /**
+     * Entries returned after a flush, or once too old, are replaced by
+     * new instances instead of being discarded, "min" ones included.
+     */
+    private void exerciseReplace(final boolean flush) throws Exception {
+        final int min = 2;
+        final int max = 4;
+        final int maxAge = 500;
+
+        final List<Bean> discarded = new CopyOnWriteArrayList<Bean>();
+        final CountDownLatch created = new CountDownLatch(max);
+
+        final Pool.Builder<Bean> builder = new Pool.Builder<Bean>();
+        builder.setStripes(stripes);
+        builder.setMinSize(min);
+        builder.setMaxSize(max);
+        // only the returns replace the instances
+        builder.setSweepInterval(new Duration(Integer.MAX_VALUE, TimeUnit.MILLISECONDS));
+        if (flush) {
+            builder.setReplaceFlushed(true);
+        } else {
+            builder.setMaxAge(new Duration(maxAge, TimeUnit.MILLISECONDS));
+            builder.setReplaceAged(true);
+        }
+        builder.setSupplier(new Pool.Supplier<Bean>() {
+            public void discard(final Bean bean, final Pool.Event reason) {
+                bean.discard();
+                discarded.add(bean);
+            }
+
+            public Bean create() {
+                try {
+                    return new Bean();
+                } finally {
+                    created.countDown();
+                }
+            }
+        });
+
+        final Pool<Bean> pool = this.pool = builder.build().start();
+
+        Bean.instances.set(0);
+        for (int i = 0; i < max; i++) {
+            assertTrue(pool.add(new Bean()));
+        }
+
+        {
+            final List<Pool<Bean>.Entry> entries = drain(pool, 100);
+            checkMin(min, entries);
+            checkEntries(max, entries);
+
+            if (flush) {
+                pool.flush();
+            } else {
+                Thread.sleep((long) (maxAge * 1.2));
+            }
+
+            for (final Pool<Bean>.Entry entry : entries) {
+                assertFalse("entry should be replaced", pool.push(entry));
+            }
+        }
+
+        await(created, 10, TimeUnit.SECONDS);
+
+        { // Pool should be full of new instances, the "min" ones still hard
+            final List<Pool<Bean>.Entry> entries = drain(pool, 100);
+            checkMin(min, entries);
+            checkEntries(max, entries);
+            for (final Pool<Bean>.Entry entry : entries) {
+                assertTrue("not a replacement: " + entry.get(), entry.get().count() > max);
+            }
+            push(pool, entries);
+        }
+
+        assertEquals(2 * max, Bean.instances.get());
+    }
+
+    private void exerciseStrictMultiThreaded(final Pool pool) throws Exception {
         final int threadCount = 200;
 
-        final Pool pool = new Pool(10, 5, true);
         final CountDownLatch startPistol = new CountDownLatch(1);
         final CountDownLatch startingLine = new CountDownLatch(10);
         final CountDownLatch finishingLine = new CountDownLatch(threadCount);
@@ -282,6 +434,7 @@ public class PoolTest extends TestCase {
         final List<Bean> discarded = new CopyOnWriteArrayList<Bean>();
         final CountDownLatch discard = new CountDownLatch(max);
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setSweepInterval(new Duration(sweepInterval, TimeUnit.MILLISECONDS));
@@ -349,6 +502,7 @@ public class PoolTest extends TestCase {
         final CountDownLatch hold = new CountDownLatch(1);
 
         final Pool.Builder<Bean> builder = new Pool.Builder<Bean>();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setExecutor(Executors.newFixedThreadPool(5));
@@ -437,6 +591,7 @@ public class PoolTest extends TestCase {
         final CountDownLatch createInstances = new CountDownLatch(1);
 
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setSweepInterval(new Duration(sweepInterval, TimeUnit.MILLISECONDS));
@@ -572,6 +727,7 @@ public class PoolTest extends TestCase {
         final CountDownLatch createInstances = new CountDownLatch(1);
 
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setMaxAge(new Duration(maxAge, MILLISECONDS));
@@ -725,6 +881,7 @@ public class PoolTest extends TestCase {
         final CountDownLatch createInstances = new CountDownLatch(1);
 
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setSweepInterval(new Duration(poll, TimeUnit.MILLISECONDS));
@@ -881,6 +1038,7 @@ public class PoolTest extends TestCase {
         final CountDownLatch createInstances = new CountDownLatch(1);
 
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setMaxAge(new Duration(maxAge, MILLISECONDS));
@@ -1042,6 +1200,7 @@ public class PoolTest extends TestCase {
         final CountDownLatch createInstances = new CountDownLatch(1);
 
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setSweepInterval(new Duration(sweepInterval, TimeUnit.MILLISECONDS));
@@ -1180,6 +1339,7 @@ public class PoolTest extends TestCase {
         final CountDownLatch createInstances = new CountDownLatch(1);
 
         final Pool.Builder builder = new Pool.Builder();
+        builder.setStripes(stripes);
         builder.setMinSize(min);
         builder.setMaxSize(max);
         builder.setMaxAge(new Duration(maxAge, MILLISECONDS));
@@ -70,6 +70,9 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
     // only used for business objects;
     protected transient Object primaryKey;
 
+    // only sent to clients speaking OEJP/4.7 or later
+    protected transient MethodTable methodTable;
+
     private transient ProtocolMetaData metaData;
 
     public EJBMetaDataImpl() {
@@ -147,6 +150,14 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
         this.metaData = metaData;
     }
 
+    public MethodTable getMethodTable() {
+        return methodTable;
+    }
+
+    public void setMethodTable(final MethodTable methodTable) {
+        this.methodTable = methodTable;
+    }
+
     @Override
     public Class getPrimaryKeyClass() {
         if (type != BMP_ENTITY && type != CMP_ENTITY) {
@@ -235,7 +246,8 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
     @Override
     public void writeExternal(final ObjectOutput out) throws IOException {
         // write out the version of the serialized data for future use
-        out.writeByte(3);
+        final boolean table = methodTable != null && metaData != null && metaData.isAtLeast(4, 7);
+        out.writeByte(table ? 4 : 3);
 
         out.writeObject(homeClass);
         out.writeObject(remoteClass);
@@ -273,6 +285,9 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
             out.write(bytes);
         }
 
+        if (table) {
+            methodTable.writeExternal(out);
+        }
     }
 
     @Override
@@ -312,6 +327,10 @@ public class EJBMetaDataImpl implements javax.ejb.EJBMetaData, java.io.Externali
             final ByteArrayInputStream bais = new ByteArrayInputStream(buffer);
             properties.load(bais);
         }
+
+        if (version > 3) {
+            methodTable = MethodTable.readExternal(in);
+        }
     }
 
     public String toString() {
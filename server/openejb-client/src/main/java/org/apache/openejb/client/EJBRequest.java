@@ -322,10 +322,14 @@ public class EJBRequest implements ClusterableRequest {
 
         private transient String requestId;
         private byte version = EJBResponse.VERSION;
+        private transient boolean compact;
 
         private transient JNDIContext.AuthenticationInfo authentication;
         private transient ProtocolMetaData metaData;
 
+        // only set on the server side, used to read compact bodies
+        private transient MethodTable methodTable;
+
         public Body(final EJBMetaDataImpl ejb) {
             this.ejb = ejb;
         }
@@ -341,6 +345,17 @@ public class EJBRequest implements ClusterableRequest {
             return version;
         }
 
+        /**
+         * @return true if the method was named with its {@link MethodTable} id
+         */
+        public boolean isCompact() {
+            return compact;
+        }
+
+        public void setMethodTable(final MethodTable methodTable) {
+            this.methodTable = methodTable;
+        }
+
         public void setAuthentication(final JNDIContext.AuthenticationInfo authentication) {
             this.authentication = authentication;
         }
@@ -430,6 +445,12 @@ public class EJBRequest implements ClusterableRequest {
 
             this.version = in.readByte();
 
+            compact = (null == metaData || metaData.isAtLeast(4, 7)) && in.readBoolean();
+            if (compact) {
+                readCompact(in);
+                return;
+            }
+
             requestId = null;
             ClassNotFoundException result = null;
             primaryKey = null;
@@ -475,6 +496,60 @@ public class EJBRequest implements ClusterableRequest {
             }
         }
 
+        /**
+         * Reads a body written by {@link #writeCompact}, the method comes from the
+         * {@link MethodTable} the server sent to the client.
+         */
+        private void readCompact(final ObjectInput in) throws IOException, ClassNotFoundException {
+            requestId = null;
+            ClassNotFoundException result = null;
+            primaryKey = null;
+            try {
+                requestId = (String) in.readObject();
+                primaryKey = in.readObject();
+            } catch (ClassNotFoundException cnfe) {
+                result = cnfe;
+            }
+
+            final int id = in.readShort();
+            final long fingerprint = in.readLong();
+            if (methodTable == null || methodTable.getFingerprint() != fingerprint) {
+                // numbered by another deployment or server, the id can name any method
+                throw new IOException("Stale method table, method id " + id + " can't be resolved");
+            }
+            methodInstance = methodTable.getMethod(id);
+            if (methodInstance == null) {
+                throw new IOException("Unknown method id " + id);
+            }
+            interfaceClass = methodTable.getInterface(id);
+            methodName = methodInstance.getName();
+            methodParamTypes = methodInstance.getParameterTypes();
+
+            try {
+                readCompactParameters(in, methodParamTypes);
+            } catch (ClassNotFoundException cnfe) {
+                if (result == null) {
+                    result = cnfe;
+                }
+            }
+
+            authentication = JNDIContext.AuthenticationInfo.class.cast(in.readObject());
+
+            if (result != null) {
+                throw result;
+            }
+        }
+
+        /**
+         * @return the id of the method if the server sent a method table for it, -1 otherwise
+         */
+        private int getMethodId() {
+            if (ejb == null || ejb.methodTable == null || metaData == null || !metaData.isAtLeast(4, 7)) {
+                return -1;
+            }
+            return ejb.methodTable.getId(interfaceClass, methodInstance);
+        }
+
         /**
          * Changes to this method must observe the optional {@link #metaData} version
          */
@@ -483,6 +558,16 @@ public class EJBRequest implements ClusterableRequest {
 
             out.writeByte(this.version);
 
+            final int id = getMethodId();
+            compact = id >= 0;
+            if (null == metaData || metaData.isAtLeast(4, 7)) {
+                out.writeBoolean(compact);
+            }
+            if (compact) {
+                writeCompact(out, id);
+                return;
+            }
+
             out.writeObject(requestId);
 
             out.writeObject(primaryKey);
@@ -500,6 +585,118 @@ public class EJBRequest implements ClusterableRequest {
             out.flush();
         }
 
+        /**
+         * Names the method with its id and writes the arguments without type information,
+         * the server knows the parameter types from the method.
+         */
+        private void writeCompact(final ObjectOutput out, final int id) throws IOException {
+
+            out.writeObject(requestId);
+
+            out.writeObject(primaryKey);
+
+            out.writeShort(id);
+
+            out.writeLong(ejb.methodTable.getFingerprint());
+
+            writeCompactParameters(out, methodParamTypes, methodParameters);
+
+            out.writeObject(authentication);
+
+            out.flush();
+        }
+
+        protected void writeCompactParameters(final ObjectOutput out, final Class[] types, final Object[] args) throws IOException {
+            for (int i = 0; i < types.length; i++) {
+                final Class clazz = types[i];
+                final Object obj = args[i];
+
+                if (clazz == Integer.TYPE) {
+                    out.writeInt((Integer) obj);
+                } else if (clazz == Long.TYPE) {
+                    out.writeLong((Long) obj);
+                } else if (clazz == Boolean.TYPE) {
+                    out.writeBoolean((Boolean) obj);
+                } else if (clazz == Double.TYPE) {
+                    out.writeDouble((Double) obj);
+                } else if (clazz == Float.TYPE) {
+                    out.writeFloat((Float) obj);
+                } else if (clazz == Byte.TYPE) {
+                    out.writeByte((Byte) obj);
+                } else if (clazz == Short.TYPE) {
+                    out.writeShort((Short) obj);
+                } else if (clazz == Character.TYPE) {
+                    out.writeChar((Character) obj);
+                } else {
+                    out.writeObject(toStub(obj));
+                }
+            }
+        }
+
+        protected void readCompactParameters(final ObjectInput in, final Class[] types) throws IOException, ClassNotFoundException {
+            final Object[] args = new Object[types.length];
+            ClassNotFoundException result = null;
+
+            for (int i = 0; i < types.length; i++) {
+                final Class clazz = types[i];
+
+                if (clazz == Integer.TYPE) {
+                    args[i] = in.readInt();
+                } else if (clazz == Long.TYPE) {
+                    args[i] = in.readLong();
+                } else if (clazz == Boolean.TYPE) {
+                    args[i] = in.readBoolean();
+                } else if (clazz == Double.TYPE) {
+                    args[i] = in.readDouble();
+                } else if (clazz == Float.TYPE) {
+                    args[i] = in.readFloat();
+                } else if (clazz == Byte.TYPE) {
+                    args[i] = in.readByte();
+                } else if (clazz == Short.TYPE) {
+                    args[i] = in.readShort();
+                } else if (clazz == Character.TYPE) {
+                    args[i] = in.readChar();
+                } else {
+                    try {
+                        args[i] = connect(in.readObject());
+                    } catch (ClassNotFoundException cnfe) {
+                        // keep the stream in sync, report the first failure
+                        if (result == null) {
+                            result = cnfe;
+                        }
+                    }
+                }
+            }
+
+            methodParameters = args;
+
+            if (result != null) {
+                throw result;
+            }
+        }
+
+        private Object toStub(final Object obj) throws IOException {
+            if (obj instanceof PortableRemoteObject && obj instanceof Remote) {
+                final Tie tie = javax.rmi.CORBA.Util.getTie((Remote) obj);
+                if (tie == null) {
+                    throw new IOException("Unable to serialize PortableRemoteObject; object has not been exported: " + obj);
+                }
+                final ORB orb = getORB();
+                tie.orb(orb);
+                return PortableRemoteObject.toStub((Remote) obj);
+            }
+            return obj;
+        }
+
+        private Object connect(final Object obj) throws IOException {
+            if (obj instanceof Stub) {
+                final Stub stub = (Stub) obj;
+                final ORB orb = getORB();
+                stub.connect(orb);
+            }
+            return obj;
+        }
+
         /**
          * Changes to this method must observe the optional {@link #metaData} version
          */
@@ -509,7 +706,7 @@ public class EJBRequest implements ClusterableRequest {
 
             for (int i = 0; i < types.length; i++) {
                 final Class clazz = types[i];
-                Object obj = args[i];
+                final Object obj = args[i];
 
                 if (clazz.isPrimitive()) {
                     if (clazz == Byte.TYPE) {
@@ -556,18 +753,9 @@ public class EJBRequest implements ClusterableRequest {
                         throw new IOException("Unkown primitive type: " + clazz);
                     }
                 } else {
-                    if (obj instanceof PortableRemoteObject && obj instanceof Remote) {
-                        final Tie tie = javax.rmi.CORBA.Util.getTie((Remote) obj);
-                        if (tie == null) {
-                            throw new IOException("Unable to serialize PortableRemoteObject; object has not been exported: " + obj);
-                        }
-                        final ORB orb = getORB();
-                        tie.orb(orb);
-                        obj = PortableRemoteObject.toStub((Remote) obj);
-                    }
                     out.write(OBJECT);
                     out.writeObject(clazz);
-                    out.writeObject(obj);
+                    out.writeObject(toStub(obj));
                 }
             }
         }
@@ -664,12 +852,7 @@ public class EJBRequest implements ClusterableRequest {
 
                     case OBJECT:
                         clazz = (Class) in.readObject();
-                        obj = in.readObject();
-                        if (obj instanceof Stub) {
-                            final Stub stub = (Stub) obj;
-                            final ORB orb = getORB();
-                            stub.connect(orb);
-                        }
+                        obj = connect(in.readObject());
                         break;
                     default:
                         throw new IOException("Unkown data type: " + type);
@@ -707,6 +890,7 @@ public class EJBRequest implements ClusterableRequest {
                     ", primaryKey=" + primaryKey +
                     ", requestId='" + requestId + '\'' +
                     ", version=" + version +
+                    ", compact=" + compact +
                     '}';
             }
 
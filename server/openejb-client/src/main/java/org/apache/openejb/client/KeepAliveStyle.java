@@ -22,5 +22,12 @@ package org.apache.openejb.client;
 public enum KeepAliveStyle {
     PING,
     PING_PONG,
-    PING_PING
+    PING_PING,
+
+    /**
+     * Sent once when the connection is opened and echoed back by a server
+     * which supports it.  From then on the connection carries framed requests
+     * and responses matched by a correlation id, see {@link Multiplexer}.
+     */
+    MULTIPLEX
 }
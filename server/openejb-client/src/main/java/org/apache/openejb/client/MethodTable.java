@@ -0,0 +1,239 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Numbers the remote methods of a deployment so a request can name its
+ * method with a short id instead of the interface, method name and
+ * parameter types.
+ * <p/>
+ * The server builds the table and sends it once with the {@link EJBMetaDataImpl}
+ * of a proxy, the ids are only meaningful to the server which sent them.
+ * A method the client can't resolve has no id and is sent the classic way.
+ * <p/>
+ * Interfaces are sorted by name and methods by signature so the ids don't
+ * depend on the order of Class.getMethods().  The fingerprint, a hash of all
+ * the signatures, goes with the table and with each request using an id:
+ * the server rejects an id numbered by another version of the table.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MethodTable {
+
+    public static final int MAX_SIZE = Short.MAX_VALUE;
+
+    // FNV-1a
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final Comparator<Class> BY_NAME = new Comparator<Class>() {
+        @Override
+        public int compare(final Class o1, final Class o2) {
+            return o1.getName().compareTo(o2.getName());
+        }
+    };
+
+    private static final Comparator<Method> BY_SIGNATURE = new Comparator<Method>() {
+        @Override
+        public int compare(final Method o1, final Method o2) {
+            return signature(o1).compareTo(signature(o2));
+        }
+    };
+
+    private final Class[] interfaces;
+    private final Method[] methods;
+    private final long fingerprint;
+    private final Map<Class, Map<Method, Integer>> ids = new HashMap<Class, Map<Method, Integer>>();
+
+    public MethodTable(final List<Class> interfaces) {
+        final List<Class> sorted = new ArrayList<Class>(interfaces);
+        sorted.removeAll(Collections.singleton(null));
+        Collections.sort(sorted, BY_NAME);
+
+        final List<Class> classes = new ArrayList<Class>();
+        final List<Method> all = new ArrayList<Method>();
+        long hash = FNV_OFFSET;
+        for (final Class intf : sorted) {
+            if (ids.containsKey(intf)) {
+                continue;
+            }
+            final Method[] declared = intf.getMethods();
+            Arrays.sort(declared, BY_SIGNATURE);
+            for (final Method method : declared) {
+                classes.add(intf);
+                all.add(method);
+                index(intf, method, all.size() - 1);
+                hash = hash(hash, intf.getName() + '#' + signature(method));
+            }
+        }
+        this.interfaces = classes.toArray(new Class[classes.size()]);
+        this.methods = all.toArray(new Method[all.size()]);
+        this.fingerprint = hash;
+    }
+
+    private MethodTable(final Class[] interfaces, final Method[] methods, final long fingerprint) {
+        this.interfaces = interfaces;
+        this.methods = methods;
+        this.fingerprint = fingerprint;
+        for (int i = 0; i < methods.length; i++) {
+            if (methods[i] != null) {
+                index(interfaces[i], methods[i], i);
+            }
+        }
+    }
+
+    private void index(final Class intf, final Method method, final int id) {
+        Map<Method, Integer> methods = ids.get(intf);
+        if (methods == null) {
+            methods = new HashMap<Method, Integer>();
+            ids.put(intf, methods);
+        }
+        methods.put(method, id);
+    }
+
+    public int size() {
+        return methods.length;
+    }
+
+    /**
+     * @return the hash of the signatures the ids were given to
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the id of the method called through the interface, -1 if it has none
+     */
+    public int getId(final Class intf, final Method method) {
+        final Map<Method, Integer> methods = ids.get(intf);
+        if (methods == null) {
+            return -1;
+        }
+        final Integer id = methods.get(method);
+        return id == null ? -1 : id;
+    }
+
+    public Method getMethod(final int id) {
+        return id >= 0 && id < methods.length ? methods[id] : null;
+    }
+
+    public Class getInterface(final int id) {
+        return id >= 0 && id < interfaces.length ? interfaces[id] : null;
+    }
+
+    /**
+     * Changes to this method must observe the {@link EJBMetaDataImpl} version
+     */
+    public void writeExternal(final ObjectOutput out) throws IOException {
+        out.writeShort(methods.length);
+        out.writeLong(fingerprint);
+        Class previous = null;
+        for (int i = 0; i < methods.length; i++) {
+            // methods of the same interface are contiguous
+            if (interfaces[i] != previous) {
+                out.writeBoolean(true);
+                out.writeObject(interfaces[i]);
+                previous = interfaces[i];
+            } else {
+                out.writeBoolean(false);
+            }
+            out.writeUTF(methods[i].getName());
+            final Class<?>[] types = methods[i].getParameterTypes();
+            out.writeByte(types.length);
+            for (final Class<?> type : types) {
+                out.writeObject(type);
+            }
+        }
+    }
+
+    /**
+     * Changes to this method must observe the {@link EJBMetaDataImpl} version
+     */
+    public static MethodTable readExternal(final ObjectInput in) throws IOException {
+        final int size = in.readShort();
+        final long fingerprint = in.readLong();
+        final Class[] interfaces = new Class[size];
+        final Method[] methods = new Method[size];
+
+        Class intf = null;
+        for (int i = 0; i < size; i++) {
+            if (in.readBoolean()) {
+                intf = readClass(in);
+            }
+            final String name = in.readUTF();
+            final Class[] types = new Class[in.readByte()];
+            boolean resolved = intf != null;
+            for (int j = 0; j < types.length; j++) {
+                types[j] = readClass(in);
+                resolved &= types[j] != null;
+            }
+
+            interfaces[i] = intf;
+            if (resolved) {
+                try {
+                    methods[i] = intf.getMethod(name, types);
+                } catch (NoSuchMethodException e) {
+                    // not in our version of the interface
+                }
+            }
+        }
+        return new MethodTable(interfaces, methods, fingerprint);
+    }
+
+    private static String signature(final Method method) {
+        // the return type tells apart the bridges getMethods() can return
+        final StringBuilder signature = new StringBuilder(method.getReturnType().getName())
+            .append(' ').append(method.getName()).append('(');
+        final Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(types[i].getName());
+        }
+        return signature.append(')').toString();
+    }
+
+    private static long hash(final long seed, final String signature) {
+        long hash = seed;
+        for (int i = 0; i < signature.length(); i++) {
+            hash = (hash ^ signature.charAt(i)) * FNV_PRIME;
+        }
+        return (hash ^ '\n') * FNV_PRIME;
+    }
+
+    private static Class readClass(final ObjectInput in) throws IOException {
+        try {
+            return (Class) in.readObject();
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
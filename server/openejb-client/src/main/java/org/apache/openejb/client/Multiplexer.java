@@ -0,0 +1,293 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Carries many concurrent requests over a single ejbd socket.
+ * <p/>
+ * Once the {@link KeepAliveStyle#MULTIPLEX} handshake is done every request
+ * travels as a frame made of a correlation id, a length and the bytes the
+ * classic protocol would have written on the socket.  The server answers
+ * with frames of the same shape, in whatever order the invocations complete,
+ * and a reader thread hands each response to the exchange waiting for it.
+ * <p/>
+ * Frames longer than the maximum frame size are refused on both sides: the
+ * length comes from the peer and the frame is read in memory at once.
+ *
+ * @version $Rev$ $Date$
+ */
+public class Multiplexer {
+
+    private static final Logger logger = Logger.getLogger("OpenEJB.client");
+
+    public static final int DEFAULT_MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    private final URI uri;
+    private final Connection transport;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final long timeout;
+    private final int maxFrameSize;
+    private final Lock write = new ReentrantLock();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Map<Integer, Exchange> pending = new ConcurrentHashMap<Integer, Exchange>();
+    private final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+    private Multiplexer(final URI uri, final Connection transport, final InputStream in, final OutputStream out,
+                        final long timeout, final int maxFrameSize) {
+        this.uri = uri;
+        this.transport = transport;
+        this.in = new DataInputStream(in);
+        this.out = new DataOutputStream(out);
+        this.timeout = timeout;
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * Switches an open connection to the multiplexed protocol.
+     *
+     * @param timeout      milliseconds to wait for a response, 0 to wait forever
+     * @param maxFrameSize the maximum size in bytes of a request or a response
+     * @return null if the server does not support it, the connection is then unusable
+     */
+    public static Multiplexer open(final Connection transport, final long timeout, final int maxFrameSize) throws IOException {
+        final OutputStream out = transport.getOutputStream();
+        final InputStream in = transport.getInputStream();
+
+        out.write(KeepAliveStyle.MULTIPLEX.ordinal());
+        out.flush();
+
+        // older servers hang up on the unknown keep-alive style
+        final int answer;
+        try {
+            answer = in.read();
+        } catch (IOException e) {
+            return null;
+        }
+        if (answer != KeepAliveStyle.MULTIPLEX.ordinal()) {
+            return null;
+        }
+
+        final Multiplexer multiplexer = new Multiplexer(transport.getURI(), transport, in, out, timeout, maxFrameSize);
+        final Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                multiplexer.read();
+            }
+        }, "OpenEJB.client.multiplexer " + transport.getURI());
+        reader.setDaemon(true);
+        reader.start();
+        return multiplexer;
+    }
+
+    public URI getURI() {
+        return uri;
+    }
+
+    public boolean isClosed() {
+        return failure.get() != null;
+    }
+
+    /**
+     * @return the number of requests waiting for their response
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * @return a connection good for a single request and its response
+     */
+    public Connection exchange() throws IOException {
+        final IOException e = failure.get();
+        if (e != null) {
+            throw new IOException("Connection to " + uri + " is closed", e);
+        }
+        return new Exchange();
+    }
+
+    public void close() {
+        fail(new IOException("Connection to " + uri + " closed"));
+    }
+
+    private void send(final Exchange exchange, final ByteArrayOutputStream request) throws IOException {
+        if (request.size() > maxFrameSize) {
+            // the server would hang up on it, only this request fails
+            throw new IOException("Request of " + request.size() + " bytes exceeds the maximum frame size of " + maxFrameSize + " bytes");
+        }
+
+        pending.put(exchange.id, exchange);
+
+        // checked after registering so a concurrent failure can't miss this exchange
+        final IOException e = failure.get();
+        if (e != null) {
+            pending.remove(exchange.id);
+            throw new IOException("Connection to " + uri + " is closed", e);
+        }
+
+        write.lock();
+        try {
+            out.writeInt(exchange.id);
+            out.writeInt(request.size());
+            request.writeTo(out);
+            out.flush();
+        } catch (IOException ioe) {
+            fail(ioe);
+            throw ioe;
+        } finally {
+            write.unlock();
+        }
+    }
+
+    private void read() {
+        try {
+            while (true) {
+                final int id = in.readInt();
+                final int length = in.readInt();
+                if (length < 0 || length > maxFrameSize) {
+                    throw new IOException("Invalid frame length " + length + ", the maximum is " + maxFrameSize);
+                }
+                final byte[] response = new byte[length];
+                in.readFully(response);
+
+                final Exchange exchange = pending.remove(id);
+                if (exchange != null) {
+                    exchange.complete(response, null);
+                } else if (logger.isLoggable(Level.FINER)) {
+                    logger.log(Level.FINER, "Dropping the response to abandoned request " + id + " from " + uri);
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(final IOException e) {
+        if (!failure.compareAndSet(null, e)) {
+            return;
+        }
+
+        transport.discard();
+
+        for (final Integer id : pending.keySet()) {
+            final Exchange exchange = pending.remove(id);
+            if (exchange != null) {
+                exchange.complete(null, e);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Multiplexer{" +
+            "uri=" + uri +
+            ", pending=" + pending.size() +
+            ", closed=" + isClosed() +
+            '}';
+    }
+
+    private class Exchange implements Connection {
+
+        private final int id = ids.incrementAndGet();
+        private final ByteArrayOutputStream request = new ByteArrayOutputStream(1024);
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile byte[] response;
+        private volatile IOException error;
+        private InputStream input;
+
+        private void complete(final byte[] response, final IOException error) {
+            this.response = response;
+            this.error = error;
+            this.done.countDown();
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            return request;
+        }
+
+        /**
+         * Sends the request written so far and waits for its response.
+         */
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (input != null) {
+                return input;
+            }
+
+            send(this, request);
+
+            try {
+                if (timeout <= 0) {
+                    done.await();
+                } else if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+                    pending.remove(id);
+                    throw new InterruptedIOException("No response from " + uri + " after " + timeout + " milliseconds");
+                }
+            } catch (InterruptedException e) {
+                Thread.interrupted();
+                pending.remove(id);
+                throw new InterruptedIOException("Interrupted while waiting for a response from " + uri);
+            }
+
+            if (error != null) {
+                throw new IOException("Connection to " + uri + " failed: " + error.getMessage(), error);
+            }
+
+            input = new ByteArrayInputStream(response);
+            return input;
+        }
+
+        @Override
+        public void close() throws IOException {
+            pending.remove(id);
+        }
+
+        /**
+         * Only this exchange is abandoned, a broken socket fails all of them on its own.
+         */
+        @Override
+        public void discard() {
+            pending.remove(id);
+        }
+    }
+}
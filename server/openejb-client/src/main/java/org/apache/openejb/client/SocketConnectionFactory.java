@@ -26,6 +26,7 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.StreamCorruptedException;
 import java.net.ConnectException;
@@ -35,9 +36,15 @@ import java.net.URI;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.GZIPInputStream;
@@ -53,14 +60,19 @@ public class SocketConnectionFactory implements ConnectionFactory {
     public static final String PROPERTY_POOL_SIZE = "openejb.client.connection.pool.size";
     private static final String PROPERTY_POOL_SIZE2 = "openejb.client.connectionpool.size";
     public static final String PROPERTY_KEEPALIVE = "openejb.client.keepalive";
+    public static final String PROPERTY_MULTIPLEX_SOCKETS = "openejb.client.connection.multiplex.sockets";
+    public static final String PROPERTY_MULTIPLEX_MAX_FRAME_SIZE = "openejb.client.connection.multiplex.max-frame-size";
     public static final String ENABLED_CIPHER_SUITES = "openejb.client.enabledCipherSuites";
 
     private static final Map<URI, Pool> connections = new ConcurrentHashMap<URI, Pool>();
+    private static final ConcurrentMap<URI, Multiplexers> multiplexed = new ConcurrentHashMap<URI, Multiplexers>();
     private int size = 5;
     private long timeoutPool = 1000;
     private int timeoutConnect = 1000;
     private int timeoutRead = 14400000;
     private int timeoutLinger;
+    private int multiplexSockets = 4;
+    private int multiplexMaxFrameSize = Multiplexer.DEFAULT_MAX_FRAME_SIZE;
     private String[] enabledCipherSuites;
 
     public SocketConnectionFactory() {
@@ -71,6 +83,8 @@ public class SocketConnectionFactory implements ConnectionFactory {
         this.timeoutLinger = this.getTimeoutLinger();
         this.timeoutRead = this.getTimeoutRead();
         this.enabledCipherSuites = this.getEnabledCipherSuites();
+        this.multiplexSockets = getInt(System.getProperties(), PROPERTY_MULTIPLEX_SOCKETS, this.multiplexSockets);
+        this.multiplexMaxFrameSize = getInt(System.getProperties(), PROPERTY_MULTIPLEX_MAX_FRAME_SIZE, this.multiplexMaxFrameSize);
 
         try {
             String property = System.getProperty(PROPERTY_KEEPALIVE);
@@ -153,6 +167,13 @@ public class SocketConnectionFactory implements ConnectionFactory {
     @Override
     public Connection getConnection(final URI uri) throws java.io.IOException {
 
+        if (this.keepAliveStyle == KeepAliveStyle.MULTIPLEX) {
+            final Connection exchange = this.getMultiplexers(uri).exchange();
+            if (exchange != null) {
+                return exchange;
+            }
+        }
+
         final Pool pool = this.getPool(uri);
 
         SocketConnection conn = pool.get();
@@ -185,11 +206,14 @@ public class SocketConnectionFactory implements ConnectionFactory {
             return this.getConnection(uri);
         }
 
+        // a server without multiplexing support gets the default style
+        final KeepAliveStyle style = this.keepAliveStyle == KeepAliveStyle.MULTIPLEX ? KeepAliveStyle.PING : this.keepAliveStyle;
+
         try {
-            ouputStream.write(this.keepAliveStyle.ordinal());
+            ouputStream.write(style.ordinal());
             ouputStream.flush();
 
-            switch (this.keepAliveStyle) {
+            switch (style) {
                 case PING_PING: {
                     ouputStream.write(this.keepAliveStyle.ordinal());
                     ouputStream.flush();
@@ -218,6 +242,133 @@ public class SocketConnectionFactory implements ConnectionFactory {
         return pool;
     }
 
+    private Multiplexers getMultiplexers(final URI uri) {
+        Multiplexers multiplexers = multiplexed.get(uri);
+        if (multiplexers == null) {
+            multiplexers = new Multiplexers(uri, this.multiplexSockets);
+            final Multiplexers existing = multiplexed.putIfAbsent(uri, multiplexers);
+            if (existing != null) {
+                multiplexers = existing;
+            }
+        }
+        return multiplexers;
+    }
+
+    /**
+     * The multiplexed sockets opened to one server, used in turn.
+     * A socket is opened by the first caller which finds its slot empty or closed,
+     * the others wait on the same future instead of on a lock held while connecting.
+     */
+    private class Multiplexers {
+
+        /**
+         * How long a server which refused to multiplex is left alone before it is asked again.
+         */
+        private static final long UNSUPPORTED_RETRY = 60000;
+
+        private final URI uri;
+        private final AtomicReferenceArray<FutureTask<Multiplexer>> sockets;
+        private final AtomicInteger next = new AtomicInteger();
+        private final Callable<Multiplexer> opener = new Callable<Multiplexer>() {
+            @Override
+            public Multiplexer call() throws IOException {
+                return Multiplexers.this.open();
+            }
+        };
+        private volatile long unsupportedUntil;
+
+        private Multiplexers(final URI uri, final int size) {
+            this.uri = uri;
+            this.sockets = new AtomicReferenceArray<FutureTask<Multiplexer>>(Math.max(1, size));
+        }
+
+        /**
+         * @return null if the server does not support multiplexing
+         */
+        public Connection exchange() throws IOException {
+            final long unsupported = this.unsupportedUntil;
+            if (unsupported != 0 && System.currentTimeMillis() < unsupported) {
+                return null;
+            }
+
+            final int i = (this.next.getAndIncrement() & Integer.MAX_VALUE) % this.sockets.length();
+            FutureTask<Multiplexer> opening = this.sockets.get(i);
+            while (opening == null || isStale(opening)) {
+                final FutureTask<Multiplexer> task = new FutureTask<Multiplexer>(this.opener);
+                if (this.sockets.compareAndSet(i, opening, task)) {
+                    task.run();
+                    opening = task;
+                    break;
+                }
+                opening = this.sockets.get(i);
+            }
+
+            final Multiplexer multiplexer = await(opening);
+            if (multiplexer == null) {
+                return null;
+            }
+            return multiplexer.exchange();
+        }
+
+        private Multiplexer open() throws IOException {
+            final SocketConnection conn = new SocketConnection(this.uri, null);
+            conn.open(this.uri);
+            final Multiplexer multiplexer;
+            try {
+                multiplexer = Multiplexer.open(conn, SocketConnectionFactory.this.timeoutRead,
+                    SocketConnectionFactory.this.multiplexMaxFrameSize);
+            } catch (IOException e) {
+                conn.discard();
+                throw e;
+            }
+            if (multiplexer == null) {
+                conn.discard();
+                this.unsupportedUntil = System.currentTimeMillis() + UNSUPPORTED_RETRY;
+            } else {
+                // the server may have been upgraded or restarted since it refused
+                this.unsupportedUntil = 0;
+            }
+            return multiplexer;
+        }
+
+        /**
+         * @return true if the socket of this future failed to open, was refused or has been closed since,
+         * false while it is still opening
+         */
+        private boolean isStale(final FutureTask<Multiplexer> opening) {
+            if (!opening.isDone()) {
+                return false;
+            }
+            try {
+                final Multiplexer multiplexer = opening.get();
+                return multiplexer == null || multiplexer.isClosed();
+            } catch (Exception e) {
+                return true;
+            }
+        }
+
+        private Multiplexer await(final FutureTask<Multiplexer> opening) throws IOException {
+            try {
+                return opening.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while opening a multiplexed connection to " + this.uri);
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
     class SocketConnection implements Connection {
 
         private Socket socket = null;
@@ -337,7 +488,10 @@ public class SocketConnectionFactory implements ConnectionFactory {
         @Override
         public void discard() {
             try {
-                this.pool.put(null);
+                // multiplexed sockets don't belong to the pool
+                if (null != this.pool) {
+                    this.pool.put(null);
+                }
             } finally {
                 this.discarded = true;
                 this.cleanUp();
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 
 public class EJBRequestTest extends TestCase {
 
@@ -146,13 +147,88 @@ public class EJBRequestTest extends TestCase {
         invoke(requestMethod, method, args);
     }
 
-    private void invoke(final RequestMethodCode requestMethod, final Method method, final Object[] args) throws IOException, ClassNotFoundException {
+    public void testCompactBusinessMethod() throws Exception {
+        ejb.setMethodTable(new MethodTable(Arrays.<Class>asList(FooHome.class, FooObject.class)));
+
+        final RequestMethodCode requestMethod = RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD;
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final Object[] args = new Object[]{"hola mundo"};
+
+        final EJBRequest.Body body = invoke(requestMethod, method, args);
+        assertTrue("Compact", body.isCompact());
+        assertEquals("Version", EJBResponse.VERSION, body.getVersion());
+    }
+
+    public void testCompactHomeRemove() throws Exception {
+        ejb.setMethodTable(new MethodTable(Arrays.<Class>asList(FooHome.class, FooObject.class)));
+
+        final RequestMethodCode requestMethod = RequestMethodCode.EJB_HOME_REMOVE_BY_PKEY;
+        final Method method = FooHome.class.getMethod("remove", new Class[]{Object.class});
+        final Object[] args = new Object[]{4};
+
+        final EJBRequest.Body body = invoke(requestMethod, method, args);
+        assertTrue("Compact", body.isCompact());
+        assertEquals("Version", EJBResponse.VERSION, body.getVersion());
+    }
+
+    public void testCompactStaleTable() throws Exception {
+        ejb.setMethodTable(new MethodTable(Arrays.<Class>asList(FooHome.class, FooObject.class)));
+
+        final RequestMethodCode requestMethod = RequestMethodCode.EJB_OBJECT_BUSINESS_METHOD;
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        final Object[] args = new Object[]{"hola mundo"};
+
+        // the server redeployed the bean with another remote interface
+        try {
+            invoke(requestMethod, method, args, new MethodTable(Arrays.<Class>asList(FooObject.class)));
+            fail("the id of another table was accepted");
+        } catch (final IOException e) {
+            // ok
+        }
+    }
+
+    public void testMethodTableOrder() throws Exception {
+        final MethodTable table = new MethodTable(Arrays.<Class>asList(FooHome.class, FooObject.class));
+        final MethodTable reversed = new MethodTable(Arrays.<Class>asList(FooObject.class, null, FooHome.class));
+
+        assertEquals("Fingerprint", table.getFingerprint(), reversed.getFingerprint());
+        assertTrue("Fingerprint", table.getFingerprint() != new MethodTable(Arrays.<Class>asList(FooObject.class)).getFingerprint());
+        assertEquals("Size", table.size(), reversed.size());
+        for (int i = 0; i < table.size(); i++) {
+            assertEquals("Method." + i, table.getMethod(i), reversed.getMethod(i));
+        }
+
+        // what the client reads from the metadata
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream out = new ObjectOutputStream(baos);
+        table.writeExternal(out);
+        out.close();
+        final MethodTable read = MethodTable.readExternal(new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+        assertEquals("Fingerprint", table.getFingerprint(), read.getFingerprint());
+        final Method method = FooObject.class.getMethod("businessMethod", new Class[]{String.class});
+        assertEquals("Id", table.getId(FooObject.class, method), read.getId(FooObject.class, method));
+    }
+
+    private EJBRequest.Body invoke(final RequestMethodCode requestMethod, final Method method, final Object[] args) throws IOException, ClassNotFoundException {
+        return invoke(requestMethod, method, args, ejb.getMethodTable());
+    }
+
+    private EJBRequest.Body invoke(final RequestMethodCode requestMethod, final Method method, final Object[] args, final MethodTable serverTable)
+        throws IOException, ClassNotFoundException {
 
         final EJBRequest expected = new EJBRequest(requestMethod, ejb, method, args, null, null);
         expected.getBody().setAuthentication(new JNDIContext.AuthenticationInfo("realm", "user", new char[]{'p', 'w'}));
 
         final EJBRequest actual = new EJBRequest();
 
+        if (ejb.getMethodTable() != null) {
+            // the table negotiated with the server
+            expected.setMetaData(new ProtocolMetaData());
+            actual.setMetaData(new ProtocolMetaData());
+            actual.getBody().setMethodTable(serverTable);
+        }
+
         final ByteArrayOutputStream baos = new ByteArrayOutputStream();
         final ObjectOutputStream out = new ObjectOutputStream(baos);
 
@@ -192,6 +268,8 @@ public class EJBRequestTest extends TestCase {
         for (int i = 0; i < expectedParams.length; i++) {
             assertEquals("MethodParameters." + i, expectedParams[i], actualParams[i]);
         }
+
+        return actual.getBody();
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.client;
+
+import junit.framework.TestCase;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.URI;
+
+public class MultiplexerTest extends TestCase {
+
+    private static final int MAX_FRAME_SIZE = 16;
+
+    public void testOversizedRequest() throws Exception {
+        final MockServer server = new MockServer(0, false);
+        final Multiplexer multiplexer = Multiplexer.open(server.connection, 5000, MAX_FRAME_SIZE);
+
+        try {
+            exchange(multiplexer, new byte[MAX_FRAME_SIZE + 1]);
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+
+        // only this request failed
+        assertFalse(multiplexer.isClosed());
+        assertEquals(3, exchange(multiplexer, new byte[]{1, 2, 3}).length);
+        multiplexer.close();
+    }
+
+    public void testOversizedResponse() throws Exception {
+        final MockServer server = new MockServer(0, true);
+        final Multiplexer multiplexer = Multiplexer.open(server.connection, 5000, MAX_FRAME_SIZE);
+
+        try {
+            exchange(multiplexer, new byte[]{1});
+            fail();
+        } catch (final IOException e) {
+            // expected
+        }
+        assertTrue(multiplexer.isClosed());
+        assertTrue(server.discarded);
+    }
+
+    public void testNoTimeout() throws Exception {
+        final MockServer server = new MockServer(200, false);
+        final Multiplexer multiplexer = Multiplexer.open(server.connection, 0, MAX_FRAME_SIZE);
+
+        assertEquals(1, exchange(multiplexer, new byte[]{1}).length);
+        multiplexer.close();
+    }
+
+    private static byte[] exchange(final Multiplexer multiplexer, final byte[] request) throws IOException {
+        final Connection exchange = multiplexer.exchange();
+        exchange.getOutputStream().write(request);
+        final InputStream in = exchange.getInputStream();
+        final byte[] response = new byte[in.available()];
+        assertEquals(response.length, Math.max(0, in.read(response)));
+        exchange.close();
+        return response;
+    }
+
+    /**
+     * Echoes the frames it gets, or answers with a huge frame length.
+     */
+    private static class MockServer implements Runnable {
+
+        private final long delay;
+        private final boolean oversized;
+        private final DataInputStream requests;
+        private final DataOutputStream responses;
+        private final Connection connection;
+        private volatile boolean discarded;
+
+        private MockServer(final long delay, final boolean oversized) throws IOException {
+            this.delay = delay;
+            this.oversized = oversized;
+
+            final PipedInputStream serverIn = new PipedInputStream(64 * 1024);
+            final PipedOutputStream clientOut = new PipedOutputStream(serverIn);
+            final PipedInputStream clientIn = new PipedInputStream(64 * 1024);
+            final PipedOutputStream serverOut = new PipedOutputStream(clientIn);
+            this.requests = new DataInputStream(serverIn);
+            this.responses = new DataOutputStream(serverOut);
+
+            this.connection = new Connection() {
+                @Override
+                public URI getURI() {
+                    return URI.create("ejbd://localhost:4201");
+                }
+
+                @Override
+                public void discard() {
+                    discarded = true;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    discard();
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return clientIn;
+                }
+
+                @Override
+                public OutputStream getOutputStream() throws IOException {
+                    return clientOut;
+                }
+            };
+
+            final Thread thread = new Thread(this, "MockServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                // handshake
+                this.responses.write(this.requests.read());
+                this.responses.flush();
+
+                while (true) {
+                    final int id = this.requests.readInt();
+                    final byte[] request = new byte[this.requests.readInt()];
+                    this.requests.readFully(request);
+                    Thread.sleep(this.delay);
+
+                    this.responses.writeInt(id);
+                    if (this.oversized) {
+                        this.responses.writeInt(Integer.MAX_VALUE);
+                    } else {
+                        this.responses.writeInt(request.length);
+                        this.responses.write(request);
+                    }
+                    this.responses.flush();
+                }
+            } catch (final Exception e) {
+                // client gone
+            }
+        }
+    }
+}
@@ -19,7 +19,6 @@ package org.apache.openejb.server.cxf.rs;
 import org.apache.cxf.common.logging.LogUtils;
 import org.apache.cxf.endpoint.Server;
 import org.apache.cxf.endpoint.ServerImpl;
-import org.apache.cxf.helpers.IOUtils;
 import org.apache.cxf.jaxrs.JAXRSServerFactoryBean;
 import org.apache.cxf.jaxrs.JAXRSServiceImpl;
 import org.apache.cxf.jaxrs.ext.ResourceComparator;
@@ -79,7 +78,6 @@ import javax.management.ObjectName;
 import javax.management.openmbean.TabularData;
 import javax.naming.Context;
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.Application;
@@ -118,6 +116,10 @@ public class CxfRsHttpListener implements RsHttpListener {
 
     private static final String GLOBAL_PROVIDERS = SystemInstance.get().getProperty(PROVIDERS_KEY);
     public static final boolean TRY_STATIC_RESOURCES = "true".equalsIgnoreCase(SystemInstance.get().getProperty("openejb.jaxrs.static-first", "true"));
+    public static final String STATIC_CACHE_SIZE = "openejb.jaxrs.static-cache.size";
+    public static final String STATIC_CACHE_ENTRY_SIZE = "openejb.jaxrs.static-cache.entry-size";
+    public static final String STATIC_CACHE_MISSES = "openejb.jaxrs.static-cache.misses";
+    public static final String STATIC_CACHE_CHECK_INTERVAL = "openejb.jaxrs.static-cache.check-interval";
 
     private static final Map<String, String> STATIC_CONTENT_TYPES;
     private static final String[] DEFAULT_WELCOME_FILES = new String[]{ "/index.html", "/index.htm" };
@@ -129,6 +131,11 @@ public class CxfRsHttpListener implements RsHttpListener {
     private String context = "";
     private String servlet = "";
     private final Collection<Pattern> staticResourcesList = new CopyOnWriteArrayList<>();
+    private final StaticResourceCache staticResources = new StaticResourceCache(
+        SystemInstance.get().getOptions().get(STATIC_CACHE_SIZE, 32L * 1024 * 1024),
+        SystemInstance.get().getOptions().get(STATIC_CACHE_ENTRY_SIZE, 1024 * 1024),
+        SystemInstance.get().getOptions().get(STATIC_CACHE_MISSES, 1000),
+        SystemInstance.get().getOptions().get(STATIC_CACHE_CHECK_INTERVAL, 5000L));
     private final List<ObjectName> jmxNames = new ArrayList<>();
     private final Collection<CreationalContext<?>> toRelease = new LinkedHashSet<>();
 
@@ -141,6 +148,9 @@ public class CxfRsHttpListener implements RsHttpListener {
         STATIC_CONTENT_TYPES.put("xhtml", "text/html");
         STATIC_CONTENT_TYPES.put("txt", "text/plain");
         STATIC_CONTENT_TYPES.put("css", "text/css");
+        STATIC_CONTENT_TYPES.put("js", "application/javascript");
+        STATIC_CONTENT_TYPES.put("json", "application/json");
+        STATIC_CONTENT_TYPES.put("svg", "image/svg+xml");
         STATIC_CONTENT_TYPES.put("jpg", "image/jpg");
         STATIC_CONTENT_TYPES.put("png", "image/png");
         STATIC_CONTENT_TYPES.put("ico", "image/ico");
@@ -222,13 +232,7 @@ public class CxfRsHttpListener implements RsHttpListener {
     }
 
     public InputStream findStaticContent(final HttpServletRequest request, final String[] welcomeFiles) throws ServletException {
-        String pathInfo = request.getRequestURI().substring(request.getContextPath().length());
-        for (final char c : URL_SEP) {
-            final int indexOf = pathInfo.indexOf(c);
-            if (indexOf > 0) {
-                pathInfo = pathInfo.substring(0, indexOf);
-            }
-        }
+        final String pathInfo = staticPath(request);
         InputStream is = request.getServletContext().getResourceAsStream(pathInfo);
         if (is == null && ("/".equals(pathInfo) || pathInfo.isEmpty())) {
             for (final String n : welcomeFiles) {
@@ -241,26 +245,38 @@ public class CxfRsHttpListener implements RsHttpListener {
         return is;
     }
 
+    public boolean hasStaticContent(final HttpServletRequest request, final String[] welcomeFiles) {
+        return staticResources.find(request.getServletContext(), staticPath(request), welcomeFiles) != null;
+    }
+
+    private static String staticPath(final HttpServletRequest request) {
+        String pathInfo = request.getRequestURI().substring(request.getContextPath().length());
+        for (final char c : URL_SEP) {
+            final int indexOf = pathInfo.indexOf(c);
+            if (indexOf > 0) {
+                pathInfo = pathInfo.substring(0, indexOf);
+            }
+        }
+        return pathInfo;
+    }
+
+    static String staticContentType(final String name) {
+        final int ind = name.lastIndexOf(".");
+        if (ind != -1 && ind < name.length()) {
+            return STATIC_CONTENT_TYPES.get(name.substring(ind + 1));
+        }
+        return null;
+    }
+
     public boolean serveStaticContent(final HttpServletRequest request,
                                       final HttpServletResponse response,
                                       final String pathInfo) throws ServletException {
-        final InputStream is = findStaticContent(request, DEFAULT_WELCOME_FILES);
-        if (is == null) {
+        final StaticResourceCache.Resource resource = staticResources.find(request.getServletContext(), staticPath(request), DEFAULT_WELCOME_FILES);
+        if (resource == null) {
             return false;
         }
         try {
-            final int ind = pathInfo.lastIndexOf(".");
-            if (ind != -1 && ind < pathInfo.length()) {
-                final String type = STATIC_CONTENT_TYPES.get(pathInfo.substring(ind + 1));
-                if (type != null) {
-                    response.setContentType(type);
-                }
-            }
-
-            final ServletOutputStream os = response.getOutputStream();
-            IOUtils.copy(is, os);
-            os.flush();
-            response.setStatus(HttpURLConnection.HTTP_OK);
+            resource.write(request.getServletContext(), request, response);
         } catch (final IOException ex) {
             throw new ServletException("Static resource " + pathInfo + " can not be written to the output stream");
         }
@@ -420,6 +436,8 @@ public class CxfRsHttpListener implements RsHttpListener {
 
     @Override
     public void undeploy() {
+        staticResources.clear();
+
         for (final ObjectName objectName : jmxNames) {
             LocalMBeanServer.unregisterSilently(objectName);
         }
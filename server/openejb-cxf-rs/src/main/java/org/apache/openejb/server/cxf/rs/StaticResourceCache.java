@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.apache.openejb.loader.IO;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static resources of a web application served before the JAX-RS dispatch.
+ * <p/>
+ * Resources are read once and kept in memory with their gzip variant when the
+ * content type compresses, an ETag and their last modification date, so
+ * conditional requests are answered with a 304.  Names without a resource are
+ * kept too, apart and bounded by their number: with static-first they are the
+ * paths of the JAX-RS endpoints, and any path a client sends.
+ * <p/>
+ * Lookups don't lock.  The cache is bounded, the least recently used resources
+ * are evicted first, and once there are too many misses the oldest quarter of
+ * them is forgotten.  Resources bigger than the max entry size are only
+ * remembered and streamed from the servlet context.  After the check interval
+ * an entry is checked against the last modification date of the resource,
+ * misses are looked up again.
+ */
+final class StaticResourceCache {
+    private static final int MIN_GZIP_SIZE = 256;
+    private static final int ENTRY_SIZE = 64;
+
+    private static final Comparator<Map.Entry<String, Resource>> BY_AGE = new Comparator<Map.Entry<String, Resource>>() {
+        @Override
+        public int compare(final Map.Entry<String, Resource> a, final Map.Entry<String, Resource> b) {
+            return Long.compare(a.getValue().used, b.getValue().used);
+        }
+    };
+
+    private final long maxSize;
+    private final int maxEntrySize;
+    private final int maxMisses;
+    private final long checkInterval;
+
+    private final AtomicLong clock = new AtomicLong();
+    private volatile Entries entries = new Entries(null);
+
+    StaticResourceCache(final long maxSize, final int maxEntrySize, final int maxMisses, final long checkInterval) {
+        this.maxSize = maxSize;
+        this.maxEntrySize = (int) Math.max(0, Math.min(maxEntrySize, maxSize));
+        this.maxMisses = Math.max(0, maxMisses);
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * @return the resource of the path, a welcome file for the root, null if there is none
+     */
+    public Resource find(final ServletContext servletContext, final String path, final String[] welcomeFiles) {
+        final String key = key(path, welcomeFiles);
+        final long now = System.currentTimeMillis();
+
+        Entries current = null;
+        Resource resource = null;
+        if (maxSize > 0) {
+            current = entries(servletContext);
+            resource = current.resources.get(key);
+            if (resource == null) {
+                resource = current.misses.get(key);
+            }
+        }
+
+        if (resource != null) {
+            if (checkInterval < 0 || now - resource.checked < checkInterval) {
+                return used(resource);
+            }
+            if (resource.exists() && resource.lastModified == lastModified(servletContext, resource.name)) {
+                resource.checked = now;
+                return used(resource);
+            }
+        }
+
+        resource = load(servletContext, path, welcomeFiles, now);
+        if (current != null) {
+            resource.used = clock.incrementAndGet();
+            if (resource.exists()) {
+                current.misses.remove(key);
+                put(current, key, resource);
+            } else {
+                remove(current, key);
+                miss(current, key, resource);
+            }
+        }
+        return resource.exists() ? resource : null;
+    }
+
+    public synchronized void clear() {
+        entries = new Entries(null);
+    }
+
+    private Resource used(final Resource resource) {
+        resource.used = clock.incrementAndGet();
+        return resource.exists() ? resource : null;
+    }
+
+    private Entries entries(final ServletContext servletContext) {
+        final Entries current = entries;
+        if (current.context == servletContext) {
+            return current;
+        }
+
+        // redeployed
+        synchronized (this) {
+            if (entries.context != servletContext) {
+                entries = new Entries(servletContext);
+            }
+            return entries;
+        }
+    }
+
+    private void put(final Entries current, final String key, final Resource resource) {
+        final Resource old = current.resources.put(key, resource);
+        current.size.addAndGet(resource.size() - (old == null ? 0 : old.size()));
+        if (current.size.get() <= maxSize) {
+            return;
+        }
+
+        synchronized (current.resources) {
+            for (final Map.Entry<String, Resource> eldest : byAge(current.resources)) {
+                if (current.size.get() <= maxSize) {
+                    break;
+                }
+                if (current.resources.remove(eldest.getKey(), eldest.getValue())) {
+                    current.size.addAndGet(-eldest.getValue().size());
+                }
+            }
+        }
+    }
+
+    private static void remove(final Entries current, final String key) {
+        final Resource old = current.resources.remove(key);
+        if (old != null) {
+            current.size.addAndGet(-old.size());
+        }
+    }
+
+    private void miss(final Entries current, final String key, final Resource resource) {
+        if (maxMisses == 0) {
+            return;
+        }
+
+        current.misses.put(key, resource);
+        if (current.misses.size() <= maxMisses) {
+            return;
+        }
+
+        synchronized (current.misses) {
+            final List<Map.Entry<String, Resource>> eldest = byAge(current.misses);
+            for (int i = 0; i < eldest.size() && current.misses.size() > maxMisses - maxMisses / 4; i++) {
+                current.misses.remove(eldest.get(i).getKey(), eldest.get(i).getValue());
+            }
+        }
+    }
+
+    private static List<Map.Entry<String, Resource>> byAge(final Map<String, Resource> map) {
+        final List<Map.Entry<String, Resource>> eldest = new ArrayList<>(map.size());
+        for (final Map.Entry<String, Resource> entry : map.entrySet()) {
+            eldest.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+        }
+        Collections.sort(eldest, BY_AGE);
+        return eldest;
+    }
+
+    /**
+     * What is cached for one servlet context, replaced as a whole on a redeployment.
+     */
+    private static final class Entries {
+        private final ServletContext context;
+        private final ConcurrentMap<String, Resource> resources = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, Resource> misses = new ConcurrentHashMap<>();
+        private final AtomicLong size = new AtomicLong();
+
+        private Entries(final ServletContext context) {
+            this.context = context;
+        }
+    }
+
+    private static String key(final String path, final String[] welcomeFiles) {
+        if (!isRoot(path)) {
+            return path;
+        }
+
+        final StringBuilder key = new StringBuilder(path);
+        for (final String welcomeFile : welcomeFiles) {
+            key.append('\0').append(welcomeFile);
+        }
+        return key.toString();
+    }
+
+    private static boolean isRoot(final String path) {
+        return path.isEmpty() || "/".equals(path);
+    }
+
+    private Resource load(final ServletContext servletContext, final String path, final String[] welcomeFiles, final long now) {
+        String name = path;
+        InputStream is = servletContext.getResourceAsStream(name);
+        if (is == null && isRoot(path)) {
+            for (final String welcomeFile : welcomeFiles) {
+                is = servletContext.getResourceAsStream(welcomeFile);
+                if (is != null) {
+                    name = welcomeFile;
+                    break;
+                }
+            }
+        }
+        if (is == null) {
+            return new Resource(path, false, null, null, null, null, 0, now);
+        }
+
+        final String contentType = CxfRsHttpListener.staticContentType(name);
+        final long lastModified = lastModified(servletContext, name);
+        final byte[] bytes;
+        try {
+            bytes = read(is, maxEntrySize);
+        } catch (final IOException e) {
+            // served as a stream, the error will be seen while writing it
+            return new Resource(name, true, contentType, null, null, null, lastModified, now);
+        } finally {
+            IO.close(is);
+        }
+        if (bytes == null) {
+            return new Resource(name, true, contentType, null, null, null, lastModified, now);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        final String etag = "W/\"" + Long.toHexString(crc.getValue()) + '-' + bytes.length + '"';
+        return new Resource(name, true, contentType, bytes, gzip(contentType, bytes), etag, lastModified, now);
+    }
+
+    /**
+     * @return the content, null if it is bigger than max
+     */
+    private static byte[] read(final InputStream is, final int max) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int n;
+        while ((n = is.read(buffer)) >= 0) {
+            if (out.size() + n > max) {
+                return null;
+            }
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(final String contentType, final byte[] bytes) {
+        if (bytes.length < MIN_GZIP_SIZE || !isCompressible(contentType)) {
+            return null;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try {
+            final GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(bytes);
+            gzip.close();
+        } catch (final IOException e) {
+            return null;
+        }
+
+        final byte[] compressed = out.toByteArray();
+        if (compressed.length > bytes.length - bytes.length / 10) {
+            return null;
+        }
+        return compressed;
+    }
+
+    private static boolean isCompressible(final String contentType) {
+        return contentType != null
+            && (contentType.startsWith("text/") || contentType.endsWith("/xml") || contentType.endsWith("+xml")
+            || contentType.endsWith("/json") || contentType.endsWith("/javascript"));
+    }
+
+    private static long lastModified(final ServletContext servletContext, final String name) {
+        try {
+            final URL url = servletContext.getResource(name);
+            if (url == null) {
+                return -1;
+            }
+            return url.openConnection().getLastModified();
+        } catch (final IOException e) {
+            return 0;
+        }
+    }
+
+    private static boolean acceptsGzip(final HttpServletRequest request) {
+        final String accepted = request.getHeader("Accept-Encoding");
+        if (accepted == null) {
+            return false;
+        }
+
+        for (final String encoding : accepted.split(",")) {
+            final String[] parts = encoding.split(";");
+            final String name = parts[0].trim();
+            if ("gzip".equalsIgnoreCase(name) || "*".equals(name)) {
+                for (int i = 1; i < parts.length; i++) {
+                    final String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(parameter.substring(2)) > 0;
+                        } catch (final NumberFormatException nfe) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static final class Resource {
+        private final String name;
+        private final String contentType;
+        private final byte[] bytes;
+        private final byte[] gzip;
+        private final String etag;
+        private final long lastModified;
+        private final boolean exists;
+        private volatile long checked;
+        private volatile long used;
+
+        private Resource(final String name, final boolean exists, final String contentType, final byte[] bytes, final byte[] gzip,
+                         final String etag, final long lastModified, final long checked) {
+            this.name = name;
+            this.exists = exists;
+            this.contentType = contentType;
+            this.bytes = bytes;
+            this.gzip = gzip;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.checked = checked;
+        }
+
+        private boolean exists() {
+            return exists;
+        }
+
+        private long size() {
+            return ENTRY_SIZE + 2 * name.length() + (bytes == null ? 0 : bytes.length) + (gzip == null ? 0 : gzip.length);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void write(final ServletContext servletContext, final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+            if (bytes == null) {
+                stream(servletContext, response);
+                return;
+            }
+
+            final String method = request.getMethod();
+            final boolean get = "GET".equals(method) || "HEAD".equals(method);
+            response.setHeader("ETag", etag);
+            if (lastModified > 0) {
+                response.setDateHeader("Last-Modified", lastModified);
+            }
+            if (get && isNotModified(request)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            byte[] body = bytes;
+            if (gzip != null) {
+                response.addHeader("Vary", "Accept-Encoding");
+                if (acceptsGzip(request)) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    body = gzip;
+                }
+            }
+            response.setContentLength(body.length);
+            response.setStatus(HttpServletResponse.SC_OK);
+            if (!"HEAD".equals(method)) {
+                final OutputStream os = response.getOutputStream();
+                os.write(body);
+                os.flush();
+            }
+        }
+
+        private void stream(final ServletContext servletContext, final HttpServletResponse response) throws IOException {
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            response.setStatus(HttpServletResponse.SC_OK);
+
+            final InputStream is = servletContext.getResourceAsStream(name);
+            if (is == null) {
+                return;
+            }
+            try {
+                final OutputStream os = response.getOutputStream();
+                IO.copy(is, os);
+                os.flush();
+            } finally {
+                IO.close(is);
+            }
+        }
+
+        private boolean isNotModified(final HttpServletRequest request) {
+            final String noneMatch = request.getHeader("If-None-Match");
+            if (noneMatch != null) {
+                for (final String tag : noneMatch.split(",")) {
+                    final String trimmed = tag.trim();
+                    if ("*".equals(trimmed) || weak(trimmed).equals(weak(etag))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            if (lastModified <= 0) {
+                return false;
+            }
+            try {
+                final long since = request.getDateHeader("If-Modified-Since");
+                return since >= 0 && since >= lastModified / 1000 * 1000;
+            } catch (final IllegalArgumentException iae) {
+                return false;
+            }
+        }
+
+        private static String weak(final String tag) {
+            return tag.startsWith("W/") ? tag.substring(2) : tag;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.cxf.rs;
+
+import org.apache.openejb.loader.Files;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.server.httpd.ServletByteArrayOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class StaticResourceCacheTest {
+    private static final String[] WELCOME_FILES = {"/index.html"};
+
+    private File docBase;
+    private final AtomicInteger reads = new AtomicInteger();
+    private ServletContext context;
+    private String script;
+
+    @Before
+    public void createResources() throws Exception {
+        docBase = Files.tmpdir();
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            builder.append("console.log('line ").append(i).append("');\n");
+        }
+        script = builder.toString();
+        IO.copy(script.getBytes(), new File(docBase, "app.js"));
+        IO.copy("<html></html>".getBytes(), new File(docBase, "index.html"));
+        IO.copy(builder.append(builder).toString().getBytes(), new File(docBase, "big.txt"));
+        for (final String name : new String[]{"a.bin", "b.bin", "c.bin"}) {
+            IO.copy(new byte[1000], new File(docBase, name));
+        }
+        context = context();
+    }
+
+    @After
+    public void deleteResources() {
+        Files.delete(docBase);
+    }
+
+    @Test
+    public void cached() throws Exception {
+        final StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 1024 * 1024, 100, -1);
+        final StaticResourceCache.Resource resource = cache.find(context, "/app.js", WELCOME_FILES);
+        assertNotNull(resource);
+        assertSame(resource, cache.find(context, "/app.js", WELCOME_FILES));
+        assertEquals(1, reads.get());
+
+        assertNull(cache.find(context, "/api/users", WELCOME_FILES));
+        assertNull(cache.find(context, "/api/users", WELCOME_FILES));
+        assertEquals(2, reads.get());
+
+        assertEquals("/index.html", cache.find(context, "/", WELCOME_FILES).getName());
+    }
+
+    @Test
+    public void gzipAndConditionalGet() throws Exception {
+        final StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 1024 * 1024, 100, -1);
+        final StaticResourceCache.Resource resource = cache.find(context, "/app.js", WELCOME_FILES);
+
+        final Map<String, Object> headers = new HashMap<>();
+        final ServletByteArrayOutputStream out = new ServletByteArrayOutputStream();
+        resource.write(context, request("GET", "gzip, deflate", null), response(headers, out));
+        assertEquals(200, headers.get("status"));
+        assertEquals("gzip", headers.get("Content-Encoding"));
+        assertEquals("application/javascript", headers.get("Content-Type"));
+        assertEquals(out.getOutputStream().size(), headers.get("Content-Length"));
+        final ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+        IO.copy(new GZIPInputStream(new ByteArrayInputStream(out.getOutputStream().toByteArray())), unzipped);
+        assertArrayEquals(script.getBytes(), unzipped.toByteArray());
+
+        final Map<String, Object> identity = new HashMap<>();
+        final ServletByteArrayOutputStream plain = new ServletByteArrayOutputStream();
+        resource.write(context, request("GET", "gzip;q=0", null), response(identity, plain));
+        assertNull(identity.get("Content-Encoding"));
+        assertArrayEquals(script.getBytes(), plain.getOutputStream().toByteArray());
+
+        final Map<String, Object> notModified = new HashMap<>();
+        final ServletByteArrayOutputStream empty = new ServletByteArrayOutputStream();
+        resource.write(context, request("GET", null, String.valueOf(headers.get("ETag"))), response(notModified, empty));
+        assertEquals(304, notModified.get("status"));
+        assertEquals(0, empty.getOutputStream().size());
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        final StaticResourceCache cache = new StaticResourceCache(2500, 1024 * 1024, 100, -1);
+        cache.find(context, "/a.bin", WELCOME_FILES);
+        cache.find(context, "/b.bin", WELCOME_FILES);
+        cache.find(context, "/a.bin", WELCOME_FILES);
+        assertEquals(2, reads.get());
+
+        // evicts b, the least recently used
+        cache.find(context, "/c.bin", WELCOME_FILES);
+        cache.find(context, "/a.bin", WELCOME_FILES);
+        assertEquals(3, reads.get());
+        cache.find(context, "/b.bin", WELCOME_FILES);
+        assertEquals(4, reads.get());
+    }
+
+    @Test
+    public void missesDontEvictResources() throws Exception {
+        final StaticResourceCache cache = new StaticResourceCache(2500, 1024 * 1024, 8, -1);
+        cache.find(context, "/a.bin", WELCOME_FILES);
+        cache.find(context, "/b.bin", WELCOME_FILES);
+        for (int i = 0; i < 100; i++) {
+            assertNull(cache.find(context, "/api/" + i, WELCOME_FILES));
+        }
+        assertEquals(102, reads.get());
+
+        cache.find(context, "/a.bin", WELCOME_FILES);
+        cache.find(context, "/b.bin", WELCOME_FILES);
+        assertEquals(102, reads.get());
+    }
+
+    @Test
+    public void boundedMisses() throws Exception {
+        final StaticResourceCache cache = new StaticResourceCache(1024 * 1024, 1024 * 1024, 8, -1);
+        for (int i = 0; i < 8; i++) {
+            cache.find(context, "/api/" + i, WELCOME_FILES);
+        }
+        cache.find(context, "/api/0", WELCOME_FILES);
+        assertEquals(8, reads.get());
+
+        // down to 3/4 of the max, forgets 1, 2 and 3 but not 0 which was just used
+        cache.find(context, "/api/8", WELCOME_FILES);
+        cache.find(context, "/api/0", WELCOME_FILES);
+        cache.find(context, "/api/4", WELCOME_FILES);
+        assertEquals(9, reads.get());
+        cache.find(context, "/api/3", WELCOME_FILES);
+        assertEquals(10, reads.get());
+    }
+
+    @Test
+    public void streamedWhenTooBig() throws Exception {
+        final StaticResourceCache cache = new StaticResourceCache(1024 * 1024, script.length(), 100, -1);
+        final StaticResourceCache.Resource resource = cache.find(context, "/big.txt", WELCOME_FILES);
+        assertSame(resource, cache.find(context, "/big.txt", WELCOME_FILES));
+
+        final Map<String, Object> headers = new HashMap<>();
+        final ServletByteArrayOutputStream out = new ServletByteArrayOutputStream();
+        resource.write(context, request("GET", "gzip", null), response(headers, out));
+        assertEquals(200, headers.get("status"));
+        assertNull(headers.get("Content-Encoding"));
+        assertEquals(2 * script.length(), out.getOutputStream().size());
+    }
+
+    private ServletContext context() {
+        return proxy(ServletContext.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                final File file = new File(docBase, String.valueOf(args[0]));
+                switch (method.getName()) {
+                    case "getResourceAsStream":
+                        reads.incrementAndGet();
+                        return file.isFile() ? new FileInputStream(file) : null;
+                    case "getResource":
+                        return file.isFile() ? file.toURI().toURL() : null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    private static HttpServletRequest request(final String method, final String acceptEncoding, final String ifNoneMatch) {
+        return proxy(HttpServletRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method m, final Object[] args) throws Throwable {
+                switch (m.getName()) {
+                    case "getMethod":
+                        return method;
+                    case "getHeader":
+                        if ("Accept-Encoding".equals(args[0])) {
+                            return acceptEncoding;
+                        }
+                        if ("If-None-Match".equals(args[0])) {
+                            return ifNoneMatch;
+                        }
+                        return null;
+                    case "getDateHeader":
+                        return -1L;
+                    default:
+                        throw new UnsupportedOperationException(m.getName());
+                }
+            }
+        });
+    }
+
+    private static HttpServletResponse response(final Map<String, Object> headers, final ServletByteArrayOutputStream out) {
+        return proxy(HttpServletResponse.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "setHeader":
+                    case "addHeader":
+                    case "setDateHeader":
+                        headers.put(String.valueOf(args[0]), args[1]);
+                        return null;
+                    case "setContentType":
+                        headers.put("Content-Type", args[0]);
+                        return null;
+                    case "setContentLength":
+                        headers.put("Content-Length", args[0]);
+                        return null;
+                    case "setStatus":
+                        headers.put("status", args[0]);
+                        return null;
+                    case "getOutputStream":
+                        return out;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            }
+        });
+    }
+
+    private static <T> T proxy(final Class<T> api, final InvocationHandler handler) {
+        return api.cast(Proxy.newProxyInstance(StaticResourceCacheTest.class.getClassLoader(), new Class<?>[]{api}, handler));
+    }
+}
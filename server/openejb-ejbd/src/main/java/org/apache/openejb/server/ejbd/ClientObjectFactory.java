@@ -154,6 +154,7 @@ class ClientObjectFactory implements org.apache.openejb.spi.ApplicationServer {
             info.getInterfaces(),
             beanContext.getAsynchronousMethodSignatures());
         eMetaData.loadProperties(beanContext.getProperties());
+        eMetaData.setMethodTable(DeploymentIndex.getMethodTable(beanContext));
 
         final Object primKey = info.getPrimaryKey();
 
@@ -216,6 +217,7 @@ class ClientObjectFactory implements org.apache.openejb.spi.ApplicationServer {
             info.getInterfaces(),
             beanContext.getAsynchronousMethodSignatures());
         eMetaData.loadProperties(beanContext.getProperties());
+        eMetaData.setMethodTable(DeploymentIndex.getMethodTable(beanContext));
         return eMetaData;
     }
 }
\ No newline at end of file
@@ -18,10 +18,13 @@ package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.BeanContext;
 import org.apache.openejb.client.EJBRequest;
+import org.apache.openejb.client.MethodTable;
 import org.apache.openejb.util.Messages;
 
 import java.rmi.RemoteException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class DeploymentIndex {
@@ -94,5 +97,26 @@ public class DeploymentIndex {
     public BeanContext getDeployment(final int index) {
         return deployments[index];
     }
+
+    /**
+     * @return the ids of the remote methods of the deployment, built once and kept
+     * with it, or null if there are too many to number
+     */
+    public static MethodTable getMethodTable(final BeanContext beanContext) {
+        MethodTable table = beanContext.get(MethodTable.class);
+        if (table == null) {
+            final List<Class> interfaces = new ArrayList<Class>();
+            interfaces.add(beanContext.getHomeInterface());
+            interfaces.add(beanContext.getRemoteInterface());
+            interfaces.addAll(beanContext.getBusinessRemoteInterfaces());
+
+            table = new MethodTable(interfaces);
+            if (table.size() > MethodTable.MAX_SIZE) {
+                return null;
+            }
+            beanContext.set(MethodTable.class, table);
+        }
+        return table;
+    }
 }
 
@@ -396,6 +396,10 @@ public class EjbDaemon implements org.apache.openejb.spi.ApplicationServer {
         return gzip;
     }
 
+    public int getTimeout() {
+        return timeout;
+    }
+
     public EJBDSerializer getSerializer() {
         return serializer;
     }
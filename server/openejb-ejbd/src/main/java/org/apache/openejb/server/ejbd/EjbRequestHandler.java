@@ -135,6 +135,7 @@ class EjbRequestHandler extends RequestHandler {
 
                 res.start(EJBResponse.Time.DESERIALIZATION);
 
+                req.getBody().setMethodTable(DeploymentIndex.getMethodTable(di));
                 req.getBody().readExternal(in);
 
                 //Client version retrieved from body
@@ -18,6 +18,7 @@ package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.ProxyInfo;
 import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.loader.Options;
 import org.apache.openejb.server.ServiceException;
 
 import javax.ejb.EJBHome;
@@ -48,6 +49,12 @@ public class EjbServer implements org.apache.openejb.server.ServerService, org.a
         }
         server.init(props);
         keepAlive = new KeepAliveServer(this, server.isGzip());
+
+        final Options options = new Options(props);
+        keepAlive.setSelectors(options.get("selectors", keepAlive.getSelectors()));
+        keepAlive.setWorkers(options.get("threads", keepAlive.getWorkers()));
+        keepAlive.setMaxFrameSize(options.get("multiplexMaxFrameSize", keepAlive.getMaxFrameSize()));
+        keepAlive.setIdleTimeout(options.get("idleTimeout", server.getTimeout()));
     }
 
     @Override
@@ -473,6 +473,7 @@ class JndiRequestHandler extends RequestHandler {
                     null,
                     beanContext.getAsynchronousMethodSignatures());
                 metaData.loadProperties(beanContext.getProperties());
+                metaData.setMethodTable(DeploymentIndex.getMethodTable(beanContext));
                 log(metaData);
                 res.setResult(metaData);
                 break;
@@ -498,6 +499,7 @@ class JndiRequestHandler extends RequestHandler {
                     beanContext.getAsynchronousMethodSignatures());
                 metaData.setPrimaryKey(proxyInfo.getPrimaryKey());
                 metaData.loadProperties(beanContext.getProperties());
+                metaData.setMethodTable(DeploymentIndex.getMethodTable(beanContext));
 
                 log(metaData);
                 res.setResult(metaData);
@@ -0,0 +1,320 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import org.apache.openejb.util.DaemonThreadFactory;
+import org.apache.openejb.util.LogCategory;
+import org.apache.openejb.util.Logger;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Watches idle keep-alive connections with a few selector threads.
+ * <p/>
+ * A parked connection costs no thread.  When its next request starts to
+ * arrive the connection is taken off the selector, put back in blocking
+ * mode and handed to a bounded pool of workers which read the request with
+ * the usual streams, so the ejbd wire format is unchanged.  A worker parks
+ * the connection again once it has no more buffered request to serve.
+ * <p/>
+ * When all the workers are busy and their queue is full the ready
+ * connections are handed off again a bit later, the selector thread never
+ * blocks on the workers.  A connection parked for longer than the idle
+ * timeout is closed.
+ *
+ * @version $Rev$ $Date$
+ */
+public class KeepAliveSelector {
+
+    private static final Logger logger = Logger.getInstance(LogCategory.OPENEJB_SERVER.createChild("keepalive"), KeepAliveSelector.class);
+
+    /**
+     * A connection which can be parked on the selector.
+     */
+    public interface Connection {
+
+        SocketChannel getChannel();
+
+        /**
+         * Called on a worker thread once the channel is readable and in
+         * blocking mode again.  The connection must either park itself
+         * again or close.
+         */
+        void ready();
+
+        void close();
+    }
+
+    // how long a ready connection waits before it is handed off again when the workers are full
+    private static final long RETRY = 10;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Loop[] loops;
+    private final ThreadPoolExecutor workers;
+    private final long idleTimeout;
+
+    /**
+     * @param idleTimeout milliseconds a connection stays parked waiting for its next request, 0 or less for no limit
+     */
+    public KeepAliveSelector(final int selectors, final int workers, final int queue, final long idleTimeout) {
+        this.loops = new Loop[Math.max(1, selectors)];
+        this.idleTimeout = idleTimeout;
+        this.workers = new ThreadPoolExecutor(workers, workers, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(Math.max(1, queue)), new DaemonThreadFactory("KeepAliveSelector.worker."));
+        this.workers.allowCoreThreadTimeOut(true);
+    }
+
+    public void start() throws IOException {
+        if (running.getAndSet(true)) {
+            return;
+        }
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new Loop(Selector.open());
+            final Thread thread = new Thread(loops[i], "KeepAliveSelector." + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void stop() {
+        if (!running.getAndSet(false)) {
+            return;
+        }
+        for (final Loop loop : loops) {
+            if (loop != null) {
+                loop.selector.wakeup();
+            }
+        }
+        workers.shutdown();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Parks an idle connection until its next request arrives.
+     */
+    public void park(final Connection connection) {
+        if (!running.get()) {
+            connection.close();
+            return;
+        }
+        final Loop loop = loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+        loop.pending.add(connection);
+        loop.selector.wakeup();
+
+        // stopped meanwhile, the loop may be gone already
+        if (!running.get() && loop.pending.remove(connection)) {
+            connection.close();
+        }
+    }
+
+    /**
+     * @return the number of connections currently parked
+     */
+    public int getParked() {
+        int parked = 0;
+        for (final Loop loop : loops) {
+            if (loop != null) {
+                try {
+                    parked += loop.selector.keys().size();
+                } catch (final ClosedSelectorException e) {
+                    // stopped
+                }
+            }
+        }
+        return parked;
+    }
+
+    /**
+     * @return false if the workers are full, the connection is still open and must be handed off again
+     */
+    private boolean handOff(final Connection connection) {
+        try {
+            connection.getChannel().configureBlocking(true);
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    connection.ready();
+                }
+
+                @Override
+                public String toString() {
+                    return "KeepAliveSelector.Connection:" + connection.getChannel().socket().getInetAddress();
+                }
+            });
+            return true;
+        } catch (final RejectedExecutionException e) {
+            if (running.get() && !workers.isShutdown()) {
+                return false;
+            }
+            connection.close();
+            return true;
+        } catch (final Throwable e) {
+            logger.debug("Unable to hand off connection", e);
+            connection.close();
+            return true;
+        }
+    }
+
+    /**
+     * A connection and when it got parked.
+     */
+    private static final class Parked {
+        private final Connection connection;
+        private final long since;
+
+        private Parked(final Connection connection, final long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+
+    private final class Loop implements Runnable {
+        private final Selector selector;
+        private final Queue<Connection> pending = new ConcurrentLinkedQueue<Connection>();
+        // ready connections the workers had no room for, only used by the loop thread
+        private final List<Connection> deferred = new ArrayList<Connection>();
+
+        private Loop(final Selector selector) {
+            this.selector = selector;
+        }
+
+        @Override
+        public void run() {
+            final List<Connection> ready = new ArrayList<Connection>();
+            // check the idle connections twice per timeout, at least once a minute
+            final long sweep = idleTimeout > 0 ? Math.max(1, Math.min(idleTimeout / 2, TimeUnit.MINUTES.toMillis(1))) : 0;
+            long nextSweep = System.currentTimeMillis() + sweep;
+            try {
+                while (running.get()) {
+                    register();
+
+                    long wait = 0;
+                    if (sweep > 0) {
+                        final long now = System.currentTimeMillis();
+                        if (now >= nextSweep) {
+                            expire(now);
+                            nextSweep = now + sweep;
+                        }
+                        wait = nextSweep - now;
+                    }
+                    if (!deferred.isEmpty()) {
+                        wait = wait > 0 ? Math.min(wait, RETRY) : RETRY;
+                    }
+                    selector.select(wait);
+
+                    final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        final SelectionKey key = keys.next();
+                        keys.remove();
+                        key.cancel();
+                        ready.add(((Parked) key.attachment()).connection);
+                    }
+
+                    if (!ready.isEmpty()) {
+                        // flush the cancelled keys, a registered channel can't go back to blocking mode
+                        selector.selectNow();
+                        deferred.addAll(ready);
+                        ready.clear();
+                    }
+
+                    final Iterator<Connection> waiting = deferred.iterator();
+                    while (waiting.hasNext() && handOff(waiting.next())) {
+                        waiting.remove();
+                    }
+                }
+            } catch (final IOException e) {
+                logger.error("KeepAliveSelector failed, closing its connections", e);
+            } catch (final ClosedSelectorException e) {
+                // stopped
+            } finally {
+                close();
+            }
+        }
+
+        private void register() {
+            Connection connection;
+            while ((connection = pending.poll()) != null) {
+                try {
+                    final SocketChannel channel = connection.getChannel();
+                    channel.configureBlocking(false);
+                    channel.register(selector, SelectionKey.OP_READ, new Parked(connection, System.currentTimeMillis()));
+                } catch (final ClosedChannelException e) {
+                    connection.close();
+                } catch (final CancelledKeyException e) {
+                    connection.close();
+                } catch (final IOException e) {
+                    logger.debug("Unable to park connection", e);
+                    connection.close();
+                }
+            }
+        }
+
+        private void expire(final long now) {
+            for (final SelectionKey key : selector.keys()) {
+                final Parked parked = (Parked) key.attachment();
+                if (key.isValid() && now - parked.since >= idleTimeout) {
+                    key.cancel();
+                    parked.connection.close();
+                }
+            }
+        }
+
+        private void close() {
+            try {
+                for (final SelectionKey key : selector.keys()) {
+                    ((Parked) key.attachment()).connection.close();
+                }
+            } catch (final ClosedSelectorException e) {
+                // already closed
+            }
+            for (final Connection connection : deferred) {
+                connection.close();
+            }
+            deferred.clear();
+            Connection connection;
+            while ((connection = pending.poll()) != null) {
+                connection.close();
+            }
+            try {
+                selector.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+        }
+    }
+}
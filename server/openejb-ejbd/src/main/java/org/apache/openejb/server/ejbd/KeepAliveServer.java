@@ -18,30 +18,45 @@ package org.apache.openejb.server.ejbd;
 
 import org.apache.openejb.client.FlushableGZIPOutputStream;
 import org.apache.openejb.client.KeepAliveStyle;
+import org.apache.openejb.client.Multiplexer;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.server.ServerService;
 import org.apache.openejb.server.ServiceException;
 import org.apache.openejb.server.ServicePool;
 import org.apache.openejb.server.context.RequestInfos;
+import org.apache.openejb.util.DaemonThreadFactory;
 import org.apache.openejb.util.LogCategory;
 import org.apache.openejb.util.Logger;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -61,6 +76,14 @@ public class KeepAliveServer implements ServerService {
     private BlockingQueue<Runnable> threadQueue;
     private Timer timer;
     private final boolean gzip;
+    private int selectors = 2;
+    private int workers = 200;
+    private int maxFrameSize = Multiplexer.DEFAULT_MAX_FRAME_SIZE;
+    //Four hours, as the ejbd socket timeout
+    private int idleTimeout = 14400000;
+    private volatile KeepAliveSelector selector;
+    private volatile ThreadPoolExecutor multiplexer;
+    private final Set<Session> multiplexing = Collections.newSetFromMap(new ConcurrentHashMap<Session, Boolean>());
 
     @SuppressWarnings("deprecation")
     public KeepAliveServer() {
@@ -104,7 +127,8 @@ public class KeepAliveServer implements ServerService {
 
             if (l.tryLock()) {
                 try {
-                    if (now - session.lastRequest.get() > this.timeout) {
+                    // a multiplexed connection is busy as long as one of its requests runs
+                    if (now - session.lastRequest.get() > this.timeout && session.inFlight.get() == 0) {
 
                         backlog--;
 
@@ -171,6 +195,51 @@ public class KeepAliveServer implements ServerService {
         return this.threadQueue;
     }
 
+    /**
+     * @param selectors number of threads watching the idle connections accepted
+     *                  through a channel (see the ServiceDaemon nio option)
+     */
+    public void setSelectors(final int selectors) {
+        this.selectors = selectors;
+    }
+
+    public int getSelectors() {
+        return selectors;
+    }
+
+    /**
+     * @param workers maximum number of threads serving the requests of parked connections
+     */
+    public void setWorkers(final int workers) {
+        this.workers = workers;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @param maxFrameSize maximum size in bytes of a request sent over a multiplexed connection
+     */
+    public void setMaxFrameSize(final int maxFrameSize) {
+        this.maxFrameSize = maxFrameSize;
+    }
+
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * @param idleTimeout milliseconds a connection parked on the selector waits for its next request, 0 for no limit
+     */
+    public void setIdleTimeout(final int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
     public Session addSession(final Session session) {
         return this.sessions.put(session.thread, session);
     }
@@ -193,7 +262,7 @@ public class KeepAliveServer implements ServerService {
         }
     }
 
-    private class Session {
+    private class Session implements KeepAliveSelector.Connection {
 
         private final Thread thread;
         private final KeepAliveServer kas;
@@ -201,15 +270,23 @@ public class KeepAliveServer implements ServerService {
 
         // only used inside the Lock
         private final AtomicLong lastRequest;
+        // multiplexed requests being served
+        private final AtomicInteger inFlight = new AtomicInteger();
         private final Socket socket;
         private InputStream in = null;
         private OutputStream out = null;
 
+        // only set when the session can be parked on the selector
+        private final KeepAliveSelector selector;
+        private final ClassLoader loader;
+
         private Session(final KeepAliveServer kas, final Socket socket) {
             this.kas = kas;
             this.socket = socket;
             this.lastRequest = new AtomicLong(System.currentTimeMillis());
             this.thread = Thread.currentThread();
+            this.loader = this.thread.getContextClassLoader();
+            this.selector = KeepAliveServer.this.getSelector(socket);
         }
 
         @Override
@@ -222,82 +299,248 @@ public class KeepAliveServer implements ServerService {
         }
 
         private void service() throws ServiceException, IOException {
-            this.kas.addSession(this);
+            if (this.selector != null) {
+                // once a request starts to arrive it has to keep coming, a stalled client can't hold a thread
+                this.socket.setSoTimeout((int) KeepAliveServer.this.timeout);
+                this.open();
+                if (this.serve()) {
+                    // the selector owns the connection from now on
+                    ServicePool.detach(this.socket);
+                    this.selector.park(this);
+                } else {
+                    this.close();
+                }
+                return;
+            }
 
-            int i = -1;
+            this.kas.addSession(this);
 
             try {
 
-                final Lock l1 = this.lock;
-                l1.lock();
-
-                try {
-                    if (!KeepAliveServer.this.gzip) {
-                        in = new BufferedInputStream(socket.getInputStream());
-                        out = new BufferedOutputStream(socket.getOutputStream());
-                    } else {
-                        in = new GZIPInputStream(new BufferedInputStream(socket.getInputStream()));
-                        out = new BufferedOutputStream(new FlushableGZIPOutputStream(socket.getOutputStream()));
-                    }
-                } finally {
-                    l1.unlock();
-                }
+                this.open();
 
                 while (KeepAliveServer.this.running.get()) {
-                    try {
-                        i = in.read();
-                    } catch (SocketException e) {
-                        // Socket closed.
+                    if (!this.request()) {
                         break;
                     }
-                    if (i == -1) {
-                        // client hung up
-                        break;
+                }
+            } finally {
+
+                close();
+
+                this.kas.removeSession(this);
+            }
+        }
+
+        private void open() throws IOException {
+            final Lock l1 = this.lock;
+            l1.lock();
+
+            try {
+                if (!KeepAliveServer.this.gzip) {
+                    in = new BufferedInputStream(socket.getInputStream());
+                    out = new BufferedOutputStream(socket.getOutputStream());
+                } else {
+                    in = new GZIPInputStream(new BufferedInputStream(socket.getInputStream()));
+                    out = new BufferedOutputStream(new FlushableGZIPOutputStream(socket.getOutputStream()));
+                }
+            } finally {
+                l1.unlock();
+            }
+        }
+
+        /**
+         * Serves the request which is arriving and any other one already buffered.
+         *
+         * @return true if the connection is still usable
+         */
+        private boolean serve() throws ServiceException, IOException {
+            try {
+                do {
+                    if (!KeepAliveServer.this.running.get() || !this.request()) {
+                        return false;
                     }
-                    final KeepAliveStyle style = KeepAliveStyle.values()[i];
+                } while (in.available() > 0);
+                return true;
+            } catch (final IOException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Reads and serves one request, blocking until it arrives.
+         *
+         * @return false if the client hung up or the socket was closed
+         */
+        private boolean request() throws ServiceException, IOException {
+            int i = -1;
+            try {
+                try {
+                    i = in.read();
+                } catch (SocketException e) {
+                    // Socket closed.
+                    return false;
+                }
+                if (i == -1) {
+                    // client hung up
+                    return false;
+                }
+                final KeepAliveStyle style = KeepAliveStyle.values()[i];
 
-                    final Lock l2 = this.lock;
-                    l2.lock();
+                if (style == KeepAliveStyle.MULTIPLEX) {
+                    return this.multiplex();
+                }
 
-                    try {
+                final Lock l2 = this.lock;
+                l2.lock();
 
-                        switch (style) {
-                            case PING_PING: {
-                                i = in.read();
-                                break;
-                            }
-                            case PING_PONG: {
-                                out.write(style.ordinal());
-                                out.flush();
-                                break;
-                            }
-                        }
+                try {
 
-                        try {
-                            KeepAliveServer.this.service.service(new Input(in), new Output(out));
+                    switch (style) {
+                        case PING_PING: {
+                            i = in.read();
+                            break;
+                        }
+                        case PING_PONG: {
+                            out.write(style.ordinal());
                             out.flush();
-                        } catch (SocketException e) {
-                            // Socket closed.
                             break;
                         }
-                    } finally {
-                        this.lastRequest.set(System.currentTimeMillis());
-                        l2.unlock();
                     }
+
+                    try {
+                        KeepAliveServer.this.service.service(new Input(in), new Output(out));
+                        out.flush();
+                    } catch (SocketException e) {
+                        // Socket closed.
+                        return false;
+                    }
+                } finally {
+                    this.lastRequest.set(System.currentTimeMillis());
+                    l2.unlock();
                 }
+                return true;
             } catch (ArrayIndexOutOfBoundsException e) {
                 throw new IOException("Unexpected byte " + i);
             } catch (InterruptedIOException e) {
                 Thread.interrupted();
+                return false;
+            }
+        }
+
+        /**
+         * Serves the framed requests of a multiplexing client until it hangs up.
+         * Each request runs on a worker of its own and its response is written
+         * as soon as it is ready, so responses may come back out of order.
+         *
+         * @return false, the connection is done with
+         */
+        private boolean multiplex() throws IOException {
+            out.write(KeepAliveStyle.MULTIPLEX.ordinal());
+            out.flush();
+
+            // the reader waits for the frames of a client as long as it keeps the connection
+            this.socket.setSoTimeout(0);
+
+            final Executor executor = KeepAliveServer.this.getMultiplexer();
+            final DataInputStream frames = new DataInputStream(in);
+            final DataOutputStream responses = new DataOutputStream(out);
+            final Lock write = new ReentrantLock();
+
+            KeepAliveServer.this.multiplexing.add(this);
+            try {
+                while (KeepAliveServer.this.running.get()) {
+                    final int id = frames.readInt();
+                    final int length = frames.readInt();
+                    if (length < 0 || length > KeepAliveServer.this.maxFrameSize) {
+                        throw new IOException("Invalid frame length " + length + ", the maximum is " + KeepAliveServer.this.maxFrameSize);
+                    }
+                    final byte[] request = new byte[length];
+                    frames.readFully(request);
+                    this.lastRequest.set(System.currentTimeMillis());
+
+                    this.inFlight.incrementAndGet();
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                Session.this.exchange(id, request, responses, write);
+                            } finally {
+                                Session.this.lastRequest.set(System.currentTimeMillis());
+                                Session.this.inFlight.decrementAndGet();
+                            }
+                        }
+                    });
+                }
+            } catch (EOFException | SocketException e) {
+                // client hung up or the socket was closed
             } finally {
+                KeepAliveServer.this.multiplexing.remove(this);
+            }
+            return false;
+        }
 
-                close();
+        private void exchange(final int id, final byte[] request, final DataOutputStream responses, final Lock write) {
+            final ByteArrayOutputStream response = new ByteArrayOutputStream(1024);
 
-                this.kas.removeSession(this);
+            final Thread current = Thread.currentThread();
+            final ClassLoader old = current.getContextClassLoader();
+            current.setContextClassLoader(this.loader);
+            RequestInfos.initRequestInfo(this.socket);
+            try {
+                KeepAliveServer.this.service.service(new ByteArrayInputStream(request), response);
+            } catch (Throwable e) {
+                logger.error("Unexpected error serving multiplexed request " + id + " from " + this.socket.getInetAddress(), e);
+            } finally {
+                RequestInfos.clearRequestInfo();
+                current.setContextClassLoader(old);
             }
+
+            write.lock();
+            try {
+                responses.writeInt(id);
+                responses.writeInt(response.size());
+                response.writeTo(responses);
+                responses.flush();
+            } catch (IOException e) {
+                // the reader sees the broken socket too
+                this.close();
+            } finally {
+                write.unlock();
+            }
+        }
+
+        @Override
+        public SocketChannel getChannel() {
+            return this.socket.getChannel();
         }
 
-        private void close() {
+        @Override
+        public void ready() {
+            final Thread current = Thread.currentThread();
+            final ClassLoader old = current.getContextClassLoader();
+            current.setContextClassLoader(this.loader);
+            RequestInfos.initRequestInfo(this.socket);
+
+            boolean open = false;
+            try {
+                open = this.serve();
+            } catch (Throwable e) {
+                logger.debug("Unexpected error serving " + this.socket.getInetAddress(), e);
+            } finally {
+                RequestInfos.clearRequestInfo();
+                current.setContextClassLoader(old);
+            }
+
+            if (open) {
+                this.selector.park(this);
+            } else {
+                this.close();
+            }
+        }
+
+        @Override
+        public void close() {
             if (null != in) {
                 try {
                     in.close();
@@ -361,9 +604,79 @@ public class KeepAliveServer implements ServerService {
         }
     }
 
+    /**
+     * @return the workers serving the requests of multiplexed connections
+     */
+    private Executor getMultiplexer() {
+        ThreadPoolExecutor current = this.multiplexer;
+        if (current == null) {
+            synchronized (this) {
+                current = this.multiplexer;
+                if (current == null) {
+                    // a full queue makes the reading thread serve the request, pushing back on the client
+                    current = new ThreadPoolExecutor(this.workers, this.workers, 60, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(this.workers), new DaemonThreadFactory("KeepAliveServer.multiplex."),
+                        new ThreadPoolExecutor.CallerRunsPolicy());
+                    current.allowCoreThreadTimeOut(true);
+                    this.multiplexer = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the selector parking the idle connections accepted through a channel,
+     * created with the first of them, null if there is none
+     */
+    private KeepAliveSelector getSelector(final Socket socket) {
+        // gzip streams read ahead so the selector could miss a buffered request
+        if (this.selectors <= 0 || this.gzip || socket.getChannel() == null) {
+            return null;
+        }
+
+        KeepAliveSelector current = this.selector;
+        if (current == null) {
+            synchronized (this) {
+                current = this.selector;
+                if (current == null && this.running.get()) {
+                    current = new KeepAliveSelector(this.selectors, this.workers, this.workers, this.idleTimeout);
+                    try {
+                        current.start();
+                        this.selector = current;
+                    } catch (IOException e) {
+                        logger.warning("Unable to open the keep-alive selector, using a thread per connection: " + e.getMessage());
+                        this.selectors = 0;
+                        current = null;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
     @Override
     public void stop() throws ServiceException {
         if (this.running.getAndSet(false)) {
+            final KeepAliveSelector keepAliveSelector;
+            synchronized (this) {
+                keepAliveSelector = this.selector;
+                this.selector = null;
+            }
+            if (keepAliveSelector != null) {
+                keepAliveSelector.stop();
+            }
+            for (final Session session : new ArrayList<Session>(this.multiplexing)) {
+                session.close();
+            }
+            final ThreadPoolExecutor executor;
+            synchronized (this) {
+                executor = this.multiplexer;
+                this.multiplexer = null;
+            }
+            if (executor != null) {
+                executor.shutdown();
+            }
             try {
                 this.closeSessions();
             } catch (Throwable e) {
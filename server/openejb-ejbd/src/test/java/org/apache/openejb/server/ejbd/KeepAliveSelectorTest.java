@@ -0,0 +1,205 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServicePool;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Idle keep-alive connections are parked on a selector instead of
+ * holding a ServicePool thread.
+ *
+ * @version $Rev$ $Date$
+ */
+public class KeepAliveSelectorTest extends TestCase {
+
+    public void test() throws Exception {
+        final EjbServer ejbServer = new EjbServer();
+        final KeepAliveServer keepAliveServer = new KeepAliveServer(ejbServer, false);
+        keepAliveServer.setSelectors(1);
+        keepAliveServer.setWorkers(4);
+
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+        ejbServer.init(new Properties());
+
+        final ServicePool pool = new ServicePool(keepAliveServer, 10, 5000, true);
+        final ServiceDaemon serviceDaemon = new ServiceDaemon(pool, 0, "localhost");
+        serviceDaemon.setNio(true);
+        serviceDaemon.start();
+
+        try {
+            final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+            final ConfigurationFactory config = new ConfigurationFactory();
+
+            final EjbJar ejbJar = new EjbJar();
+            ejbJar.addEnterpriseBean(new StatelessBean(KeepAilveTest.EchoBean.class));
+            assembler.createApplication(config.configureApplication(ejbJar));
+
+            final Properties props = new Properties();
+            props.put("java.naming.factory.initial", "org.apache.openejb.client.RemoteInitialContextFactory");
+            props.put("java.naming.provider.url", "ejbd://127.0.0.1:" + serviceDaemon.getPort());
+            final Context context = new InitialContext(props);
+            final KeepAilveTest.Echo echo = (KeepAilveTest.Echo) context.lookup("EchoBeanRemote");
+
+            for (int i = 0; i < 20; i++) {
+                final String message = i + " bottles of beer on the wall";
+                assertEquals(new StringBuilder(message).reverse().toString(), echo.echo(message));
+
+                // the connection stays open but no pool thread waits on it
+                assertIdle(pool);
+            }
+        } finally {
+            serviceDaemon.stop();
+            OpenEJB.destroy();
+        }
+    }
+
+    public void testIdleTimeout() throws Exception {
+        final KeepAliveSelector selector = new KeepAliveSelector(1, 1, 1, 100);
+        selector.start();
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.socket().bind(new InetSocketAddress("localhost", 0));
+            final SocketChannel client = SocketChannel.open(server.socket().getLocalSocketAddress());
+            final MockConnection connection = new MockConnection(server.accept(), null);
+
+            selector.park(connection);
+            assertTrue(connection.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(0, connection.served);
+            client.close();
+        } finally {
+            server.close();
+            selector.stop();
+        }
+    }
+
+    public void testWorkersFull() throws Exception {
+        final KeepAliveSelector selector = new KeepAliveSelector(1, 1, 1, 0);
+        selector.start();
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        try {
+            server.socket().bind(new InetSocketAddress("localhost", 0));
+
+            // one connection on the worker, one in the queue
+            final CountDownLatch release = new CountDownLatch(1);
+            final SocketChannel[] clients = new SocketChannel[3];
+            final MockConnection[] connections = new MockConnection[clients.length];
+            for (int i = 0; i < clients.length; i++) {
+                clients[i] = SocketChannel.open(server.socket().getLocalSocketAddress());
+                connections[i] = new MockConnection(server.accept(), release);
+                selector.park(connections[i]);
+                clients[i].write(ByteBuffer.wrap(new byte[]{1}));
+            }
+
+            // the selector doesn't wait for room, it still watches the parked connections
+            final SocketChannel idle = SocketChannel.open(server.socket().getLocalSocketAddress());
+            final MockConnection parked = new MockConnection(server.accept(), null);
+            selector.park(parked);
+            for (int i = 0; i < 100 && selector.getParked() == 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, selector.getParked());
+
+            // all the requests get served once the worker is free
+            release.countDown();
+            for (final MockConnection connection : connections) {
+                assertTrue(connection.closed.await(5, TimeUnit.SECONDS));
+                assertEquals(1, connection.served);
+            }
+            for (final SocketChannel client : clients) {
+                client.close();
+            }
+            idle.close();
+        } finally {
+            server.close();
+            selector.stop();
+        }
+    }
+
+    /**
+     * Reads a byte and closes, waiting for the latch if there is one.
+     */
+    private static class MockConnection implements KeepAliveSelector.Connection {
+        private final SocketChannel channel;
+        private final CountDownLatch release;
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile int served;
+
+        private MockConnection(final SocketChannel channel, final CountDownLatch release) {
+            this.channel = channel;
+            this.release = release;
+        }
+
+        @Override
+        public SocketChannel getChannel() {
+            return channel;
+        }
+
+        @Override
+        public void ready() {
+            try {
+                if (release != null) {
+                    release.await();
+                }
+                channel.read(ByteBuffer.allocate(1));
+                served++;
+            } catch (final IOException | InterruptedException e) {
+                // closed
+            }
+            close();
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                // ignore
+            }
+            closed.countDown();
+        }
+    }
+
+    private static void assertIdle(final ServicePool pool) throws InterruptedException {
+        for (int i = 0; i < 100 && pool.getThreadPool().getActiveCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, pool.getThreadPool().getActiveCount());
+    }
+}
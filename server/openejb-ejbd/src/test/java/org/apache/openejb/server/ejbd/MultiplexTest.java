@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.apache.openejb.server.ejbd;
+
+import junit.framework.TestCase;
+import org.apache.openejb.OpenEJB;
+import org.apache.openejb.assembler.classic.Assembler;
+import org.apache.openejb.client.Client;
+import org.apache.openejb.client.ConnectionManager;
+import org.apache.openejb.client.SocketConnectionFactory;
+import org.apache.openejb.client.event.ConnectionOpened;
+import org.apache.openejb.client.event.Observes;
+import org.apache.openejb.config.ConfigurationFactory;
+import org.apache.openejb.core.ServerFederation;
+import org.apache.openejb.jee.EjbJar;
+import org.apache.openejb.jee.StatelessBean;
+import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.server.ServiceDaemon;
+import org.apache.openejb.server.ServicePool;
+
+import javax.naming.Context;
+import javax.naming.InitialContext;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 200 client threads share 4 multiplexed sockets.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MultiplexTest extends TestCase {
+
+    private static final int THREADS = 200;
+    private static final int SOCKETS = 4;
+    private static final int CALLS = 50;
+
+    public void test() throws Exception {
+        final EjbServer ejbServer = new EjbServer();
+        final KeepAliveServer keepAliveServer = new KeepAliveServer(ejbServer, false);
+
+        final Properties initProps = new Properties();
+        initProps.setProperty("openejb.deployments.classpath.include", "");
+        initProps.setProperty("openejb.deployments.classpath.filter.descriptors", "true");
+        OpenEJB.init(initProps, new ServerFederation());
+        ejbServer.init(new Properties());
+
+        final ServicePool pool = new ServicePool(keepAliveServer, 10, 5000, true);
+        final ServiceDaemon serviceDaemon = new ServiceDaemon(pool, 0, "localhost");
+        serviceDaemon.start();
+
+        final Opened opened = new Opened();
+        System.setProperty(SocketConnectionFactory.PROPERTY_KEEPALIVE, "multiplex");
+        System.setProperty(SocketConnectionFactory.PROPERTY_MULTIPLEX_SOCKETS, Integer.toString(SOCKETS));
+        try {
+            ConnectionManager.registerFactory("ejbd", new SocketConnectionFactory());
+            Client.addEventObserver(opened);
+
+            final Assembler assembler = SystemInstance.get().getComponent(Assembler.class);
+            final ConfigurationFactory config = new ConfigurationFactory();
+
+            final EjbJar ejbJar = new EjbJar();
+            ejbJar.addEnterpriseBean(new StatelessBean(KeepAilveTest.EchoBean.class));
+            assembler.createApplication(config.configureApplication(ejbJar));
+
+            final Properties props = new Properties();
+            props.put("java.naming.factory.initial", "org.apache.openejb.client.RemoteInitialContextFactory");
+            props.put("java.naming.provider.url", "ejbd://127.0.0.1:" + serviceDaemon.getPort());
+            final Context context = new InitialContext(props);
+            final KeepAilveTest.Echo echo = (KeepAilveTest.Echo) context.lookup("EchoBeanRemote");
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(THREADS);
+            final AtomicInteger calls = new AtomicInteger();
+            final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int i = 0; i < CALLS; i++) {
+                                final String message = thread + " bottles of beer on the wall, " + i;
+                                assertEquals(new StringBuilder(message).reverse().toString(), echo.echo(message));
+                                calls.incrementAndGet();
+                            }
+                        } catch (Throwable e) {
+                            error.compareAndSet(null, e);
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+
+            final long begin = System.nanoTime();
+            start.countDown();
+            assertTrue("Timed out", done.await(2, TimeUnit.MINUTES));
+            final long elapsed = System.nanoTime() - begin;
+
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            assertEquals(THREADS * CALLS, calls.get());
+            assertTrue("Opened " + opened.count.get() + " sockets", opened.count.get() <= SOCKETS);
+
+            System.out.println(String.format("%d threads, %d sockets: %.0f invocations/s",
+                THREADS, opened.count.get(), calls.get() / (elapsed / (double) TimeUnit.SECONDS.toNanos(1))));
+        } finally {
+            Client.removeEventObserver(opened);
+            System.clearProperty(SocketConnectionFactory.PROPERTY_KEEPALIVE);
+            System.clearProperty(SocketConnectionFactory.PROPERTY_MULTIPLEX_SOCKETS);
+            ConnectionManager.registerFactory("ejbd", new SocketConnectionFactory());
+            serviceDaemon.stop();
+            OpenEJB.destroy();
+        }
+    }
+
+    public static class Opened {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public void opened(@Observes final ConnectionOpened event) {
+            count.incrementAndGet();
+        }
+    }
+}
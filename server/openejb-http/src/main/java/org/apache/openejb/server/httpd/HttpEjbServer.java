@@ -17,7 +17,9 @@
  */
 package org.apache.openejb.server.httpd;
 
+import org.apache.openejb.loader.Options;
 import org.apache.openejb.loader.SystemInstance;
+import org.apache.openejb.monitoring.InvocationMetrics;
 import org.apache.openejb.server.ServerService;
 import org.apache.openejb.server.ServiceException;
 import org.apache.openejb.server.ejbd.EjbServer;
@@ -51,6 +53,14 @@ public abstract class HttpEjbServer implements ServerService {
 
         registry.addHttpListener(adapter, "/ejb/?.*");
 
+        // unauthenticated like the rest of the port, so only exported on demand
+        if (new Options(props).get("metrics", false)) {
+            final InvocationMetrics metrics = InvocationMetrics.get();
+            if (metrics.isEnabled()) {
+                registry.addHttpListener(new MetricsHttpListener(metrics), "/metrics");
+            }
+        }
+
         // register the http server
         systemInstance.setComponent(HttpServer.class, httpServer);
 
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.apache.openejb.monitoring.Histogram;
+import org.apache.openejb.monitoring.InvocationMetrics;
+import org.apache.openejb.monitoring.MethodMetrics;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exports the {@link InvocationMetrics} in the Prometheus text format.
+ *
+ * @version $Rev$ $Date$
+ */
+public class MetricsHttpListener implements HttpListener {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final InvocationMetrics metrics;
+
+    public MetricsHttpListener() {
+        this(InvocationMetrics.get());
+    }
+
+    public MetricsHttpListener(final InvocationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onMessage(final HttpRequest request, final HttpResponse response) throws Exception {
+        if (!"GET".equals(request.getMethod())) {
+            response.setStatus(405);
+            return;
+        }
+
+        response.setStatus(200);
+        response.setContentType(CONTENT_TYPE);
+        final PrintWriter writer = response.getWriter();
+        write(writer);
+        writer.flush();
+    }
+
+    public void write(final PrintWriter writer) {
+        header(writer, "openejb_ejb_invocations_total", "counter", "Business method invocations");
+        for (final InvocationMetrics.BeanMetrics bean : metrics.getBeans()) {
+            for (final MethodMetrics method : bean.methods()) {
+                sample(writer, "openejb_ejb_invocations_total", labels(bean, method), method.getInvocations());
+            }
+        }
+
+        header(writer, "openejb_ejb_errors_total", "counter", "Business method invocations which threw an exception");
+        for (final InvocationMetrics.BeanMetrics bean : metrics.getBeans()) {
+            for (final MethodMetrics method : bean.methods()) {
+                sample(writer, "openejb_ejb_errors_total", labels(bean, method), method.getErrors());
+            }
+        }
+
+        header(writer, "openejb_ejb_in_flight", "gauge", "Business method invocations in progress");
+        for (final InvocationMetrics.BeanMetrics bean : metrics.getBeans()) {
+            for (final MethodMetrics method : bean.methods()) {
+                sample(writer, "openejb_ejb_in_flight", labels(bean, method), method.getInFlight());
+            }
+        }
+
+        header(writer, "openejb_ejb_pool_wait_seconds_total", "counter", "Time spent waiting for a bean instance");
+        for (final InvocationMetrics.BeanMetrics bean : metrics.getBeans()) {
+            for (final MethodMetrics method : bean.methods()) {
+                sample(writer, "openejb_ejb_pool_wait_seconds_total", labels(bean, method), method.getPoolWaitNanos() / NANOS_PER_SECOND);
+            }
+        }
+
+        header(writer, "openejb_ejb_execution_seconds", "summary", "Business method execution time");
+        for (final InvocationMetrics.BeanMetrics bean : metrics.getBeans()) {
+            for (final MethodMetrics method : bean.methods()) {
+                final String labels = labels(bean, method);
+                // quantiles of the recent invocations, sum and count since the start
+                final Histogram.Snapshot recent = method.getExecution().windowSnapshot();
+                for (final double quantile : QUANTILES) {
+                    final double value = recent.getPercentile(quantile * 100);
+                    sample(writer, "openejb_ejb_execution_seconds", labels + ",quantile=\"" + quantile + "\"", value / NANOS_PER_SECOND);
+                }
+                final Histogram.Snapshot snapshot = method.getExecution().snapshot();
+                final long count = snapshot.getCount();
+                sample(writer, "openejb_ejb_execution_seconds_sum", labels, count == 0 ? 0 : snapshot.getSum() / NANOS_PER_SECOND);
+                sample(writer, "openejb_ejb_execution_seconds_count", labels, count);
+            }
+        }
+    }
+
+    private static void header(final PrintWriter writer, final String name, final String type, final String help) {
+        writer.print("# HELP ");
+        writer.print(name);
+        writer.print(' ');
+        writer.print(help);
+        writer.print('\n');
+        writer.print("# TYPE ");
+        writer.print(name);
+        writer.print(' ');
+        writer.print(type);
+        writer.print('\n');
+    }
+
+    private static void sample(final PrintWriter writer, final String name, final String labels, final double value) {
+        writer.print(name);
+        writer.print('{');
+        writer.print(labels);
+        writer.print("} ");
+        writer.print(format(value));
+        writer.print('\n');
+    }
+
+    private static String labels(final InvocationMetrics.BeanMetrics bean, final MethodMetrics method) {
+        return "module=\"" + escape(bean.getModuleId())
+            + "\",ejb=\"" + escape(bean.getEjbName())
+            + "\",method=\"" + escape(method.getMethod()) + "\"";
+    }
+
+    static String format(final double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    static String escape(final String value) {
+        if (value == null) {
+            return "";
+        }
+        final StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
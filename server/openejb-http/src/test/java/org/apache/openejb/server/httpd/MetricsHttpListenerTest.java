@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.openejb.server.httpd;
+
+import org.apache.openejb.junit.ApplicationComposer;
+import org.apache.openejb.loader.IO;
+import org.apache.openejb.monitoring.InvocationMetrics;
+import org.apache.openejb.testing.Configuration;
+import org.apache.openejb.testing.EnableServices;
+import org.apache.openejb.testing.Module;
+import org.apache.openejb.testng.PropertiesBuilder;
+import org.apache.openejb.util.NetworkUtil;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@EnableServices({"httpejbd"})
+@RunWith(ApplicationComposer.class)
+public class MetricsHttpListenerTest {
+    private int nextAvailablePort = -1;
+
+    @EJB
+    private MeteredBean bean;
+
+    @Test
+    public void prometheus() throws Exception {
+        assertTrue(InvocationMetrics.get().isEnabled());
+        bean.hello("a");
+        bean.hello("b");
+
+        final HttpURLConnection connection = HttpURLConnection.class.cast(new URL("http://localhost:" + nextAvailablePort + "/metrics").openConnection());
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(MetricsHttpListener.CONTENT_TYPE, connection.getContentType());
+        final InputStream inputStream = connection.getInputStream();
+        final String metrics;
+        try {
+            metrics = IO.slurp(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        final String labels = "ejb=\"MeteredBean\",method=\"hello(java.lang.String)\"";
+        assertTrue(metrics, metrics.contains("# TYPE openejb_ejb_invocations_total counter\n"));
+        assertTrue(metrics, metrics.contains("# TYPE openejb_ejb_execution_seconds summary\n"));
+        assertTrue(metrics, metrics.matches("(?s).*\nopenejb_ejb_invocations_total\\{module=\"[^\"]*\"," + labels.replace("(", "\\(").replace(")", "\\)") + "\\} 2\n.*"));
+        assertTrue(metrics, metrics.contains(labels + "} 0\n")); // errors and in flight
+        assertTrue(metrics, metrics.contains(labels + ",quantile=\"0.99\"} "));
+        assertTrue(metrics, metrics.contains("openejb_ejb_execution_seconds_count{"));
+        assertTrue(metrics, metrics.contains(labels + "} 2\n"));
+    }
+
+    @Test
+    public void format() {
+        assertEquals("NaN", MetricsHttpListener.format(Double.NaN));
+        assertEquals("+Inf", MetricsHttpListener.format(Double.POSITIVE_INFINITY));
+        assertEquals("3", MetricsHttpListener.format(3.0));
+        assertEquals("0.25", MetricsHttpListener.format(0.25));
+        assertEquals("a\\\"b\\\\c\\n", MetricsHttpListener.escape("a\"b\\c\n"));
+    }
+
+    @Configuration
+    public Properties props() {
+        nextAvailablePort = NetworkUtil.getNextAvailablePort();
+        return new PropertiesBuilder()
+            .p("httpejbd.port", Integer.toString(nextAvailablePort))
+            .p("httpejbd.metrics", "true")
+            .p(InvocationMetrics.ACTIVATED, "true")
+            .build();
+    }
+
+    @Module
+    public Class<?>[] beans() {
+        return new Class<?>[]{MeteredBean.class};
+    }
+
+    @Stateless
+    public static class MeteredBean {
+        public String hello(final String name) {
+            return "hello " + name;
+        }
+    }
+}
@@ -38,6 +38,7 @@ import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -68,6 +69,7 @@ public class ServiceDaemon implements ServerService {
     private String ip;
 
     private boolean secure;
+    private boolean nio;
     private StringTemplate discoveryUriFormat;
     private URI serviceUri;
     private Properties props;
@@ -124,6 +126,8 @@ public class ServiceDaemon implements ServerService {
 
         this.secure = options.get("secure", false);
 
+        this.nio = options.get("nio", false);
+
         this.timeout = options.get("timeout", this.timeout);
 
         this.enabledCipherSuites = options.get("enabledCipherSuites", "SSL_DH_anon_WITH_RC4_128_MD5").split(",");
@@ -148,7 +152,8 @@ public class ServiceDaemon implements ServerService {
                     serverSocket = factory.createServerSocket(this.port, this.backlog, this.inetAddress);
                     ((SSLServerSocket) serverSocket).setEnabledCipherSuites(this.enabledCipherSuites);
                 } else {
-                    serverSocket = new ServerSocket();
+                    // a channel backed socket lets the service hand its sockets to a Selector
+                    serverSocket = this.nio ? ServerSocketChannel.open().socket() : new ServerSocket();
                     serverSocket.setReuseAddress(true);
 
                     try {
@@ -254,6 +259,18 @@ public class ServiceDaemon implements ServerService {
         return this.ip;
     }
 
+    public boolean isNio() {
+        return this.nio;
+    }
+
+    /**
+     * Accept connections through a ServerSocketChannel, ignored for secure sockets.
+     * Must be set before {@link #start()}.
+     */
+    public void setNio(final boolean nio) {
+        this.nio = nio;
+    }
+
     @Override
     public void service(final Socket socket) throws ServiceException, IOException {
     }
@@ -41,6 +41,8 @@ public class ServicePool extends ServerServiceFilter {
     private static final Logger log = Logger.getInstance(LogCategory.SERVICEPOOL, "org.apache.openejb.util.resources");
     private static final int KEEP_ALIVE_TIME = 1000 * 60 * 1;
 
+    private static final ThreadLocal<Socket> DETACHED = new ThreadLocal<Socket>();
+
     private final ThreadPoolExecutor threadPool;
     private final AtomicBoolean stop = new AtomicBoolean();
 
@@ -167,6 +169,17 @@ public class ServicePool extends ServerServiceFilter {
         return threadPool;
     }
 
+    /**
+     * Called by a service which keeps using the socket after its
+     * service(Socket) method returned, the pool thread then leaves
+     * the socket open and the service becomes responsible for closing it.
+     *
+     * @param socket the socket given to the service on the current thread
+     */
+    public static void detach(final Socket socket) {
+        DETACHED.set(socket);
+    }
+
     @Override
     public void service(final InputStream in, final OutputStream out) throws ServiceException, IOException {
     }
@@ -221,10 +234,13 @@ public class ServicePool extends ServerServiceFilter {
 
                 } finally {
 
-                    //Ensure delegated socket is closed here
+                    //Ensure delegated socket is closed here, unless the service took it over
+
+                    final boolean detached = DETACHED.get() == socket;
+                    DETACHED.remove();
 
                     try {
-                        if (socket != null) {
+                        if (socket != null && !detached) {
                             socket.close();
                         }
                     } catch (Throwable t) {
@@ -20,17 +20,56 @@ import org.apache.catalina.Realm;
 import org.apache.catalina.Wrapper;
 import org.apache.catalina.realm.CombinedRealm;
 import org.apache.catalina.realm.GenericPrincipal;
+import org.apache.openejb.core.security.jaas.CredentialCache;
 import org.apache.openejb.loader.SystemInstance;
 import org.apache.openejb.spi.SecurityService;
 import org.ietf.jgss.GSSContext;
 
 import java.security.Principal;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TomEERealm extends CombinedRealm {
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final String cacheNamespace = "realm:" + IDS.incrementAndGet();
+    private CredentialCache credentialCache;
+
+    /**
+     * @param name the {@link CredentialCache} remembering the username/password logins of this realm;
+     *             the login modules and realms using the same name share its settings and statistics
+     *             but keep their own entries
+     */
+    public void setCredentialCache(final String name) {
+        credentialCache = name == null || name.trim().isEmpty() ? null : CredentialCache.get(name.trim());
+    }
+
+    public String getCredentialCache() {
+        return credentialCache == null ? null : credentialCache.getName();
+    }
+
     @Override
     public Principal authenticate(final String username, final String password) {
-        return logInTomEE(super.authenticate(username, password));
+        final CredentialCache cache = credentialCache;
+        if (cache == null || username == null) {
+            return logInTomEE(super.authenticate(username, password));
+        }
+
+        final Principal cached = (Principal) cache.authenticated(cacheNamespace, username, password);
+        if (cached != null) {
+            return logInTomEE(cached);
+        }
+        if (cache.rejected(cacheNamespace, username, password)) {
+            return null;
+        }
+
+        final Principal principal = super.authenticate(username, password);
+        if (principal == null) {
+            cache.failed(cacheNamespace, username, password);
+        } else {
+            cache.succeeded(cacheNamespace, username, password, principal);
+        }
+        return logInTomEE(principal);
     }
 
     @Override
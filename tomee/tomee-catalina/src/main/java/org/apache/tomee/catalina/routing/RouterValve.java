@@ -34,8 +34,9 @@ import java.net.URL;
 public class RouterValve extends ValveBase {
     public static final String ROUTER_CONF = "tomee-router.conf";
     public static final String WEB_INF = "/WEB-INF/";
+    public static final String COMPILED_ROUTER = "tomee.router.compiled";
 
-    private SimpleRouter router = new SimpleRouter();
+    private SimpleRouter router = SystemInstance.get().getOptions().get(COMPILED_ROUTER, true) ? new TrieRouter() : new SimpleRouter();
 
     @Override
     public void invoke(final Request request, final Response response) throws IOException, ServletException {
@@ -112,12 +112,25 @@ public class SimpleRouter {
         System.arraycopy(routes, 0, newRoutes, 0, routes.length);
         newRoutes[routes.length] = route;
         routes = newRoutes;
+        routesChanged();
+    }
+
+    protected Route[] getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Called once the routes or the prefix changed.
+     */
+    protected void routesChanged() {
+        // no-op
     }
 
     public void cleanUp() {
         JMXOff();
         routes = null;
         cache.clear();
+        routesChanged();
     }
 
     public void setPrefix(final String prefix) {
@@ -126,6 +139,7 @@ public class SimpleRouter {
         } else {
             this.prefix = prefix;
         }
+        routesChanged();
     }
 
     private String prefix(final String value) {
@@ -207,6 +221,7 @@ public class SimpleRouter {
                 routes = newRoutes;
             }
         }
+        routesChanged();
     }
 
     public boolean hasPrefix() {
@@ -0,0 +1,548 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.tomee.catalina.routing;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Router compiling the routes to a trie of uri segments.
+ * <p/>
+ * Origins are cut on '/' and each segment is compiled when it can be matched
+ * without a regex: literals, a group matching a segment like ([^/]+), (\d+)
+ * or ([a-z0-9-]*), and a (.*) or (.+) group ending the origin.  An unescaped
+ * '.' matches '/' too, so origins with one in a literal keep their regex.
+ * The trie is walked without allocating and keeps the first route in
+ * declaration order, the origins the trie can't express are matched with
+ * their regex, only when declared before the best trie match.
+ * <p/>
+ * Decisions, misses included, are kept in a bounded cache indexed by the hash
+ * of the uri, dropped when the routes or the prefix change.
+ */
+public class TrieRouter extends SimpleRouter {
+    private static final int CACHE_SIZE = 1024;
+    private static final int NO_ROUTE = Integer.MAX_VALUE;
+
+    private volatile Routes compiled = new Routes(new Route[0], "");
+
+    @Override
+    protected void routesChanged() {
+        final Route[] routes = getRoutes();
+        compiled = new Routes(routes == null ? new Route[0] : routes, getPrefix());
+    }
+
+    @Override
+    public String route(final String uri) throws IOException, ServletException {
+        if (uri == null) {
+            return null;
+        }
+
+        final Routes current = compiled;
+        final Decision[] cache = current.cache;
+        final int slot = uri.hashCode() & (cache.length - 1);
+        final Decision decision = cache[slot];
+        if (decision != null && decision.uri.equals(uri)) {
+            return decision.destination;
+        }
+
+        final String destination = current.route(uri);
+        cache[slot] = new Decision(uri, destination);
+        return destination;
+    }
+
+    private static final class Decision {
+        private final String uri;
+        private final String destination;
+
+        private Decision(final String uri, final String destination) {
+            this.uri = uri;
+            this.destination = destination;
+        }
+    }
+
+    private static final class Routes {
+        private final Route[] routes;
+        private final Segment[][] segments;
+        private final int[] regexRoutes;
+        private final String prefix;
+        private final Node root = new Node();
+        private final Decision[] cache = new Decision[CACHE_SIZE];
+
+        private Routes(final Route[] routes, final String prefix) {
+            this.routes = routes;
+            this.prefix = prefix;
+            segments = new Segment[routes.length][];
+
+            final List<Integer> regex = new ArrayList<Integer>();
+            for (int i = 0; i < routes.length; i++) {
+                segments[i] = Segment.compile(routes[i].getOrigin());
+                if (segments[i] == null) {
+                    regex.add(i);
+                } else {
+                    root.add(segments[i], 0, i);
+                }
+            }
+            root.freeze();
+
+            regexRoutes = new int[regex.size()];
+            for (int i = 0; i < regexRoutes.length; i++) {
+                regexRoutes[i] = regex.get(i);
+            }
+        }
+
+        private String route(final String uri) {
+            final int best = root.match(uri, 0, NO_ROUTE);
+            for (final int i : regexRoutes) {
+                if (i > best) {
+                    break;
+                }
+                if (routes[i].matches(uri)) {
+                    return routes[i].cleanDestination(prefix);
+                }
+            }
+
+            if (best == NO_ROUTE) {
+                return null;
+            }
+            return destination(routes[best].getRawDestination(), segments[best], uri);
+        }
+
+        private String destination(final String raw, final Segment[] route, final String uri) {
+            String destination = raw;
+            int group = 1;
+            int start = 0;
+            for (final Segment segment : route) {
+                if (segment.tail) {
+                    if (segment.capture) {
+                        destination = destination.replace("$" + group, uri.substring(start));
+                    }
+                    break;
+                }
+
+                int end = uri.indexOf('/', start);
+                if (end < 0) {
+                    end = uri.length();
+                }
+                if (segment.capture) {
+                    destination = destination.replace("$" + group++, uri.substring(start, end));
+                }
+                start = end + 1;
+            }
+
+            if (prefix == null) {
+                return destination;
+            }
+            return destination.substring(prefix.length());
+        }
+    }
+
+    private static final class Node {
+        private Map<String, Node> literalMap = new HashMap<String, Node>();
+        private Map<String, Node> patternMap = new HashMap<String, Node>();
+        private Map<String, Segment> patternSegments = new HashMap<String, Segment>();
+        private Map<String, Tail> tailMap = new HashMap<String, Tail>();
+
+        private String[] literals;
+        private Node[] literalNodes;
+        private Segment[] patterns;
+        private Node[] patternNodes;
+        private Tail[] tails;
+
+        private int terminal = NO_ROUTE;
+        private int min = NO_ROUTE;
+
+        private void add(final Segment[] route, final int index, final int id) {
+            min = Math.min(min, id);
+            if (index == route.length) {
+                terminal = Math.min(terminal, id);
+                return;
+            }
+
+            final Segment segment = route[index];
+            if (segment.tail) {
+                final Tail tail = tailMap.get(segment.key);
+                if (tail == null || tail.route > id) {
+                    tailMap.put(segment.key, new Tail(segment, id));
+                }
+                return;
+            }
+
+            final Map<String, Node> children = segment.literal ? literalMap : patternMap;
+            Node child = children.get(segment.key);
+            if (child == null) {
+                child = new Node();
+                children.put(segment.key, child);
+                if (!segment.literal) {
+                    patternSegments.put(segment.key, segment);
+                }
+            }
+            child.add(route, index + 1, id);
+        }
+
+        private void freeze() {
+            int size = 2;
+            while (size < literalMap.size() << 1) {
+                size <<= 1;
+            }
+            literals = new String[size];
+            literalNodes = new Node[size];
+            for (final Map.Entry<String, Node> entry : literalMap.entrySet()) {
+                int slot = entry.getKey().hashCode() & (size - 1);
+                while (literals[slot] != null) {
+                    slot = (slot + 1) & (size - 1);
+                }
+                literals[slot] = entry.getKey();
+                literalNodes[slot] = entry.getValue();
+                entry.getValue().freeze();
+            }
+
+            patterns = new Segment[patternMap.size()];
+            patternNodes = new Node[patterns.length];
+            int i = 0;
+            for (final Map.Entry<String, Node> entry : patternMap.entrySet()) {
+                patterns[i] = patternSegments.get(entry.getKey());
+                patternNodes[i++] = entry.getValue();
+                entry.getValue().freeze();
+            }
+
+            tails = tailMap.values().toArray(new Tail[tailMap.size()]);
+
+            literalMap = null;
+            patternMap = null;
+            patternSegments = null;
+            tailMap = null;
+        }
+
+        /**
+         * @return the first route matching the uri from start, best if none is declared before it
+         */
+        private int match(final String uri, final int start, final int best) {
+            if (min >= best) {
+                return best;
+            }
+
+            int found = best;
+            for (final Tail tail : tails) {
+                if (tail.route < found && tail.segment.matches(uri, start, uri.length())) {
+                    found = tail.route;
+                }
+            }
+
+            int end = uri.indexOf('/', start);
+            final boolean last = end < 0;
+            if (last) {
+                end = uri.length();
+            }
+
+            final Node literal = literal(uri, start, end);
+            if (literal != null) {
+                found = literal.next(uri, end, last, found);
+            }
+            for (int i = 0; i < patterns.length; i++) {
+                if (patternNodes[i].min < found && patterns[i].matches(uri, start, end)) {
+                    found = patternNodes[i].next(uri, end, last, found);
+                }
+            }
+            return found;
+        }
+
+        private int next(final String uri, final int end, final boolean last, final int best) {
+            if (last) {
+                return Math.min(terminal, best);
+            }
+            return match(uri, end + 1, best);
+        }
+
+        private Node literal(final String uri, final int start, final int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + uri.charAt(i);
+            }
+
+            final int mask = literals.length - 1;
+            final int length = end - start;
+            for (int slot = hash & mask; literals[slot] != null; slot = (slot + 1) & mask) {
+                final String literal = literals[slot];
+                if (literal.length() == length && uri.regionMatches(start, literal, 0, length)) {
+                    return literalNodes[slot];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Tail {
+        private final Segment segment;
+        private final int route;
+
+        private Tail(final Segment segment, final int route) {
+            this.segment = segment;
+            this.route = route;
+        }
+    }
+
+    /**
+     * What an origin matches between two '/'.
+     */
+    private static final class Segment {
+        private static final String META = "\\.[]{}()*+?^$|";
+
+        private final String key;
+        private final boolean literal;
+        private final boolean tail;
+        private final boolean capture;
+        private final int min;
+        private final boolean[] allowed;
+
+        private Segment(final String key, final boolean literal, final boolean tail, final boolean capture, final int min,
+                        final boolean[] allowed) {
+            this.key = key;
+            this.literal = literal;
+            this.tail = tail;
+            this.capture = capture;
+            this.min = min;
+            this.allowed = allowed;
+        }
+
+        private boolean matches(final String uri, final int start, final int end) {
+            if (end - start < min) {
+                return false;
+            }
+            if (tail) {
+                for (int i = start; i < end; i++) {
+                    if (isLineTerminator(uri.charAt(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            if (allowed == null) {
+                return true;
+            }
+            for (int i = start; i < end; i++) {
+                final char c = uri.charAt(i);
+                if (c >= allowed.length || !allowed[c]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * chars '.' doesn't match, as java.util.regex.Pattern defines them
+         */
+        private static boolean isLineTerminator(final char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+
+        /**
+         * @return the segments of the origin, null when its regex is needed
+         */
+        private static Segment[] compile(final String origin) {
+            final List<String> sources = split(origin);
+            if (sources == null) {
+                return null;
+            }
+
+            final Segment[] segments = new Segment[sources.size()];
+            int groups = 0;
+            for (int i = 0; i < segments.length; i++) {
+                segments[i] = segment(sources.get(i), i == segments.length - 1);
+                if (segments[i] == null) {
+                    return null;
+                }
+                if (segments[i].capture) {
+                    groups++;
+                }
+            }
+
+            try {
+                if (Pattern.compile(origin).matcher("").groupCount() != groups) {
+                    return null;
+                }
+            } catch (final PatternSyntaxException e) {
+                return null;
+            }
+            return segments;
+        }
+
+        private static List<String> split(final String origin) {
+            final List<String> sources = new ArrayList<String>();
+            int depth = 0;
+            boolean inClass = false;
+            int start = 0;
+            for (int i = 0; i < origin.length(); i++) {
+                final char c = origin.charAt(i);
+                if (c == '\\') {
+                    i++;
+                } else if (inClass) {
+                    if (c == ']') {
+                        inClass = false;
+                    }
+                } else if (c == '[') {
+                    inClass = true;
+                } else if (c == '(') {
+                    depth++;
+                } else if (c == ')') {
+                    depth--;
+                } else if (c == '/') {
+                    if (depth != 0) {
+                        // a group spanning segments
+                        return null;
+                    }
+                    sources.add(origin.substring(start, i));
+                    start = i + 1;
+                }
+            }
+            if (inClass || depth != 0) {
+                return null;
+            }
+            sources.add(origin.substring(start));
+            return sources;
+        }
+
+        private static Segment segment(final String source, final boolean last) {
+            final Segment literal = literal(source);
+            if (literal != null) {
+                return literal;
+            }
+
+            if (last && (".*".equals(source) || ".+".equals(source))) {
+                return new Segment(source, false, true, false, source.charAt(1) == '+' ? 1 : 0, null);
+            }
+            if (last && ("(.*)".equals(source) || "(.+)".equals(source))) {
+                return new Segment(source, false, true, true, source.charAt(2) == '+' ? 1 : 0, null);
+            }
+
+            String pattern = source;
+            final boolean capture = pattern.length() > 2 && pattern.charAt(0) == '(' && pattern.charAt(1) != '?'
+                && pattern.indexOf(')') == pattern.length() - 1;
+            if (capture) {
+                pattern = pattern.substring(1, pattern.length() - 1);
+            }
+            if (pattern.length() < 2 || pattern.indexOf('(') >= 0 || pattern.indexOf(')') >= 0) {
+                return null;
+            }
+
+            final char quantifier = pattern.charAt(pattern.length() - 1);
+            if (quantifier != '+' && quantifier != '*') {
+                return null;
+            }
+            final int min = quantifier == '+' ? 1 : 0;
+            final String set = pattern.substring(0, pattern.length() - 1);
+            if ("[^/]".equals(set)) {
+                return new Segment(source, false, false, capture, min, null);
+            }
+
+            final boolean[] allowed = chars(set);
+            if (allowed == null) {
+                return null;
+            }
+            return new Segment(source, false, false, capture, min, allowed);
+        }
+
+        /**
+         * @return a segment matching the source if it is a literal
+         */
+        private static Segment literal(final String source) {
+            final StringBuilder chars = new StringBuilder(source.length());
+            for (int i = 0; i < source.length(); i++) {
+                char c = source.charAt(i);
+                if (c == '\\') {
+                    if (i + 1 == source.length() || Character.isLetterOrDigit(source.charAt(i + 1)) || source.charAt(i + 1) == '/') {
+                        return null; // an escaped '/' would span segments
+                    }
+                    c = source.charAt(++i);
+                } else if (META.indexOf(c) >= 0) {
+                    return null;
+                }
+                chars.append(c);
+            }
+            return new Segment(chars.toString(), true, false, false, 0, null);
+        }
+
+        /**
+         * @return the ascii chars of \d, \w or of a class of chars and ranges, null for other sets
+         */
+        private static boolean[] chars(final String set) {
+            final boolean[] allowed = new boolean[128];
+            if ("\\d".equals(set)) {
+                range(allowed, '0', '9');
+                return allowed;
+            }
+            if ("\\w".equals(set)) {
+                range(allowed, '0', '9');
+                range(allowed, 'a', 'z');
+                range(allowed, 'A', 'Z');
+                allowed['_'] = true;
+                return allowed;
+            }
+            if (set.length() < 3 || set.charAt(0) != '[' || set.charAt(set.length() - 1) != ']' || set.charAt(1) == '^') {
+                return null;
+            }
+
+            final String content = set.substring(1, set.length() - 1);
+            for (int i = 0; i < content.length(); i++) {
+                char c = content.charAt(i);
+                if (c == '[' || c == ']' || c == '&') {
+                    return null;
+                }
+                if (c == '\\') {
+                    if (++i == content.length()) {
+                        return null;
+                    }
+                    c = content.charAt(i);
+                    if (c == 'd') {
+                        range(allowed, '0', '9');
+                        continue;
+                    }
+                    if (Character.isLetterOrDigit(c)) {
+                        return null;
+                    }
+                }
+                if (c >= allowed.length || c == '/') {
+                    return null;
+                }
+
+                if (i + 2 < content.length() && content.charAt(i + 1) == '-' && content.charAt(i + 2) != '\\') {
+                    final char to = content.charAt(i + 2);
+                    if (to >= allowed.length || to < c || c < '/' && to > '/') {
+                        return null;
+                    }
+                    range(allowed, c, to);
+                    i += 2;
+                } else {
+                    allowed[c] = true;
+                }
+            }
+            return allowed;
+        }
+
+        private static void range(final boolean[] allowed, final char from, final char to) {
+            for (char c = from; c <= to; c++) {
+                allowed[c] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.tomee.catalina.routing;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrieRouterTest {
+    private static final String[][] ROUTES = {
+        {"/simple", "/destination"},
+        {"/a.b", "/dot"},
+        {"/files/a.c/(.*)", "/dotted/$1"},
+        {"/x\\.y", "/escaped-dot"},
+        {"/esc\\/aped", "/escaped-slash"},
+        {"/users/([^/]+)", "/user?id=$1"},
+        {"/users/([^/]+)/orders/(\\d+)", "/order?user=$1&id=$2"},
+        {"/items/([a-z0-9-]*)/view", "/item/$1"},
+        {"/words/(\\w+)", "/word/$1"},
+        {"/static/(.*)", "/resources/$1"},
+        {"/api/.+", "/api"},
+        {"/deep/(.+)", "/deep/$1"},
+        {"/alt/(foo|bar)", "/alt/$1"},
+        {"/opt/colou?r", "/color"},
+        {"/range/([0-9]+)-([0-9]+)", "/range/$1/$2"},
+        {"/.*", "/fallback"},
+    };
+
+    private static final String[] URIS = {
+        "/simple", "/simple/", "/simplex",
+        "/a.b", "/axb", "/a/b", "/a\nb",
+        "/files/a.c/x", "/files/a/c/x", "/files/abc/x/y",
+        "/x.y", "/xzy",
+        "/esc/aped", "/esc\\/aped",
+        "/users/bob", "/users/bob/", "/users/", "/users/bob/orders/42", "/users/bob/orders/4x", "/users/a\nb",
+        "/items/abc-1/view", "/items//view", "/items/ABC/view",
+        "/words/foo_1", "/words/foo-1",
+        "/static/css/site.css", "/static/", "/static/a\nb",
+        "/api/x/y", "/api/",
+        "/deep/", "/deep/a/b",
+        "/alt/foo", "/alt/baz",
+        "/opt/color", "/opt/colour", "/opt/colouur",
+        "/range/1-2", "/range/1-", "/range/-2",
+        "/", "", "nothing", "/unknown/path",
+    };
+
+    @Test
+    public void sameRoutesAsSimpleRouter() throws Exception {
+        // each origin alone then all of them, the first declared winning
+        for (final String[] route : ROUTES) {
+            assertSameRoutes(new String[][]{route});
+        }
+        assertSameRoutes(ROUTES);
+    }
+
+    @Test
+    public void prefix() throws Exception {
+        final SimpleRouter simple = new SimpleRouter();
+        final TrieRouter trie = new TrieRouter();
+        simple.setPrefix("/ctx");
+        trie.setPrefix("/ctx");
+        for (final String[] route : ROUTES) {
+            simple.addRoute(route[0], route[1]);
+            trie.addRoute(route[0], route[1]);
+        }
+        for (final String uri : URIS) {
+            assertEquals(uri, simple.route("/ctx" + uri), trie.route("/ctx" + uri));
+        }
+    }
+
+    private static void assertSameRoutes(final String[][] routes) throws Exception {
+        final SimpleRouter simple = new SimpleRouter();
+        final TrieRouter trie = new TrieRouter();
+        for (final String[] route : routes) {
+            simple.addRoute(new Route().from(route[0]).to(route[1]));
+            trie.addRoute(new Route().from(route[0]).to(route[1]));
+        }
+
+        for (int i = 0; i < 2; i++) { // second pass from the caches
+            for (final String uri : URIS) {
+                assertEquals(routes[0][0] + " " + uri, simple.route(uri), trie.route(uri));
+            }
+        }
+    }
+}
@@ -29,7 +29,6 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.InputStream;
 
 public class CXFJAXRSFilter implements Filter {
     private final CxfRsHttpListener delegate;
@@ -60,8 +59,7 @@ public class CXFJAXRSFilter implements Filter {
         final HttpServletResponse httpServletResponse = HttpServletResponse.class.cast(response);
 
         if (CxfRsHttpListener.TRY_STATIC_RESOURCES || delegate.matchPath(httpServletRequest)) {
-            final InputStream staticContent = delegate.findStaticContent(httpServletRequest, welcomeFiles);
-            if (staticContent != null) {
+            if (delegate.hasStaticContent(httpServletRequest, welcomeFiles)) {
                 chain.doFilter(request, response);
                 return;
             }
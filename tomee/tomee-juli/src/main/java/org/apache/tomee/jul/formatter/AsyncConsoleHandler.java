@@ -16,21 +16,129 @@
  */
 package org.apache.tomee.jul.formatter;
 
-import org.apache.juli.AsyncFileHandler;
+import org.apache.openejb.util.LogRingBuffer;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.util.logging.ConsoleHandler;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
 import java.util.logging.LogRecord;
+import java.util.logging.StreamHandler;
 
-public class AsyncConsoleHandler extends AsyncFileHandler {
-    private final ConsoleHandler delegate = new ConsoleHandler() {{
-        setFormatter(new SingleLineFormatter()); // console -> dev. File uses plain old format
-    }};
+/**
+ * Writes the records to the console from a single thread, the records going
+ * through a {@link LogRingBuffer}.
+ * <p/>
+ * Properties, prefixed by the class name: level, encoding, capacity
+ * (org.apache.juli.AsyncMaxRecordCount or 10000 by default) and overflow
+ * (block, drop-debug or drop, the default).
+ */
+public class AsyncConsoleHandler extends Handler {
+    private final StreamHandler delegate = new StreamHandler(System.err, new SingleLineFormatter()) {
+        @Override
+        public synchronized void close() {
+            flush(); // System.err stays open
+        }
+    };
+
+    private final LogRingBuffer<Event> records;
+
+    public AsyncConsoleHandler() {
+        final String prefix = getClass().getName() + '.';
+        setLevel(Level.parse(property(prefix + "level", "ALL")));
+        delegate.setLevel(Level.ALL);
+
+        final String encoding = property(prefix + "encoding", null);
+        if (encoding != null) {
+            try {
+                delegate.setEncoding(encoding);
+            } catch (final UnsupportedEncodingException e) {
+                reportError(e.getMessage(), e, 0);
+            }
+        }
+
+        records = new LogRingBuffer<>("AsyncConsoleHandler",
+            Integer.parseInt(property(prefix + "capacity", System.getProperty("org.apache.juli.AsyncMaxRecordCount", "10000"))),
+            LogRingBuffer.Overflow.from(property(prefix + "overflow", "drop")),
+            new LogRingBuffer.EventFactory<Event>() {
+                @Override
+                public Event create() {
+                    return new Event();
+                }
+            },
+            new LogRingBuffer.Handler<Event>() {
+                @Override
+                public void onEvent(final Event event) {
+                    final LogRecord record = event.record;
+                    event.record = null;
+                    delegate.publish(record);
+                }
+
+                @Override
+                public void endOfBatch() {
+                    delegate.flush();
+                }
+            });
+        records.start();
+    }
+
+    private static String property(final String name, final String defaultValue) {
+        final String value = LogManager.getLogManager().getProperty(name);
+        return value == null ? defaultValue : value.trim();
+    }
+
+    @Override
+    public void publish(final LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+
+        // the caller is found from the stack, before leaving its thread
+        record.getSourceMethodName();
+
+        final long sequence = records.claim(record.getLevel().intValue() < Level.INFO.intValue());
+        if (sequence == LogRingBuffer.DROPPED) {
+            return;
+        }
+        if (sequence == LogRingBuffer.SYNCHRONOUS) {
+            delegate.publish(record);
+            delegate.flush();
+            return;
+        }
+
+        records.get(sequence).record = record;
+        records.publish(sequence);
+    }
+
+    @Override
+    public void flush() {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        try {
+            records.close(TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    public long getQueued() {
+        return records.getQueued();
+    }
+
+    public long getDropped() {
+        return records.getDropped();
+    }
 
-    protected void publishInternal(final LogRecord record) {
-        delegate.publish(record);
+    private static final class Event {
+        private LogRecord record;
     }
 
     // copy cause of classloading